@@ -0,0 +1,86 @@
+#!/usr/bin/env bash
+# Measures application startup: the "Started ... in N seconds" time Spring reports, the wall-clock time
+# until the first successful GET /api/pdf/my-files, and then the latency of a few list/search queries.
+# Use it to compare schema management modes or the fast-start options (AOT, CDS, lazy initialization).
+#
+# Usage: BENCH_EMAIL=user@example.com BENCH_PASSWORD=secret scripts/bench-startup.sh [runs] [-- extra app args]
+#
+# Builds nothing: expects target/*.jar and a reachable database. JVM flags go in JAVA_OPTS.
+# Without BENCH_EMAIL/BENCH_PASSWORD only the reported startup time is printed.
+# Example comparisons:
+#   scripts/bench-startup.sh 5
+#   scripts/bench-startup.sh 5 -- --spring.flyway.enabled=false --spring.jpa.hibernate.ddl-auto=update
+#   scripts/bench-startup.sh 5 -- --spring.profiles.active=lazy
+#   # after mvn -Pfast-start package and a training run with -XX:ArchiveClassesAtExit=target/app.jsa:
+#   JAVA_OPTS="-XX:SharedArchiveFile=target/app.jsa -Dspring.aot.enabled=true" scripts/bench-startup.sh 5
+set -euo pipefail
+
+RUNS="${1:-5}"
+shift || true
+[[ "${1:-}" == "--" ]] && shift
+APP_ARGS=("$@")
+
+PORT="${PORT:-18081}"
+BASE_URL="http://localhost:${PORT}"
+JAR=$(ls target/*.jar | grep -v '\.original$' | head -n 1)
+QUERY_ITERATIONS="${QUERY_ITERATIONS:-20}"
+read -r -a JVM_ARGS <<< "${JAVA_OPTS:-}"
+
+LOG=$(mktemp)
+trap 'rm -f "${LOG}"; [[ -n "${APP_PID:-}" ]] && kill "${APP_PID}" 2>/dev/null || true' EXIT
+
+have_credentials() {
+    [[ -n "${BENCH_EMAIL:-}" && -n "${BENCH_PASSWORD:-}" ]]
+}
+
+login() {
+    curl -sf -H 'Content-Type: application/json' \
+        -d "{\"email\":\"${BENCH_EMAIL}\",\"password\":\"${BENCH_PASSWORD}\"}" \
+        "${BASE_URL}/api/auth/login" | sed -E 's/.*"jwtToken":"([^"]+)".*/\1/'
+}
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+time_queries() {
+    local token="$1"
+    for path in "/api/pdf/my-files" "/api/pdf/my-files/search?q=report" "/api/pdf/search?q=report"; do
+        local total=0
+        for i in $(seq 1 "${QUERY_ITERATIONS}"); do
+            local t
+            t=$(curl -sf -o /dev/null -w '%{time_total}' -H "Authorization: Bearer ${token}" "${BASE_URL}${path}")
+            total=$(echo "${total} + ${t}" | bc -l)
+        done
+        printf '    %-40s %8.2f ms\n' "${path}" "$(echo "${total} * 1000 / ${QUERY_ITERATIONS}" | bc -l)"
+    done
+}
+
+echo "Starting ${JAR} ${RUNS} times with JVM options: ${JAVA_OPTS:-(none)}, app args: ${APP_ARGS[*]:-(none)}"
+for run in $(seq 1 "${RUNS}"); do
+    launched=$(now_ms)
+    java "${JVM_ARGS[@]}" -jar "${JAR}" --server.port="${PORT}" "${APP_ARGS[@]}" > "${LOG}" 2>&1 &
+    APP_PID=$!
+
+    token=""
+    until grep -q 'Started PdfCollabSystemApplication' "${LOG}" \
+            && { ! have_credentials || { token=$(login 2>/dev/null || true); [[ -n "${token}" ]] \
+                && curl -sf -o /dev/null -H "Authorization: Bearer ${token}" "${BASE_URL}/api/pdf/my-files"; }; }; do
+        if ! kill -0 "${APP_PID}" 2>/dev/null; then
+            echo "Application exited during startup:" >&2
+            tail -n 40 "${LOG}" >&2
+            exit 1
+        fi
+        sleep 0.05
+    done
+    ready=$(now_ms)
+
+    echo "run ${run}: $(grep -o 'Started PdfCollabSystemApplication in [0-9.]* seconds' "${LOG}")"
+    if have_credentials; then
+        echo "    first successful /api/pdf/my-files after $(( ready - launched )) ms"
+        time_queries "${token}"
+    fi
+    kill "${APP_PID}"
+    wait "${APP_PID}" 2>/dev/null || true
+    APP_PID=
+done
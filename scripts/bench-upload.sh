@@ -0,0 +1,45 @@
+#!/usr/bin/env bash
+# Compares upload throughput of the multipart endpoint (/api/pdf/upload) with the
+# single-pass streaming endpoint (/api/pdf/upload/stream).
+#
+# Usage: BENCH_EMAIL=user@example.com BENCH_PASSWORD=secret scripts/bench-upload.sh [size-mb] [iterations]
+#
+# The backend must be running (default http://localhost:8081, override with BASE_URL) and, for
+# files above 1 MB, started with a larger spring.servlet.multipart.max-file-size.
+set -euo pipefail
+
+BASE_URL="${BASE_URL:-http://localhost:8081}"
+SIZE_MB="${1:-64}"
+ITERATIONS="${2:-5}"
+: "${BENCH_EMAIL:?set BENCH_EMAIL}"
+: "${BENCH_PASSWORD:?set BENCH_PASSWORD}"
+
+TOKEN=$(curl -sf -H 'Content-Type: application/json' \
+    -d "{\"email\":\"${BENCH_EMAIL}\",\"password\":\"${BENCH_PASSWORD}\"}" \
+    "${BASE_URL}/api/auth/login" | sed -E 's/.*"jwtToken":"([^"]+)".*/\1/')
+
+WORK_DIR=$(mktemp -d)
+trap 'rm -rf "${WORK_DIR}"' EXIT
+SAMPLE="${WORK_DIR}/sample.pdf"
+printf '%%PDF-1.7\n' > "${SAMPLE}"
+head -c "$((SIZE_MB * 1024 * 1024))" /dev/urandom >> "${SAMPLE}"
+printf '\n%%%%EOF\n' >> "${SAMPLE}"
+
+run() {
+    local label="$1"; shift
+    local total=0
+    for i in $(seq 1 "${ITERATIONS}"); do
+        local t
+        t=$(curl -sf -o /dev/null -w '%{time_total}' -H "Authorization: Bearer ${TOKEN}" "$@")
+        total=$(echo "${total} + ${t}" | bc -l)
+    done
+    local avg
+    avg=$(echo "${total} / ${ITERATIONS}" | bc -l)
+    printf '%-10s %8.3f s/upload  %8.1f MB/s\n' "${label}" "${avg}" "$(echo "${SIZE_MB} / ${avg}" | bc -l)"
+}
+
+echo "Uploading ${SIZE_MB} MB x ${ITERATIONS} to ${BASE_URL}"
+run multipart -F "file=@${SAMPLE};filename=bench-multipart.pdf;type=application/pdf" \
+    "${BASE_URL}/api/pdf/upload"
+run stream -H 'Content-Type: application/pdf' -X POST -T "${SAMPLE}" \
+    "${BASE_URL}/api/pdf/upload/stream?filename=bench-stream.pdf"
@@ -0,0 +1,168 @@
+package com.pdfmanagement.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Calls the application's REST endpoints and records each call's latency under a short endpoint name in the
+ * current {@link LatencyReport}. A call is an error when it fails or returns anything but 2xx.
+ */
+final class ApiClient {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient http;
+    private final String base;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile LatencyReport report;
+
+    ApiClient(URI base) {
+        this.base = base.toString().replaceAll("/+$", "");
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /** Where latencies go from now on; null records nothing, as while seeding. */
+    void reportTo(LatencyReport report) {
+        this.report = report;
+    }
+
+    void register(String email, String username, String password) {
+        expectOk("register", post("/api/auth/register", null,
+                json(Map.of("email", email, "username", username, "password", password))));
+    }
+
+    String login(String email, String password) {
+        return expectOk("login", post("/api/auth/login", null, json(Map.of("email", email, "password", password))))
+                .get("jwtToken").asText();
+    }
+
+    long upload(String token, String filename, byte[] pdf) {
+        HttpRequest request = request("/api/pdf/upload/stream?filename=" + encode(filename), token)
+                .header("Content-Type", "application/pdf")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(pdf))
+                .build();
+        return expectOk("upload", request).get("id").asLong();
+    }
+
+    void listFiles(String token) {
+        send("my-files", request("/api/pdf/my-files", token).GET().build());
+    }
+
+    void details(String token, long pdfId) {
+        send("details", request("/api/pdf/" + pdfId, token).GET().build());
+    }
+
+    void download(String token, long pdfId) {
+        send("download", request("/api/pdf/download/" + pdfId, token).GET().build());
+    }
+
+    void searchOwn(String token, String query) {
+        send("my-files-search", request("/api/pdf/my-files/search?q=" + encode(query), token).GET().build());
+    }
+
+    void searchAll(String query) {
+        send("search", request("/api/pdf/search?q=" + encode(query), null).GET().build());
+    }
+
+    void comment(String token, long pdfId, String text) {
+        expectOk("comment", post("/api/pdf/" + pdfId + "/comments", token, json(Map.of("text", text))));
+    }
+
+    void comments(String token, long pdfId) {
+        send("comments", request("/api/pdf/" + pdfId + "/comments", token).GET().build());
+    }
+
+    String share(String token, long pdfId) {
+        return expectOk("share", post("/api/pdf/" + pdfId + "/share", token, "{}")).get("shareToken").asText();
+    }
+
+    void shareAccess(String shareToken) {
+        send("share-access", request("/api/shared/access/" + shareToken, null).GET().build());
+    }
+
+    void shareDownload(String shareToken) {
+        send("share-download", request("/api/shared/download/" + shareToken, null).GET().build());
+    }
+
+    void shareComments(String shareToken) {
+        send("share-comments", request("/api/shared/" + shareToken + "/comments", null).GET().build());
+    }
+
+    private HttpRequest post(String path, String token, String body) {
+        return request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(base + path)).timeout(TIMEOUT);
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    /** Sends a request whose JSON response the caller needs, failing on any error status. */
+    private JsonNode expectOk(String endpoint, HttpRequest request) {
+        HttpResponse<byte[]> response = send(endpoint, request);
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException(endpoint + " returned " + response.statusCode() + ": "
+                    + new String(response.body(), StandardCharsets.UTF_8));
+        }
+        try {
+            return response.body().length == 0 ? objectMapper.nullNode() : objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            return objectMapper.nullNode(); // plain-text responses such as the one from register
+        }
+    }
+
+    private HttpResponse<byte[]> send(String endpoint, HttpRequest request) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            record(endpoint, start, response.statusCode() / 100 == 2);
+            return response;
+        } catch (IOException e) {
+            record(endpoint, start, false);
+            throw new UncheckedIOException(endpoint + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+    }
+
+    private void record(String endpoint, long start, boolean ok) {
+        LatencyReport current = report;
+        if (current != null) {
+            current.record(endpoint, start, ok);
+        }
+    }
+
+    private String json(Map<String, ?> body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package com.pdfmanagement.loadgen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Synthetic data the workloads run against, created through the API before the first mix.
+ * <p>
+ * Every run registers fresh users ({@code loadgen-<run>-<n>@example.com}), so runs never collide with earlier
+ * data in the same database. Each user uploads {@code pdfs-per-user} generated PDFs named after random words,
+ * which gives the search mix something to find, and comments on each of them. The first document of the first
+ * {@code hot-documents} users is shared; the share and comment mixes concentrate on these documents the way
+ * traffic piles onto a link that has gone viral.
+ * </p>
+ */
+final class Fixture {
+
+    static final String PASSWORD = "loadgen-password";
+
+    static final List<String> WORDS = List.of("invoice", "contract", "report", "quarterly", "annual", "budget",
+            "proposal", "minutes", "handbook", "policy", "roadmap", "design", "review", "summary", "statement",
+            "receipt", "agreement", "specification", "presentation", "research", "analysis", "forecast", "audit",
+            "onboarding", "training", "release", "notes", "checklist", "whitepaper", "brochure");
+
+    /** A seeded user with a valid token and the ids of the documents they uploaded. */
+    record User(String email, String token, List<Long> pdfIds) {
+    }
+
+    private final List<User> users;
+    private final List<Long> hotPdfIds;
+    private final List<String> hotShareTokens;
+    private final byte[] uploadPdf;
+
+    private Fixture(List<User> users, List<Long> hotPdfIds, List<String> hotShareTokens, byte[] uploadPdf) {
+        this.users = users;
+        this.hotPdfIds = hotPdfIds;
+        this.hotShareTokens = hotShareTokens;
+        this.uploadPdf = uploadPdf;
+    }
+
+    static Fixture seed(ApiClient api, LoadOptions options, ExecutorService pool) throws Exception {
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        List<Future<User>> futures = new ArrayList<>();
+        for (int i = 0; i < Math.max(options.users(), 1); i++) {
+            int index = i;
+            futures.add(pool.submit(() -> seedUser(api, options, run, index)));
+        }
+        List<User> users = new ArrayList<>();
+        for (Future<User> future : futures) {
+            users.add(future.get());
+        }
+
+        List<Long> hotPdfIds = new ArrayList<>();
+        List<String> hotShareTokens = new ArrayList<>();
+        for (User user : users) {
+            if (hotPdfIds.size() == options.hotDocuments()) {
+                break;
+            }
+            if (!user.pdfIds().isEmpty()) {
+                hotPdfIds.add(user.pdfIds().get(0));
+                hotShareTokens.add(api.share(user.token(), user.pdfIds().get(0)));
+            }
+        }
+        if (hotPdfIds.isEmpty()) {
+            throw new IllegalArgumentException("Seeding needs at least one PDF; raise --pdfs-per-user");
+        }
+        byte[] uploadPdf = SyntheticPdf.generate("loadgen upload", options.pdfPages(), options.uploadSizeBytes());
+        return new Fixture(Collections.unmodifiableList(users), hotPdfIds, hotShareTokens, uploadPdf);
+    }
+
+    private static User seedUser(ApiClient api, LoadOptions options, String run, int index) {
+        String email = "loadgen-" + run + "-" + index + "@example.com";
+        api.register(email, "loadgen" + index, PASSWORD);
+        String token = api.login(email, PASSWORD);
+        Random random = new Random(index);
+        List<Long> pdfIds = new ArrayList<>();
+        for (int i = 0; i < options.pdfsPerUser(); i++) {
+            String title = word(random) + " " + word(random) + " " + i;
+            long id = api.upload(token, title.replace(' ', '-') + ".pdf",
+                    SyntheticPdf.generate(title, options.pdfPages(), options.pdfSizeBytes()));
+            for (int c = 0; c < options.commentsPerPdf(); c++) {
+                api.comment(token, id, "Seed comment " + c + " on " + title);
+            }
+            pdfIds.add(id);
+        }
+        return new User(email, token, Collections.unmodifiableList(pdfIds));
+    }
+
+    static String word(Random random) {
+        return WORDS.get(random.nextInt(WORDS.size()));
+    }
+
+    User user(Random random) {
+        return users.get(random.nextInt(users.size()));
+    }
+
+    /** A hot document: the first one gets most of the traffic, the others share the rest. */
+    long hotPdfId(Random random) {
+        return hotPdfIds.get(skewed(random, hotPdfIds.size()));
+    }
+
+    String hotShareToken(Random random) {
+        return hotShareTokens.get(skewed(random, hotShareTokens.size()));
+    }
+
+    /** The document uploaded by the upload mix, generated once so the client spends no time on it. */
+    byte[] uploadPdf() {
+        return uploadPdf;
+    }
+
+    private static int skewed(Random random, int size) {
+        return size == 1 || random.nextInt(100) < 80 ? 0 : 1 + random.nextInt(size - 1);
+    }
+}
@@ -0,0 +1,144 @@
+package com.pdfmanagement.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and error counts per endpoint for one workload mix.
+ * <p>
+ * Workers record into an HdrHistogram {@link Recorder} per endpoint, in microseconds, without locking. Every
+ * interval the recorders are sampled: the interval histograms are written, tagged with the endpoint, to
+ * {@code <mix>.hlog} in HdrHistogram's log format (readable by {@code HistogramLogProcessor} and the online
+ * plotters) and added to the run's totals. Samples taken during warm-up are discarded.
+ * </p>
+ */
+final class LatencyReport implements Closeable {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROS_PER_MS = 1000.0;
+
+    /** Results of one endpoint over the measured part of a run. */
+    record Summary(String mix, String endpoint, long count, long errors, double throughput,
+                   double p50Ms, double p95Ms, double p99Ms, double maxMs) {
+
+        double errorRate() {
+            return count == 0 ? 0 : (double) errors / count;
+        }
+    }
+
+    private static final class Endpoint {
+        final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        final LongAdder errors = new LongAdder();
+        long measuredErrors;
+    }
+
+    private final String mix;
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+    private final PrintStream logStream;
+    private final HistogramLogWriter log;
+    private final long startMs;
+    private long lastSampleMs;
+    private long measuredSinceMs = -1;
+
+    LatencyReport(String mix, Path output) throws IOException {
+        this.mix = mix;
+        Files.createDirectories(output);
+        this.startMs = System.currentTimeMillis();
+        this.lastSampleMs = startMs;
+        try {
+            this.logStream = new PrintStream(output.resolve(mix + ".hlog").toFile());
+        } catch (FileNotFoundException e) {
+            throw new IOException(e);
+        }
+        this.log = new HistogramLogWriter(logStream);
+        log.outputComment("Latencies of the " + mix + " mix in microseconds, one interval per endpoint (tag)");
+        log.outputLogFormatVersion();
+        log.outputStartTime(startMs);
+        log.setBaseTime(startMs);
+        log.outputLegend();
+    }
+
+    /**
+     * Records one request.
+     *
+     * @param startNanos {@link System#nanoTime()} when the request was sent
+     * @param ok         whether the response was the expected one
+     */
+    void record(String endpoint, long startNanos, boolean ok) {
+        Endpoint stats = endpoints.computeIfAbsent(endpoint, name -> new Endpoint());
+        stats.recorder.recordValue(Math.max((System.nanoTime() - startNanos) / 1000, 1));
+        if (!ok) {
+            stats.errors.increment();
+        }
+    }
+
+    /** Ends the warm-up: everything recorded so far is dropped. */
+    synchronized void startMeasuring() {
+        sample(false);
+        endpoints.values().forEach(stats -> stats.measuredErrors = -stats.errors.sum());
+        measuredSinceMs = System.currentTimeMillis();
+    }
+
+    /** Moves the latest interval into the log and the totals; called every interval and once at the end. */
+    synchronized void sample() {
+        sample(measuredSinceMs >= 0);
+    }
+
+    private void sample(boolean keep) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Histogram interval = entry.getValue().recorder.getIntervalHistogram();
+            if (!keep || interval.getTotalCount() == 0) {
+                continue;
+            }
+            interval.setTag(entry.getKey());
+            log.outputIntervalHistogram((lastSampleMs - startMs) / 1000.0, (now - startMs) / 1000.0, interval,
+                    MICROS_PER_MS);
+            entry.getValue().total.add(interval);
+        }
+        lastSampleMs = now;
+    }
+
+    /**
+     * Summarizes the measured part of the run and writes each endpoint's percentile distribution, in
+     * milliseconds, to {@code <mix>.<endpoint>.hgrm}.
+     */
+    synchronized List<Summary> summarize(Path output) throws IOException {
+        sample();
+        double seconds = Math.max(System.currentTimeMillis() - measuredSinceMs, 1) / 1000.0;
+        List<Summary> summaries = new ArrayList<>();
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Histogram total = entry.getValue().total;
+            long errors = entry.getValue().measuredErrors + entry.getValue().errors.sum();
+            summaries.add(new Summary(mix, entry.getKey(), total.getTotalCount(), errors,
+                    total.getTotalCount() / seconds,
+                    total.getValueAtPercentile(50) / MICROS_PER_MS,
+                    total.getValueAtPercentile(95) / MICROS_PER_MS,
+                    total.getValueAtPercentile(99) / MICROS_PER_MS,
+                    total.getMaxValue() / MICROS_PER_MS));
+            try (PrintStream out = new PrintStream(output.resolve(mix + "." + entry.getKey() + ".hgrm").toFile())) {
+                total.outputPercentileDistribution(out, MICROS_PER_MS);
+            }
+        }
+        return summaries;
+    }
+
+    @Override
+    public void close() {
+        logStream.close();
+    }
+}
@@ -0,0 +1,181 @@
+package com.pdfmanagement.loadgen;
+
+import com.pdfmanagement.PdfCollabSystemApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator for the REST API.
+ * <p>
+ * Without {@code --target} it starts the application in this JVM on a free port, with its own temporary upload
+ * directory, SQL logging off and quotas out of the way; the database comes from the usual
+ * {@code --spring.datasource.*} options (a local PostgreSQL by default). It then seeds a {@link Fixture} through
+ * the API and runs each requested {@link Workload} mix for a warm-up and a measured period.
+ * </p>
+ *
+ * <p>
+ * Results go to {@code --output} (default {@code target/loadgen}): an HdrHistogram interval log per mix, a
+ * percentile distribution per mix and endpoint, and {@code summary.csv} with count, errors, throughput and
+ * p50/p95/p99/max latency per endpoint. With {@code --thresholds} the results are checked against a
+ * {@link Thresholds} file and the process exits with status 1 if any limit is broken, which fails
+ * {@code mvn -Ploadgen verify}. Status 2 means the run itself failed.
+ * </p>
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        ConfigurableApplicationContext application = null;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(options.concurrency(), 1));
+        try {
+            String target = options.target();
+            if (target.isEmpty()) {
+                application = startApplication(options);
+                target = "http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort();
+            }
+            ApiClient api = new ApiClient(URI.create(target));
+
+            System.out.printf("Seeding %d users x %d PDFs x %d comments against %s%n",
+                    options.users(), options.pdfsPerUser(), options.commentsPerPdf(), target);
+            Fixture fixture = Fixture.seed(api, options, pool);
+
+            List<LatencyReport.Summary> results = new ArrayList<>();
+            for (Workload mix : options.mixes()) {
+                System.out.printf("Running %s: %d s warm-up, %d s measured, %d workers%n", mix.label(),
+                        options.warmupMs() / 1000, options.durationMs() / 1000, options.concurrency());
+                results.addAll(drive(mix, api, fixture, options, pool));
+            }
+            writeSummary(options.output(), results);
+            print(results);
+
+            if (options.thresholds() != null) {
+                List<String> violations = Thresholds.load(options.thresholds()).check(results);
+                if (!violations.isEmpty()) {
+                    System.err.println("Thresholds broken:");
+                    violations.forEach(violation -> System.err.println("  " + violation));
+                    return 1;
+                }
+                System.out.println("All thresholds met");
+            }
+            return 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return 2;
+        } finally {
+            pool.shutdownNow();
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadOptions options) throws IOException {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("file.upload-dir", Files.createTempDirectory("loadgen-uploads").toString());
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("storage.quota.default-bytes", Long.toString(Long.MAX_VALUE / 4));
+        properties.put("storage.quota.default-files", Integer.toString(Integer.MAX_VALUE / 2));
+        properties.putAll(options.applicationProperties());
+        return SpringApplication.run(PdfCollabSystemApplication.class, properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new));
+    }
+
+    private static List<LatencyReport.Summary> drive(Workload mix, ApiClient api, Fixture fixture,
+                                                     LoadOptions options, ExecutorService pool) throws Exception {
+        try (LatencyReport report = new LatencyReport(mix.label(), options.output())) {
+            api.reportTo(report);
+            long start = System.currentTimeMillis();
+            long measureFrom = start + options.warmupMs();
+            long end = measureFrom + options.durationMs();
+
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < options.concurrency(); i++) {
+                Random random = new Random(31L * i + mix.ordinal());
+                workers.add(pool.submit(() -> {
+                    while (System.currentTimeMillis() < end && !Thread.currentThread().isInterrupted()) {
+                        try {
+                            mix.step(api, fixture, options, random);
+                        } catch (RuntimeException e) {
+                            // Already recorded as an error; keep the load going.
+                        }
+                    }
+                }));
+            }
+
+            boolean measuring = false;
+            while (System.currentTimeMillis() < end) {
+                long now = System.currentTimeMillis();
+                if (!measuring && now >= measureFrom) {
+                    report.startMeasuring();
+                    measuring = true;
+                } else if (measuring) {
+                    report.sample();
+                }
+                long next = measuring ? now + options.intervalMs() : Math.min(now + options.intervalMs(), measureFrom);
+                TimeUnit.MILLISECONDS.sleep(Math.max(Math.min(next, end) - now, 1));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            if (!measuring) {
+                report.startMeasuring();
+            }
+            api.reportTo(null);
+            return report.summarize(options.output());
+        }
+    }
+
+    private static void writeSummary(Path output, List<LatencyReport.Summary> results) throws IOException {
+        Files.createDirectories(output);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(output.resolve("summary.csv")))) {
+            out.println("mix,endpoint,count,errors,throughput_per_s,p50_ms,p95_ms,p99_ms,max_ms");
+            for (LatencyReport.Summary result : results) {
+                out.println(String.format(Locale.ROOT, "%s,%s,%d,%d,%.2f,%.3f,%.3f,%.3f,%.3f", result.mix(),
+                        result.endpoint(), result.count(), result.errors(), result.throughput(), result.p50Ms(),
+                        result.p95Ms(), result.p99Ms(), result.maxMs()));
+            }
+        }
+    }
+
+    private static void print(List<LatencyReport.Summary> results) {
+        System.out.printf("%n%-14s %-16s %9s %7s %9s %9s %9s %9s%n",
+                "mix", "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms");
+        for (LatencyReport.Summary result : results) {
+            System.out.printf(Locale.ROOT, "%-14s %-16s %9d %7d %9.1f %9.2f %9.2f %9.2f%n", result.mix(),
+                    result.endpoint(), result.count(), result.errors(), result.throughput(), result.p50Ms(),
+                    result.p95Ms(), result.p99Ms());
+        }
+    }
+}
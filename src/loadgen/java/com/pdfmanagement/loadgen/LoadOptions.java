@@ -0,0 +1,135 @@
+package com.pdfmanagement.loadgen;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command-line options of {@link LoadGenerator}, given as {@code --name=value}.
+ * <p>
+ * Options not listed in {@link #KNOWN} are passed on to the application when it is started in-process, so
+ * {@code --spring.datasource.url=...} and the like work as usual.
+ * </p>
+ */
+final class LoadOptions {
+
+    static final Set<String> KNOWN = Set.of("target", "mixes", "users", "pdfs-per-user", "comments-per-pdf",
+            "pdf-pages", "pdf-size-kb", "upload-size-kb", "hot-documents", "concurrency", "duration-s", "warmup-s",
+            "interval-ms", "typing-delay-ms", "output", "thresholds");
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+    private final Map<String, String> applicationProperties = new LinkedHashMap<>();
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (KNOWN.contains(name)) {
+                options.values.put(name, value);
+            } else {
+                options.applicationProperties.put(name, value);
+            }
+        }
+        return options;
+    }
+
+    /** Base URL of a running instance; empty to start the application in this JVM. */
+    String target() {
+        return values.getOrDefault("target", "");
+    }
+
+    List<Workload> mixes() {
+        List<Workload> mixes = new ArrayList<>();
+        for (String name : values.getOrDefault("mixes", "upload-heavy,viral-share,search-typing,comment-storm")
+                .split(",")) {
+            mixes.add(Workload.byName(name.trim()));
+        }
+        return mixes;
+    }
+
+    int users() {
+        return intValue("users", 20);
+    }
+
+    int pdfsPerUser() {
+        return intValue("pdfs-per-user", 10);
+    }
+
+    int commentsPerPdf() {
+        return intValue("comments-per-pdf", 5);
+    }
+
+    int pdfPages() {
+        return intValue("pdf-pages", 4);
+    }
+
+    int pdfSizeBytes() {
+        return intValue("pdf-size-kb", 64) * 1024;
+    }
+
+    int uploadSizeBytes() {
+        return intValue("upload-size-kb", 256) * 1024;
+    }
+
+    /** Documents that the share and comment mixes concentrate on. */
+    int hotDocuments() {
+        return intValue("hot-documents", 3);
+    }
+
+    int concurrency() {
+        return intValue("concurrency", 16);
+    }
+
+    long durationMs() {
+        return intValue("duration-s", 30) * 1000L;
+    }
+
+    long warmupMs() {
+        return intValue("warmup-s", 5) * 1000L;
+    }
+
+    long intervalMs() {
+        return intValue("interval-ms", 1000);
+    }
+
+    long typingDelayMs() {
+        return intValue("typing-delay-ms", 80);
+    }
+
+    Path output() {
+        return Paths.get(values.getOrDefault("output", "target/loadgen"));
+    }
+
+    /** Threshold file to check the results against, or null. */
+    Path thresholds() {
+        String file = values.get("thresholds");
+        return file == null || file.isBlank() ? null : Paths.get(file);
+    }
+
+    Map<String, String> applicationProperties() {
+        return applicationProperties;
+    }
+
+    private int intValue(String name, int defaultValue) {
+        String value = values.get(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number: " + value);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.pdfmanagement.loadgen;
+
+import com.pdfmanagement.service.StoredFileCodec;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Compares storage throughput of plaintext files with files compressed and/or encrypted at rest, through the same
+ * {@link StoredFileCodec} the application uses.
+ * <p>
+ * For each format it writes a generated PDF of {@code --size-mb} (streaming, in 64 KiB writes as an upload does),
+ * reads it back sequentially, and serves {@code --ranges} random byte ranges of {@code --range-kb}, opening the
+ * file for each one as a range download does. Throughput is the mean over {@code --iterations} runs after one
+ * warm-up; range latency goes into an HdrHistogram. Files are read back from the page cache, so the numbers show
+ * the CPU cost of the format rather than the disk. The generated content stream compresses to a little over half
+ * its size; {@code --level} sets the compression level (default 1) and {@code --chunk-size} both the encryption
+ * chunk and the compression frame size.
+ * </p>
+ *
+ * <p>
+ * Results are printed and written to {@code --output} (default {@code target/storage-bench}) as
+ * {@code summary.csv} and a percentile distribution per format ({@code <format>.ranges.hgrm}).
+ * </p>
+ */
+public final class StorageBenchmark {
+
+    private static final int WRITE_BLOCK = 64 * 1024;
+    private static final double MICROS_PER_MS = 1000.0;
+
+    private StorageBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parse(args);
+        int sizeMb = Integer.parseInt(options.getOrDefault("size-mb", "256"));
+        int chunkSize = Integer.parseInt(options.getOrDefault("chunk-size", "65536"));
+        int rangeBytes = Integer.parseInt(options.getOrDefault("range-kb", "64")) * 1024;
+        int ranges = Integer.parseInt(options.getOrDefault("ranges", "5000"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "3"));
+        int level = Integer.parseInt(options.getOrDefault("level", "1"));
+        Path output = Paths.get(options.getOrDefault("output", "target/storage-bench"));
+        Files.createDirectories(output);
+
+        byte[] masterKey = new byte[32];
+        new SecureRandom().nextBytes(masterKey);
+        String key = Base64.getEncoder().encodeToString(masterKey);
+        Map<String, StoredFileCodec> codecs = new LinkedHashMap<>();
+        for (String format : List.of("plaintext", "encrypted", "compressed", "compressed+encrypted")) {
+            codecs.put(format, new StoredFileCodec(format.endsWith("encrypted"), "bench", key, "", chunkSize,
+                    format.startsWith("compressed"), chunkSize, level, 256 * 1024, 0.1));
+        }
+
+        byte[] content = SyntheticPdf.generate("storage benchmark", 8, sizeMb * 1024 * 1024);
+        Path directory = Files.createTempDirectory(output.toAbsolutePath(), "files-");
+        StringBuilder csv = new StringBuilder("format,size_bytes,on_disk_bytes,write_mb_s,read_mb_s,"
+                + "range_p50_ms,range_p99_ms,range_max_ms,ranges_per_s\n");
+        try {
+            for (Map.Entry<String, StoredFileCodec> entry : codecs.entrySet()) {
+                String format = entry.getKey();
+                StoredFileCodec codec = entry.getValue();
+                Path file = directory.resolve(format + ".pdf");
+
+                double write = 0;
+                double read = 0;
+                for (int i = 0; i <= iterations; i++) {
+                    double w = write(codec, file, content);
+                    double r = read(codec, file, content.length);
+                    if (i > 0) { // the first run warms up the JIT and the page cache
+                        write += w / iterations;
+                        read += r / iterations;
+                    }
+                }
+                Histogram latency = new Histogram(3);
+                long start = System.nanoTime();
+                ranges(codec, file, content, rangeBytes, ranges, latency);
+                double rangesPerSecond = ranges / ((System.nanoTime() - start) / 1e9);
+                Path distribution = output.resolve(format + ".ranges.hgrm");
+                try (PrintStream out = new PrintStream(Files.newOutputStream(distribution))) {
+                    latency.outputPercentileDistribution(out, MICROS_PER_MS);
+                }
+
+                long onDisk = Files.size(file);
+                System.out.printf("%-20s write %8.1f MB/s  read %8.1f MB/s  %d KiB ranges p50 %.3f ms p99 %.3f ms "
+                                + "(%.0f/s)  on disk %+.3f%%%n", format, write, read, rangeBytes / 1024,
+                        latency.getValueAtPercentile(50) / MICROS_PER_MS,
+                        latency.getValueAtPercentile(99) / MICROS_PER_MS, rangesPerSecond,
+                        100.0 * (onDisk - content.length) / content.length);
+                csv.append(String.format("%s,%d,%d,%.1f,%.1f,%.3f,%.3f,%.3f,%.0f%n", format, content.length, onDisk,
+                        write, read, latency.getValueAtPercentile(50) / MICROS_PER_MS,
+                        latency.getValueAtPercentile(99) / MICROS_PER_MS, latency.getMaxValue() / MICROS_PER_MS,
+                        rangesPerSecond));
+            }
+            Files.writeString(output.resolve("summary.csv"), csv);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /** Writes the content in upload-sized blocks and returns MB/s. */
+    private static double write(StoredFileCodec codec, Path file, byte[] content) throws IOException {
+        Files.deleteIfExists(file);
+        long start = System.nanoTime();
+        try (OutputStream out = codec.newOutputStream(file)) {
+            for (int offset = 0; offset < content.length; offset += WRITE_BLOCK) {
+                out.write(content, offset, Math.min(WRITE_BLOCK, content.length - offset));
+            }
+        }
+        return megabytesPerSecond(content.length, System.nanoTime() - start);
+    }
+
+    private static double read(StoredFileCodec codec, Path file, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BLOCK);
+        long total = 0;
+        long start = System.nanoTime();
+        try (SeekableByteChannel channel = codec.openChannel(file)) {
+            int n;
+            while ((n = channel.read(buffer.clear())) >= 0) {
+                total += n;
+            }
+        }
+        if (total != length) {
+            throw new IllegalStateException("Read " + total + " bytes of " + length);
+        }
+        return megabytesPerSecond(total, System.nanoTime() - start);
+    }
+
+    private static void ranges(StoredFileCodec codec, Path file, byte[] content, int rangeBytes, int count,
+                               Histogram latency) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(rangeBytes);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            int offset = random.nextInt(Math.max(1, content.length - rangeBytes));
+            long start = System.nanoTime();
+            try (SeekableByteChannel channel = codec.openChannel(file)) {
+                channel.position(offset);
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IllegalStateException("Range at " + offset + " ended early");
+                    }
+                }
+            }
+            latency.recordValue((System.nanoTime() - start) / 1000);
+            if (buffer.array()[0] != content[offset]) {
+                throw new IllegalStateException("Range at " + offset + " returned the wrong content");
+            }
+        }
+    }
+
+    private static double megabytesPerSecond(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}
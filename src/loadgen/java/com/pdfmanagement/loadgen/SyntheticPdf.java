@@ -0,0 +1,81 @@
+package com.pdfmanagement.loadgen;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates small but well-formed PDFs: a page tree with the requested number of pages, an info dictionary
+ * with a title, a correct cross-reference table, and an unreferenced padding stream to reach the requested
+ * size. Metadata extraction therefore does the same work on them as on real uploads.
+ */
+final class SyntheticPdf {
+
+    private SyntheticPdf() {
+    }
+
+    static byte[] generate(String title, int pages, int sizeBytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(sizeBytes, 1024) + 1024);
+        List<Integer> offsets = new ArrayList<>();
+        write(out, "%PDF-1.7\n%\u00e2\u00e3\u00cf\u00d3\n");
+
+        int pageCount = Math.max(pages, 1);
+        int firstPage = 3;
+        int contents = firstPage + pageCount;
+        int info = contents + 1;
+        int padding = info + 1;
+
+        object(out, offsets, "<< /Type /Catalog /Pages 2 0 R >>");
+        StringBuilder kids = new StringBuilder();
+        for (int i = 0; i < pageCount; i++) {
+            kids.append(firstPage + i).append(" 0 R ");
+        }
+        object(out, offsets, "<< /Type /Pages /Kids [" + kids.toString().trim() + "] /Count " + pageCount + " >>");
+        for (int i = 0; i < pageCount; i++) {
+            object(out, offsets, "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Contents "
+                    + contents + " 0 R >>");
+        }
+        stream(out, offsets, "0 0 m 612 792 l S".getBytes(StandardCharsets.US_ASCII));
+        object(out, offsets, "<< /Title (" + escape(title) + ") /Author (loadgen) >>");
+
+        int fill = Math.max(sizeBytes - out.size() - 256 - 20 * (padding + 1), 0);
+        byte[] filler = new byte[fill];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < fill; i++) {
+            filler[i] = (byte) ('A' + random.nextInt(16)); // upper case, so it can never contain "endstream"
+        }
+        stream(out, offsets, filler);
+
+        int xref = out.size();
+        StringBuilder table = new StringBuilder("xref\n0 " + (offsets.size() + 1) + "\n0000000000 65535 f \n");
+        for (int offset : offsets) {
+            table.append(String.format("%010d 00000 n \n", offset));
+        }
+        table.append("trailer\n<< /Size ").append(offsets.size() + 1).append(" /Root 1 0 R /Info ").append(info)
+                .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        write(out, table.toString());
+        return out.toByteArray();
+    }
+
+    private static void object(ByteArrayOutputStream out, List<Integer> offsets, String body) {
+        offsets.add(out.size());
+        write(out, offsets.size() + " 0 obj\n" + body + "\nendobj\n");
+    }
+
+    private static void stream(ByteArrayOutputStream out, List<Integer> offsets, byte[] data) {
+        offsets.add(out.size());
+        write(out, offsets.size() + " 0 obj\n<< /Length " + data.length + " >>\nstream\n");
+        out.writeBytes(data);
+        write(out, "\nendstream\nendobj\n");
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("(", "\\(").replace(")", "\\)");
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        out.writeBytes(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
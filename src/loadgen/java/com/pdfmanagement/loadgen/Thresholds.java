@@ -0,0 +1,86 @@
+package com.pdfmanagement.loadgen;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Regression limits for a load run, read from a properties file.
+ * <p>
+ * Each key is {@code <mix>.<endpoint>.<metric>}, where mix and endpoint may be {@code *}. Metrics are
+ * {@code p50-ms}, {@code p95-ms}, {@code p99-ms} (upper limits), {@code max-error-rate} (fraction of requests)
+ * and {@code min-throughput} (requests per second). Endpoints that saw no requests are not checked.
+ * </p>
+ * <pre>
+ * *.*.max-error-rate=0.01
+ * viral-share.share-download.p99-ms=150
+ * upload-heavy.upload.min-throughput=20
+ * </pre>
+ */
+final class Thresholds {
+
+    private final Properties limits;
+
+    private Thresholds(Properties limits) {
+        this.limits = limits;
+    }
+
+    static Thresholds load(Path file) throws IOException {
+        Properties limits = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            limits.load(reader);
+        }
+        for (String key : limits.stringPropertyNames()) {
+            String metric = key.substring(key.lastIndexOf('.') + 1);
+            if (!List.of("p50-ms", "p95-ms", "p99-ms", "max-error-rate", "min-throughput").contains(metric)
+                    || key.chars().filter(c -> c == '.').count() < 2) {
+                throw new IllegalArgumentException("Unknown threshold " + key + " in " + file);
+            }
+        }
+        return new Thresholds(limits);
+    }
+
+    /** Describes every limit the results break; empty if they pass. */
+    List<String> check(List<LatencyReport.Summary> results) {
+        List<String> violations = new ArrayList<>();
+        for (LatencyReport.Summary result : results) {
+            if (result.count() == 0) {
+                continue;
+            }
+            atMost(violations, result, "p50-ms", result.p50Ms());
+            atMost(violations, result, "p95-ms", result.p95Ms());
+            atMost(violations, result, "p99-ms", result.p99Ms());
+            atMost(violations, result, "max-error-rate", result.errorRate());
+            Double minimum = limit(result, "min-throughput");
+            if (minimum != null && result.throughput() < minimum) {
+                violations.add(String.format("%s %s: throughput %.1f/s is below %.1f/s",
+                        result.mix(), result.endpoint(), result.throughput(), minimum));
+            }
+        }
+        return violations;
+    }
+
+    private void atMost(List<String> violations, LatencyReport.Summary result, String metric, double value) {
+        Double maximum = limit(result, metric);
+        if (maximum != null && value > maximum) {
+            violations.add(String.format("%s %s: %s %.3f exceeds %.3f",
+                    result.mix(), result.endpoint(), metric, value, maximum));
+        }
+    }
+
+    /** The most specific limit that applies: exact names first, then wildcards. */
+    private Double limit(LatencyReport.Summary result, String metric) {
+        for (String key : List.of(result.mix() + "." + result.endpoint() + "." + metric,
+                result.mix() + ".*." + metric, "*." + result.endpoint() + "." + metric, "*.*." + metric)) {
+            String value = limits.getProperty(key);
+            if (value != null) {
+                return Double.valueOf(value.trim());
+            }
+        }
+        return null;
+    }
+}
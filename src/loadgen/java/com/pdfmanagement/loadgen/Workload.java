@@ -0,0 +1,117 @@
+package com.pdfmanagement.loadgen;
+
+import java.util.Random;
+
+/**
+ * The workload mixes. Each {@link #step} performs one user action, chosen by weight; a step may issue several
+ * requests, as typing a search does. Workers run steps back to back (a closed loop), so latencies are measured
+ * at the load the system can sustain with {@code concurrency} simultaneous users.
+ */
+enum Workload {
+
+    /** Users uploading documents and checking their library. */
+    UPLOAD_HEAVY("upload-heavy") {
+        @Override
+        void step(ApiClient api, Fixture fixture, LoadOptions options, Random random) {
+            Fixture.User user = fixture.user(random);
+            int roll = random.nextInt(100);
+            if (roll < 55) {
+                api.upload(user.token(), Fixture.word(random) + "-upload-" + random.nextInt(1_000_000) + ".pdf",
+                        fixture.uploadPdf());
+            } else if (roll < 80) {
+                api.listFiles(user.token());
+            } else if (roll < 90 && !user.pdfIds().isEmpty()) {
+                api.details(user.token(), user.pdfIds().get(random.nextInt(user.pdfIds().size())));
+            } else if (roll < 95 && !user.pdfIds().isEmpty()) {
+                api.download(user.token(), user.pdfIds().get(random.nextInt(user.pdfIds().size())));
+            } else {
+                api.login(user.email(), Fixture.PASSWORD);
+            }
+        }
+    },
+
+    /** Anonymous visitors opening a few shared links, mostly downloading. */
+    VIRAL_SHARE("viral-share") {
+        @Override
+        void step(ApiClient api, Fixture fixture, LoadOptions options, Random random) {
+            String token = fixture.hotShareToken(random);
+            int roll = random.nextInt(100);
+            if (roll < 30) {
+                api.shareAccess(token);
+            } else if (roll < 90) {
+                api.shareDownload(token);
+            } else {
+                api.shareComments(token);
+            }
+        }
+    },
+
+    /** Search-as-you-type: one request per keystroke, over the user's own files or all files. */
+    SEARCH_TYPING("search-typing") {
+        @Override
+        void step(ApiClient api, Fixture fixture, LoadOptions options, Random random) {
+            Fixture.User user = fixture.user(random);
+            boolean own = random.nextInt(100) < 70;
+            String word = Fixture.word(random);
+            for (int length = 1; length <= word.length(); length++) {
+                if (own) {
+                    api.searchOwn(user.token(), word.substring(0, length));
+                } else {
+                    api.searchAll(word.substring(0, length));
+                }
+                pause(options.typingDelayMs());
+            }
+        }
+    },
+
+    /** Many users commenting on the same few documents while others read them. */
+    COMMENT_STORM("comment-storm") {
+        @Override
+        void step(ApiClient api, Fixture fixture, LoadOptions options, Random random) {
+            Fixture.User user = fixture.user(random);
+            long pdfId = fixture.hotPdfId(random);
+            int roll = random.nextInt(100);
+            if (roll < 70) {
+                api.comment(user.token(), pdfId, "Storm comment " + random.nextInt(1_000_000));
+            } else if (roll < 90) {
+                api.comments(user.token(), pdfId);
+            } else {
+                api.details(user.token(), pdfId);
+            }
+        }
+    };
+
+    private final String label;
+
+    Workload(String label) {
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    abstract void step(ApiClient api, Fixture fixture, LoadOptions options, Random random);
+
+    static Workload byName(String name) {
+        for (Workload workload : values()) {
+            if (workload.label.equals(name)) {
+                return workload;
+            }
+        }
+        throw new IllegalArgumentException("Unknown mix " + name + "; expected upload-heavy, viral-share, "
+                + "search-typing or comment-storm");
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.pdfmanagement;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class PdfCollabSystemApplication {
     public static void main(String[] args) {
         SpringApplication.run(PdfCollabSystemApplication.class, args);
@@ -0,0 +1,98 @@
+package com.pdfmanagement.config;
+
+import com.pdfmanagement.service.PdfImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Command-line bulk import, run once the application has started when {@code pdf.import.dir} is set.
+ * <p>
+ * Imports every PDF under {@code pdf.import.dir} for the existing user {@code pdf.import.owner} through
+ * {@link PdfImportService}, then exits with status 0, or 1 if the import stopped with an error. Run it as a
+ * separate process, for example:
+ * </p>
+ * <pre>
+ * java -jar app.jar --spring.main.web-application-type=none \
+ *      --pdf.import.dir=/archive/team-a --pdf.import.owner=lead@example.com
+ * </pre>
+ *
+ * <p>
+ * Options: {@code pdf.import.mode} ({@code copy} or {@code link}, default {@code copy}),
+ * {@code pdf.import.workers} (default: number of processors), {@code pdf.import.batch-size} (default 500),
+ * {@code pdf.import.restart} (default {@code false}) and {@code pdf.import.exit-when-done} (default {@code true};
+ * set it to {@code false} to keep the application running afterwards). Running the same command again after an
+ * interruption resumes where it stopped.
+ * </p>
+ *
+ * <p>
+ * The runner is always registered and checks {@code pdf.import.dir} when it runs, so the import also works from
+ * an image built with Spring AOT, where bean conditions are fixed at build time.
+ * </p>
+ */
+@Component
+public class PdfImportRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfImportRunner.class);
+
+    private final PdfImportService pdfImportService;
+    private final ApplicationContext applicationContext;
+
+    @Value("${pdf.import.dir:}")
+    private String dir;
+
+    @Value("${pdf.import.owner:}")
+    private String owner;
+
+    @Value("${pdf.import.mode:copy}")
+    private String mode;
+
+    @Value("${pdf.import.workers:0}")
+    private int workers;
+
+    @Value("${pdf.import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${pdf.import.restart:false}")
+    private boolean restart;
+
+    @Value("${pdf.import.exit-when-done:true}")
+    private boolean exitWhenDone;
+
+    public PdfImportRunner(PdfImportService pdfImportService, ApplicationContext applicationContext) {
+        this.pdfImportService = pdfImportService;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (dir.isBlank()) {
+            return;
+        }
+        int exitCode = 0;
+        try {
+            PdfImportService.ImportOptions options = new PdfImportService.ImportOptions(
+                    PdfImportService.Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT)),
+                    workers > 0 ? workers : Runtime.getRuntime().availableProcessors(), batchSize, restart);
+            PdfImportService.ImportResult result = pdfImportService.importDirectory(Paths.get(dir), owner, options);
+            logger.info("Import of {} for {} finished: {} imported ({} bytes), {} skipped, {} failed",
+                    dir, owner, result.imported(), result.bytes(), result.skipped(), result.failed());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Import of {} for {} stopped; run it again to resume: {}", dir, owner, e.getMessage(), e);
+            exitCode = 1;
+        }
+        if (exitWhenDone) {
+            int status = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> status));
+        }
+    }
+}
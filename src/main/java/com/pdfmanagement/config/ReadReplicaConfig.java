@@ -0,0 +1,110 @@
+package com.pdfmanagement.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+/**
+ * Splits database traffic between the primary and a read replica.
+ * <p>
+ * Routing is enabled when {@code app.datasource.replica.url} is set; otherwise every connection comes from the
+ * primary pool. The primary pool is configured with the usual {@code spring.datasource.*} and
+ * {@code spring.datasource.hikari.*} properties, the replica pool with {@code app.datasource.replica.url},
+ * {@code .username}, {@code .password} (defaulting to the primary's credentials) and
+ * {@code app.datasource.replica.hikari.*}.
+ * </p>
+ *
+ * <p>
+ * The beans are defined whether or not a replica is configured, and the URL is checked when they are created:
+ * with Spring AOT ({@code -Dspring.aot.enabled=true}, as in the Docker image) bean conditions are evaluated at
+ * build time, so a conditional configuration could never be switched on in a prebuilt image.
+ * </p>
+ *
+ * <p>
+ * The application-wide {@link DataSource} is a {@link ReadWriteRoutingDataSource} behind a
+ * {@link LazyConnectionDataSourceProxy}. Repository reads run in Spring Data's read-only transactions
+ * and go to the replica; writes, Flyway migrations and any non-read-only transaction go to the primary.
+ * For a local setup, pointing the replica URL at a second database, or at the primary itself, exercises
+ * the routing without streaming replication.
+ * </p>
+ */
+@Configuration
+public class ReadReplicaConfig implements WebMvcConfigurer {
+
+    @Value("${app.datasource.replica.url:}")
+    private String replicaUrl;
+
+    @Value("${app.datasource.replica.read-your-writes-ms:5000}")
+    private long readYourWritesMs;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            Environment environment,
+            @Value("${app.datasource.replica.username:${spring.datasource.username:}}") String username,
+            @Value("${app.datasource.replica.password:${spring.datasource.password:}}") String password,
+            @Value("${app.datasource.replica.max-lag-ms:5000}") long maxLagMs) {
+        if (!replicaConfigured()) {
+            return new ReplicaLagMonitor(null, maxLagMs);
+        }
+        HikariDataSource replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(replicaUrl)
+                .username(username)
+                .password(password)
+                .build();
+        // The pool is not a bean of its own, so bind its settings here rather than with @ConfigurationProperties.
+        Binder.get(environment).bind("app.datasource.replica.hikari", Bindable.ofInstance(replica));
+        replica.setPoolName("replica");
+        replica.setReadOnly(true);
+        return new ReplicaLagMonitor(replica, maxLagMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        if (replicaLagMonitor.replica() == null) {
+            return new LazyConnectionDataSourceProxy(primary);
+        }
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primary, replicaLagMonitor.replica(), replicaLagMonitor::isUsable));
+    }
+
+    @Bean
+    public ReadYourWritesInterceptor readYourWritesInterceptor() {
+        return new ReadYourWritesInterceptor(readYourWritesMs);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (replicaConfigured()) {
+            registry.addInterceptor(readYourWritesInterceptor());
+        }
+    }
+
+    private boolean replicaConfigured() {
+        return !replicaUrl.isBlank();
+    }
+}
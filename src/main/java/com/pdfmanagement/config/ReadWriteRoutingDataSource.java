@@ -0,0 +1,64 @@
+package com.pdfmanagement.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Routes read-only transactions to the replica pool and everything else to the primary.
+ * <p>
+ * The route is decided when a physical connection is first needed, so this data source must be
+ * wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: JPA opens
+ * its connection before the transaction's read-only flag is published, and the proxy defers the
+ * actual lookup until the first statement runs.
+ * </p>
+ *
+ * <p>
+ * A read-only transaction still goes to the primary when:
+ * <ul>
+ *   <li>the replica is unhealthy or lagging (see {@link ReplicaLagMonitor}), or</li>
+ *   <li>the current thread has been pinned with {@link #pinToPrimary()}, which is how requests from a
+ *       user who just wrote something, write requests themselves and background jobs read their own writes.</li>
+ * </ul>
+ * Pinning is a no-op when no replica is configured, so callers do not need to know whether routing is enabled.
+ * </p>
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route { PRIMARY, REPLICA }
+
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private final BooleanSupplier replicaUsable;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, BooleanSupplier replicaUsable) {
+        this.replicaUsable = replicaUsable;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Sends every read on the current thread to the primary until {@link #clearPin()} is called.
+     */
+    public static void pinToPrimary() {
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    }
+
+    public static void clearPin() {
+        PINNED_TO_PRIMARY.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || PINNED_TO_PRIMARY.get() != null
+                || !replicaUsable.getAsBoolean()) {
+            return Route.PRIMARY;
+        }
+        return Route.REPLICA;
+    }
+}
@@ -0,0 +1,78 @@
+package com.pdfmanagement.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pins requests to the primary database where reading from the replica could miss the caller's own writes.
+ * <p>
+ * Write requests (anything but GET, HEAD and OPTIONS) are pinned for their whole duration, so reads
+ * they make before and after their writes are consistent. They also record the caller, and the same
+ * user's read requests stay on the primary for {@code app.datasource.replica.read-your-writes-ms}
+ * after that, which should be at least the tolerated replica lag. Anonymous reads always use the replica.
+ * </p>
+ */
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    private final long windowMs;
+    private final Map<String, Long> lastWriteByUser = new ConcurrentHashMap<>();
+
+    public ReadYourWritesInterceptor(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String user = userOf(request);
+        if (isWrite(request)) {
+            ReadWriteRoutingDataSource.pinToPrimary();
+            recordWrite(user);
+        } else if (user != null && wroteRecently(user)) {
+            ReadWriteRoutingDataSource.pinToPrimary();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (isWrite(request)) {
+            // The window should start when the write has committed, not when it arrived.
+            recordWrite(userOf(request));
+        }
+        ReadWriteRoutingDataSource.clearPin();
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.read-your-writes-purge-ms:60000}")
+    public void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - windowMs;
+        lastWriteByUser.values().removeIf(lastWrite -> lastWrite < cutoff);
+    }
+
+    private void recordWrite(String user) {
+        if (user != null) {
+            lastWriteByUser.put(user, System.currentTimeMillis());
+        }
+    }
+
+    private boolean wroteRecently(String user) {
+        Long lastWrite = lastWriteByUser.get(user);
+        return lastWrite != null && System.currentTimeMillis() - lastWrite < windowMs;
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method));
+    }
+
+    private static String userOf(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal == null ? null : principal.getName();
+    }
+}
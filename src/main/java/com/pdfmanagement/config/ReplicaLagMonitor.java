@@ -0,0 +1,91 @@
+package com.pdfmanagement.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Periodically measures how far the read replica is behind the primary.
+ * <p>
+ * The replica is considered usable only while the last check succeeded and the replay lag was at most
+ * {@code app.datasource.replica.max-lag-ms}. Until the first check has run, and whenever the replica
+ * cannot be reached, reads fall back to the primary. A replica URL that points at a server which is not
+ * in recovery (for example the primary itself, as a local stand-in) reports zero lag.
+ * </p>
+ *
+ * <p>
+ * The monitor owns the replica pool and closes it on shutdown. Without a replica it is never usable and
+ * checks nothing.
+ * </p>
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // Replay lag in milliseconds; zero when the replica has replayed everything it received.
+    private static final String LAG_QUERY = "SELECT CASE"
+            + " WHEN NOT pg_is_in_recovery() THEN 0"
+            + " WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+            + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)"
+            + " END";
+
+    private final HikariDataSource replica;
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxLagMs;
+
+    private volatile boolean usable;
+
+    /**
+     * @param replica the replica pool, or null when no replica is configured
+     */
+    public ReplicaLagMonitor(HikariDataSource replica, long maxLagMs) {
+        this.replica = replica;
+        this.jdbcTemplate = replica == null ? null : new JdbcTemplate(replica);
+        if (jdbcTemplate != null) {
+            jdbcTemplate.setQueryTimeout(2);
+        }
+        this.maxLagMs = maxLagMs;
+    }
+
+    /** The replica pool, or null when no replica is configured. */
+    public HikariDataSource replica() {
+        return replica;
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval-ms:1000}")
+    public void check() {
+        if (jdbcTemplate == null) {
+            return;
+        }
+        boolean nowUsable;
+        try {
+            Number lag = jdbcTemplate.queryForObject(LAG_QUERY, Number.class);
+            long lagMs = lag == null ? 0 : lag.longValue();
+            nowUsable = lagMs <= maxLagMs;
+            if (!nowUsable && usable) {
+                logger.warn("Read replica is {} ms behind (limit {} ms); routing reads to the primary", lagMs, maxLagMs);
+            }
+        } catch (RuntimeException e) {
+            nowUsable = false;
+            if (usable) {
+                logger.warn("Read replica is unreachable; routing reads to the primary: {}", e.getMessage());
+            }
+        }
+        if (nowUsable && !usable) {
+            logger.info("Read replica is in sync; routing read-only transactions to it");
+        }
+        usable = nowUsable;
+    }
+
+    public void close() {
+        if (replica != null) {
+            replica.close();
+        }
+    }
+}
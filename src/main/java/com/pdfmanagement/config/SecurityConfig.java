@@ -80,6 +80,7 @@ public class SecurityConfig {
         "/api/shared/download/**",
         "/api/shared/view/**",
         "/api/shared/*/comments",   // <-- New public endpoint for adding comments to shared files
+        "/api/shared/*/annotations",
         "/api/pdf/search"
     ).permitAll()
     .anyRequest().authenticated()
@@ -0,0 +1,65 @@
+package com.pdfmanagement.config;
+
+import com.pdfmanagement.service.CacheInvalidationBus;
+import com.pdfmanagement.service.FilenameSuggestIndex;
+import com.pdfmanagement.service.JobWorker;
+import com.pdfmanagement.service.PdfFingerprintBackfillJob;
+import com.pdfmanagement.service.PdfMetadataBackfillJob;
+import com.pdfmanagement.service.ShareExpirySweeper;
+import com.pdfmanagement.service.ShareRevocationList;
+import com.pdfmanagement.service.StorageEncryptionMigrator;
+import com.pdfmanagement.service.StorageScrubber;
+import com.pdfmanagement.service.StorageUsageReconciler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Startup behaviour shared by the lazy-initialization profile and the class-data-sharing training run.
+ * <p>
+ * With {@code spring.main.lazy-initialization=true} (the {@code lazy} profile) beans are created on
+ * first use. Beans that do their work from a schedule or at startup are never "used" by a request, so
+ * they are excluded here and still created eagerly: database migrations, the job worker, the metadata
+ * and fingerprint backfills, the share sweeper and revocation reload, storage usage reconciliation, the
+ * storage encryption migration, the storage scrubber, the read-replica monitoring, the cache invalidation
+ * listener and the filename suggestion index.
+ * </p>
+ *
+ * <p>
+ * When {@code app.startup.exit-when-ready} is set (the {@code training} profile), the application shuts
+ * down as soon as it has started, so a build can record the classes loaded during startup with
+ * {@code -XX:ArchiveClassesAtExit}.
+ * </p>
+ */
+@Configuration
+public class StartupConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupConfig.class);
+
+    @Value("${app.startup.exit-when-ready:false}")
+    private boolean exitWhenReady;
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(FlywayMigrationInitializer.class, JobWorker.class,
+                PdfMetadataBackfillJob.class, PdfFingerprintBackfillJob.class, ShareExpirySweeper.class,
+                ShareRevocationList.class, StorageUsageReconciler.class, StorageEncryptionMigrator.class,
+                StorageScrubber.class, ReplicaLagMonitor.class, ReadYourWritesInterceptor.class,
+                CacheInvalidationBus.class, FilenameSuggestIndex.class);
+    }
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        if (exitWhenReady) {
+            logger.info("Startup complete; exiting because app.startup.exit-when-ready is set");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+}
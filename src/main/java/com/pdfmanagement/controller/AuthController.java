@@ -3,6 +3,7 @@ package com.pdfmanagement.controller;
 import com.pdfmanagement.controller.dto.CreateUserRequest;
 import com.pdfmanagement.model.User;
 import com.pdfmanagement.repository.UserRepository;
+import com.pdfmanagement.service.CacheInvalidationBus;
 import com.pdfmanagement.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -33,6 +34,9 @@ public class AuthController {
     @Autowired
     private AuthenticationManager authenticationManager;
 
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
     // Register endpoint
     /**
      * Endpoint to register a user.
@@ -53,6 +57,7 @@ public class AuthController {
         user.setPassword(passwordEncoder.encode(createUserRequest.getPassword()));
 
         userRepository.save(user);
+        cacheInvalidationBus.userChanged(user.getId()); // other instances may have cached "no such email"
 
         // Return success message
         return ResponseEntity.ok("User registered successfully");
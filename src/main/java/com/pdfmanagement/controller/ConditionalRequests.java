@@ -0,0 +1,46 @@
+package com.pdfmanagement.controller;
+
+import com.pdfmanagement.repository.PDFRepository;
+
+/**
+ * Helpers for the weak ETags served by the PDF metadata and comment endpoints.
+ * <p>
+ * ETags are derived from the per-document {@code revision} counter (or, for listings, from an
+ * aggregate over the user's documents), so a matching {@code If-None-Match} can be answered with
+ * {@code 304 Not Modified} after a single indexed lookup.
+ * </p>
+ */
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    static String documentEtag(Long pdfId, long revision) {
+        return "W/\"pdf-" + pdfId + "-" + revision + "\"";
+    }
+
+    static String listingEtag(PDFRepository.ListingVersion version) {
+        return "W/\"files-" + version.getFileCount() + "-" + version.getRevisionSum() + "-" + version.getMaxId() + "\"";
+    }
+
+    /**
+     * Weak comparison of an {@code If-None-Match} header against an ETag, as required for GET requests.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || stripWeak(trimmed).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
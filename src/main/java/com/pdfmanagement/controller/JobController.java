@@ -0,0 +1,85 @@
+package com.pdfmanagement.controller;
+
+import com.pdfmanagement.controller.dto.JobResponse;
+import com.pdfmanagement.model.BackgroundJob;
+import com.pdfmanagement.repository.BackgroundJobRepository;
+import com.pdfmanagement.service.JobQueueService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    @Autowired
+    private BackgroundJobRepository jobRepository;
+
+    @Autowired
+    private JobQueueService jobQueueService;
+
+    /**
+     * Lists the authenticated user's background jobs.
+     *
+     * @param pdfId          only return jobs for this PDF
+     * @param status         only return jobs in this state (e.g. {@code DEAD} for the dead-letter list)
+     * @param authentication the authentication object containing the user's credentials
+     * @return a {@link ResponseEntity} containing the matching jobs
+     */
+    @GetMapping
+    public ResponseEntity<List<JobResponse>> listJobs(@RequestParam(required = false) Long pdfId,
+            @RequestParam(required = false) BackgroundJob.Status status, Authentication authentication) {
+        String email = authentication.getName();
+        List<BackgroundJob> jobs;
+        if (pdfId != null) {
+            jobs = jobRepository.findByOwnerEmailAndPdfIdOrderByIdAsc(email, pdfId);
+        } else if (status != null) {
+            jobs = jobRepository.findByOwnerEmailAndStatusOrderByIdDesc(email, status);
+        } else {
+            jobs = jobRepository.findByOwnerEmailOrderByIdDesc(email);
+        }
+        if (pdfId != null && status != null) {
+            jobs = jobs.stream().filter(job -> job.getStatus() == status).toList();
+        }
+        return ResponseEntity.ok(jobs.stream().map(JobResponse::new).toList());
+    }
+
+    /**
+     * Returns the status of a single background job owned by the authenticated user.
+     *
+     * @param id             the job ID
+     * @param authentication the authentication object containing the user's credentials
+     * @return a {@link ResponseEntity} containing the job, or 404 if it does not exist or belongs to someone else
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getJob(@PathVariable Long id, Authentication authentication) {
+        var jobOpt = jobRepository.findById(id);
+        if (jobOpt.isEmpty() || !authentication.getName().equals(jobOpt.get().getOwnerEmail())) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new JobResponse(jobOpt.get()));
+    }
+
+    /**
+     * Moves a dead-lettered job back into the queue.
+     *
+     * @param id             the job ID
+     * @param authentication the authentication object containing the user's credentials
+     * @return the re-queued job, 404 if it is not the user's, or 409 if the job is not dead
+     */
+    @PostMapping("/{id}/retry")
+    public ResponseEntity<?> retryJob(@PathVariable Long id, Authentication authentication) {
+        var jobOpt = jobRepository.findById(id);
+        if (jobOpt.isEmpty() || !authentication.getName().equals(jobOpt.get().getOwnerEmail())) {
+            return ResponseEntity.notFound().build();
+        }
+        BackgroundJob job = jobOpt.get();
+        if (!jobQueueService.retryDead(job)) {
+            return ResponseEntity.status(409).body("Only dead-lettered jobs can be retried");
+        }
+        return ResponseEntity.ok(new JobResponse(job));
+    }
+}
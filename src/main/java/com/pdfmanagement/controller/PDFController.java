@@ -7,16 +7,33 @@ import com.pdfmanagement.controller.dto.PdfSearchResult;
 import com.pdfmanagement.controller.dto.CommentRequest;
 import com.pdfmanagement.controller.dto.CommentResponse;
 import com.pdfmanagement.controller.dto.PdfDetailsResponse;
+import com.pdfmanagement.controller.dto.ShareRequest;
+import com.pdfmanagement.controller.dto.StorageUsageResponse;
 import com.pdfmanagement.repository.CommentRepository;
 import com.pdfmanagement.repository.PDFRepository;
-import com.pdfmanagement.service.FileStorageService;
+import com.pdfmanagement.repository.PdfFileSpecifications;
+import com.pdfmanagement.service.AnnotationIndex;
+import com.pdfmanagement.service.CacheInvalidationBus;
+import com.pdfmanagement.service.CommentFeedService;
+import com.pdfmanagement.service.FilenameSuggestIndex;
+import com.pdfmanagement.service.PdfContentService;
+import com.pdfmanagement.service.PdfFileService;
+import com.pdfmanagement.service.PdfListingStreamer;
+import com.pdfmanagement.service.QuotaExceededException;
+import com.pdfmanagement.service.ShareService;
+import com.pdfmanagement.service.StorageQuotaService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -28,10 +45,8 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.http.HttpStatus; // Added HttpStatus import
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
 
@@ -42,7 +57,10 @@ public class PDFController {
     private static final Logger logger = LoggerFactory.getLogger(PDFController.class);
 
     @Autowired
-    private FileStorageService fileStorageService;
+    private PdfFileService pdfFileService;
+
+    @Autowired
+    private PdfListingStreamer pdfListingStreamer;
 
     @Autowired
     private PDFRepository pdfRepository;
@@ -51,36 +69,96 @@ public class PDFController {
     private CommentRepository commentRepository;
 
     @Autowired
-    private com.pdfmanagement.repository.SharedFileRepository sharedFileRepository; // Added SharedFileRepository
+    private CommentFeedService commentFeedService;
+
+    @Autowired
+    private AnnotationIndex annotationIndex;
+
+    @Autowired
+    private PdfContentService pdfContentService;
+
+    @Autowired
+    private ShareService shareService;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    private FilenameSuggestIndex filenameSuggestIndex;
 
     /**
      * Handles the uploading of a PDF file.
      * <p>
-     * This endpoint accepts a multipart file upload, stores the file using the fileStorageService,
-     * and saves metadata about the uploaded PDF (such as filename, file path, uploader's email, and upload time)
-     * to the database via the pdfRepository.
+     * This endpoint accepts a multipart file upload and hands it to the pdfFileService, which stores the file,
+     * records metadata about the uploaded PDF (such as filename, file path, uploader's email, upload time,
+     * size, checksum and the extracted document metadata) and queues the post-upload background jobs in the
+     * same transaction.
+     * </p>
+     *
+     * <p>
+     * The file's size is checked against the user's storage quota before it is stored.
      * </p>
      *
      * @param file           the PDF file to be uploaded, received as a multipart file
      * @param authentication the authentication object containing the user's details (email)
      * @return a ResponseEntity indicating the result of the upload operation;
-     *         returns a success message if the upload is successful, or an error message if it fails
+     *         returns a success message if the upload is successful, 413 if it exceeds the storage quota,
+     *         or an error message if it fails
      */
     @PostMapping("/upload")
     public ResponseEntity<?> uploadPdf(@RequestParam("file") MultipartFile file, Authentication authentication) {
         try {
             String email = authentication.getName(); // This is now the email
-            String filePath = fileStorageService.storeFile(file);
-
-            PDFFile pdfFile = new PDFFile();
-            pdfFile.setFilename(file.getOriginalFilename());
-            pdfFile.setFilepath(filePath);
-            pdfFile.setUploadedBy(email);
-            pdfFile.setUploadTime(LocalDateTime.now());
-
-            pdfRepository.save(pdfFile);
+            PDFFile pdfFile = pdfFileService.upload(file.getOriginalFilename(), file.getInputStream(),
+                    file.getSize(), email);
+            cacheInvalidationBus.pdfChanged(pdfFile.getId());
 
             return ResponseEntity.ok("PDF uploaded successfully.");
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(java.util.Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Upload failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Uploads a PDF sent as the raw request body instead of a multipart form.
+     * <p>
+     * Multipart requests are spooled to a temporary file by the servlet container before the
+     * controller sees them, so {@link #uploadPdf} writes every byte to disk twice. This endpoint reads
+     * the body directly from the request and streams it into the storage directory in one pass,
+     * rejecting the upload as soon as the first block shows it is not a PDF.
+     * </p>
+     *
+     * <p>
+     * A {@code Content-Length} beyond the user's remaining storage quota is rejected before the body is read;
+     * a body of unannounced length is cut off once it exceeds the remaining quota.
+     * </p>
+     *
+     * @param filename       the name to store the PDF under
+     * @param request        the servlet request whose body is the PDF content
+     * @param authentication the authentication object containing the user's details (email)
+     * @return a ResponseEntity with the new PDF's id, size and checksum, 413 if it exceeds the storage quota,
+     *         or an error message if the upload fails
+     */
+    @PostMapping(value = "/upload/stream", consumes = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<?> uploadPdfStream(@RequestParam("filename") String filename, HttpServletRequest request,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            PDFFile pdfFile = pdfFileService.upload(filename, request.getInputStream(),
+                    request.getContentLengthLong(), email);
+            cacheInvalidationBus.pdfChanged(pdfFile.getId());
+
+            return ResponseEntity.ok(java.util.Map.of(
+                    "id", pdfFile.getId(),
+                    "sizeBytes", pdfFile.getSizeBytes(),
+                    "checksum", pdfFile.getChecksum()));
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(java.util.Map.of("error", e.getMessage()));
         } catch (IOException e) {
             return ResponseEntity.badRequest().body("Upload failed: " + e.getMessage());
         }
@@ -105,6 +183,50 @@ public class PDFController {
         return ResponseEntity.ok(userPdfs.stream().map(pdf -> new PDFFileResponse(pdf)).toList());
     }
 
+    /**
+     * Streaming variant of {@link #searchMyFiles}, selected with {@code stream=json} or {@code stream=ndjson}.
+     * <p>
+     * Rows are read from a database cursor and written to the response one at a time, so memory use does
+     * not grow with the number of matches. Results are ordered by id.
+     * </p>
+     *
+     * @param query          the search query to filter filenames (case-insensitive)
+     * @param stream         {@code json} for a JSON array, {@code ndjson} for one JSON object per line
+     * @param authentication the authentication object containing the user's credentials
+     * @param response       the servlet response the results are written to
+     * @throws IOException if writing the response fails
+     */
+    @GetMapping(value = "/my-files/search", params = "stream")
+    public void streamSearchMyFiles(@RequestParam("q") String query, @RequestParam("stream") String stream,
+            Authentication authentication, HttpServletResponse response) throws IOException {
+        PdfListingStreamer.Format format = streamFormat(stream, response);
+        if (format == null) {
+            return;
+        }
+        response.setContentType(format.contentType());
+        response.setCharacterEncoding("UTF-8");
+        pdfListingStreamer.writeOwnedFiles(authentication.getName(), query, format, response.getOutputStream());
+    }
+
+    /**
+     * Returns the authenticated user's storage usage and quota.
+     * <p>
+     * The counters are maintained on every upload, so this is a primary-key read rather than a sum over the
+     * user's files.
+     * </p>
+     *
+     * @param authentication the authentication object containing the user's credentials
+     * @return a {@link ResponseEntity} containing a {@link StorageUsageResponse}
+     */
+    @GetMapping("/usage")
+    public ResponseEntity<StorageUsageResponse> getStorageUsage(Authentication authentication) {
+        var usage = storageQuotaService.usage(authentication.getName());
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(new StorageUsageResponse(usage, storageQuotaService.quotaBytes(usage),
+                        storageQuotaService.maxFiles(usage)));
+    }
+
     /**
      * Retrieves the list of PDF files uploaded by the currently authenticated user.
      *
@@ -112,25 +234,81 @@ public class PDFController {
      * a 401 Unauthorized response is returned. Otherwise, it fetches all PDF files associated with the
      * authenticated user's email and returns them as a list of {@link PDFFileResponse} objects.</p>
      *
+     * <p>The optional filters and the {@code sort} parameter (e.g. {@code sort=pageCount,desc}) are applied
+     * in SQL against the metadata columns extracted at upload time.</p>
+     *
+     * <p>The response carries a weak ETag derived from the user's file count and revision counters; a
+     * matching {@code If-None-Match} is answered with 304 Not Modified without loading the listing.</p>
+     *
+     * @param minPages       only include documents with at least this many pages
+     * @param maxPages       only include documents with at most this many pages
+     * @param maxSizeBytes   only include documents no larger than this
+     * @param pdfVersion     only include documents declaring this PDF version
+     * @param sort           the sort order, bound from {@code sort=property[,asc|desc]} parameters
+     * @param ifNoneMatch    the client's cached ETag, if any
      * @param authentication the authentication object containing the user's credentials
      * @return a {@link ResponseEntity} containing a list of {@link PDFFileResponse} if authenticated,
-     *         or a 401 Unauthorized response if not authenticated
+     *         304 if the client's copy is current, or a 401 Unauthorized response if not authenticated
      */
     @GetMapping("/my-files")
-    public ResponseEntity<List<PDFFileResponse>> getMyFiles(Authentication authentication) {
+    public ResponseEntity<List<PDFFileResponse>> getMyFiles(
+            @RequestParam(required = false) Integer minPages,
+            @RequestParam(required = false) Integer maxPages,
+            @RequestParam(required = false) Long maxSizeBytes,
+            @RequestParam(required = false) String pdfVersion,
+            Sort sort,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return ResponseEntity.status(401).build(); // Unauthorized
         }
         String email = authentication.getName(); // This is now the email
-        List<PDFFile> userPdfs = pdfRepository.findByUploadedBy(email);
-        return ResponseEntity.ok(userPdfs.stream().map(pdf -> new PDFFileResponse(pdf)).toList());
+        String etag = ConditionalRequests.listingEtag(pdfRepository.findListingVersion(email));
+        if (ConditionalRequests.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        Specification<PDFFile> spec = Specification.where(PdfFileSpecifications.uploadedBy(email))
+                .and(PdfFileSpecifications.minPages(minPages))
+                .and(PdfFileSpecifications.maxPages(maxPages))
+                .and(PdfFileSpecifications.maxSizeBytes(maxSizeBytes))
+                .and(PdfFileSpecifications.pdfVersion(pdfVersion));
+        List<PDFFile> userPdfs = pdfRepository.findAll(spec, sort);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(userPdfs.stream().map(pdf -> new PDFFileResponse(pdf)).toList());
     }
+    /**
+     * Streaming variant of {@link #getMyFiles}, selected with {@code stream=json} or {@code stream=ndjson}.
+     * <p>
+     * Intended for accounts with very large libraries: rows are read from a database cursor and written to
+     * the response one at a time, so memory use stays constant. Filters, sorting and ETags are not applied
+     * in this mode; results are ordered by id.
+     * </p>
+     *
+     * @param stream         {@code json} for a JSON array, {@code ndjson} for one JSON object per line
+     * @param authentication the authentication object containing the user's credentials
+     * @param response       the servlet response the results are written to
+     * @throws IOException if writing the response fails
+     */
+    @GetMapping(value = "/my-files", params = "stream")
+    public void streamMyFiles(@RequestParam("stream") String stream, Authentication authentication,
+            HttpServletResponse response) throws IOException {
+        PdfListingStreamer.Format format = streamFormat(stream, response);
+        if (format == null) {
+            return;
+        }
+        response.setContentType(format.contentType());
+        response.setCharacterEncoding("UTF-8");
+        pdfListingStreamer.writeOwnedFiles(authentication.getName(), null, format, response.getOutputStream());
+    }
+
     /**
      * Searches for PDF files by filename across all users.
      *
      * <p>This endpoint allows users to search for PDF files by their filenames, regardless of the uploader.
      * It returns a list of {@link PdfSearchResult} objects containing the ID, filename, uploader's email,
-     * upload time, and a link to download the PDF.</p>
+     * upload time, extracted document metadata, and a link to download the PDF.</p>
      *
      * @param query the search query to filter filenames (case-insensitive)
      * @return a {@link ResponseEntity} containing a list of {@link PdfSearchResult} objects
@@ -140,36 +318,105 @@ public class PDFController {
         var results = pdfRepository.findByFilenameContainingIgnoreCase(query);
 
         var response = results.stream().map(pdf -> {
-            return new PdfSearchResult(
-                    pdf.getId(),
-                    pdf.getFilename(),
-                    pdf.getUploadedBy(),
-                    pdf.getUploadTime(),
-                    "/api/pdf/" + pdf.getId());
+            return new PdfSearchResult(pdf, "/api/pdf/" + pdf.getId());
         }).toList();
 
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Suggests filenames while the user types in the search box.
+     * <p>
+     * Every word of the query matches a word of the filename that starts with it, so {@code quart rep} suggests
+     * {@code Quarterly-Report-2024.pdf}. Suggestions come from an in-memory index that includes uploads as soon
+     * as they are recorded, not from the search queries. With {@code fuzzy} (the default), remaining places are
+     * filled with filenames within one typo of the last word.
+     * </p>
+     *
+     * @param query          the text typed so far
+     * @param scope          {@code mine} (default) for the user's own files, {@code all} for everyone's
+     * @param sort           {@code recent} (default) for the newest first, {@code popular} for the most commented
+     * @param fuzzy          whether to tolerate one typo in the last word
+     * @param limit          the number of suggestions, 1 to {@code pdf.suggest.max-results} (default 10)
+     * @param authentication the authentication object containing the user's details (email)
+     * @return a ResponseEntity with the suggestions (id, filename, uploadedBy, uploadTime), or 400 for an invalid
+     *         scope, sort or limit
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggestFilenames(@RequestParam("q") String query,
+            @RequestParam(value = "scope", defaultValue = "mine") String scope,
+            @RequestParam(value = "sort", defaultValue = "recent") String sort,
+            @RequestParam(value = "fuzzy", defaultValue = "true") boolean fuzzy,
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            Authentication authentication) {
+        if (!scope.equals("mine") && !scope.equals("all")) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", "scope must be mine or all"));
+        }
+        if (!sort.equals("recent") && !sort.equals("popular")) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", "sort must be recent or popular"));
+        }
+        if (limit < 1) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", "limit must be positive"));
+        }
+        String owner = scope.equals("mine") ? authentication.getName() : null;
+        return ResponseEntity.ok(filenameSuggestIndex.suggest(owner, query, sort.equals("popular"), fuzzy, limit));
+    }
+
+    /**
+     * Streaming variant of {@link #searchPdfs}, selected with {@code stream=json} or {@code stream=ndjson}.
+     *
+     * @param query    the search query to filter filenames (case-insensitive)
+     * @param stream   {@code json} for a JSON array, {@code ndjson} for one JSON object per line
+     * @param response the servlet response the results are written to
+     * @throws IOException if writing the response fails
+     */
+    @GetMapping(value = "/search", params = "stream")
+    public void streamSearchPdfs(@RequestParam("q") String query, @RequestParam("stream") String stream,
+            HttpServletResponse response) throws IOException {
+        PdfListingStreamer.Format format = streamFormat(stream, response);
+        if (format == null) {
+            return;
+        }
+        response.setContentType(format.contentType());
+        response.setCharacterEncoding("UTF-8");
+        pdfListingStreamer.writeSearchResults(query, format, response.getOutputStream());
+    }
+
     /**
      * Retrieves the details of a specific PDF file by its ID.
      *
      * <p>This endpoint fetches the PDF file's metadata and associated comments based on the provided ID.
      * If the PDF file is not found, it returns a 404 Not Found response.</p>
      *
-     * @param id the ID of the PDF file to retrieve
-     * @return a {@link ResponseEntity} containing the PDF details and comments, or a 404 Not Found response
+     * <p>The response carries a weak ETag built from the document's revision counter. When the client's
+     * {@code If-None-Match} matches, only the revision is looked up and 304 Not Modified is returned
+     * without loading the comments.</p>
+     *
+     * @param id          the ID of the PDF file to retrieve
+     * @param ifNoneMatch the client's cached ETag, if any
+     * @return a {@link ResponseEntity} containing the PDF details and comments, 304 if the client's copy is
+     *         current, or a 404 Not Found response
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getPdfDetails(@PathVariable Long id) {
+    public ResponseEntity<?> getPdfDetails(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Served from the second-level cache when warm, so a revalidation usually touches no database at all.
         var pdfOpt = pdfRepository.findById(id);
         if (pdfOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         PDFFile pdfFile = pdfOpt.get();
+        String etag = ConditionalRequests.documentEtag(id, pdfFile.getRevision());
+        if (ConditionalRequests.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         var comments = commentRepository.findByPdfFile(pdfFile);
 
-        return ResponseEntity.ok(new PdfDetailsResponse(pdfFile, comments));
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(new PdfDetailsResponse(pdfFile, comments));
     }
 /**
      * Downloads a PDF file for the authenticated user.
@@ -216,11 +463,10 @@ public class PDFController {
                 currentUsername, pdfFile.getFilepath());
 
         try {
-            Path filePathObj = Paths.get(pdfFile.getFilepath()); 
-                                                              
-            Resource resource = new UrlResource(filePathObj.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
+            // The scrubber records damaged files on the row, so no file system check is needed here.
+            if (pdfContentService.isIntact(pdfFile)) {
+                // Versions stored as appended tails are reassembled on the fly.
+                Resource resource = pdfContentService.resource(pdfFile);
                 logger.info("Successfully loaded resource for PDF ID: {}", id);
                 return ResponseEntity.ok()
                         .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + pdfFile.getFilename() + "\"")
@@ -229,28 +475,112 @@ public class PDFController {
             }
 
             else {
-                logger.error("Error: File not found or not readable at path: {} for PDF ID: {}", pdfFile.getFilepath(),
-                        id);
+                logger.error("Error: Stored file at path: {} for PDF ID: {} was found {}", pdfFile.getFilepath(),
+                        id, pdfFile.getStorageStatus());
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null); // Internal server error
             }
-        } catch (MalformedURLException e) {
-            logger.error("Error: Malformed URL for filepath: {} for PDF ID: {}. Error: {}", pdfFile.getFilepath(), id,
-                    e.getMessage(), e);
+        } catch (IOException e) {
+            logger.error("Error: Could not open stored content at: {} for PDF ID: {}. Error: {}", pdfFile.getFilepath(),
+                    id, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
 
+    /**
+     * Returns a page of a PDF's comments, oldest first, for the document's owner.
+     *
+     * <p>Pages are addressed with a keyset cursor rather than an offset, so every request is one index range
+     * scan. Pass the response's {@code nextCursor} as {@code since} to fetch the next page; once
+     * {@code hasMore} is false, the same call polls for comments made since the last one returned.</p>
+     *
+     * @param id             the ID of the PDF file
+     * @param since          cursor from a previous response; omit to start from the first comment
+     * @param limit          maximum number of comments to return (1-500, default 100)
+     * @param authentication the authentication object containing the user's credentials
+     * @return a {@link ResponseEntity} containing a {@link com.pdfmanagement.controller.dto.CommentFeedResponse},
+     *         400 for a malformed cursor or limit, 403 if the user does not own the file, or 404 if it does not exist
+     */
+    @GetMapping("/{id}/comments")
+    public ResponseEntity<?> getCommentFeed(@PathVariable Long id,
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Integer limit,
+            Authentication authentication) {
+        var pdfOpt = pdfRepository.findById(id);
+        if (pdfOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!pdfOpt.get().getUploadedBy().equals(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(commentFeedService.page(id, since, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns the annotations on one page of a PDF, for the document's owner.
+     *
+     * <p>Only comments anchored to that page are returned. With a viewport ({@code x}, {@code y},
+     * {@code width}, {@code height}, all fractions of the page size from its top-left corner), only those
+     * whose rectangle intersects it are. Lookups are served from an in-memory per-document grid; the response
+     * carries the document ETag, so an unchanged page can be revalidated with 304.</p>
+     *
+     * @param id             the ID of the PDF file
+     * @param page           1-based page number
+     * @param x              viewport left edge (optional)
+     * @param y              viewport top edge (optional)
+     * @param width          viewport width (optional)
+     * @param height         viewport height (optional)
+     * @param ifNoneMatch    the client's cached ETag, if any
+     * @param authentication the authentication object containing the user's credentials
+     * @return a {@link ResponseEntity} containing the annotations, oldest first, 304 if the client's copy is
+     *         current, 400 for an invalid page or viewport, 403 if the user does not own the file, or 404
+     */
+    @GetMapping("/{id}/annotations")
+    public ResponseEntity<?> getAnnotations(@PathVariable Long id, @RequestParam int page,
+            @RequestParam(required = false) Double x, @RequestParam(required = false) Double y,
+            @RequestParam(required = false) Double width, @RequestParam(required = false) Double height,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            Authentication authentication) {
+        var pdfOpt = pdfRepository.findById(id);
+        if (pdfOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        PDFFile pdfFile = pdfOpt.get();
+        if (!pdfFile.getUploadedBy().equals(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        String etag = ConditionalRequests.documentEtag(id, pdfFile.getRevision());
+        if (ConditionalRequests.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        try {
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(annotationIndex.find(pdfFile, page, x, y, width, height));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Adds a comment to a specific PDF file.
      *
      * <p>This endpoint allows authenticated users to add comments to a PDF file by its ID.
      * The comment is associated with the PDF and includes the username of the commenter,
-     * the comment text, and the time of the comment.</p>
+     * the comment text, and the time of the comment. It can optionally be anchored to a page
+     * and a rectangle on it, which makes it an annotation.</p>
      *
      * @param id the ID of the PDF file to which the comment is being added
      * @param commentRequest the request body containing the comment text
      * @param auth the authentication object containing the user's credentials
-     * @return a {@link ResponseEntity} containing the created comment or a 404 Not Found response if the PDF does not exist
+     * @return a {@link ResponseEntity} containing the created comment, 400 for an invalid anchor,
+     *         or a 404 Not Found response if the PDF does not exist
      */
     @PostMapping("/{id}/comments")
     public ResponseEntity<?> addComment(@PathVariable Long id, @RequestBody CommentRequest commentRequest,
@@ -262,15 +592,23 @@ public class PDFController {
         PDFFile pdfFile = pdfOpt.get();
 
         Comment comment = new Comment();
+        try {
+            AnnotationIndex.applyAnchor(comment, commentRequest.getPage(), commentRequest.getX(),
+                    commentRequest.getY(), commentRequest.getWidth(), commentRequest.getHeight(),
+                    pdfFile.getPageCount());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        }
         comment.setPdfFile(pdfFile);
         comment.setUsername(auth.getName()); // authentication.getName() is email, store as username
         comment.setText(commentRequest.getText());
-        comment.setCommentTime(LocalDateTime.now());
+        comment.setCommentTime(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS)); // Stored precision, so feed cursors round-trip
         commentRepository.save(comment);
+        pdfFileService.bumpRevision(id); // Invalidate cached details only once the comment is visible
+        cacheInvalidationBus.pdfChanged(id);
         return ResponseEntity.ok(new CommentResponse(comment)); // Return the created comment
     }
 
-
     /**
      * Shares a PDF file by generating a shareable link.
      * <p>
@@ -278,14 +616,22 @@ public class PDFController {
      * for the specified PDF file. The link can be distributed to others for access.
      * </p>
      *
+     * <p>
+     * The request body is optional and may set an expiry and a use limit. The file's active link for the
+     * same limits is returned if there is one, so sharing twice yields the same link unless
+     * {@code forceNew} is set.
+     * </p>
+     *
      * @param id              the ID of the PDF file to share
+     * @param request         optional expiry, use limit, permissions and {@code forceNew} flag
      * @param authentication  the authentication object representing the current user
-     * @return a ResponseEntity containing the shareable link and token if successful,
-     *         or an error response if the user is not authenticated, not authorized,
-     *         or the PDF file does not exist
+     * @return a ResponseEntity containing the shareable link, token and limits (201 if the link was created,
+     *         200 if an existing one was returned), or an error response if the limits are invalid, the user
+     *         is not authenticated, not authorized, or the PDF file does not exist
      */
     @PostMapping("/{id}/share")
-    public ResponseEntity<?> sharePdf(@PathVariable Long id, Authentication authentication) {
+    public ResponseEntity<?> sharePdf(@PathVariable Long id, @RequestBody(required = false) ShareRequest request,
+            Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return ResponseEntity.status(401).body("User not authenticated");
         }
@@ -301,18 +647,32 @@ public class PDFController {
             return ResponseEntity.status(403).body("User not authorized to share this PDF");
         }
 
-        // Create or find existing share record (optional: for now, always create new)
-        com.pdfmanagement.model.SharedFile sharedFile = new com.pdfmanagement.model.SharedFile();
-        sharedFile.setPdfFile(pdfFile);
-        // The shareToken is auto-generated by the SharedFile entity's @PrePersist or
-        // default value
-        sharedFileRepository.save(sharedFile);
+        // Reuse the active share for these limits, or create one
+        ShareRequest limits = request == null ? new ShareRequest() : request;
+        ShareService.ShareResult result;
+        try {
+            result = shareService.share(pdfFile, limits.getExpiresInSeconds(), limits.getMaxUses(),
+                    limits.getPermissions(), limits.isForceNew());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", e.getMessage()));
+        }
+        com.pdfmanagement.model.SharedFile sharedFile = result.share();
+        if (result.created()) {
+            cacheInvalidationBus.shareChanged(sharedFile.getId());
+        }
 
         // Construct the shareable link (adjust frontend URL as needed)
-        String shareableLink = "http://localhost:5173/share/" + sharedFile.getShareToken(); // Updated port
-
-        return ResponseEntity
-                .ok(java.util.Map.of("shareableLink", shareableLink, "shareToken", sharedFile.getShareToken()));
+        String shareToken = shareService.tokenFor(sharedFile); // Signed; checked without a database read
+        String shareableLink = "http://localhost:5173/share/" + shareToken; // Updated port
+
+        java.util.Map<String, Object> body = new java.util.LinkedHashMap<>();
+        body.put("shareableLink", shareableLink);
+        body.put("shareToken", shareToken);
+        body.put("shareId", sharedFile.getId());
+        body.put("expiresAt", sharedFile.getExpiresAt());
+        body.put("maxUses", sharedFile.getMaxUses());
+        body.put("permissions", ShareService.permissionNames(sharedFile.getPermissions()));
+        return ResponseEntity.status(result.created() ? HttpStatus.CREATED : HttpStatus.OK).body(body);
     }
 
     /**
@@ -320,37 +680,42 @@ public class PDFController {
      * <p>
      * This endpoint allows users to access a PDF file that has been shared with them via a unique share token.
      * If the share token is valid and the corresponding PDF file exists and is readable, the PDF is returned
-     * as an inline resource for viewing in the browser.
+     * as an inline resource for viewing in the browser. The link must allow {@code download}.
      * </p>
      *
      * @param shareToken the unique token associated with the shared PDF file
      * @return a {@link ResponseEntity} containing the PDF resource if found and accessible,
-     *         a 404 Not Found response if the token is invalid or the file is missing,
+     *         a 404 Not Found response if the token is invalid or the file is missing, 403 if the link does not
+     *         allow downloading,
      *         or a 500 Internal Server Error if there is an issue accessing the file
      */
     @GetMapping("/shared/view/{shareToken}")
     public ResponseEntity<Resource> viewSharedPdf(@PathVariable String shareToken) {
-        var sharedFileOpt = sharedFileRepository.findByShareToken(shareToken);
-        if (sharedFileOpt.isEmpty()) {
+        var accessOpt = shareService.resolve(shareToken); // Expired, revoked and used-up links are not found
+        if (accessOpt.isEmpty()) {
             return ResponseEntity.notFound().build(); // Or a custom 'invalid link' page/response
         }
-        com.pdfmanagement.model.SharedFile sharedFile = sharedFileOpt.get();
-        PDFFile pdfFile = sharedFile.getPdfFile();
+        ShareService.ShareAccess access = accessOpt.get();
+        if (!access.allows(com.pdfmanagement.model.SharedFile.PERMISSION_DOWNLOAD)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        PDFFile pdfFile = access.pdfFile();
 
         if (pdfFile == null) {
             return ResponseEntity.notFound().build(); // Should not happen if data integrity is maintained
         }
+        if (!shareService.recordUse(access)) {
+            return ResponseEntity.notFound().build(); // Used up by a concurrent request
+        }
 
         try {
-            Path filePath = Paths.get(pdfFile.getFilepath());
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (!resource.exists() || !resource.isReadable()) {
-                // Log this error, as it indicates a missing file for a valid share token
-                System.err.println(
-                        "Error: File not found for shareToken: " + shareToken + ", filepath: " + pdfFile.getFilepath());
+            if (!pdfContentService.isIntact(pdfFile)) {
+                // Log this error, as it indicates a missing or damaged file for a valid share token
+                logger.error("Error: Stored file at path: {} for shared PDF ID: {} was found {}", pdfFile.getFilepath(),
+                        pdfFile.getId(), pdfFile.getStorageStatus());
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null); // Internal server error
             }
+            Resource resource = pdfContentService.resource(pdfFile);
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + pdfFile.getFilename() + "\"")
@@ -358,10 +723,22 @@ public class PDFController {
                     .body(resource);
         }
 
-        catch (MalformedURLException e) {
-            System.err.println("Error: Malformed URL for filepath: " + pdfFile.getFilepath() + " for shareToken: "
-                    + shareToken + ". Error: " + e.getMessage());
+        catch (IOException e) {
+            logger.error("Error: Could not open stored content at: {} for shared PDF ID: {}. Error: {}",
+                    pdfFile.getFilepath(), pdfFile.getId(), e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
+
+    /** Parses the {@code stream} parameter, answering 400 Bad Request and returning null if it is unknown. */
+    private static PdfListingStreamer.Format streamFormat(String stream, HttpServletResponse response)
+            throws IOException {
+        PdfListingStreamer.Format format = PdfListingStreamer.Format.fromParameter(stream);
+        if (format == null) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"stream must be json or ndjson\"}");
+        }
+        return format;
+    }
 }
@@ -0,0 +1,106 @@
+package com.pdfmanagement.controller;
+
+import com.pdfmanagement.service.LibraryExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Export of the authenticated user's whole library as one ZIP archive.
+ * <p>
+ * The archive is written straight to the response as it is read from storage, with its length known in
+ * advance. Because the same library always yields the same bytes, a single {@code Range} is honoured, and
+ * {@code If-Range} with the archive's strong ETag lets a client resume a download that was cut off; if the
+ * library has changed in between, the full archive is sent instead.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/pdf")
+public class PdfExportController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfExportController.class);
+
+    private static final String FILENAME = "pdf-library.zip";
+
+    @Autowired
+    private LibraryExportService libraryExportService;
+
+    /**
+     * Downloads every PDF the user owns as a ZIP archive.
+     *
+     * @param comments       whether to include {@code manifest.json} with each file's metadata and comments
+     * @param range          optional {@code Range} header; only a single byte range is served partially
+     * @param ifRange        optional {@code If-Range} header; the range is ignored unless it equals the ETag
+     * @param authentication the authentication object containing the user's credentials
+     * @param response       the servlet response the archive is written to
+     * @return 416 for an unsatisfiable range; otherwise the archive (200, or 206 for a range) is written
+     *         directly and nothing is returned
+     * @throws IOException if reading a file or writing the response fails
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportLibrary(@RequestParam(defaultValue = "false") boolean comments,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            Authentication authentication, HttpServletResponse response) throws IOException {
+        LibraryExportService.LibraryExport export = libraryExportService.prepare(authentication.getName(), comments);
+        long length = export.length();
+
+        long from = 0;
+        long to = length;
+        boolean partial = false;
+        if (range != null && (ifRange == null || ifRange.trim().equals(export.etag()))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of(); // a malformed Range header is ignored
+            }
+            if (ranges.size() == 1) {
+                long start = ranges.get(0).getRangeStart(length);
+                if (start >= length) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                            .build();
+                }
+                from = start;
+                to = ranges.get(0).getRangeEnd(length) + 1;
+                partial = true;
+            }
+        }
+
+        response.setStatus(partial ? HttpStatus.PARTIAL_CONTENT.value() : HttpStatus.OK.value());
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(FILENAME, StandardCharsets.UTF_8).build().toString());
+        response.setHeader(HttpHeaders.ETAG, export.etag());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentLengthLong(to - from);
+        if (partial) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + from + "-" + (to - 1) + "/" + length);
+        }
+        try {
+            export.writeTo(response.getOutputStream(), from, to);
+        } catch (IOException e) {
+            logger.warn("Writing the library export of {} failed after the response started: {}",
+                    authentication.getName(), e.getMessage());
+            throw e;
+        }
+        return null;
+    }
+}
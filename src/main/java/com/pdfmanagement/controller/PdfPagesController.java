@@ -0,0 +1,151 @@
+package com.pdfmanagement.controller;
+
+import com.pdfmanagement.controller.dto.MergeRequest;
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import com.pdfmanagement.service.DerivedDocument;
+import com.pdfmanagement.service.PdfPageService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Page-level endpoints for the authenticated user's PDFs: extract a page range, split into parts and merge.
+ * <p>
+ * Requests are validated (ownership, page ranges) before anything is written, so errors come back as
+ * normal JSON responses. Output is then written straight to the response as it is produced; once it has
+ * started, a failure can only abort the transfer.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/pdf")
+public class PdfPagesController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfPagesController.class);
+
+    @Autowired
+    private PDFRepository pdfRepository;
+
+    @Autowired
+    private PdfPageService pdfPageService;
+
+    /**
+     * Downloads selected pages of a PDF as a new PDF.
+     *
+     * @param id             the ID of the PDF
+     * @param range          pages to keep, e.g. {@code 3-5,7,10-}; all pages if omitted
+     * @param authentication the authentication object containing the user's credentials
+     * @param response       the servlet response the document is written to
+     * @return 404/403/400 on error; on success the document is written directly and nothing is returned
+     * @throws IOException if reading the source or writing the response fails
+     */
+    @GetMapping("/{id}/pages")
+    public ResponseEntity<?> extractPages(@PathVariable Long id, @RequestParam(required = false) String range,
+            Authentication authentication, HttpServletResponse response) throws IOException {
+        var pdfOpt = pdfRepository.findById(id);
+        if (pdfOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!pdfOpt.get().getUploadedBy().equals(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return send(pdfPageService.extract(pdfOpt.get(), range), response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Splits a PDF into consecutive parts and downloads them as a ZIP archive of PDFs.
+     *
+     * @param id             the ID of the PDF
+     * @param pagesPerPart   number of pages in each part (the last part may be shorter)
+     * @param authentication the authentication object containing the user's credentials
+     * @param response       the servlet response the archive is written to
+     * @return 404/403/400 on error; on success the archive is written directly and nothing is returned
+     * @throws IOException if reading the source or writing the response fails
+     */
+    @GetMapping("/{id}/split")
+    public ResponseEntity<?> splitPdf(@PathVariable Long id, @RequestParam int pagesPerPart,
+            Authentication authentication, HttpServletResponse response) throws IOException {
+        var pdfOpt = pdfRepository.findById(id);
+        if (pdfOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!pdfOpt.get().getUploadedBy().equals(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return send(pdfPageService.split(pdfOpt.get(), pagesPerPart), response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Merges pages from several of the user's PDFs into one document.
+     *
+     * @param request        the documents (and optional page ranges) to merge, in order, and the output filename
+     * @param authentication the authentication object containing the user's credentials
+     * @param response       the servlet response the document is written to
+     * @return 404/403/400 on error; on success the document is written directly and nothing is returned
+     * @throws IOException if reading a source or writing the response fails
+     */
+    @PostMapping("/merge")
+    public ResponseEntity<?> mergePdfs(@RequestBody MergeRequest request, Authentication authentication,
+            HttpServletResponse response) throws IOException {
+        if (request.getDocuments() == null || request.getDocuments().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "documents must not be empty"));
+        }
+        List<PdfPageService.MergeSource> sources = new ArrayList<>();
+        for (MergeRequest.Document document : request.getDocuments()) {
+            var pdfOpt = document.getId() == null ? Optional.<PDFFile>empty()
+                    : pdfRepository.findById(document.getId());
+            if (pdfOpt.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "PDF not found: " + document.getId()));
+            }
+            if (!pdfOpt.get().getUploadedBy().equals(authentication.getName())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            sources.add(new PdfPageService.MergeSource(pdfOpt.get(), document.getPages()));
+        }
+        try {
+            return send(pdfPageService.merge(sources, request.getFilename()), response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Writes a validated document to the response. Returning {@code null} tells Spring MVC the response
+     * has already been handled.
+     */
+    private ResponseEntity<?> send(DerivedDocument document, HttpServletResponse response) throws IOException {
+        response.setContentType(document.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(document.getFilename(), StandardCharsets.UTF_8).build().toString());
+        try {
+            document.writeTo(response.getOutputStream());
+        } catch (IOException e) {
+            logger.warn("Writing {} failed after the response started: {}", document.getFilename(), e.getMessage());
+            throw e;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,72 @@
+package com.pdfmanagement.controller;
+
+import com.pdfmanagement.controller.dto.PDFFileResponse;
+import com.pdfmanagement.controller.dto.SimilarDocumentsResponse;
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.model.PdfFingerprint;
+import com.pdfmanagement.repository.PDFRepository;
+import com.pdfmanagement.service.SimilarDocumentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Near-duplicates among the authenticated user's PDFs.
+ * <p>
+ * Documents are compared by their text, fingerprinted by a background job shortly after upload; see
+ * {@link SimilarDocumentService}. Only the owner's own documents are ever compared or listed.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/pdf")
+public class PdfSimilarityController {
+
+    private static final int MAX_LIMIT = 100;
+
+    @Autowired
+    private PDFRepository pdfRepository;
+
+    @Autowired
+    private SimilarDocumentService similarDocumentService;
+
+    /**
+     * Lists the user's documents whose text is similar to a document's.
+     *
+     * @param id             the ID of the document
+     * @param limit          maximum number of similar documents, 1 to 100
+     * @param authentication the authentication object containing the user's credentials
+     * @return the similar documents, 202 if the document has not been fingerprinted yet, 400 for a bad limit,
+     *         403 if the user does not own the document, or 404 if it does not exist
+     */
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<?> similar(@PathVariable Long id, @RequestParam(defaultValue = "10") int limit,
+                                     Authentication authentication) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            return ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and " + MAX_LIMIT));
+        }
+        Optional<PDFFile> pdfOpt = pdfRepository.findById(id);
+        if (pdfOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        PDFFile pdfFile = pdfOpt.get();
+        if (!pdfFile.getUploadedBy().equals(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Optional<PdfFingerprint> fingerprint = similarDocumentService.fingerprintOf(id);
+        if (fingerprint.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("status", "pending"));
+        }
+        List<SimilarDocumentsResponse.Item> similar = similarDocumentService
+                .findSimilar(pdfFile, fingerprint.get(), limit).stream()
+                .map(s -> new SimilarDocumentsResponse.Item(new PDFFileResponse(s.pdfFile()), s.similarity()))
+                .toList();
+        return ResponseEntity.ok(new SimilarDocumentsResponse(id, fingerprint.get().getNearDuplicateOf(),
+                fingerprint.get().getSimilarity(), similar));
+    }
+}
@@ -0,0 +1,131 @@
+package com.pdfmanagement.controller;
+
+import com.pdfmanagement.controller.dto.PDFFileResponse;
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import com.pdfmanagement.service.CacheInvalidationBus;
+import com.pdfmanagement.service.PdfVersionService;
+import com.pdfmanagement.service.QuotaExceededException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Version history of the authenticated user's PDFs.
+ * <p>
+ * Any version's id addresses the whole document: a new upload always becomes the version after the latest
+ * one, and the listing returns every version. Each version is a regular PDF file with its own id, so the
+ * existing download, comment and share endpoints work on it unchanged.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/pdf")
+public class PdfVersionsController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfVersionsController.class);
+
+    @Autowired
+    private PDFRepository pdfRepository;
+
+    @Autowired
+    private PdfVersionService pdfVersionService;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    /**
+     * Lists all versions of a document, oldest first.
+     *
+     * @param id             the ID of any version of the document
+     * @param authentication the authentication object containing the user's credentials
+     * @return the versions, 403 if the user does not own the document, or 404 if it does not exist
+     */
+    @GetMapping("/{id}/versions")
+    public ResponseEntity<?> listVersions(@PathVariable Long id, Authentication authentication) {
+        Optional<PDFFile> pdfOpt = pdfRepository.findById(id);
+        ResponseEntity<?> denied = checkOwner(pdfOpt, authentication);
+        if (denied != null) {
+            return denied;
+        }
+        List<PDFFileResponse> versions = pdfVersionService.versions(pdfOpt.get()).stream()
+                .map(PDFFileResponse::new)
+                .toList();
+        return ResponseEntity.ok(versions);
+    }
+
+    /**
+     * Uploads a new version of a document as a multipart form.
+     *
+     * @param id             the ID of any version of the document
+     * @param file           the new version
+     * @param authentication the authentication object containing the user's credentials
+     * @return the new version, 400 if the upload is rejected, 403 if the user does not own the document, 404, or
+     *         413 if it exceeds the storage quota
+     */
+    @PostMapping("/{id}/versions")
+    public ResponseEntity<?> uploadVersion(@PathVariable Long id, @RequestParam("file") MultipartFile file,
+            Authentication authentication) throws IOException {
+        return addVersion(id, file.getOriginalFilename(), file.getInputStream(), file.getSize(), authentication);
+    }
+
+    /**
+     * Uploads a new version of a document sent as the raw request body, read in a single pass like
+     * {@code POST /api/pdf/upload/stream}.
+     *
+     * @param id             the ID of any version of the document
+     * @param filename       the name of the new version
+     * @param request        the servlet request whose body is the PDF content
+     * @param authentication the authentication object containing the user's credentials
+     * @return the new version, 400 if the upload is rejected, 403 if the user does not own the document, 404, or
+     *         413 if it exceeds the storage quota
+     */
+    @PostMapping(value = "/{id}/versions/stream", consumes = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<?> uploadVersionStream(@PathVariable Long id, @RequestParam("filename") String filename,
+            HttpServletRequest request, Authentication authentication) throws IOException {
+        return addVersion(id, filename, request.getInputStream(), request.getContentLengthLong(), authentication);
+    }
+
+    private ResponseEntity<?> addVersion(Long id, String filename, InputStream in, long declaredLength,
+            Authentication authentication) throws IOException {
+        Optional<PDFFile> pdfOpt = pdfRepository.findById(id);
+        ResponseEntity<?> denied = checkOwner(pdfOpt, authentication);
+        if (denied != null) {
+            in.close();
+            return denied;
+        }
+        try {
+            PDFFile version = pdfVersionService.addVersion(pdfOpt.get(), filename, in, declaredLength,
+                    authentication.getName());
+            cacheInvalidationBus.pdfChanged(version.getId());
+            return ResponseEntity.ok(new PDFFileResponse(version));
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            logger.warn("Version upload for PDF {} rejected: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", "Upload failed: " + e.getMessage()));
+        }
+    }
+
+    private static ResponseEntity<?> checkOwner(Optional<PDFFile> pdfOpt, Authentication authentication) {
+        if (pdfOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!pdfOpt.get().getUploadedBy().equals(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return null;
+    }
+}
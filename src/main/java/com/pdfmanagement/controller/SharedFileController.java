@@ -1,69 +1,151 @@
 package com.pdfmanagement.controller;
 
 import com.pdfmanagement.controller.dto.PdfDetailsResponse;
+import com.pdfmanagement.controller.dto.ShareRequest;
 import com.pdfmanagement.model.Comment;
 import com.pdfmanagement.model.PDFFile;
 import com.pdfmanagement.model.SharedFile;
 import com.pdfmanagement.repository.CommentRepository;
 import com.pdfmanagement.repository.PDFRepository;
 import com.pdfmanagement.repository.SharedFileRepository;
+import com.pdfmanagement.service.AnnotationIndex;
+import com.pdfmanagement.service.CacheInvalidationBus;
+import com.pdfmanagement.service.CommentFeedService;
+import com.pdfmanagement.service.PdfContentService;
+import com.pdfmanagement.service.PdfFileService;
+import com.pdfmanagement.service.ShareService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.net.MalformedURLException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/shared")
 public class SharedFileController {
 
+    @Autowired
+    private PDFRepository pdfRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private PdfFileService pdfFileService;
+
+    @Autowired
+    private CommentFeedService commentFeedService;
+
+    @Autowired
+    private AnnotationIndex annotationIndex;
+
+    @Autowired
+    private PdfContentService pdfContentService;
+
     @Autowired
     private SharedFileRepository sharedFileRepository;
 
     @Autowired
-    private PDFRepository pdfRepository;
+    private ShareService shareService;
 
     @Autowired
-    private CommentRepository commentRepository;
+    private CacheInvalidationBus cacheInvalidationBus;
 
     // Generate shareable link for a PDF (requires auth)
     /**
      * Generates a shareable link for a PDF file identified by its ID.
      * <p>
-     * This endpoint creates a new {@link SharedFile} entry associated with the specified PDF file,
-     * and returns a shareable URL that can be used to access the file.
+     * This endpoint returns the file's active link for the requested limits, creating a {@link SharedFile}
+     * only when there is none (or when {@code forceNew} is set), so repeated clicks do not pile up links.
+     * Only the file's owner can share it.
      * </p>
      *
-     * @param pdfId the ID of the PDF file to generate a share link for
-     * @param auth the authentication object representing the current user
-     * @return a {@link ResponseEntity} containing the generated share URL if successful,
-     *         or a 404 Not Found response if the PDF file does not exist
+     * <p>
+     * The URL carries a signed token, which guests are checked against without a database read. The returned
+     * {@code shareId} is what {@code DELETE /api/shared/links/{shareId}} takes to revoke the link.
+     * </p>
+     *
+     * @param pdfId   the ID of the PDF file to generate a share link for
+     * @param request optional expiry, use limit, permissions and {@code forceNew} flag
+     * @param auth    the authentication object representing the current user
+     * @return a {@link ResponseEntity} containing the share URL and its limits, with 201 if a link was created
+     *         and 200 if an existing one was returned; 400 for invalid limits, 403 if the user does not own the
+     *         file, or a 404 Not Found response if the PDF file does not exist
      */
     @PostMapping("/generate/{pdfId}")
-    public ResponseEntity<?> generateShareLink(@PathVariable Long pdfId, Authentication auth) {
+    public ResponseEntity<?> generateShareLink(@PathVariable Long pdfId,
+            @RequestBody(required = false) ShareRequest request, Authentication auth) {
         var pdfOpt = pdfRepository.findById(pdfId);
         if (pdfOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
 
         PDFFile pdfFile = pdfOpt.get();
-        // TODO: Optionally verify auth.getName() is owner or allowed to share
+        if (!pdfFile.getUploadedBy().equals(auth.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
 
-        SharedFile sharedFile = new SharedFile();
-        sharedFile.setPdfFile(pdfFile);
-        sharedFileRepository.save(sharedFile);
+        ShareRequest limits = request == null ? new ShareRequest() : request;
+        ShareService.ShareResult result;
+        try {
+            result = shareService.share(pdfFile, limits.getExpiresInSeconds(), limits.getMaxUses(),
+                    limits.getPermissions(), limits.isForceNew());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        SharedFile sharedFile = result.share();
+        if (result.created()) {
+            cacheInvalidationBus.shareChanged(sharedFile.getId());
+        }
 
-        String shareUrl = "/api/shared/access/" + sharedFile.getShareToken();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("shareUrl", "/api/shared/access/" + shareService.tokenFor(sharedFile));
+        body.put("shareId", sharedFile.getId());
+        body.put("expiresAt", sharedFile.getExpiresAt());
+        body.put("maxUses", sharedFile.getMaxUses());
+        body.put("permissions", ShareService.permissionNames(sharedFile.getPermissions()));
+        return ResponseEntity.status(result.created() ? HttpStatus.CREATED : HttpStatus.OK).body(body);
+    }
 
-        return ResponseEntity.ok(java.util.Map.of("shareUrl", shareUrl));
+    /**
+     * Revokes a share link before its expiry.
+     * <p>
+     * The link stops working on this instance at once and on the others as soon as the cache invalidation bus
+     * reaches them, at the latest within {@code shares.tokens.revocation-refresh-ms}. Only the owner of the shared
+     * file can revoke it.
+     * </p>
+     *
+     * @param shareId the {@code shareId} returned when the link was created
+     * @param auth    the authentication object representing the current user
+     * @return 204 No Content if the link was revoked, 409 Conflict if it had already been revoked or expired,
+     *         403 if the user does not own the file, or 404 if there is no such link
+     */
+    @DeleteMapping("/links/{shareId}")
+    public ResponseEntity<?> revokeShareLink(@PathVariable Long shareId, Authentication auth) {
+        var shareOpt = sharedFileRepository.findById(shareId);
+        if (shareOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        SharedFile share = shareOpt.get();
+        if (!share.getPdfFile().getUploadedBy().equals(auth.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!shareService.revoke(share)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Share link is already revoked or expired"));
+        }
+        return ResponseEntity.noContent().build();
     }
 
     // Access shared PDF metadata + comments by share token (no auth)
@@ -72,25 +154,44 @@ public class SharedFileController {
      * <p>
      * This endpoint retrieves the shared PDF file and its associated comments if the provided
      * share token is valid. If the share token does not correspond to any shared file, a 404 Not Found
-     * response is returned.
+     * response is returned. A link without the {@code view} permission gets 403.
      * </p>
      *
-     * @param shareToken the unique token used to access the shared PDF file
+     * <p>
+     * Like {@code GET /api/pdf/{id}}, the response carries a weak ETag from the document's revision, and a
+     * matching {@code If-None-Match} is answered with 304 Not Modified without loading the comments.
+     * </p>
+     *
+     * @param shareToken  the unique token used to access the shared PDF file
+     * @param ifNoneMatch the client's cached ETag, if any
      * @return a {@link ResponseEntity} containing a {@link PdfDetailsResponse} with the PDF file and its comments,
-     *         or a 404 Not Found response if the token is invalid
+     *         304 if the client's copy is current, 403 if the link does not allow viewing, or a 404 Not Found
+     *         response if the token is invalid
      */
     @GetMapping("/access/{shareToken}")
-    public ResponseEntity<?> accessSharedPdf(@PathVariable String shareToken) {
-        var sharedOpt = sharedFileRepository.findByShareToken(shareToken);
-        if (sharedOpt.isEmpty()) {
+    public ResponseEntity<?> accessSharedPdf(@PathVariable String shareToken,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // A signed token is checked in memory; the document comes from the second-level cache when warm.
+        var accessOpt = shareService.resolve(shareToken);
+        if (accessOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+        if (!accessOpt.get().allows(SharedFile.PERMISSION_VIEW)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        PDFFile pdfFile = accessOpt.get().pdfFile();
+        String etag = ConditionalRequests.documentEtag(pdfFile.getId(), pdfFile.getRevision());
+        if (ConditionalRequests.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
 
-        SharedFile sharedFile = sharedOpt.get();
-        PDFFile pdfFile = sharedFile.getPdfFile();
         List<Comment> comments = commentRepository.findByPdfFile(pdfFile);
 
-        return ResponseEntity.ok(new PdfDetailsResponse(pdfFile, comments));
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(new PdfDetailsResponse(pdfFile, comments));
     }
 
     // Download shared PDF by share token (no auth)
@@ -100,6 +201,8 @@ public class SharedFileController {
      * This endpoint retrieves a shared PDF file associated with the provided share token.
      * If the token is valid and the file exists and is readable, the PDF is returned as an inline resource.
      * Otherwise, a 404 Not Found or 500 Internal Server Error response is returned as appropriate.
+     * Each download counts as one use of a link with a use limit; expired, revoked and used-up links are not
+     * found, and a link without the {@code download} permission gets 403.
      * </p>
      *
      * @param shareToken the unique token identifying the shared PDF file
@@ -108,70 +211,167 @@ public class SharedFileController {
      */
     @GetMapping("/download/{shareToken}")
     public ResponseEntity<Resource> downloadSharedPdf(@PathVariable String shareToken) {
-        var sharedOpt = sharedFileRepository.findByShareToken(shareToken);
-        if (sharedOpt.isEmpty()) {
+        var accessOpt = shareService.resolve(shareToken);
+        if (accessOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
 
-        SharedFile sharedFile = sharedOpt.get();
-        PDFFile pdfFile = sharedFile.getPdfFile();
+        ShareService.ShareAccess access = accessOpt.get();
+        if (!access.allows(SharedFile.PERMISSION_DOWNLOAD)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        PDFFile pdfFile = access.pdfFile();
+        if (!shareService.recordUse(access)) {
+            return ResponseEntity.notFound().build(); // Used up by a concurrent request
+        }
 
         try {
-            Path filePath = Paths.get(pdfFile.getFilepath());
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (!resource.exists() || !resource.isReadable()) {
+            if (!pdfContentService.isIntact(pdfFile)) {
                 return ResponseEntity.notFound().build();
             }
+            Resource resource = pdfContentService.resource(pdfFile);
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + pdfFile.getFilename() + "\"")
                     .contentType(MediaType.APPLICATION_PDF)
                     .body(resource);
 
-        } catch (MalformedURLException e) {
+        } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    // Comment feed of a shared PDF (no auth, uses shareToken)
+    /**
+     * Returns a page of a shared PDF's comments, oldest first.
+     * <p>
+     * Works like {@code GET /api/pdf/{id}/comments}: pass the response's {@code nextCursor} back as
+     * {@code since} to page forward, and keep polling with it to receive only comments added since.
+     * </p>
+     *
+     * @param shareToken the unique token identifying the shared file
+     * @param since      cursor from a previous response; omit to start from the first comment
+     * @param limit      maximum number of comments to return (1-500, default 100)
+     * @return a {@link ResponseEntity} containing a {@link com.pdfmanagement.controller.dto.CommentFeedResponse},
+     *         400 for a malformed cursor or limit, 403 if the link does not allow viewing, or 404 if the token
+     *         is invalid
+     */
+    @GetMapping("/{shareToken}/comments")
+    public ResponseEntity<?> getSharedCommentFeed(@PathVariable String shareToken,
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Integer limit) {
+        var accessOpt = shareService.resolve(shareToken);
+        if (accessOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!accessOpt.get().allows(SharedFile.PERMISSION_VIEW)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(commentFeedService.page(accessOpt.get().pdfFile().getId(), since, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Annotations on one page of a shared PDF (no auth, uses shareToken)
+    /**
+     * Returns the annotations on one page of a shared PDF, optionally limited to a viewport.
+     * <p>
+     * Works like {@code GET /api/pdf/{id}/annotations}, including ETag revalidation.
+     * </p>
+     *
+     * @param shareToken  the unique token identifying the shared file
+     * @param page        1-based page number
+     * @param x           viewport left edge (optional)
+     * @param y           viewport top edge (optional)
+     * @param width       viewport width (optional)
+     * @param height      viewport height (optional)
+     * @param ifNoneMatch the client's cached ETag, if any
+     * @return a {@link ResponseEntity} containing the annotations, oldest first, 304 if the client's copy is
+     *         current, 400 for an invalid page or viewport, 403 if the link does not allow viewing, or 404 if
+     *         the token is invalid
+     */
+    @GetMapping("/{shareToken}/annotations")
+    public ResponseEntity<?> getSharedAnnotations(@PathVariable String shareToken, @RequestParam int page,
+            @RequestParam(required = false) Double x, @RequestParam(required = false) Double y,
+            @RequestParam(required = false) Double width, @RequestParam(required = false) Double height,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        var accessOpt = shareService.resolve(shareToken);
+        if (accessOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!accessOpt.get().allows(SharedFile.PERMISSION_VIEW)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        PDFFile pdfFile = accessOpt.get().pdfFile();
+        String etag = ConditionalRequests.documentEtag(pdfFile.getId(), pdfFile.getRevision());
+        if (ConditionalRequests.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        try {
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(annotationIndex.find(pdfFile, page, x, y, width, height));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     // Add a comment to a shared PDF (no auth, uses shareToken)
     /**
      * Adds a comment to a shared PDF file using the provided share token.
      * <p>
      * This endpoint allows a guest user to add a comment to a PDF file that has been shared via a unique share token.
      * The comment details, including the username and text, are provided in the request body.
+     * Like owner comments, it can optionally be anchored to a page and a rectangle on it.
      * </p>
      *
      * @param shareToken      the unique token identifying the shared file
      * @param commentRequest  the request body containing the username and comment text
      * @return a ResponseEntity containing a success message if the comment is added,
-     *         or a 404 Not Found response if the shared file does not exist
+     *         400 for an invalid anchor, 403 if the link does not allow commenting, or a 404 Not Found response
+     *         if the shared file does not exist
      */
     @PostMapping("/{shareToken}/comments")
     public ResponseEntity<?> addSharedFileComment(@PathVariable String shareToken,
             @RequestBody GuestCommentRequest commentRequest) {
-        var sharedOpt = sharedFileRepository.findByShareToken(shareToken);
-        if (sharedOpt.isEmpty()) {
+        var accessOpt = shareService.resolve(shareToken);
+        if (accessOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+        if (!accessOpt.get().allows(SharedFile.PERMISSION_COMMENT)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
 
-        SharedFile sharedFile = sharedOpt.get();
-        PDFFile pdfFile = sharedFile.getPdfFile();
+        PDFFile pdfFile = accessOpt.get().pdfFile();
 
         Comment comment = new Comment();
+        try {
+            AnnotationIndex.applyAnchor(comment, commentRequest.getPage(), commentRequest.getX(),
+                    commentRequest.getY(), commentRequest.getWidth(), commentRequest.getHeight(),
+                    pdfFile.getPageCount());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
         comment.setPdfFile(pdfFile);
         comment.setUsername(commentRequest.getUsername()); // Set the username from the request
         comment.setText(commentRequest.getText());
-        comment.setCommentTime(java.time.LocalDateTime.now()); // Ensure time is set
+        comment.setCommentTime(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS)); // Ensure time is set
 
         commentRepository.save(comment);
+        pdfFileService.bumpRevision(pdfFile.getId());
+        cacheInvalidationBus.pdfChanged(pdfFile.getId());
 
-        return ResponseEntity.ok(java.util.Map.of("message", "Comment added"));
+        return ResponseEntity.ok(Map.of("message", "Comment added"));
     }
 
     /**
      * Represents a request to add a comment from a guest user.
-     * Contains the username of the guest and the comment text.
+     * Contains the username of the guest, the comment text and an optional page anchor.
      *
      * <p>
      * Example usage:
@@ -187,6 +387,11 @@ public class SharedFileController {
     public static class GuestCommentRequest {
         private String username;
         private String text;
+        private Integer page;
+        private Double x;
+        private Double y;
+        private Double width;
+        private Double height;
 
         public String getUsername() {
             return username;
@@ -203,6 +408,46 @@ public class SharedFileController {
         public void setText(String text) {
             this.text = text;
         }
+
+        public Integer getPage() {
+            return page;
+        }
+
+        public void setPage(Integer page) {
+            this.page = page;
+        }
+
+        public Double getX() {
+            return x;
+        }
+
+        public void setX(Double x) {
+            this.x = x;
+        }
+
+        public Double getY() {
+            return y;
+        }
+
+        public void setY(Double y) {
+            this.y = y;
+        }
+
+        public Double getWidth() {
+            return width;
+        }
+
+        public void setWidth(Double width) {
+            this.width = width;
+        }
+
+        public Double getHeight() {
+            return height;
+        }
+
+        public void setHeight(Double height) {
+            this.height = height;
+        }
     }
 
 }
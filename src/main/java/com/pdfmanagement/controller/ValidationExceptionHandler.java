@@ -1,5 +1,6 @@
 package com.pdfmanagement.controller;
 
+import org.springframework.data.mapping.PropertyReferenceException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -18,6 +19,11 @@ import java.util.Map;
  * It collects all field errors and returns them as a map in the response body,
  * with HTTP status 400 (Bad Request).
  * </p>
+ *
+ * <p>
+ * It also turns {@link PropertyReferenceException}, raised when a {@code sort} parameter names an
+ * unknown property, into a 400 response instead of a server error.
+ * </p>
  */
 @ControllerAdvice
 public class ValidationExceptionHandler {
@@ -30,4 +36,11 @@ public class ValidationExceptionHandler {
         );
         return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler(PropertyReferenceException.class)
+    public ResponseEntity<Map<String, String>> handleUnknownSortProperty(PropertyReferenceException ex) {
+        Map<String, String> errors = new HashMap<>();
+        errors.put("sort", ex.getMessage());
+        return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+    }
 }
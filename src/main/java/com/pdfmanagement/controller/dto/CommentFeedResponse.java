@@ -0,0 +1,35 @@
+package com.pdfmanagement.controller.dto;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Data Transfer Object (DTO) for one page of a document's comment feed.
+ * <p>
+ * Comments are in the order they were made. {@code nextCursor} marks the position after the last
+ * comment returned (or the request's own position when nothing new was found), so a client passes it
+ * back as {@code since} both to fetch the next page and, once {@code hasMore} is false, to poll for
+ * new comments.
+ * </p>
+ *
+ * <ul>
+ *   <li><b>comments</b>: Comments after the requested position, oldest first.</li>
+ *   <li><b>nextCursor</b>: Opaque position to resume from; null only for a document with no comments.</li>
+ *   <li><b>hasMore</b>: Whether more comments were already available beyond this page.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+public class CommentFeedResponse {
+    private List<CommentResponse> comments;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public CommentFeedResponse(List<CommentResponse> comments, String nextCursor, boolean hasMore) {
+        this.comments = comments;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+}
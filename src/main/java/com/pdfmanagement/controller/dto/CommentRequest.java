@@ -5,10 +5,19 @@ import lombok.Setter;
 
 /**
  * Data Transfer Object (DTO) representing a request to create or update a comment.
- * Contains the text content of the comment.
+ * Contains the text content of the comment and, optionally, the page and rectangle it is anchored to.
+ * <p>
+ * {@code x}, {@code y}, {@code width} and {@code height} are fractions of the page size measured from
+ * its top-left corner. A {@code page} without a rectangle anchors the comment to the whole page.
+ * </p>
  */
 @Getter
 @Setter
 public class CommentRequest {
     private String text;
+    private Integer page;
+    private Double x;
+    private Double y;
+    private Double width;
+    private Double height;
 }
@@ -10,7 +10,8 @@ import lombok.Setter;
  * Data Transfer Object (DTO) for representing a comment response.
  * <p>
  * This class encapsulates the details of a comment, including its ID, text,
- * the username of the commenter, and the time the comment was made.
+ * the username of the commenter, and the time the comment was made. Anchored comments
+ * also carry their page and rectangle; the anchor fields are null otherwise.
  * </p>
  *
  * <p>
@@ -26,11 +27,21 @@ public class CommentResponse {
     private String text;
     private String username;
     private LocalDateTime commentTime;
+    private Integer page;
+    private Double x;
+    private Double y;
+    private Double width;
+    private Double height;
 
     public CommentResponse(Comment comment) {
         this.id = comment.getId();
         this.text = comment.getText();
         this.username = comment.getUsername();
         this.commentTime = comment.getCommentTime();
+        this.page = comment.getPageNumber();
+        this.x = comment.getAnchorX();
+        this.y = comment.getAnchorY();
+        this.width = comment.getAnchorWidth();
+        this.height = comment.getAnchorHeight();
     }
 }
@@ -0,0 +1,41 @@
+package com.pdfmanagement.controller.dto;
+
+import com.pdfmanagement.model.BackgroundJob;
+import java.time.LocalDateTime;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Data Transfer Object (DTO) for representing the status of a background job.
+ * <p>
+ * Exposes the job's type, state and retry bookkeeping without its internal payload or lock details.
+ * </p>
+ */
+@Getter
+@Setter
+public class JobResponse {
+    private Long id;
+    private String type;
+    private BackgroundJob.Status status;
+    private Long pdfId;
+    private int attempts;
+    private int maxAttempts;
+    private LocalDateTime runAt;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public JobResponse(BackgroundJob job) {
+        this.id = job.getId();
+        this.type = job.getType();
+        this.status = job.getStatus();
+        this.pdfId = job.getPdfId();
+        this.attempts = job.getAttempts();
+        this.maxAttempts = job.getMaxAttempts();
+        this.runAt = job.getRunAt();
+        this.lastError = job.getLastError();
+        this.createdAt = job.getCreatedAt();
+        this.updatedAt = job.getUpdatedAt();
+    }
+}
@@ -0,0 +1,27 @@
+package com.pdfmanagement.controller.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) for merging several PDFs into one.
+ * <p>
+ * Documents are concatenated in list order. Each entry names a PDF owned by the caller and, optionally,
+ * the pages to take from it (e.g. {@code "1-3,7"}; omitted for all pages).
+ * </p>
+ */
+@Getter
+@Setter
+public class MergeRequest {
+    private String filename;
+    private List<Document> documents;
+
+    @Getter
+    @Setter
+    public static class Document {
+        private Long id;
+        private String pages;
+    }
+}
@@ -10,7 +10,11 @@ import lombok.Setter;
  * Data Transfer Object (DTO) for representing a PDF file response.
  * <p>
  * This class encapsulates the details of a PDF file, including its ID, filename,
- * the user who uploaded it, and the upload timestamp. It is typically used to
+ * the user who uploaded it, the upload timestamp and the document metadata extracted at
+ * upload (size, checksum, page count, title, author and PDF version). The {@code revision} matches the
+ * ETag served for the document, so clients can use it for their own cache validation. The version fields place
+ * the file in its document's history; {@code storedBytes} is what the version actually occupies on disk, which
+ * for an incremental update is only the appended tail. It is typically used to
  * transfer PDF file data between the backend and frontend layers of the application.
  * </p>
  *
@@ -23,11 +27,36 @@ public class PDFFileResponse {
     private String filename;
     private String uploadedBy;
     private LocalDateTime uploadTime;
+    private Long sizeBytes;
+    private String checksum;
+    private Integer pageCount;
+    private String title;
+    private String author;
+    private String pdfVersion;
+    private long revision;
+    private Long versionRootId;
+    private Long previousVersionId;
+    private int versionNumber;
+    private Long storedBytes;
 
     public PDFFileResponse(PDFFile pdfFile) {
         this.id = pdfFile.getId();
         this.filename = pdfFile.getFilename();
         this.uploadedBy = pdfFile.getUploadedBy();
         this.uploadTime = pdfFile.getUploadTime();
+        this.sizeBytes = pdfFile.getSizeBytes();
+        this.checksum = pdfFile.getChecksum();
+        this.pageCount = pdfFile.getPageCount();
+        this.title = pdfFile.getTitle();
+        this.author = pdfFile.getAuthor();
+        this.pdfVersion = pdfFile.getPdfVersion();
+        this.revision = pdfFile.getRevision();
+        this.versionRootId = pdfFile.getVersionRootId();
+        this.previousVersionId = pdfFile.getPreviousVersionId();
+        this.versionNumber = pdfFile.getVersionNumber();
+        if (pdfFile.getSizeBytes() != null) {
+            this.storedBytes = pdfFile.getTailOffset() == null
+                    ? pdfFile.getSizeBytes() : pdfFile.getSizeBytes() - pdfFile.getTailOffset();
+        }
     }
 }
@@ -1,5 +1,7 @@
 package com.pdfmanagement.controller.dto;
 
+import com.pdfmanagement.model.PDFFile;
+
 import java.time.LocalDateTime;
 
 import lombok.Getter;
@@ -19,6 +21,8 @@ import lombok.Setter;
  *   <li><b>uploadedBy</b>: Username or identifier of the user who uploaded the PDF.</li>
  *   <li><b>uploadTime</b>: Date and time when the PDF was uploaded.</li>
  *   <li><b>detailsUrl</b>: URL to access more details about the PDF file.</li>
+ *   <li><b>sizeBytes</b>, <b>pageCount</b>, <b>title</b>, <b>author</b>, <b>pdfVersion</b>: Document metadata
+ *       extracted at upload time, when available.</li>
  * </ul>
  *
  * <p>
@@ -33,6 +37,11 @@ public class PdfSearchResult {
     private String uploadedBy;
     private LocalDateTime uploadTime;
     private String detailsUrl;
+    private Long sizeBytes;
+    private Integer pageCount;
+    private String title;
+    private String author;
+    private String pdfVersion;
 
     public PdfSearchResult(Long id, String filename, String uploadedBy, LocalDateTime uploadTime, String detailsUrl) {
         this.id = id;
@@ -41,4 +50,13 @@ public class PdfSearchResult {
         this.uploadTime = uploadTime;
         this.detailsUrl = detailsUrl;
     }
+
+    public PdfSearchResult(PDFFile pdfFile, String detailsUrl) {
+        this(pdfFile.getId(), pdfFile.getFilename(), pdfFile.getUploadedBy(), pdfFile.getUploadTime(), detailsUrl);
+        this.sizeBytes = pdfFile.getSizeBytes();
+        this.pageCount = pdfFile.getPageCount();
+        this.title = pdfFile.getTitle();
+        this.author = pdfFile.getAuthor();
+        this.pdfVersion = pdfFile.getPdfVersion();
+    }
 }
@@ -0,0 +1,29 @@
+package com.pdfmanagement.controller.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) representing the optional limits of a share link request.
+ * <p>
+ * An active link with the same limits is reused unless {@code forceNew} is set.
+ * </p>
+ *
+ * <ul>
+ *   <li><b>expiresInSeconds</b>: Lifetime of the link; omit for a link that does not expire.</li>
+ *   <li><b>maxUses</b>: How many times the PDF may be fetched through the link; omit for no limit.</li>
+ *   <li><b>permissions</b>: What the link allows, any of {@code view}, {@code download} and {@code comment};
+ *       omit for all three.</li>
+ *   <li><b>forceNew</b>: Create a new link even if a matching one is still active.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+public class ShareRequest {
+    private Long expiresInSeconds;
+    private Integer maxUses;
+    private List<String> permissions;
+    private boolean forceNew;
+}
@@ -0,0 +1,48 @@
+package com.pdfmanagement.controller.dto;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Data Transfer Object (DTO) for the documents similar to one of the user's PDFs.
+ * <p>
+ * Similarity is the estimated overlap of the two documents' text, from 0 to 1; identical text scores 1.
+ * </p>
+ *
+ * <ul>
+ *   <li><b>pdfId</b>: The document the others were compared with.</li>
+ *   <li><b>nearDuplicateOf</b> / <b>similarity</b>: The document it was found to nearly duplicate when it was
+ *       fingerprinted, and how similar they were; null if there was none.</li>
+ *   <li><b>similar</b>: The user's other similar documents, most similar first.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+public class SimilarDocumentsResponse {
+    private Long pdfId;
+    private Long nearDuplicateOf;
+    private Double similarity;
+    private List<Item> similar;
+
+    public SimilarDocumentsResponse(Long pdfId, Long nearDuplicateOf, Double similarity, List<Item> similar) {
+        this.pdfId = pdfId;
+        this.nearDuplicateOf = nearDuplicateOf;
+        this.similarity = similarity;
+        this.similar = similar;
+    }
+
+    /** One similar document. */
+    @Getter
+    @Setter
+    public static class Item {
+        private PDFFileResponse pdf;
+        private double similarity;
+
+        public Item(PDFFileResponse pdf, double similarity) {
+            this.pdf = pdf;
+            this.similarity = similarity;
+        }
+    }
+}
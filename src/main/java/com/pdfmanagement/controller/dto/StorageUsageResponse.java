@@ -0,0 +1,37 @@
+package com.pdfmanagement.controller.dto;
+
+import com.pdfmanagement.model.StorageUsage;
+import java.time.LocalDateTime;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Data Transfer Object (DTO) for representing a user's storage usage and quota.
+ * <p>
+ * {@code bytesUsed} counts what the user's files occupy on disk, so a version stored as an appended tail
+ * counts only the tail. {@code bytesReserved} is held by uploads still in progress; {@code bytesRemaining}
+ * is what a new upload may use.
+ * </p>
+ */
+@Getter
+@Setter
+public class StorageUsageResponse {
+    private long bytesUsed;
+    private int fileCount;
+    private long bytesReserved;
+    private long quotaBytes;
+    private int maxFiles;
+    private long bytesRemaining;
+    private LocalDateTime reconciledAt;
+
+    public StorageUsageResponse(StorageUsage usage, long quotaBytes, int maxFiles) {
+        this.bytesUsed = usage.getBytesUsed();
+        this.fileCount = usage.getFileCount();
+        this.bytesReserved = usage.getBytesReserved();
+        this.quotaBytes = quotaBytes;
+        this.maxFiles = maxFiles;
+        this.bytesRemaining = Math.max(quotaBytes - usage.getBytesUsed() - usage.getBytesReserved(), 0);
+        this.reconciledAt = usage.getReconciledAt();
+    }
+}
@@ -0,0 +1,94 @@
+package com.pdfmanagement.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A unit of deferred work stored in the database-backed job queue.
+ * <p>
+ * Jobs are inserted in the same transaction as the data they refer to, so a committed upload
+ * always has its follow-up work recorded. Workers claim pending jobs with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}, which lets several workers and several application
+ * instances poll the same table without blocking each other.
+ * </p>
+ *
+ * Fields:
+ * <ul>
+ *   <li>id - Primary key identifier for the job.</li>
+ *   <li>type - Name of the {@code JobHandler} that processes the job.</li>
+ *   <li>payload - JSON payload passed to the handler.</li>
+ *   <li>status - Current {@link Status} of the job.</li>
+ *   <li>attempts / maxAttempts - How many times the job has been started, and the limit before it is dead-lettered.</li>
+ *   <li>runAt - Earliest time the job may be claimed; pushed back by the retry backoff.</li>
+ *   <li>lockedAt / lockedBy - When and by which worker a running job was claimed.</li>
+ *   <li>lastError - Message of the most recent failure.</li>
+ *   <li>idempotencyKey - Optional unique key; enqueueing the same key twice returns the existing job.</li>
+ *   <li>pdfId / ownerEmail - The document the job is about and the user allowed to see its status.</li>
+ * </ul>
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "background_job")
+public class BackgroundJob {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        SUCCEEDED,
+        DEAD
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String type;
+
+    @Column(columnDefinition = "text")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    private int attempts;
+    private int maxAttempts;
+
+    @Column(nullable = false)
+    private LocalDateTime runAt;
+
+    private LocalDateTime lockedAt;
+
+    @Column(length = 128)
+    private String lockedBy;
+
+    @Column(columnDefinition = "text")
+    private String lastError;
+
+    @Column(unique = true, length = 200)
+    private String idempotencyKey;
+
+    private Long pdfId;
+    private String ownerEmail;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    public void onCreate() {
+        if (this.createdAt == null) {
+            this.createdAt = LocalDateTime.now();
+        }
+        this.updatedAt = this.createdAt;
+    }
+
+    @PreUpdate
+    public void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
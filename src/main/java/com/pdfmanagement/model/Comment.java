@@ -20,6 +20,9 @@ import lombok.Setter;
  *   <li>username - The name of the user who made the comment.</li>
  *   <li>text - The content of the comment.</li>
  *   <li>commentTime - The date and time when the comment was created.</li>
+ *   <li>pageNumber, anchorX, anchorY, anchorWidth, anchorHeight - Optional anchor to a rectangle on one
+ *       page (1-based page number; coordinates are fractions of the page size from its top-left corner).
+ *       Either all are set or none is.</li>
  * </ul>
  */
 @Entity
@@ -37,6 +40,14 @@ public class Comment {
 
     private String username;
     private String text;
+
+    @Column(nullable = false)
     private LocalDateTime commentTime;
 
+    private Integer pageNumber;
+    private Double anchorX;
+    private Double anchorY;
+    private Double anchorWidth;
+    private Double anchorHeight;
+
 }
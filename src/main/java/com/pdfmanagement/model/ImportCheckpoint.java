@@ -0,0 +1,58 @@
+package com.pdfmanagement.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Progress of a bulk import of one directory for one owner.
+ * <p>
+ * Updated in the same transaction as each batch of imported {@link PDFFile} rows, so after an interruption
+ * the import resumes exactly after the last batch that was committed.
+ * </p>
+ *
+ * Fields:
+ * <ul>
+ *   <li>sourceDir - Absolute, normalized path of the imported directory.</li>
+ *   <li>ownerEmail - The user the files are recorded for.</li>
+ *   <li>lastPath - Relative path ({@code /}-separated) of the last file in the last committed batch; files are
+ *       processed in order of this path.</li>
+ *   <li>filesImported / filesSkipped / filesFailed / bytesImported - Running totals over all runs.</li>
+ *   <li>startedAt / updatedAt / completedAt - When the first run began, the last batch was committed and a run
+ *       reached the end of the directory.</li>
+ * </ul>
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "import_checkpoint")
+public class ImportCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 1024, nullable = false)
+    private String sourceDir;
+
+    @Column(nullable = false)
+    private String ownerEmail;
+
+    @Column(length = 4096)
+    private String lastPath;
+
+    private int filesImported;
+    private int filesSkipped;
+    private int filesFailed;
+    private long bytesImported;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime completedAt;
+}
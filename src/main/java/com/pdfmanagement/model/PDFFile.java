@@ -4,12 +4,15 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Represents a PDF file entity stored in the system.
  * <p>
  * This class contains metadata about the PDF file, including its filename,
- * storage path, uploader's username, and the upload timestamp.
+ * storage path, uploader's username, and the upload timestamp, plus the document
+ * metadata extracted once at upload time so listings never need to open the file.
  * </p>
  *
  * <p>
@@ -20,18 +23,53 @@ import lombok.Setter;
  *   <li>{@code filepath} - Path where the PDF file is stored on the server.</li>
  *   <li>{@code uploadedBy} - Username of the user who uploaded the file.</li>
  *   <li>{@code uploadTime} - Date and time when the file was uploaded.</li>
+ *   <li>{@code sizeBytes} - Size of the stored file in bytes.</li>
+ *   <li>{@code checksum} - Hex SHA-256 of the stored file.</li>
+ *   <li>{@code crc32} - CRC-32 of the stored file, as ZIP headers need it; null for files stored before it
+ *       was recorded.</li>
+ *   <li>{@code pageCount} - Number of pages declared by the page tree.</li>
+ *   <li>{@code title} / {@code author} - From the info dictionary or XMP metadata, if present.</li>
+ *   <li>{@code pdfVersion} - PDF version declared by the document (e.g. "1.7").</li>
+ *   <li>{@code revision} - Counter bumped whenever the metadata or the comments change; used as the ETag
+ *       for the document's JSON endpoints.</li>
+ *   <li>{@code versionRootId} - Id of the document's first version; null on the first version itself.</li>
+ *   <li>{@code previousVersionId} - The version this one was uploaded on top of, if any.</li>
+ *   <li>{@code versionNumber} - 1 for the first upload, incremented for each new version of the document.</li>
+ *   <li>{@code tailOffset} - Set when only the bytes appended to the previous version were stored: {@code filepath}
+ *       then holds the content from this offset on. {@code sizeBytes} and {@code checksum} always describe the
+ *       complete content, which {@code PdfContentService} reassembles.</li>
+ *   <li>{@code storedBytes} - Size on disk of the file at {@code filepath} when it was last verified; differs from
+ *       {@code sizeBytes} for tails and for files stored compressed or encrypted.</li>
+ *   <li>{@code storageStatus} - Outcome of the last verification of the file at {@code filepath}, one of the
+ *       {@code STORAGE_*} constants; null until it is first verified.</li>
+ *   <li>{@code verifiedAt} - When the file's content was last read back and checked against {@code checksum}.</li>
  * </ul>
  * </p>
  *
  * <p>
- * This entity is mapped to a database table using JPA annotations.
+ * This entity is mapped to a database table using JPA annotations. Rows are kept in the
+ * {@code pdf-file} second-level cache region, so repeated lookups by id do not reach the database.
  * </p>
  */
 @Getter
 @Setter
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "pdf-file")
 public class PDFFile {
+
+    /** The file was read back and matched its size and checksum. */
+    public static final String STORAGE_OK = "OK";
+    /** The file is gone. */
+    public static final String STORAGE_MISSING = "MISSING";
+    /** The file holds less content than was recorded. */
+    public static final String STORAGE_TRUNCATED = "TRUNCATED";
+    /** The file could not be read back, or its content does not match the recorded checksum. */
+    public static final String STORAGE_CORRUPT = "CORRUPT";
+    /** The file was found truncated or corrupt and moved to the quarantine directory. */
+    public static final String STORAGE_QUARANTINED = "QUARANTINED";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -41,4 +79,40 @@ public class PDFFile {
     private String uploadedBy; // Username
     private LocalDateTime uploadTime;
 
+    private Long sizeBytes;
+
+    @Column(length = 64)
+    private String checksum;
+
+    private Long crc32;
+
+    private Integer pageCount;
+
+    @Column(length = 512)
+    private String title;
+
+    @Column(length = 512)
+    private String author;
+
+    @Column(length = 8)
+    private String pdfVersion;
+
+    @Column(columnDefinition = "bigint not null default 0")
+    private long revision;
+
+    private Long versionRootId;
+    private Long previousVersionId;
+
+    @Column(columnDefinition = "integer not null default 1")
+    private int versionNumber = 1;
+
+    private Long tailOffset;
+
+    private Long storedBytes;
+
+    @Column(length = 16)
+    private String storageStatus;
+
+    private LocalDateTime verifiedAt;
+
 }
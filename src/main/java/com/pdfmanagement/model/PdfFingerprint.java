@@ -0,0 +1,45 @@
+package com.pdfmanagement.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * MinHash fingerprint of a {@link PDFFile}'s extracted text, used to find near-duplicate documents.
+ * <p>
+ * The rows of {@code pdf_lsh_band} that index the signature are written in the same transaction, so a
+ * fingerprint is either fully indexed or absent.
+ * </p>
+ *
+ * Fields:
+ * <ul>
+ *   <li>pdfId - The fingerprinted document; also the primary key.</li>
+ *   <li>signature - 128 big-endian 64-bit minimums, or null if the document has too little text.</li>
+ *   <li>shingleCount - Number of distinct text shingles the signature was computed from.</li>
+ *   <li>nearDuplicateOf / similarity - The owner's most similar other document when the fingerprint was computed,
+ *       and the estimated similarity, if it reached {@code pdf.similarity.threshold}.</li>
+ *   <li>computedAt - When the fingerprint was computed.</li>
+ * </ul>
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "pdf_fingerprint")
+public class PdfFingerprint {
+
+    @Id
+    private Long pdfId;
+
+    private byte[] signature;
+
+    private int shingleCount;
+
+    private Long nearDuplicateOf;
+
+    private Double similarity;
+
+    @Column(nullable = false)
+    private LocalDateTime computedAt;
+}
@@ -6,6 +6,8 @@ import java.util.UUID;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Entity representing a shared PDF file with a unique share token.
@@ -22,18 +24,39 @@ import lombok.Setter;
  *   <li>pdfFile - The associated PDF file being shared.</li>
  *   <li>shareToken - Unique token used for sharing and identifying the file.</li>
  *   <li>createdAt - Timestamp indicating when the share was created.</li>
+ *   <li>expiresAt - When the link stops working; null for no expiry. Signed tokens carry the same expiry,
+ *       so it never changes once the share is created.</li>
+ *   <li>maxUses / useCount - Optional limit on content fetches through the link, and the fetches so far.</li>
+ *   <li>revokedAt - When the link was turned off before its expiry, by its owner or by its last allowed use.</li>
+ *   <li>permissions - Bit set of {@link #PERMISSION_VIEW}, {@link #PERMISSION_DOWNLOAD} and
+ *       {@link #PERMISSION_COMMENT}.</li>
+ *   <li>policy - Canonical form of the requested expiry, use limit and permissions, used to reuse an active
+ *       link instead of creating another.</li>
  * </ul>
  *
  * Lifecycle:
  * <ul>
- *   <li>On persist, generates a unique share token and sets the creation timestamp if not already set.</li>
+ *   <li>On persist, generates a unique share token and sets the creation timestamp and a default
+ *       (unlimited) policy if not already set.</li>
  * </ul>
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "shared-file")
 @Getter
 @Setter
 public class SharedFile {
 
+    public static final String UNLIMITED_POLICY = "ttl=none;uses=none";
+
+    /** Read the file's details, comments and annotations. */
+    public static final int PERMISSION_VIEW = 1;
+    /** Fetch the PDF content. */
+    public static final int PERMISSION_DOWNLOAD = 2;
+    /** Add comments as a guest. */
+    public static final int PERMISSION_COMMENT = 4;
+    public static final int ALL_PERMISSIONS = PERMISSION_VIEW | PERMISSION_DOWNLOAD | PERMISSION_COMMENT;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -47,9 +70,32 @@ public class SharedFile {
 
     private LocalDateTime createdAt;
 
+    private LocalDateTime expiresAt;
+
+    private Integer maxUses;
+
+    @Column(columnDefinition = "integer not null default 0")
+    private int useCount;
+
+    private LocalDateTime revokedAt;
+
+    @Column(columnDefinition = "integer not null default 7")
+    private int permissions = ALL_PERMISSIONS;
+
+    @Column(length = 64, nullable = false)
+    private String policy;
+
     public SharedFile() {
     }
 
+    public boolean isExpired(LocalDateTime now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+
+    public boolean isActive(LocalDateTime now) {
+        return revokedAt == null && !isExpired(now);
+    }
+
     @PrePersist
     public void generateShareToken() {
         if (this.shareToken == null) {
@@ -58,6 +104,9 @@ public class SharedFile {
         if (this.createdAt == null) {
             this.createdAt = LocalDateTime.now();
         }
+        if (this.policy == null) {
+            this.policy = UNLIMITED_POLICY;
+        }
     }
 
 }
@@ -0,0 +1,50 @@
+package com.pdfmanagement.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A user's storage counters and quota.
+ * <p>
+ * Counters are changed only by the conditional updates in
+ * {@link com.pdfmanagement.repository.StorageUsageRepository}, in the same transaction as the {@link PDFFile}
+ * rows they count, so reading them never requires summing {@code pdffile}. The entity is not kept in the
+ * second-level cache: it changes on every upload.
+ * </p>
+ *
+ * Fields:
+ * <ul>
+ *   <li>ownerEmail - The user, as stored in {@code PDFFile.uploadedBy}.</li>
+ *   <li>bytesUsed / fileCount - Bytes on disk and number of {@link PDFFile} rows; a version stored as a tail
+ *       counts only the tail.</li>
+ *   <li>bytesReserved / filesReserved - Uploads that passed the quota check and are still being stored.</li>
+ *   <li>quotaBytes / maxFiles - Per-user limits; null means the configured default.</li>
+ *   <li>reservedAt - When the last reservation was made; reservations older than the configured TTL are
+ *       treated as leaked by a crash and cleared by reconciliation.</li>
+ *   <li>reconciledAt - When the counters were last checked against {@code pdffile}.</li>
+ * </ul>
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "storage_usage")
+public class StorageUsage {
+
+    @Id
+    @Column(name = "owner_email")
+    private String ownerEmail;
+
+    private long bytesUsed;
+    private int fileCount;
+    private long bytesReserved;
+    private int filesReserved;
+
+    private Long quotaBytes;
+    private Integer maxFiles;
+
+    private LocalDateTime reservedAt;
+    private LocalDateTime reconciledAt;
+}
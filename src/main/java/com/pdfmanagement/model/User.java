@@ -1,6 +1,8 @@
 package com.pdfmanagement.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -37,9 +39,16 @@ import java.util.Collections;
  * the {@code UserDetails} contract, while {@code getDbUsername()} provides access to the
  * database-stored username field.
  * </p>
+ *
+ * <p>
+ * Users are cached in the {@code user} second-level cache region, since every authenticated request
+ * looks one up.
+ * </p>
  */
 @Entity
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
 public class User implements UserDetails {
 
     @Id
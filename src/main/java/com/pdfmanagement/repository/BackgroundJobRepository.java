@@ -0,0 +1,69 @@
+package com.pdfmanagement.repository;
+
+import com.pdfmanagement.model.BackgroundJob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for managing {@link BackgroundJob} entities.
+ * <p>
+ * {@link #lockNextPending(LocalDateTime, int)} must run inside a transaction: the returned rows stay
+ * locked until it commits, and {@code SKIP LOCKED} makes concurrent pollers pass over them instead of
+ * waiting.
+ * </p>
+ *
+ * <p>
+ * A running job belongs to the worker named in {@code lockedBy}: {@link #heartbeat} keeps its {@code lockedAt}
+ * fresh while it runs, and {@link #findByIdForUpdate(Long)} lets completion check that the job has not been handed
+ * to another worker in the meantime. A job whose worker stopped heartbeating is {@linkplain #deadLetterStale
+ * dead-lettered} if it has used up its attempts and {@linkplain #requeueStale re-queued} otherwise; the first
+ * must run before the second in the same transaction, since the second takes every stale job that is left.
+ * </p>
+ */
+public interface BackgroundJobRepository extends JpaRepository<BackgroundJob, Long> {
+
+    @Query(value = "SELECT * FROM background_job WHERE status = 'PENDING' AND run_at <= :now "
+            + "ORDER BY run_at, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<BackgroundJob> lockNextPending(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select j from BackgroundJob j where j.id = :id")
+    Optional<BackgroundJob> findByIdForUpdate(@Param("id") Long id);
+
+    Optional<BackgroundJob> findByIdempotencyKey(String idempotencyKey);
+
+    List<BackgroundJob> findByOwnerEmailOrderByIdDesc(String ownerEmail);
+
+    List<BackgroundJob> findByOwnerEmailAndPdfIdOrderByIdAsc(String ownerEmail, Long pdfId);
+
+    List<BackgroundJob> findByOwnerEmailAndStatusOrderByIdDesc(String ownerEmail, BackgroundJob.Status status);
+
+    @Modifying
+    @Query("update BackgroundJob j set j.status = :dead, j.lockedAt = null, j.lockedBy = null, "
+            + "j.lastError = :error, j.updatedAt = :now "
+            + "where j.status = :running and j.lockedAt < :cutoff and j.attempts >= j.maxAttempts")
+    int deadLetterStale(@Param("dead") BackgroundJob.Status dead, @Param("running") BackgroundJob.Status running,
+                        @Param("cutoff") LocalDateTime cutoff, @Param("error") String error,
+                        @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update BackgroundJob j set j.status = :pending, j.lockedAt = null, j.lockedBy = null, "
+            + "j.runAt = :now where j.status = :running and j.lockedAt < :cutoff")
+    int requeueStale(@Param("pending") BackgroundJob.Status pending, @Param("running") BackgroundJob.Status running,
+                     @Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update BackgroundJob j set j.lockedAt = :now "
+            + "where j.id in :ids and j.status = :running and j.lockedBy = :workerId")
+    int heartbeat(@Param("ids") Collection<Long> ids, @Param("workerId") String workerId,
+                  @Param("running") BackgroundJob.Status running, @Param("now") LocalDateTime now);
+}
@@ -3,9 +3,34 @@ package com.pdfmanagement.repository;
 import com.pdfmanagement.model.Comment;
 import com.pdfmanagement.model.PDFFile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * Repository for {@link Comment} entities.
+ * <p>
+ * The feed queries page through a document's comments in {@code (commentTime, id)} order. They are
+ * native so PostgreSQL gets a row-value comparison, which it answers with a single range scan on
+ * {@code idx_comment_pdf_id_comment_time_id} and stops after {@code limit} rows. Both stop at an upper time
+ * bound, which keeps the feed behind comments that may still be committing.
+ * </p>
+ *
+ * <p>
+ * {@link #findByPdfFileIdAndPageNumberNotNull(Long)} loads the anchored comments the annotation index is
+ * built from. It runs in a read-write transaction so it always reads the primary: the grid is tagged with the
+ * document's current revision, and a lagging replica could leave out the comment that bumped it until the grid
+ * is next rebuilt.
+ * </p>
+ *
+ * <p>
+ * {@link #findByOwner(String)} returns all comments on a user's documents, grouped by document, for the
+ * library export's manifest.
+ * </p>
+ */
 public interface CommentRepository extends JpaRepository<Comment, Long> {
     /**
      * Retrieves a list of comments associated with a given PDF file.
@@ -14,4 +39,41 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
      * @return a list of comments, empty if no comments were found
      */
     List<Comment> findByPdfFile(PDFFile pdfFile);
+
+    /**
+     * Returns a document's oldest comments.
+     *
+     * @param pdfId   the document
+     * @param horizon only comments made at or before this time are returned
+     * @param limit   maximum number of comments to return
+     * @return up to {@code limit} comments in {@code (commentTime, id)} order
+     */
+    @Query(value = "select * from comment where pdf_id = :pdfId and comment_time <= :horizon "
+            + "order by comment_time, id limit :limit", nativeQuery = true)
+    List<Comment> findFeedStart(@Param("pdfId") Long pdfId, @Param("horizon") LocalDateTime horizon,
+                                @Param("limit") int limit);
+
+    /**
+     * Returns a document's comments strictly after a feed position.
+     *
+     * @param pdfId   the document
+     * @param time    comment time of the last comment the client has
+     * @param id      id of the last comment the client has, breaking ties between equal times
+     * @param horizon only comments made at or before this time are returned
+     * @param limit   maximum number of comments to return
+     * @return up to {@code limit} comments in {@code (commentTime, id)} order
+     */
+    @Query(value = "select * from comment where pdf_id = :pdfId and (comment_time, id) > (:time, :id) "
+            + "and comment_time <= :horizon order by comment_time, id limit :limit", nativeQuery = true)
+    List<Comment> findFeedAfter(@Param("pdfId") Long pdfId, @Param("time") LocalDateTime time,
+                                @Param("id") long id, @Param("horizon") LocalDateTime horizon,
+                                @Param("limit") int limit);
+
+    @Transactional
+    List<Comment> findByPdfFileIdAndPageNumberNotNull(Long pdfId);
+
+    @Transactional(readOnly = true)
+    @Query("select c from Comment c join fetch c.pdfFile p where p.uploadedBy = :email "
+            + "order by p.id, c.commentTime, c.id")
+    List<Comment> findByOwner(@Param("email") String email);
 }
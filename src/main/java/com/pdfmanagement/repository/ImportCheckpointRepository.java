@@ -0,0 +1,14 @@
+package com.pdfmanagement.repository;
+
+import com.pdfmanagement.model.ImportCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+/**
+ * Repository interface for managing {@link ImportCheckpoint} rows.
+ */
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, Long> {
+
+    Optional<ImportCheckpoint> findBySourceDirAndOwnerEmail(String sourceDir, String ownerEmail);
+}
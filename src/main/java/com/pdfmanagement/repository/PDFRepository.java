@@ -1,27 +1,139 @@
 package com.pdfmanagement.repository;
 
 import com.pdfmanagement.model.PDFFile;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for managing {@link PDFFile} entities.
  * <p>
  * Extends {@link JpaRepository} to provide CRUD operations and custom query methods
- * for accessing PDF files stored in the database.
+ * for accessing PDF files stored in the database, and {@link JpaSpecificationExecutor} so
+ * listings can filter and sort on the extracted metadata columns (see {@link PdfFileSpecifications}).
  * </p>
  *
  * <ul>
  *   <li>{@link #findByUploadedBy(String)}: Retrieves all PDF files uploaded by a specific user (by email).</li>
  *   <li>{@link #findByFilenameContainingIgnoreCase(String)}: Finds PDF files whose filenames contain the specified string, case-insensitive.</li>
  *   <li>{@link #findByUploadedByAndFilenameContainingIgnoreCase(String, String)}: Finds PDF files uploaded by a specific user and whose filenames contain the specified string, case-insensitive.</li>
+ *   <li>{@link #findTop100ByChecksumIsNullAndIdGreaterThanOrderByIdAsc(Long)}: Pages through files uploaded before metadata extraction existed.</li>
+ *   <li>{@link #findByIdGreaterThanOrderByIdAsc(Long, Pageable)}: Pages through every file, for storage maintenance jobs.</li>
+ *   <li>{@link #findListingVersion(String)}: Cheap version lookup backing the listing ETag, which never loads the files.</li>
+ *   <li>{@link #findByIdForUpdate(Long)}: Loads a file with a row lock so its revision can be bumped without lost updates.
+ *       The change goes through the entity, so only that file's second-level cache entry is refreshed; a bulk JPQL update
+ *       would evict the whole {@code pdf-file} region.</li>
+ *   <li>{@link #findVersions(Long)} / {@link #findLatestVersionNumber(Long)}: All versions of a document, addressed by
+ *       the id of its first version.</li>
+ *   <li>{@link #findChecksumsOwnedBy} / {@link #findRecordedFilepaths} / {@link #allocateIds}: Support for bulk imports,
+ *       which skip content a user already has and insert rows in JDBC batches with ids taken from the identity
+ *       sequence up front.</li>
+ *   <li>{@link #streamSuggestRows(Long)}: The columns filename suggestions need, for every file after an id; the
+ *       {@code Pageable} search overloads answer suggestions while that index is still loading.</li>
+ *   <li>{@code stream...} variants: Cursor-backed {@link Stream}s for the streaming list endpoints. They must be consumed
+ *       and closed inside a transaction; the fetch size makes the PostgreSQL driver read rows in batches instead of
+ *       buffering the whole result, and the rows bypass the second-level cache so a large listing does not churn the
+ *       {@code pdf-file} region.</li>
  * </ul>
  */
-public interface PDFRepository extends JpaRepository<PDFFile, Long> {
+public interface PDFRepository extends JpaRepository<PDFFile, Long>, JpaSpecificationExecutor<PDFFile> {
+    int STREAM_FETCH_SIZE = 500;
+
     List<PDFFile> findByUploadedBy(String email);
 
     List<PDFFile> findByFilenameContainingIgnoreCase(String filename);
 
     List<PDFFile> findByUploadedByAndFilenameContainingIgnoreCase(String uploadedBy, String filename);
+
+    List<PDFFile> findByFilenameContainingIgnoreCase(String filename, Pageable pageable);
+
+    List<PDFFile> findByUploadedByAndFilenameContainingIgnoreCase(String uploadedBy, String filename, Pageable pageable);
+
+    List<PDFFile> findTop100ByChecksumIsNullAndIdGreaterThanOrderByIdAsc(Long id);
+
+    List<PDFFile> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    Stream<PDFFile> streamByUploadedByOrderByIdAsc(String email);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    Stream<PDFFile> streamByUploadedByAndFilenameContainingIgnoreCaseOrderByIdAsc(String uploadedBy, String filename);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+                 @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    Stream<PDFFile> streamByFilenameContainingIgnoreCaseOrderByIdAsc(String filename);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query("select p.id as id, p.filename as filename, p.uploadedBy as uploadedBy, p.uploadTime as uploadTime, "
+            + "p.revision as revision from PDFFile p where p.id > :afterId order by p.id")
+    Stream<SuggestRow> streamSuggestRows(@Param("afterId") Long afterId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from PDFFile p where p.id = :id")
+    Optional<PDFFile> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("select p from PDFFile p where p.id = :rootId or p.versionRootId = :rootId order by p.versionNumber")
+    List<PDFFile> findVersions(@Param("rootId") Long rootId);
+
+    @Query("select coalesce(max(p.versionNumber), 0) from PDFFile p where p.id = :rootId or p.versionRootId = :rootId")
+    int findLatestVersionNumber(@Param("rootId") Long rootId);
+
+    /** Bytes a user's files occupy on disk; a version stored as a tail counts only the tail. */
+    @Query("select coalesce(sum(p.sizeBytes - coalesce(p.tailOffset, 0)), 0) from PDFFile p where p.uploadedBy = :email")
+    long sumStoredBytes(@Param("email") String email);
+
+    long countByUploadedBy(String email);
+
+    @Query("select count(p) as fileCount, coalesce(sum(p.revision), 0) as revisionSum, coalesce(max(p.id), 0) as maxId "
+            + "from PDFFile p where p.uploadedBy = :email")
+    ListingVersion findListingVersion(@Param("email") String email);
+
+    @Query("select p.checksum from PDFFile p where p.uploadedBy = :email and p.checksum in :checksums")
+    List<String> findChecksumsOwnedBy(@Param("email") String email, @Param("checksums") Collection<String> checksums);
+
+    @Query("select p.filepath from PDFFile p where p.filepath in :paths")
+    List<String> findRecordedFilepaths(@Param("paths") Collection<String> paths);
+
+    @Query(value = "select nextval(pg_get_serial_sequence('pdffile', 'id')) from generate_series(1, :count)",
+            nativeQuery = true)
+    List<Long> allocateIds(@Param("count") int count);
+
+    /**
+     * Aggregate that changes whenever a user's listing changes: an upload or delete moves the count and
+     * maximum id, and any revision bump moves the sum.
+     */
+    interface ListingVersion {
+        long getFileCount();
+
+        long getRevisionSum();
+
+        long getMaxId();
+    }
+
+    interface SuggestRow {
+        Long getId();
+
+        String getFilename();
+
+        String getUploadedBy();
+
+        LocalDateTime getUploadTime();
+
+        long getRevision();
+    }
 }
@@ -0,0 +1,38 @@
+package com.pdfmanagement.repository;
+
+import com.pdfmanagement.model.PDFFile;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Reusable query predicates for {@link PDFFile} listings.
+ * <p>
+ * Each factory returns {@code null} when its argument is {@code null}, which
+ * {@link Specification#where(Specification)} and {@code and(...)} treat as "no condition",
+ * so optional request parameters can be combined directly.
+ * </p>
+ */
+public final class PdfFileSpecifications {
+
+    private PdfFileSpecifications() {
+    }
+
+    public static Specification<PDFFile> uploadedBy(String email) {
+        return (root, query, cb) -> cb.equal(root.get("uploadedBy"), email);
+    }
+
+    public static Specification<PDFFile> minPages(Integer minPages) {
+        return minPages == null ? null : (root, query, cb) -> cb.ge(root.get("pageCount"), minPages);
+    }
+
+    public static Specification<PDFFile> maxPages(Integer maxPages) {
+        return maxPages == null ? null : (root, query, cb) -> cb.le(root.get("pageCount"), maxPages);
+    }
+
+    public static Specification<PDFFile> maxSizeBytes(Long maxSizeBytes) {
+        return maxSizeBytes == null ? null : (root, query, cb) -> cb.le(root.get("sizeBytes"), maxSizeBytes);
+    }
+
+    public static Specification<PDFFile> pdfVersion(String pdfVersion) {
+        return pdfVersion == null ? null : (root, query, cb) -> cb.equal(root.get("pdfVersion"), pdfVersion);
+    }
+}
@@ -0,0 +1,20 @@
+package com.pdfmanagement.repository;
+
+import com.pdfmanagement.model.PdfFingerprint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * Repository interface for managing {@link PdfFingerprint} rows.
+ */
+public interface PdfFingerprintRepository extends JpaRepository<PdfFingerprint, Long> {
+
+    /** Ids of documents after {@code afterId} that have no fingerprint yet, in id order. */
+    @Query("select p.id from PDFFile p where p.id > :afterId "
+            + "and not exists (select f.pdfId from PdfFingerprint f where f.pdfId = p.id) order by p.id")
+    List<Long> findUnfingerprintedIds(@Param("afterId") long afterId, Pageable pageable);
+}
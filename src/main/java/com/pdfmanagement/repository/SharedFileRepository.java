@@ -1,8 +1,18 @@
 package com.pdfmanagement.repository;
 
 import com.pdfmanagement.model.SharedFile;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -12,11 +22,42 @@ import java.util.Optional;
  * </p>
  *
  * <p>
- * Provides a method to retrieve a {@link SharedFile} by its share token.
+ * {@link #findIdByShareToken} resolves a share token to its id, which callers then load with {@code findById} so
+ * the row comes from the {@code shared-file} entity cache. The lookup itself is not put in the query cache: every
+ * write to {@code shared_file}, use counts included, would invalidate the whole region.
+ * </p>
+ *
+ * <p>
+ * {@link #findActive} backs idempotent share creation. {@link #findRevokedIds} feeds the in-memory revocation
+ * list that signed share tokens are checked against; it only returns shares whose tokens have not expired
+ * anyway. {@link #deleteExpiredBatch} is the expiry sweeper's unit of work: it deletes at most
+ * {@code batchSize} rows and skips rows another transaction holds, so each call is short and never waits on the
+ * access path. Its query space is declared so that Hibernate only invalidates cached {@code shared_file} data,
+ * not every region, after the native delete.
  * </p>
  *
  * @author YourName
  */
 public interface SharedFileRepository extends JpaRepository<SharedFile, Long> {
-    Optional<SharedFile> findByShareToken(String shareToken);
+    @Query("select s.id from SharedFile s where s.shareToken = :shareToken")
+    Optional<Long> findIdByShareToken(@Param("shareToken") String shareToken);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from SharedFile s where s.id = :id")
+    Optional<SharedFile> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("select s from SharedFile s where s.pdfFile.id = :pdfId and s.policy = :policy "
+            + "and s.revokedAt is null and (s.expiresAt is null or s.expiresAt > :now) order by s.id desc")
+    List<SharedFile> findActive(@Param("pdfId") Long pdfId, @Param("policy") String policy,
+                                @Param("now") LocalDateTime now);
+
+    @Query("select s.id from SharedFile s where s.revokedAt is not null "
+            + "and (s.expiresAt is null or s.expiresAt > :now)")
+    List<Long> findRevokedIds(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "shared_file"))
+    @Query(value = "delete from shared_file where id in (select id from shared_file where expires_at <= :now "
+            + "order by expires_at limit :batchSize for update skip locked)", nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") LocalDateTime now, @Param("batchSize") int batchSize);
 }
@@ -0,0 +1,79 @@
+package com.pdfmanagement.repository;
+
+import com.pdfmanagement.model.StorageUsage;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for managing {@link StorageUsage} rows.
+ * <p>
+ * Quota enforcement is done by single conditional updates: {@link #reserve} and {@link #commit} only change a
+ * row if the result stays within the user's limits and report whether they did, so concurrent uploads by the
+ * same user cannot both squeeze under the quota. Each declares its query space so Hibernate does not clear
+ * the second-level cache after these native writes.
+ * </p>
+ */
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, String> {
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "storage_usage"))
+    @Query(value = "insert into storage_usage (owner_email) values (:email) on conflict (owner_email) do nothing",
+            nativeQuery = true)
+    int ensureExists(@Param("email") String email);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "storage_usage"))
+    @Query(value = "update storage_usage set bytes_reserved = bytes_reserved + :bytes, "
+            + "files_reserved = files_reserved + 1, reserved_at = :now "
+            + "where owner_email = :email "
+            + "and bytes_used + bytes_reserved + :bytes <= coalesce(quota_bytes, :defaultBytes) "
+            + "and file_count + files_reserved + 1 <= coalesce(max_files, :defaultFiles)", nativeQuery = true)
+    int reserve(@Param("email") String email, @Param("bytes") long bytes, @Param("now") LocalDateTime now,
+                @Param("defaultBytes") long defaultBytes, @Param("defaultFiles") int defaultFiles);
+
+    /**
+     * Turns a reservation of {@code reserved} bytes into {@code stored} used bytes and one file, provided the
+     * result is still within the quota.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "storage_usage"))
+    @Query(value = "update storage_usage set bytes_used = bytes_used + :stored, file_count = file_count + 1, "
+            + "bytes_reserved = greatest(bytes_reserved - :reserved, 0), "
+            + "files_reserved = greatest(files_reserved - 1, 0) "
+            + "where owner_email = :email "
+            + "and bytes_used + greatest(bytes_reserved - :reserved, 0) + :stored "
+            + "<= coalesce(quota_bytes, :defaultBytes)", nativeQuery = true)
+    int commit(@Param("email") String email, @Param("reserved") long reserved, @Param("stored") long stored,
+               @Param("defaultBytes") long defaultBytes);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "storage_usage"))
+    @Query(value = "update storage_usage set bytes_reserved = greatest(bytes_reserved - :reserved, 0), "
+            + "files_reserved = greatest(files_reserved - 1, 0) where owner_email = :email", nativeQuery = true)
+    int release(@Param("email") String email, @Param("reserved") long reserved);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "storage_usage"))
+    @Query(value = "update storage_usage set bytes_used = greatest(bytes_used - :bytes, 0), "
+            + "file_count = greatest(file_count - 1, 0) where owner_email = :email", nativeQuery = true)
+    int removeFile(@Param("email") String email, @Param("bytes") long bytes);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from StorageUsage u where u.ownerEmail = :email")
+    Optional<StorageUsage> findByIdForUpdate(@Param("email") String email);
+
+    @Query(value = "select owner_email from storage_usage where owner_email > :after order by owner_email "
+            + "limit :limit", nativeQuery = true)
+    List<String> findOwnersAfter(@Param("after") String after, @Param("limit") int limit);
+}
@@ -1,7 +1,10 @@
 package com.pdfmanagement.repository;
 
 import com.pdfmanagement.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.Optional;
 
@@ -12,11 +15,17 @@ import java.util.Optional;
  * </p>
  *
  * <ul>
- *   <li>{@code findByEmail(String email)}: Retrieves an Optional containing the User with the specified email, if present.</li>
+ *   <li>{@code findByEmail(String email)}: Retrieves an Optional containing the User with the specified email, if present.
+ *       Runs on every authenticated request, so the email-to-id result is kept in the {@code user-by-email} query cache
+ *       region and the row itself in the entity cache.</li>
  *   <li>{@code existsByEmail(String email)}: Checks if a User with the specified email exists in the database.</li>
  * </ul>
  */
 public interface UserRepository extends JpaRepository<User, Long> {
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "user-by-email")
+    })
     Optional<User> findByEmail(String email);
 
     boolean existsByEmail(String email);
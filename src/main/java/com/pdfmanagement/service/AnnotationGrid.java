@@ -0,0 +1,119 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.controller.dto.CommentResponse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable spatial index over one document's anchored comments.
+ * <p>
+ * Each page is divided into a fixed {@code n x n} grid over its normalized coordinates, and every
+ * annotation is listed in each cell its rectangle overlaps. A viewport query only visits the cells the
+ * viewport overlaps. An annotation spanning several of them is reported once, from the cell holding the
+ * top-left corner of its intersection with the viewport, so no de-duplication set is needed.
+ * </p>
+ */
+final class AnnotationGrid {
+
+    static final Comparator<CommentResponse> COMMENT_ORDER = Comparator
+            .comparing(CommentResponse::getCommentTime)
+            .thenComparing(CommentResponse::getId);
+
+    private final int cellsPerSide;
+    private final Map<Integer, PageCells> pages = new HashMap<>();
+    private final int size;
+
+    AnnotationGrid(int cellsPerSide, List<CommentResponse> annotations) {
+        this.cellsPerSide = cellsPerSide;
+        List<CommentResponse> ordered = new ArrayList<>(annotations);
+        ordered.sort(COMMENT_ORDER);
+        for (CommentResponse annotation : ordered) {
+            pages.computeIfAbsent(annotation.getPage(), page -> new PageCells(cellsPerSide)).add(annotation);
+        }
+        this.size = ordered.size();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * All annotations on a page, oldest first.
+     */
+    List<CommentResponse> page(int page) {
+        PageCells cells = pages.get(page);
+        return cells == null ? List.of() : List.copyOf(cells.all);
+    }
+
+    /**
+     * Annotations on a page whose rectangle intersects the viewport, oldest first. Edges count as
+     * intersecting, so zero-size point annotations on a viewport border are included.
+     */
+    List<CommentResponse> viewport(int page, double x, double y, double width, double height) {
+        PageCells cells = pages.get(page);
+        if (cells == null) {
+            return List.of();
+        }
+        double x1 = x + width;
+        double y1 = y + height;
+        int colFrom = cell(x);
+        int colTo = cell(x1);
+        int rowFrom = cell(y);
+        int rowTo = cell(y1);
+
+        List<CommentResponse> result = new ArrayList<>();
+        for (int row = rowFrom; row <= rowTo; row++) {
+            for (int col = colFrom; col <= colTo; col++) {
+                List<CommentResponse> cell = cells.grid[row * cellsPerSide + col];
+                if (cell == null) {
+                    continue;
+                }
+                for (CommentResponse a : cell) {
+                    if (a.getX() > x1 || a.getX() + a.getWidth() < x
+                            || a.getY() > y1 || a.getY() + a.getHeight() < y) {
+                        continue;
+                    }
+                    if (cell(Math.max(a.getX(), x)) == col && cell(Math.max(a.getY(), y)) == row) {
+                        result.add(a);
+                    }
+                }
+            }
+        }
+        result.sort(COMMENT_ORDER);
+        return result;
+    }
+
+    private int cell(double coordinate) {
+        int index = (int) (coordinate * cellsPerSide);
+        return Math.max(0, Math.min(cellsPerSide - 1, index));
+    }
+
+    private final class PageCells {
+        private final List<CommentResponse> all = new ArrayList<>();
+        private final List<CommentResponse>[] grid;
+
+        @SuppressWarnings("unchecked")
+        PageCells(int cellsPerSide) {
+            this.grid = new List[cellsPerSide * cellsPerSide];
+        }
+
+        void add(CommentResponse annotation) {
+            all.add(annotation);
+            int colTo = cell(annotation.getX() + annotation.getWidth());
+            int rowTo = cell(annotation.getY() + annotation.getHeight());
+            for (int row = cell(annotation.getY()); row <= rowTo; row++) {
+                for (int col = cell(annotation.getX()); col <= colTo; col++) {
+                    int index = row * cellsPerSide + col;
+                    if (grid[index] == null) {
+                        grid[index] = new ArrayList<>();
+                    }
+                    grid[index].add(annotation);
+                }
+            }
+        }
+    }
+}
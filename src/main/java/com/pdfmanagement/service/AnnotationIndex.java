@@ -0,0 +1,181 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.controller.dto.CommentResponse;
+import com.pdfmanagement.model.Comment;
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.CommentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves a document's anchored comments per page or per viewport from an in-memory {@link AnnotationGrid}.
+ * <p>
+ * A document's grid is built on first use from its anchored comments and tagged with the document's
+ * {@code revision}. Every new comment bumps the revision, so a grid older than the {@link PDFFile} in hand is
+ * rebuilt, and other instances pick up comments made through them the same way. Grids idle for longer than
+ * {@code annotations.index.idle-ms} are dropped. Past {@code annotations.index.max-documents}, the least
+ * recently used grid is dropped first.
+ * </p>
+ *
+ * <p>
+ * Anchors use page-relative coordinates: fractions of the page width and height measured from the top-left
+ * corner, so the same anchor works at any zoom level and page size.
+ * </p>
+ */
+@Service
+public class AnnotationIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationIndex.class);
+
+    // Clients compute rectangles in floating point; x + width may come out a rounding error above 1.
+    private static final double EDGE_TOLERANCE = 1e-6;
+
+    private final CommentRepository commentRepository;
+    private final int gridSize;
+    private final long idleMs;
+    private final int maxDocuments;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    public AnnotationIndex(CommentRepository commentRepository,
+                           @Value("${annotations.index.grid-size:8}") int gridSize,
+                           @Value("${annotations.index.idle-ms:600000}") long idleMs,
+                           @Value("${annotations.index.max-documents:1000}") int maxDocuments) {
+        this.commentRepository = commentRepository;
+        this.gridSize = gridSize;
+        this.idleMs = idleMs;
+        this.maxDocuments = maxDocuments;
+    }
+
+    /**
+     * Returns the annotations on one page of a document, optionally only those intersecting a viewport.
+     *
+     * @param pdf    the document; its revision decides whether the cached grid is still current
+     * @param page   1-based page number
+     * @param x      viewport left edge, or null (with the other viewport arguments) for the whole page
+     * @param y      viewport top edge
+     * @param width  viewport width
+     * @param height viewport height
+     * @return matching annotations, oldest first
+     * @throws IllegalArgumentException if the page or viewport is out of range
+     */
+    public List<CommentResponse> find(PDFFile pdf, int page, Double x, Double y, Double width, Double height) {
+        checkPage(page, pdf.getPageCount());
+        boolean wholePage = x == null && y == null && width == null && height == null;
+        if (!wholePage) {
+            checkRect(x, y, width, height, "viewport");
+        }
+        AnnotationGrid grid = gridFor(pdf);
+        return wholePage ? grid.page(page) : grid.viewport(page, x, y, width, height);
+    }
+
+    /**
+     * Validates an anchor from a comment request and copies it onto the comment. A page without a
+     * rectangle anchors the comment to the whole page; no page leaves the comment unanchored.
+     *
+     * @param comment   the comment being created
+     * @param page      1-based page number, or null
+     * @param pageCount the document's page count, if known, to reject anchors past its last page
+     * @throws IllegalArgumentException if the anchor is incomplete or out of range
+     */
+    public static void applyAnchor(Comment comment, Integer page, Double x, Double y, Double width, Double height,
+                                   Integer pageCount) {
+        if (page == null) {
+            if (x != null || y != null || width != null || height != null) {
+                throw new IllegalArgumentException("An anchor rectangle needs a page");
+            }
+            return;
+        }
+        checkPage(page, pageCount);
+        if (x == null && y == null && width == null && height == null) {
+            x = 0.0;
+            y = 0.0;
+            width = 1.0;
+            height = 1.0;
+        } else {
+            checkRect(x, y, width, height, "anchor");
+        }
+        comment.setPageNumber(page);
+        comment.setAnchorX(x);
+        comment.setAnchorY(y);
+        comment.setAnchorWidth(Math.min(width, 1 - x));
+        comment.setAnchorHeight(Math.min(height, 1 - y));
+    }
+
+    /** Drops a document's grid, e.g. when another instance changed its annotations. */
+    public void invalidate(long pdfId) {
+        entries.remove(pdfId);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${annotations.index.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMs;
+        entries.values().removeIf(entry -> entry.lastAccess < cutoff);
+    }
+
+    private AnnotationGrid gridFor(PDFFile pdf) {
+        Entry entry = entries.get(pdf.getId());
+        if (entry == null || entry.revision != pdf.getRevision()) {
+            // Concurrent misses may both build; the grids are equivalent and the last one wins.
+            List<CommentResponse> annotations = commentRepository.findByPdfFileIdAndPageNumberNotNull(pdf.getId())
+                    .stream().map(CommentResponse::new).toList();
+            entry = new Entry(pdf.getRevision(), new AnnotationGrid(gridSize, annotations));
+            entries.put(pdf.getId(), entry);
+            logger.debug("Built annotation grid for PDF {} at revision {} with {} annotations",
+                    pdf.getId(), pdf.getRevision(), annotations.size());
+            if (entries.size() > maxDocuments) {
+                evictLeastRecentlyUsed();
+            }
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry.grid;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .limit(Math.max(0, entries.size() - maxDocuments))
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(entries::remove);
+    }
+
+    private static void checkPage(int page, Integer pageCount) {
+        if (page < 1 || (pageCount != null && page > pageCount)) {
+            throw new IllegalArgumentException("page must be between 1 and "
+                    + (pageCount == null ? "the page count" : pageCount));
+        }
+    }
+
+    private static void checkRect(Double x, Double y, Double width, Double height, String what) {
+        if (x == null || y == null || width == null || height == null) {
+            throw new IllegalArgumentException(what + " needs x, y, width and height");
+        }
+        if (!(x >= 0 && y >= 0 && width >= 0 && height >= 0
+                && x + width <= 1 + EDGE_TOLERANCE && y + height <= 1 + EDGE_TOLERANCE)) {
+            throw new IllegalArgumentException(what + " must lie within the page, in fractions of its size (0 to 1)");
+        }
+    }
+
+    private static final class Entry {
+        private final long revision;
+        private final AnnotationGrid grid;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Entry(long revision, AnnotationGrid grid) {
+            this.revision = revision;
+            this.grid = grid;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.model.SharedFile;
+import com.pdfmanagement.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the in-process caches of several instances consistent by telling every instance what another one changed.
+ * <p>
+ * Writers call {@link #pdfChanged}, {@link #shareChanged}, {@link #shareRevoked} or {@link #userChanged} once the
+ * write has committed. The event is applied to this instance's own caches immediately, and queued for the
+ * others. A single background thread holds a dedicated connection to the primary database (outside the pool)
+ * that {@code LISTEN}s on {@code cache.bus.channel}; every {@code cache.bus.flush-ms} it sends the queued events
+ * with {@code pg_notify}, as few notifications as fit, and applies what other instances sent. Events are
+ * coalesced while queued, so a document commented on a hundred times between flushes is announced once.
+ * </p>
+ *
+ * <p>
+ * On another instance an event evicts the row from the second-level cache region it lives in (and the query
+ * results of the natural-key lookups a new row could change), drops the document's annotation grid, or adds a
+ * revoked share to {@link ShareRevocationList}. Hibernate already keeps the writing instance's own regions
+ * current, so they are only evicted for remote events.
+ * </p>
+ *
+ * <p>
+ * Notifications sent while an instance is not listening are lost, so whenever the listening connection is
+ * re-established every cache the bus covers is flushed and the revocation list reloaded. Events queued while the
+ * database cannot be reached are kept and sent after reconnecting; if more than {@code cache.bus.max-pending}
+ * pile up they collapse into a single "flush everything" event. With {@code cache.bus.enabled=false}, as for a
+ * single instance, events are only applied locally. Events still queued when the application shuts down are sent
+ * before the connection is closed, so a short-lived process such as an import run does not lose its last ones.
+ * </p>
+ */
+@Component
+public class CacheInvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    // Payload limit of NOTIFY is 8000 bytes; stay clear of it.
+    private static final int MAX_PAYLOAD = 7800;
+    private static final String FLUSH_ALL = "*";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final AnnotationIndex annotationIndex;
+    private final ShareRevocationList revocationList;
+    private final DataSourceProperties dataSourceProperties;
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 12);
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    @Value("${cache.bus.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.bus.channel:cache_invalidation}")
+    private String channel;
+
+    @Value("${cache.bus.flush-ms:50}")
+    private long flushMs;
+
+    @Value("${cache.bus.reconnect-delay-ms:5000}")
+    private long reconnectDelayMs;
+
+    @Value("${cache.bus.keepalive-ms:10000}")
+    private long keepaliveMs;
+
+    @Value("${cache.bus.max-pending:10000}")
+    private int maxPending;
+
+    private Thread listener;
+    private volatile boolean running;
+
+    public CacheInvalidationBus(EntityManagerFactory entityManagerFactory, AnnotationIndex annotationIndex,
+                                ShareRevocationList revocationList, DataSourceProperties dataSourceProperties) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.annotationIndex = annotationIndex;
+        this.revocationList = revocationList;
+        this.dataSourceProperties = dataSourceProperties;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            logger.info("Cache invalidation bus disabled; invalidations stay on this instance");
+            return;
+        }
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalStateException("cache.bus.channel must be a lower-case SQL identifier: " + channel);
+        }
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation-bus");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (listener != null) {
+            // Let the relay loop notice and send what is still queued; only a thread waiting to reconnect is cut short.
+            listener.join(flushMs + 1000);
+            listener.interrupt();
+            listener.join(5000);
+        }
+    }
+
+    /** A document's row changed: metadata, revision, comments (through the revision) or a new upload. */
+    public void pdfChanged(long pdfId) {
+        publish("p" + pdfId);
+    }
+
+    /** A share link was created or changed other than by revocation. */
+    public void shareChanged(long shareId) {
+        publish("s" + shareId);
+    }
+
+    /** A share link was revoked, by its owner or by using up its last use; its tokens must be refused. */
+    public void shareRevoked(long shareId) {
+        publish("r" + shareId);
+    }
+
+    /** A user was registered or changed. */
+    public void userChanged(long userId) {
+        publish("u" + userId);
+    }
+
+    private void publish(String event) {
+        apply(event, false);
+        if (!running) {
+            return;
+        }
+        if (pending.size() >= maxPending) {
+            pending.clear();
+            pending.add(FLUSH_ALL);
+        } else if (!pending.contains(FLUSH_ALL)) {
+            pending.add(event);
+        }
+    }
+
+    private void listen() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (connectedBefore) {
+                    logger.info("Cache invalidation bus reconnected; flushing caches for events it may have missed");
+                    flushAll();
+                } else {
+                    logger.info("Cache invalidation bus listening on channel {} as node {}", channel, nodeId);
+                }
+                connectedBefore = true;
+                relay(connection);
+                send(connection); // what was published while stopping, e.g. by an import exiting
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Cache invalidation bus lost its connection, retrying in {} ms: {}",
+                        reconnectDelayMs, e.getMessage());
+            }
+            try {
+                Thread.sleep(reconnectDelayMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void relay(Connection connection) throws SQLException {
+        PGConnection notifications = connection.unwrap(PGConnection.class);
+        long lastCheck = System.currentTimeMillis();
+        while (running) {
+            send(connection);
+            PGNotification[] received = notifications.getNotifications((int) Math.max(flushMs, 1));
+            if (received != null) {
+                for (PGNotification notification : received) {
+                    receive(notification.getParameter());
+                }
+            }
+            // A connection whose server went away silently just times out above; make sure it is still there.
+            long now = System.currentTimeMillis();
+            if (now - lastCheck >= keepaliveMs) {
+                if (!connection.isValid(5)) {
+                    throw new SQLException("Listening connection is no longer valid");
+                }
+                lastCheck = now;
+            }
+        }
+    }
+
+    private void send(Connection connection) throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> events = new ArrayList<>(pending);
+        pending.removeAll(events);
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            StringBuilder payload = new StringBuilder(nodeId);
+            for (String event : events) {
+                if (payload.length() + event.length() + 1 > MAX_PAYLOAD) {
+                    notify(statement, payload);
+                    payload.setLength(0);
+                    payload.append(nodeId);
+                }
+                payload.append(' ').append(event);
+            }
+            notify(statement, payload);
+        } catch (SQLException e) {
+            pending.addAll(events); // sent again after reconnecting; duplicates are harmless
+            throw e;
+        }
+    }
+
+    private void notify(PreparedStatement statement, StringBuilder payload) throws SQLException {
+        statement.setString(1, channel);
+        statement.setString(2, payload.toString());
+        statement.execute();
+    }
+
+    private void receive(String payload) {
+        String[] parts = payload.split(" ");
+        if (parts.length == 0 || parts[0].equals(nodeId)) {
+            return; // our own notification, already applied when it was published
+        }
+        for (int i = 1; i < parts.length; i++) {
+            try {
+                apply(parts[i], true);
+            } catch (RuntimeException e) {
+                logger.warn("Could not apply cache invalidation '{}' from node {}: {}", parts[i], parts[0],
+                        e.getMessage());
+            }
+        }
+    }
+
+    private void apply(String event, boolean remote) {
+        if (event.equals(FLUSH_ALL)) {
+            if (remote) {
+                flushAll();
+            }
+            return;
+        }
+        long id = Long.parseLong(event.substring(1));
+        Cache cache = remote ? entityManagerFactory.unwrap(SessionFactory.class).getCache() : null;
+        switch (event.charAt(0)) {
+            case 'p' -> {
+                annotationIndex.invalidate(id);
+                if (cache != null) {
+                    cache.evictEntityData(PDFFile.class, id);
+                }
+            }
+            case 'r' -> {
+                revocationList.add(id);
+                if (cache != null) {
+                    cache.evictEntityData(SharedFile.class, id);
+                }
+            }
+            case 's' -> {
+                if (cache != null) {
+                    cache.evictEntityData(SharedFile.class, id);
+                }
+            }
+            case 'u' -> {
+                if (cache != null) {
+                    cache.evictEntityData(User.class, id);
+                    cache.evictQueryRegion("user-by-email"); // a cached "no such user" for the new email
+                }
+            }
+            default -> logger.warn("Ignoring unknown cache invalidation '{}'", event);
+        }
+    }
+
+    private void flushAll() {
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        annotationIndex.clear();
+        revocationList.refresh();
+    }
+}
@@ -0,0 +1,404 @@
+package com.pdfmanagement.service;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * On-disk format of a stored file encrypted at rest: a header followed by independently encrypted chunks.
+ * <p>
+ * Each file has its own random 256-bit AES key. The header holds it wrapped (AES-GCM) by a master key, named by
+ * its key id so master keys can be rotated, together with the chunk size and the plaintext length. The content
+ * follows as consecutive chunks of {@code chunkSize} plaintext bytes, the last one shorter, each encrypted with
+ * AES-GCM under the file key and followed by its 16-byte tag. A chunk's nonce is its index, and its associated
+ * data says whether it is the last one, so chunks cannot be reordered, and a file cut short at a chunk boundary
+ * fails authentication on its new last chunk. An empty file still has one empty final chunk.
+ * </p>
+ *
+ * <pre>
+ *   0  magic "PMAEAD01"           53  wrapping nonce (12)
+ *   8  chunk size (int)           65  wrapped file key (32 + 16 tag)
+ *  12  plaintext length (long)   113  reserved, zero, up to 128
+ *  20  key id length, key id (32)
+ * </pre>
+ *
+ * <p>
+ * Because chunk {@code i} starts at a fixed offset, a read at any position decrypts only the chunks it
+ * overlaps: {@link Reader} is a {@link SeekableByteChannel} over the plaintext that keeps the last decrypted
+ * chunk. {@link Writer} encrypts a stream chunk by chunk in constant memory and fills in the plaintext length
+ * when it is closed.
+ * </p>
+ */
+final class ChunkedAeadFile {
+
+    static final byte[] MAGIC = "PMAEAD01".getBytes(StandardCharsets.US_ASCII);
+    static final int HEADER_SIZE = 128;
+    static final int TAG_SIZE = 16;
+    static final int MAX_KEY_ID_LENGTH = 32;
+    static final int MIN_CHUNK_SIZE = 4 * 1024;
+    static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final int KEY_SIZE = 32;
+    private static final int NONCE_SIZE = 12;
+    private static final int LENGTH_OFFSET = 12;
+    private static final int KEY_ID_OFFSET = 20;
+    private static final int WRAP_NONCE_OFFSET = KEY_ID_OFFSET + 1 + MAX_KEY_ID_LENGTH;
+    private static final int WRAPPED_KEY_OFFSET = WRAP_NONCE_OFFSET + NONCE_SIZE;
+    private static final byte[] LAST_CHUNK = {1};
+    private static final byte[] INNER_CHUNK = {0};
+
+    private ChunkedAeadFile() {
+    }
+
+    /** The parsed header of an encrypted file. */
+    record Header(int chunkSize, long plaintextLength, String keyId, byte[] wrapNonce, byte[] wrappedKey,
+                  byte[] authenticated) {
+
+        long chunkCount() {
+            return chunkCount(plaintextLength, chunkSize);
+        }
+
+        /** Size the file must have on disk for its header to be believed. */
+        long encryptedLength() {
+            return HEADER_SIZE + plaintextLength + chunkCount() * TAG_SIZE;
+        }
+
+        static long chunkCount(long plaintextLength, int chunkSize) {
+            return Math.max(1, (plaintextLength + chunkSize - 1) / chunkSize);
+        }
+    }
+
+    static boolean hasMagic(byte[] block, int length) {
+        return length >= MAGIC.length && Arrays.equals(block, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    /**
+     * Reads the header at the start of {@code channel}.
+     *
+     * @throws StoredFileDamagedException if the header is malformed or the file's size does not match it
+     */
+    static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new StoredFileDamagedException("Encrypted file header is truncated");
+            }
+        }
+        byte[] bytes = buffer.array();
+        if (!hasMagic(bytes, bytes.length)) {
+            throw new IOException("Not an encrypted file");
+        }
+        int chunkSize = buffer.getInt(MAGIC.length);
+        long plaintextLength = buffer.getLong(LENGTH_OFFSET);
+        int keyIdLength = bytes[KEY_ID_OFFSET] & 0xff;
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE || plaintextLength < 0
+                || keyIdLength == 0 || keyIdLength > MAX_KEY_ID_LENGTH) {
+            throw new StoredFileDamagedException("Encrypted file header is corrupt");
+        }
+        String keyId = new String(bytes, KEY_ID_OFFSET + 1, keyIdLength, StandardCharsets.US_ASCII);
+        Header header = new Header(chunkSize, plaintextLength, keyId,
+                Arrays.copyOfRange(bytes, WRAP_NONCE_OFFSET, WRAP_NONCE_OFFSET + NONCE_SIZE),
+                Arrays.copyOfRange(bytes, WRAPPED_KEY_OFFSET, WRAPPED_KEY_OFFSET + KEY_SIZE + TAG_SIZE),
+                authenticatedPart(bytes));
+        if (channel.size() != header.encryptedLength()) {
+            throw new StoredFileDamagedException("Encrypted file is " + channel.size()
+                    + " bytes but its header calls for " + header.encryptedLength() + "; it was truncated or damaged");
+        }
+        return header;
+    }
+
+    /**
+     * Recovers the file key from a header with the master key its key id names.
+     *
+     * @throws IOException if it does not authenticate, which is taken to mean a different key was configured
+     *                     under that id rather than a damaged file
+     */
+    static SecretKey unwrapKey(Header header, SecretKey masterKey) throws IOException {
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(TAG_SIZE * 8, header.wrapNonce()));
+            cipher.updateAAD(header.authenticated());
+            return new SecretKeySpec(cipher.doFinal(header.wrappedKey()), "AES");
+        } catch (AEADBadTagException e) {
+            throw new IOException("File key does not authenticate under master key '" + header.keyId() + "'");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available", e);
+        }
+    }
+
+    /**
+     * Builds a header for a new file, wrapping {@code fileKey} with the master key; the plaintext length is
+     * filled in by {@link #writeLength}.
+     */
+    static byte[] newHeader(int chunkSize, String keyId, SecretKey masterKey, SecretKey fileKey,
+                            SecureRandom random) {
+        byte[] keyIdBytes = keyId.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.put(MAGIC).putInt(chunkSize).putLong(0);
+        buffer.put((byte) keyIdBytes.length).put(keyIdBytes);
+        byte[] bytes = buffer.array();
+        byte[] nonce = new byte[NONCE_SIZE];
+        random.nextBytes(nonce);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, masterKey, new GCMParameterSpec(TAG_SIZE * 8, nonce));
+            cipher.updateAAD(authenticatedPart(bytes));
+            byte[] wrapped = cipher.doFinal(fileKey.getEncoded());
+            System.arraycopy(nonce, 0, bytes, WRAP_NONCE_OFFSET, NONCE_SIZE);
+            System.arraycopy(wrapped, 0, bytes, WRAPPED_KEY_OFFSET, wrapped.length);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available", e);
+        }
+        return bytes;
+    }
+
+    /** A header for the same file key and content under another master key, for key rotation. */
+    static byte[] rewrapHeader(Header header, SecretKey fileKey, String keyId, SecretKey masterKey,
+                               SecureRandom random) {
+        byte[] bytes = newHeader(header.chunkSize(), keyId, masterKey, fileKey, random);
+        ByteBuffer.wrap(bytes).putLong(LENGTH_OFFSET, header.plaintextLength());
+        return bytes;
+    }
+
+    static void writeLength(FileChannel channel, long plaintextLength) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Long.BYTES).putLong(0, plaintextLength);
+        while (length.hasRemaining()) {
+            channel.write(length, LENGTH_OFFSET + length.position());
+        }
+    }
+
+    static SecretKey newFileKey(SecureRandom random) {
+        byte[] key = new byte[KEY_SIZE];
+        random.nextBytes(key);
+        return new SecretKeySpec(key, "AES");
+    }
+
+    // The wrapped key is bound to the magic, chunk size and key id; the plaintext length is checked against the
+    // file size instead, and a wrong one fails on the last chunk.
+    private static byte[] authenticatedPart(byte[] header) {
+        byte[] part = new byte[LENGTH_OFFSET + WRAP_NONCE_OFFSET - KEY_ID_OFFSET];
+        System.arraycopy(header, 0, part, 0, LENGTH_OFFSET);
+        System.arraycopy(header, KEY_ID_OFFSET, part, LENGTH_OFFSET, WRAP_NONCE_OFFSET - KEY_ID_OFFSET);
+        return part;
+    }
+
+    private static GCMParameterSpec chunkNonce(long index) {
+        byte[] nonce = new byte[NONCE_SIZE];
+        ByteBuffer.wrap(nonce).putLong(NONCE_SIZE - Long.BYTES, index);
+        return new GCMParameterSpec(TAG_SIZE * 8, nonce);
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available", e);
+        }
+    }
+
+    /**
+     * Encrypts everything written to it into {@code channel}, which must be empty; closing it writes the final
+     * chunk and the plaintext length, and closes the channel.
+     */
+    static final class Writer extends OutputStream {
+        private final FileChannel channel;
+        private final SecretKey fileKey;
+        private final Cipher cipher = newCipher();
+        private final byte[] chunk;
+        private final ByteBuffer sealed;
+        private int filled;
+        private long chunkIndex;
+        private long length;
+        private boolean closed;
+
+        Writer(FileChannel channel, int chunkSize, String keyId, SecretKey masterKey, SecureRandom random)
+                throws IOException {
+            this.channel = channel;
+            this.fileKey = newFileKey(random);
+            this.chunk = new byte[chunkSize];
+            this.sealed = ByteBuffer.allocate(chunkSize + TAG_SIZE);
+            ByteBuffer header = ByteBuffer.wrap(newHeader(chunkSize, keyId, masterKey, fileKey, random));
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            while (len > 0) {
+                // A full chunk is only sealed once more data shows it is not the last one.
+                if (filled == chunk.length) {
+                    seal(false);
+                }
+                int n = Math.min(len, chunk.length - filled);
+                System.arraycopy(b, off, chunk, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+                length += n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try (channel) {
+                seal(true);
+                writeLength(channel, length);
+            }
+        }
+
+        private void seal(boolean last) throws IOException {
+            sealed.clear();
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, fileKey, chunkNonce(chunkIndex++));
+                cipher.updateAAD(last ? LAST_CHUNK : INNER_CHUNK);
+                int n = cipher.doFinal(chunk, 0, filled, sealed.array(), 0);
+                sealed.limit(n);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not encrypt chunk " + (chunkIndex - 1), e);
+            }
+            while (sealed.hasRemaining()) {
+                channel.write(sealed);
+            }
+            filled = 0;
+        }
+    }
+
+    /**
+     * Read-only channel over the plaintext of an encrypted file. Reads decrypt, and authenticate, only the chunks
+     * they touch; the most recently decrypted chunk is kept, so sequential reads decrypt each chunk once.
+     */
+    static final class Reader implements SeekableByteChannel {
+        private final FileChannel channel;
+        private final Header header;
+        private final SecretKey fileKey;
+        private final Cipher cipher = newCipher();
+        private final ByteBuffer sealed;
+        private final byte[] plain;
+        private long plainChunk = -1;
+        private int plainLength;
+        private long position;
+
+        Reader(FileChannel channel, Header header, SecretKey fileKey) {
+            this.channel = channel;
+            this.header = header;
+            this.fileKey = fileKey;
+            this.sealed = ByteBuffer.allocate(header.chunkSize() + TAG_SIZE);
+            this.plain = new byte[header.chunkSize()];
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (position >= header.plaintextLength()) {
+                return -1;
+            }
+            long index = position / header.chunkSize();
+            if (index != plainChunk) {
+                decrypt(index);
+            }
+            int offset = (int) (position - index * header.chunkSize());
+            int n = Math.min(dst.remaining(), plainLength - offset);
+            dst.put(plain, offset, n);
+            position += n;
+            return n;
+        }
+
+        private void decrypt(long index) throws IOException {
+            plainChunk = -1;
+            long start = index * header.chunkSize();
+            int length = (int) Math.min(header.chunkSize(), header.plaintextLength() - start);
+            long filePosition = HEADER_SIZE + index * (header.chunkSize() + TAG_SIZE);
+            sealed.clear().limit(length + TAG_SIZE);
+            while (sealed.hasRemaining()) {
+                if (channel.read(sealed, filePosition + sealed.position()) < 0) {
+                    throw new StoredFileDamagedException("Encrypted file ended inside chunk " + index);
+                }
+            }
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, fileKey, chunkNonce(index));
+                cipher.updateAAD(index == header.chunkCount() - 1 ? LAST_CHUNK : INNER_CHUNK);
+                plainLength = cipher.doFinal(sealed.array(), 0, length + TAG_SIZE, plain, 0);
+            } catch (AEADBadTagException e) {
+                throw new StoredFileDamagedException("Chunk " + index
+                        + " of an encrypted file failed authentication");
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not decrypt chunk " + index, e);
+            }
+            plainChunk = index;
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position");
+            }
+            this.position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return header.plaintextLength();
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!channel.isOpen()) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
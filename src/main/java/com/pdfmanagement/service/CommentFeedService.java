@@ -0,0 +1,116 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.controller.dto.CommentFeedResponse;
+import com.pdfmanagement.controller.dto.CommentResponse;
+import com.pdfmanagement.model.Comment;
+import com.pdfmanagement.repository.CommentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Serves a document's comments as a keyset-paged feed.
+ * <p>
+ * A cursor encodes the {@code (commentTime, id)} of the last comment a client has seen, so each page is a
+ * single index range scan starting right after it, no matter how many comments came before. The same cursor
+ * doubles as the {@code since} position for polling: once a client has caught up, a poll returns only comments
+ * made after its last one, and an empty page when there are none.
+ * </p>
+ *
+ * <p>
+ * A comment's time is taken when the request builds it, before its transaction commits, so a comment can become
+ * visible after a later one has already been served; a cursor past it would skip it for good. The feed therefore
+ * only serves comments older than {@code comments.feed.settle-ms} (default 2 s), which must exceed the time from
+ * building a comment to its commit plus the clock difference between instances. New comments reach the feed
+ * that much later. The feed reads the primary, in a read-write transaction: a replica may lag by up to
+ * {@code app.datasource.replica.max-lag-ms}, longer than the settle time, and would let a cursor pass a comment
+ * it has not replayed yet.
+ * </p>
+ *
+ * <p>
+ * Cursors are opaque to clients: unpadded base64url of {@code <epoch micros>:<id>}. Times are stored with
+ * microsecond precision, so the encoded value round-trips exactly.
+ * </p>
+ */
+@Service
+public class CommentFeedService {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 500;
+
+    private final CommentRepository commentRepository;
+
+    @Value("${comments.feed.settle-ms:2000}")
+    private long settleMs;
+
+    public CommentFeedService(CommentRepository commentRepository) {
+        this.commentRepository = commentRepository;
+    }
+
+    /**
+     * Returns the page of a document's comments that follows {@code since}.
+     *
+     * @param pdfId the document
+     * @param since cursor from a previous page, or null to start from the first comment
+     * @param limit page size; null for {@link #DEFAULT_LIMIT}
+     * @return the comments and the cursor to continue from
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is out of range
+     */
+    @Transactional
+    public CommentFeedResponse page(Long pdfId, String since, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_LIMIT : limit;
+        if (pageSize < 1 || pageSize > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+
+        // One extra row tells whether another page is already waiting, without a count query.
+        LocalDateTime horizon = LocalDateTime.now().minusNanos(settleMs * 1_000_000L);
+        List<Comment> rows;
+        if (since == null || since.isBlank()) {
+            rows = commentRepository.findFeedStart(pdfId, horizon, pageSize + 1);
+        } else {
+            Position after = decode(since);
+            rows = commentRepository.findFeedAfter(pdfId, after.time(), after.id(), horizon, pageSize + 1);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Comment> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = page.isEmpty() ? blankToNull(since) : encode(page.get(page.size() - 1));
+
+        return new CommentFeedResponse(page.stream().map(CommentResponse::new).toList(), nextCursor, hasMore);
+    }
+
+    static String encode(Comment comment) {
+        LocalDateTime time = comment.getCommentTime();
+        long micros = time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+        String raw = micros + ":" + comment.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static Position decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.US_ASCII);
+            int colon = raw.indexOf(':');
+            long micros = Long.parseLong(raw.substring(0, colon));
+            long id = Long.parseLong(raw.substring(colon + 1));
+            LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                    (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+            return new Position(time, id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    record Position(LocalDateTime time, long id) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.pdfmanagement.service;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A document produced from stored PDFs (a page extract, a split archive or a merge), ready to be written.
+ * <p>
+ * The request has already been validated when an instance exists; {@link #writeTo(OutputStream)} produces
+ * the bytes, from the derived-document cache when possible, directly into the given stream.
+ * </p>
+ */
+@Getter
+public class DerivedDocument {
+
+    /** Writes a document's bytes to a stream without closing it. */
+    @FunctionalInterface
+    public interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final String filename;
+    private final String contentType;
+    private final Body body;
+
+    public DerivedDocument(String filename, String contentType, Body body) {
+        this.filename = filename;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        body.writeTo(out);
+    }
+}
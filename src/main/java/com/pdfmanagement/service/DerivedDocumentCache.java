@@ -0,0 +1,201 @@
+package com.pdfmanagement.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Disk cache for derived PDFs, keyed by what they were derived from.
+ * <p>
+ * Keys are built from the source checksums and the canonical page selection, so a cached document
+ * stays valid for as long as its sources do and is never served for a changed file. A miss writes the
+ * generated bytes to the caller and to a staging file at the same time; the staging file is committed
+ * with an atomic rename only if generation completed. Hits refresh the file's modification time, and
+ * when the directory grows past {@code pdf.derived.cache-max-bytes} the least recently used documents
+ * are deleted. Cached documents are written through {@link StoredFileCodec}, so they are encrypted at rest
+ * like the files they were derived from.
+ * </p>
+ *
+ * <p>
+ * Configured with {@code pdf.derived.cache-dir} (default {@code <file.upload-dir>/derived}) and
+ * {@code pdf.derived.cache-max-bytes} (default 1 GiB; 0 disables caching).
+ * </p>
+ */
+@Component
+public class DerivedDocumentCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DerivedDocumentCache.class);
+
+    private static final String SUFFIX = ".pdf";
+
+    @Value("${pdf.derived.cache-dir:${file.upload-dir}/derived}")
+    private String cacheDir;
+
+    @Value("${pdf.derived.cache-max-bytes:1073741824}")
+    private long maxBytes;
+
+    private Path directory;
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final StoredFileCodec storedFileCodec;
+
+    public DerivedDocumentCache(StoredFileCodec storedFileCodec) {
+        this.storedFileCodec = storedFileCodec;
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        directory = Paths.get(cacheDir).toAbsolutePath().normalize();
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                if (file.getFileName().toString().endsWith(".part")) {
+                    Files.deleteIfExists(file); // left behind by a crash mid-generation
+                } else {
+                    totalBytes.addAndGet(Files.size(file));
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a cache key from its parts, e.g. the operation name, source checksums and page selections.
+     * Returns {@code null}, meaning "do not cache", if any part is missing.
+     */
+    public static String key(String... parts) {
+        var digest = FileStorageService.newSha256();
+        for (String part : parts) {
+            if (part == null) {
+                return null;
+            }
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Writes the document for {@code key} to {@code out}, from the cache if present, otherwise by running
+     * {@code generator} and keeping a copy. A {@code null} key bypasses the cache.
+     */
+    public void write(String key, OutputStream out, DerivedDocument.Body generator) throws IOException {
+        if (key == null || maxBytes <= 0) {
+            generator.writeTo(out);
+            return;
+        }
+        Path cached = directory.resolve(key + SUFFIX);
+        try {
+            Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+            try (InputStream in = storedFileCodec.newInputStream(cached)) {
+                in.transferTo(out);
+            }
+            return;
+        } catch (NoSuchFileException miss) {
+            // Not cached yet, or evicted; generate below.
+        }
+
+        Path staging = Files.createTempFile(directory, key, ".part");
+        boolean committed = false;
+        try {
+            try (OutputStream file = new BufferedOutputStream(storedFileCodec.newOutputStream(staging))) {
+                generator.writeTo(new TeeOutputStream(out, file));
+            }
+            long size = Files.size(staging);
+            Files.move(staging, cached, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            if (totalBytes.addAndGet(size) > maxBytes) {
+                evict();
+            }
+        } finally {
+            if (!committed) {
+                Files.deleteIfExists(staging);
+            }
+        }
+    }
+
+    /**
+     * Deletes least recently used documents until the cache is back under 90% of its limit, and
+     * re-synchronizes the size counter with the directory.
+     */
+    private synchronized void evict() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).toList();
+        }
+        record Entry(Path path, long size, long lastUsed) {
+        }
+        long total = 0;
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                Entry entry = new Entry(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+                entries.add(entry);
+                total += entry.size();
+            } catch (NoSuchFileException gone) {
+                // Deleted concurrently.
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::lastUsed));
+        long target = maxBytes / 10 * 9;
+        int evicted = 0;
+        for (Entry entry : entries) {
+            if (total <= target) {
+                break;
+            }
+            Files.deleteIfExists(entry.path());
+            total -= entry.size();
+            evicted++;
+        }
+        totalBytes.set(total);
+        logger.info("Evicted {} derived documents; cache now holds {} bytes", evicted, total);
+    }
+
+    /** Duplicates writes to the response and to the staging file. */
+    private static final class TeeOutputStream extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+    }
+}
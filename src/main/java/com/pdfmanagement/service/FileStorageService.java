@@ -6,14 +6,51 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
 
 /**
  * Service for handling file storage operations, specifically for PDF files.
  * <p>
  * This service provides functionality to store uploaded PDF files to a specified directory.
  * The upload directory is configured via the {@code file.upload-dir} property.
- * Only files with a ".pdf" extension are allowed; attempts to store other file types will result in an exception.
+ * Only files with a ".pdf" extension whose content starts with the {@code %PDF-} header are allowed;
+ * attempts to store other file types will result in an exception.
+ * </p>
+ *
+ * <p>
+ * Uploads are written in a single pass: the stream is copied into a staging file inside the
+ * storage directory while its size and SHA-256 checksum are computed, and the staging file is then
+ * committed to its final name with an atomic rename. A CRC-32 is computed in the same pass for ZIP
+ * exports. The header is checked on the first block, so a non-PDF body is rejected before the rest of
+ * it is read.
+ * </p>
+ *
+ * <p>
+ * Every upload is stored under a unique name derived from the client's filename, so uploading a
+ * file with the same name again never overwrites the bytes behind an existing {@code PDFFile}.
+ * </p>
+ *
+ * <p>
+ * New versions of a document go through {@link #storeAppend}, which compares the upload with the
+ * previous version as it streams in. When the upload starts with the complete previous version, as
+ * a PDF incremental update does, only the appended tail is written, unless the tail would start like
+ * an encrypted or compressed file; then the whole version is stored.
+ * </p>
+ *
+ * <p>
+ * Content is written and read through {@link StoredFileCodec}, so with compression or encryption at rest enabled
+ * every file is compressed and encrypted as it streams in; sizes and checksums always describe the plain content.
+ * Content that starts with the magic number of one of those formats is refused, since stored as is it would be
+ * read back as that format.
  * </p>
  *
  * <p>
@@ -21,6 +58,7 @@ import java.nio.file.*;
  * <pre>
  * {@code
  * String storedPath = fileStorageService.storeFile(multipartFile);
+ * StoredFile stored = fileStorageService.storeStream("report.pdf", request.getInputStream());
  * }
  * </pre>
  * </p>
@@ -31,22 +69,380 @@ import java.nio.file.*;
 @Service
 public class FileStorageService {
 
+    private static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    // The PDF specification tolerates a few bytes of junk before the header; readers look at the first 1 KiB.
+    private static final int HEADER_SEARCH_LIMIT = 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     @Value("${file.upload-dir}")
     private String uploadDir;
 
+    private final StoredFileCodec storedFileCodec;
+
+    public FileStorageService(StoredFileCodec storedFileCodec) {
+        this.storedFileCodec = storedFileCodec;
+    }
+
+    /** Re-readable source of a stored document's complete content. */
+    @FunctionalInterface
+    public interface ContentSource {
+        InputStream open() throws IOException;
+    }
+
     public String storeFile(MultipartFile file) throws IOException {
-        String filename = StringUtils.cleanPath(file.getOriginalFilename());
+        return storeStream(file.getOriginalFilename(), file.getInputStream()).getPath();
+    }
+
+    /**
+     * Streams a PDF into the storage directory in a single pass.
+     *
+     * @param originalFilename the client-supplied filename, used as the stored file name
+     * @param in               the upload body; it is consumed and closed by this method
+     * @return the committed file's path, size and checksum
+     * @throws IOException if the name or content is not a PDF, or the write fails
+     */
+    public StoredFile storeStream(String originalFilename, InputStream in) throws IOException {
+        String filename = checkFilename(originalFilename, in);
+
+        Path storagePath = getStoragePath();
+        Files.createDirectories(storagePath);
+
+        Path targetLocation = uniqueTarget(storagePath, filename);
+        Path staging = Files.createTempFile(storagePath, ".upload-", ".part");
+        boolean committed = false;
+        try {
+            MessageDigest digest = newSha256();
+            CRC32 crc = new CRC32();
+            long size = 0;
+
+            try (InputStream input = in; OutputStream out = storedFileCodec.newOutputStream(staging)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+
+                int first = readBlock(input, buffer);
+                if (!hasPdfHeader(buffer, first)) {
+                    throw new IOException("File content is not a valid PDF.");
+                }
+
+                int read = first;
+                while (read > 0) {
+                    digest.update(buffer, 0, read);
+                    crc.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    size += read;
+                    read = input.read(buffer);
+                }
+            }
+
+            Files.move(staging, targetLocation, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+
+            return new StoredFile(targetLocation.toString(), size, HexFormat.of().formatHex(digest.digest()),
+                    crc.getValue());
+        } finally {
+            if (!committed) {
+                Files.deleteIfExists(staging);
+            }
+        }
+    }
+
+    /**
+     * Streams a new version of a document into the storage directory, keeping only the appended tail
+     * when the upload begins with the whole previous version.
+     * <p>
+     * The upload is compared with {@code previous} block by block while it is read. As long as it
+     * matches, nothing is written; once it runs past the end of the previous version, the remaining
+     * bytes are written as the tail. If it diverges, or ends early, the matched prefix is copied from
+     * the previous version and the rest is stored as a complete file. Either way the upload is read
+     * exactly once.
+     * </p>
+     *
+     * @param originalFilename the client-supplied filename
+     * @param in               the upload body; it is consumed and closed by this method
+     * @param previousLength   length of the previous version's complete content
+     * @param previous         the previous version's complete content
+     * @return the stored file; {@link StoredFile#getTailOffset()} is set when only a tail was stored
+     * @throws IOException if the name or content is not a PDF, or the write fails
+     */
+    public StoredFile storeAppend(String originalFilename, InputStream in, long previousLength,
+                                  ContentSource previous) throws IOException {
+        if (previousLength <= 0) {
+            return storeStream(originalFilename, in);
+        }
+        String filename = checkFilename(originalFilename, in);
+
+        Path storagePath = getStoragePath();
+        Files.createDirectories(storagePath);
+
+        Path targetLocation = uniqueTarget(storagePath, filename);
+        Path staging = Files.createTempFile(storagePath, ".upload-", ".part");
+        boolean committed = false;
+        try {
+            MessageDigest digest = newSha256();
+            CRC32 crc = new CRC32();
+            long size = 0;
+            boolean tail = true;
+
+            try (InputStream input = in; InputStream base = previous.open();
+                 OutputStream out = storedFileCodec.newOutputStream(staging)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                byte[] expected = new byte[BUFFER_SIZE];
+
+                int read = readBlock(input, buffer);
+                if (!hasPdfHeader(buffer, read)) {
+                    throw new IOException("File content is not a valid PDF.");
+                }
+
+                // The first bytes of a tail are held back until it is known not to start like an at-rest format.
+                byte[] head = new byte[StoredFileCodec.MAGIC_LENGTH];
+                int headLength = 0;
+
+                while (read > 0) {
+                    digest.update(buffer, 0, read);
+                    crc.update(buffer, 0, read);
+                    int from = 0;
+                    if (tail && size < previousLength) {
+                        int overlap = (int) Math.min(read, previousLength - size);
+                        int available = base.readNBytes(expected, 0, overlap);
+                        int mismatch = Arrays.mismatch(buffer, 0, overlap, expected, 0, available);
+                        if (mismatch < 0) {
+                            from = overlap;
+                        } else {
+                            // Nothing has been written yet: the output so far is exactly the matched prefix.
+                            tail = false;
+                            copyPrefix(previous, size + mismatch, out);
+                            from = mismatch;
+                        }
+                    }
+                    if (tail && headLength < head.length) {
+                        int n = Math.min(read - from, head.length - headLength);
+                        System.arraycopy(buffer, from, head, headLength, n);
+                        headLength += n;
+                        from += n;
+                        if (headLength == head.length) {
+                            if (StoredFileCodec.hasFormatMagic(head, headLength)) {
+                                tail = false;
+                                copyPrefix(previous, previousLength, out);
+                            }
+                            out.write(head, 0, headLength);
+                        }
+                    }
+                    out.write(buffer, from, read - from);
+                    size += read;
+                    read = input.read(buffer);
+                }
+
+                if (tail && size < previousLength) {
+                    tail = false;
+                    copyPrefix(previous, size, out);
+                } else if (tail && headLength < head.length) {
+                    out.write(head, 0, headLength); // too short to be taken for a format
+                }
+            }
+
+            Files.move(staging, targetLocation, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+
+            return new StoredFile(targetLocation.toString(), size, HexFormat.of().formatHex(digest.digest()),
+                    crc.getValue(), tail ? previousLength : null);
+        } finally {
+            if (!committed) {
+                Files.deleteIfExists(staging);
+            }
+        }
+    }
+
+    /**
+     * Stores an existing file as a hard link instead of a copy, for bulk imports from a directory on the
+     * same file system. Where a link cannot be made, for instance across file systems, or when new files are
+     * encrypted or compressed, the file is copied with {@link #storeStream}.
+     *
+     * @param originalFilename the name to store the file under
+     * @param source           the file to import; never modified
+     * @throws IOException if the name or content is not a PDF, or neither linking nor copying works
+     */
+    public StoredFile storeLink(String originalFilename, Path source) throws IOException {
+        String filename = checkFilename(originalFilename, InputStream.nullInputStream());
+
+        Path storagePath = getStoragePath();
+        Files.createDirectories(storagePath);
+
+        if (storedFileCodec.transformsNewFiles()) {
+            return storeStream(originalFilename, Files.newInputStream(source));
+        }
+        Path targetLocation = uniqueTarget(storagePath, filename);
+        try {
+            Files.createLink(targetLocation, source);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            return storeStream(originalFilename, Files.newInputStream(source));
+        }
+        boolean kept = false;
+        try {
+            StoredFile stored = digestPdf(targetLocation);
+            kept = true;
+            return stored;
+        } finally {
+            if (!kept) {
+                Files.deleteIfExists(targetLocation);
+            }
+        }
+    }
+
+    /**
+     * Checks and digests a PDF that already lies inside the storage directory, so a bulk import can record
+     * it where it is. The file is left as it is; if it is in plaintext while new files are encrypted,
+     * {@link StorageEncryptionMigrator} encrypts it later.
+     *
+     * @throws IOException if the content is not a PDF or cannot be read
+     */
+    public StoredFile adopt(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        if (!absolute.startsWith(getStoragePath())) {
+            throw new IllegalArgumentException(file + " is not inside the storage directory");
+        }
+        return digestPdf(absolute);
+    }
+
+    /** Like {@link #inspect(Path)}, but rejects content without a PDF header. */
+    private StoredFile digestPdf(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = storedFileCodec.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read = readBlock(in, buffer);
+            if (!hasPdfHeader(buffer, read)) {
+                throw new IOException("File content is not a valid PDF.");
+            }
+            while (read > 0) {
+                digest.update(buffer, 0, read);
+                crc.update(buffer, 0, read);
+                size += read;
+                read = in.read(buffer);
+            }
+        }
+        return new StoredFile(file.toString(), size, HexFormat.of().formatHex(digest.digest()), crc.getValue());
+    }
+
+    /**
+     * Reads an already stored file once to compute its size and checksums, for files written before
+     * uploads recorded them.
+     */
+    public StoredFile inspect(Path file) throws IOException {
+        return inspect(file.toString(), storedFileCodec.newInputStream(file));
+    }
+
+    /**
+     * Reads a document's content once to compute its size and checksum; used for versions stored as
+     * tails, whose content spans several files.
+     *
+     * @param path    path to report in the result
+     * @param content the complete content; it is consumed and closed by this method
+     */
+    public StoredFile inspect(String path, InputStream content) throws IOException {
+        MessageDigest digest = newSha256();
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = content) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+                crc.update(buffer, 0, read);
+                size += read;
+            }
+        }
+        return new StoredFile(path, size, HexFormat.of().formatHex(digest.digest()), crc.getValue());
+    }
+
+    public Path getStoragePath() {
+        return Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    private static String checkFilename(String originalFilename, InputStream in) throws IOException {
+        String filename = StringUtils.cleanPath(originalFilename == null ? "" : originalFilename);
 
         if (!filename.toLowerCase().endsWith(".pdf")) {
+            in.close();
             throw new IOException("Only PDF files are allowed.");
         }
+        if (filename.contains("..") || filename.contains("/")) {
+            in.close();
+            throw new IOException("Invalid path sequence in filename: " + filename);
+        }
+        return filename;
+    }
 
-        Path storagePath = Paths.get(uploadDir).toAbsolutePath().normalize();
-        Files.createDirectories(storagePath);
+    /**
+     * Storage name for an upload: the client's name with a random suffix, so two uploads with the
+     * same name never share, and overwrite, one file.
+     */
+    private static Path uniqueTarget(Path storagePath, String filename) {
+        String stem = filename.substring(0, filename.length() - ".pdf".length());
+        String suffix = Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+        return storagePath.resolve(stem + "-" + suffix + ".pdf");
+    }
 
-        Path targetLocation = storagePath.resolve(filename);
-        Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+    /** Writes the first {@code length} bytes of a stored document to {@code out}. */
+    private static void copyPrefix(ContentSource source, long length, OutputStream out) throws IOException {
+        try (InputStream in = source.open()) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (n < 0) {
+                    throw new IOException("Previous version ended after " + (length - remaining) + " of "
+                            + length + " bytes");
+                }
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    /**
+     * Fills {@code buffer} from the stream until it is full or the stream ends, so the header check
+     * always sees a whole first block rather than whatever the first socket read happened to return.
+     */
+    private static int readBlock(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int n = in.read(buffer, total, buffer.length - total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
 
-        return targetLocation.toString();
+    /**
+     * Whether a first block of content has the PDF header within the first 1 KiB, and does not start with the
+     * magic number of an at-rest format, which it would be read back as.
+     */
+    static boolean hasPdfHeader(byte[] block, int length) {
+        if (StoredFileCodec.hasFormatMagic(block, length)) {
+            return false;
+        }
+        int limit = Math.min(length, HEADER_SEARCH_LIMIT) - PDF_MAGIC.length;
+        outer:
+        for (int i = 0; i <= limit; i++) {
+            for (int j = 0; j < PDF_MAGIC.length; j++) {
+                if (block[i + j] != PDF_MAGIC[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 }
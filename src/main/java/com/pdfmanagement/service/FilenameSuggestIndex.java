@@ -0,0 +1,352 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * In-memory typeahead index over filenames, backing {@code GET /api/pdf/suggest}.
+ * <p>
+ * The index is a {@link SuggestSegment} over all files plus one per owner, for suggestions limited to a user's
+ * own files, and a short list of files recorded since the segments were built. Uploads and new versions recorded
+ * on this instance are added to that list at once, so they are suggested on the next keystroke; files recorded by
+ * other instances or by a bulk import are picked up every {@code pdf.suggest.poll-interval-ms}. Once the list
+ * reaches {@code pdf.suggest.merge-threshold} files, the segments are rebuilt with them on a background thread
+ * (only the owners that have new files get a new segment of their own). Everything, including popularity, is
+ * reloaded from the database every {@code pdf.suggest.reload-interval-ms}.
+ * </p>
+ *
+ * <p>
+ * Suggestions are ranked by upload time or by popularity (the file's revision, which every comment bumps).
+ * Fuzzy suggestions, for a last query token of at least {@code pdf.suggest.fuzzy-min-length} characters, fill up
+ * the remaining places with files within one edit of the query; they do not cover the newest, unmerged files.
+ * Until the first load completes, suggestions come from the database.
+ * </p>
+ */
+@Service
+public class FilenameSuggestIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilenameSuggestIndex.class);
+
+    /** One suggested file. */
+    public record Suggestion(long id, String filename, String uploadedBy, LocalDateTime uploadTime) {
+    }
+
+    // A file recorded since the segments were built, with its tokens so it can be matched without re-tokenizing.
+    private record Pending(SuggestSegment.Doc doc, String[] tokens) {
+    }
+
+    private record State(boolean ready, SuggestSegment all, Map<String, SuggestSegment> byOwner,
+                         List<Pending> pending) {
+    }
+
+    private final PDFRepository pdfRepository;
+    private final TransactionTemplate readOnly;
+    private final ExecutorService builder;
+    private final AtomicBoolean merging = new AtomicBoolean();
+
+    private final Object lock = new Object();
+    private volatile State state = new State(false, SuggestSegment.EMPTY, Map.of(), List.of());
+    // Highest id read from the database, and the ids at or just below it that are already indexed.
+    private long watermark;
+    private final Set<Long> recentIds = new HashSet<>();
+
+    @Value("${pdf.suggest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${pdf.suggest.max-results:20}")
+    private int maxResults;
+
+    @Value("${pdf.suggest.merge-threshold:2000}")
+    private int mergeThreshold;
+
+    @Value("${pdf.suggest.fuzzy-min-length:4}")
+    private int fuzzyMinLength;
+
+    // Ids are assigned at insert but become visible at commit, so polls look back this many ids.
+    @Value("${pdf.suggest.poll-overlap-ids:1000}")
+    private long pollOverlapIds;
+
+    public FilenameSuggestIndex(PDFRepository pdfRepository, PlatformTransactionManager transactionManager) {
+        this.pdfRepository = pdfRepository;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.builder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "filename-suggest");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Suggests files whose filename has, for every word of the query, a word starting with it.
+     *
+     * @param owner        only this user's files, or null for everyone's
+     * @param query        the text typed so far
+     * @param byPopularity rank by popularity instead of upload time
+     * @param fuzzy        fill up with files within one edit of the last word
+     * @param limit        the number of suggestions wanted, at most {@code pdf.suggest.max-results}
+     * @return the suggestions, best first
+     */
+    public List<Suggestion> suggest(String owner, String query, boolean byPopularity, boolean fuzzy, int limit) {
+        int wanted = Math.max(1, Math.min(limit, maxResults));
+        String[] tokens = SuggestSegment.tokenize(query);
+        if (tokens.length == 0) {
+            return List.of();
+        }
+        State current = state;
+        if (!current.ready()) {
+            return fromDatabase(owner, query.trim(), byPopularity, wanted);
+        }
+        SuggestSegment.Ranking ranking = byPopularity ? SuggestSegment.Ranking.POPULAR : SuggestSegment.Ranking.RECENT;
+        SuggestSegment segment = owner == null ? current.all() : current.byOwner().get(owner);
+        if (segment == null) {
+            segment = SuggestSegment.EMPTY;
+        }
+
+        List<SuggestSegment.Doc> found = new ArrayList<>(segment.find(tokens, ranking, wanted));
+        for (Pending pending : current.pending()) {
+            if ((owner == null || owner.equals(pending.doc().owner())) && SuggestSegment.matches(pending.tokens(), tokens)) {
+                found.add(pending.doc());
+            }
+        }
+        found.sort(ranking.order());
+        Map<Long, SuggestSegment.Doc> results = new LinkedHashMap<>();
+        for (SuggestSegment.Doc doc : found) {
+            if (results.size() == wanted) {
+                break;
+            }
+            results.putIfAbsent(doc.id(), doc);
+        }
+        if (fuzzy && results.size() < wanted && tokens[tokens.length - 1].length() >= fuzzyMinLength) {
+            for (SuggestSegment.Doc doc : segment.findFuzzy(tokens, ranking, wanted)) {
+                if (results.size() == wanted) {
+                    break;
+                }
+                results.putIfAbsent(doc.id(), doc);
+            }
+        }
+        return results.values().stream().map(FilenameSuggestIndex::toSuggestion).toList();
+    }
+
+    /** Makes a file recorded on this instance suggestible right away. */
+    public void add(PDFFile pdfFile) {
+        if (!enabled || pdfFile == null || pdfFile.getId() == null) {
+            return;
+        }
+        synchronized (lock) {
+            recentIds.add(pdfFile.getId());
+            append(List.of(toDoc(pdfFile.getId(), pdfFile.getFilename(), pdfFile.getUploadedBy(),
+                    pdfFile.getUploadTime(), pdfFile.getRevision())));
+        }
+    }
+
+    /** Full load at startup and every {@code pdf.suggest.reload-interval-ms}, on the index's own thread. */
+    @Scheduled(fixedDelayString = "${pdf.suggest.reload-interval-ms:3600000}")
+    public void reload() {
+        if (enabled) {
+            builder.execute(this::load);
+        }
+    }
+
+    /** Picks up files recorded by other instances and imports. */
+    @Scheduled(initialDelayString = "${pdf.suggest.poll-interval-ms:5000}",
+               fixedDelayString = "${pdf.suggest.poll-interval-ms:5000}")
+    public void poll() {
+        if (!enabled || !state.ready()) {
+            return;
+        }
+        long from;
+        synchronized (lock) {
+            from = Math.max(watermark - pollOverlapIds, 0);
+        }
+        try {
+            List<SuggestSegment.Doc> rows = read(from);
+            synchronized (lock) {
+                List<SuggestSegment.Doc> fresh = new ArrayList<>();
+                for (SuggestSegment.Doc doc : rows) {
+                    if (recentIds.add(doc.id())) {
+                        fresh.add(doc);
+                    }
+                    watermark = Math.max(watermark, doc.id());
+                }
+                recentIds.removeIf(id -> id <= watermark - pollOverlapIds);
+                if (!fresh.isEmpty()) {
+                    append(fresh);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not poll for new files to suggest: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    private void load() {
+        try {
+            long start = System.currentTimeMillis();
+            List<SuggestSegment.Doc> docs = read(0);
+            SuggestSegment all = SuggestSegment.build(docs, maxResults);
+            Map<String, List<SuggestSegment.Doc>> owned = new HashMap<>();
+            for (SuggestSegment.Doc doc : docs) {
+                owned.computeIfAbsent(doc.owner(), owner -> new ArrayList<>()).add(doc);
+            }
+            Map<String, SuggestSegment> byOwner = new HashMap<>();
+            owned.forEach((owner, list) -> byOwner.put(owner, SuggestSegment.build(list, maxResults)));
+
+            long maxId = 0;
+            for (SuggestSegment.Doc doc : docs) {
+                maxId = Math.max(maxId, doc.id());
+            }
+            synchronized (lock) {
+                Set<Long> pendingIds = new HashSet<>();
+                state.pending().forEach(entry -> pendingIds.add(entry.doc().id()));
+                Set<Long> loaded = new HashSet<>();
+                for (SuggestSegment.Doc doc : docs) {
+                    if (pendingIds.contains(doc.id())) {
+                        loaded.add(doc.id());
+                    }
+                    if (doc.id() > maxId - pollOverlapIds) {
+                        recentIds.add(doc.id());
+                    }
+                }
+                // Files recorded after the load read its rows stay pending.
+                List<Pending> pending = state.pending().stream()
+                        .filter(entry -> !loaded.contains(entry.doc().id()))
+                        .toList();
+                watermark = Math.max(watermark, maxId);
+                recentIds.removeIf(id -> id <= watermark - pollOverlapIds);
+                state = new State(true, all, byOwner, pending);
+            }
+            logger.info("Loaded {} filenames of {} owners for suggestions in {} ms", docs.size(), byOwner.size(),
+                    System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.warn("Could not load filenames for suggestions: {}", e.getMessage());
+        }
+    }
+
+    /** Rebuilds the segments with the pending files, for all files and the owners that have some. */
+    private void merge() {
+        try {
+            State snapshot = state;
+            Map<Long, SuggestSegment.Doc> merged = new HashMap<>();
+            Map<String, List<SuggestSegment.Doc>> pendingByOwner = new HashMap<>();
+            for (Pending entry : snapshot.pending()) {
+                merged.put(entry.doc().id(), entry.doc());
+                pendingByOwner.computeIfAbsent(entry.doc().owner(), owner -> new ArrayList<>()).add(entry.doc());
+            }
+            SuggestSegment all = SuggestSegment.build(withPending(snapshot.all(), merged), maxResults);
+            Map<String, SuggestSegment> byOwner = new HashMap<>(snapshot.byOwner());
+            pendingByOwner.forEach((owner, docs) -> {
+                SuggestSegment previous = snapshot.byOwner().getOrDefault(owner, SuggestSegment.EMPTY);
+                Map<Long, SuggestSegment.Doc> ownerDocs = new HashMap<>();
+                docs.forEach(doc -> ownerDocs.put(doc.id(), doc));
+                byOwner.put(owner, SuggestSegment.build(withPending(previous, ownerDocs), maxResults));
+            });
+
+            synchronized (lock) {
+                State current = state;
+                if (current.all() != snapshot.all()) {
+                    return; // a full load replaced the segments meanwhile; its pending list is what counts now
+                }
+                List<Pending> remaining = current.pending().stream()
+                        .filter(entry -> !merged.containsKey(entry.doc().id()))
+                        .toList();
+                state = new State(true, all, byOwner, remaining);
+            }
+            logger.debug("Merged {} new filenames into the suggestion index", merged.size());
+        } catch (RuntimeException e) {
+            logger.warn("Could not merge new filenames into the suggestion index: {}", e.getMessage());
+        } finally {
+            merging.set(false);
+            if (state.pending().size() >= mergeThreshold && merging.compareAndSet(false, true)) {
+                builder.execute(this::merge);
+            }
+        }
+    }
+
+    // Call with the lock held.
+    private void append(List<SuggestSegment.Doc> docs) {
+        State current = state;
+        List<Pending> pending = new ArrayList<>(current.pending().size() + docs.size());
+        pending.addAll(current.pending());
+        for (SuggestSegment.Doc doc : docs) {
+            pending.add(new Pending(doc, SuggestSegment.tokenize(doc.filename())));
+        }
+        state = new State(current.ready(), current.all(), current.byOwner(), List.copyOf(pending));
+        if (current.ready() && pending.size() >= mergeThreshold && merging.compareAndSet(false, true)) {
+            builder.execute(this::merge);
+        }
+    }
+
+    private List<SuggestSegment.Doc> read(long afterId) {
+        return readOnly.execute(status -> {
+            try (Stream<PDFRepository.SuggestRow> rows = pdfRepository.streamSuggestRows(afterId)) {
+                return rows.map(row -> toDoc(row.getId(), row.getFilename(), row.getUploadedBy(),
+                        row.getUploadTime(), row.getRevision())).toList();
+            }
+        });
+    }
+
+    private List<Suggestion> fromDatabase(String owner, String query, boolean byPopularity, int limit) {
+        PageRequest page = PageRequest.of(0, limit, byPopularity
+                ? Sort.by(Sort.Direction.DESC, "revision", "uploadTime", "id")
+                : Sort.by(Sort.Direction.DESC, "uploadTime", "id"));
+        List<PDFFile> files = owner == null
+                ? pdfRepository.findByFilenameContainingIgnoreCase(query, page)
+                : pdfRepository.findByUploadedByAndFilenameContainingIgnoreCase(owner, query, page);
+        return files.stream()
+                .map(file -> new Suggestion(file.getId(), file.getFilename(), file.getUploadedBy(), file.getUploadTime()))
+                .toList();
+    }
+
+    private static List<SuggestSegment.Doc> withPending(SuggestSegment segment, Map<Long, SuggestSegment.Doc> pending) {
+        List<SuggestSegment.Doc> docs = new ArrayList<>(segment.size() + pending.size());
+        for (SuggestSegment.Doc doc : segment.docs()) {
+            if (!pending.containsKey(doc.id())) {
+                docs.add(doc);
+            }
+        }
+        docs.addAll(pending.values());
+        return docs;
+    }
+
+    private static SuggestSegment.Doc toDoc(long id, String filename, String owner, LocalDateTime uploadTime,
+                                            long revision) {
+        long uploadedAt = uploadTime == null ? 0 : uploadTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        return new SuggestSegment.Doc(id, filename == null ? "" : filename, owner, uploadedAt, revision);
+    }
+
+    private static Suggestion toSuggestion(SuggestSegment.Doc doc) {
+        LocalDateTime uploadTime = doc.uploadedAt() == 0 ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(doc.uploadedAt()), ZoneOffset.UTC);
+        return new Suggestion(doc.id(), doc.filename(), doc.owner(), uploadTime);
+    }
+}
@@ -0,0 +1,47 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Post-upload job that fingerprints a PDF's text for near-duplicate detection; see {@link SimilarDocumentService}.
+ * <p>
+ * Only a file that cannot be opened fails the job. A file whose text cannot be extracted is recorded with an
+ * empty fingerprint, so it is not retried.
+ * </p>
+ */
+@Component
+public class FingerprintPdfJobHandler implements JobHandler<PdfJobPayload> {
+
+    public static final String TYPE = "pdf.fingerprint";
+
+    private final PDFRepository pdfRepository;
+    private final SimilarDocumentService similarDocumentService;
+
+    public FingerprintPdfJobHandler(PDFRepository pdfRepository, SimilarDocumentService similarDocumentService) {
+        this.pdfRepository = pdfRepository;
+        this.similarDocumentService = similarDocumentService;
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public Class<PdfJobPayload> payloadType() {
+        return PdfJobPayload.class;
+    }
+
+    @Override
+    public void handle(PdfJobPayload payload) throws IOException {
+        PDFFile pdfFile = pdfRepository.findById(payload.pdfId()).orElse(null);
+        if (pdfFile == null) {
+            return; // deleted since
+        }
+        similarDocumentService.fingerprint(pdfFile);
+    }
+}
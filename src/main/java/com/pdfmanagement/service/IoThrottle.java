@@ -0,0 +1,42 @@
+package com.pdfmanagement.service;
+
+/**
+ * Paces a background job's reads and writes to a byte rate, so maintenance work over the whole store leaves
+ * disk bandwidth for requests. Not thread-safe; each job run uses its own.
+ */
+final class IoThrottle {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long bytesPerSecond;
+    private final long start = System.nanoTime();
+    private long bytes;
+
+    /** @param bytesPerSecond the rate to keep to; zero or less for no limit */
+    IoThrottle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Accounts for {@code n} bytes of I/O, sleeping as long as the job is ahead of its rate.
+     *
+     * @return false if the thread was interrupted while waiting, so the caller should stop
+     */
+    boolean acquire(long n) {
+        if (bytesPerSecond <= 0) {
+            return true;
+        }
+        bytes += n;
+        long due = start + (long) ((double) bytes / bytesPerSecond * NANOS_PER_SECOND);
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package com.pdfmanagement.service;
+
+/**
+ * Processes one type of {@link com.pdfmanagement.model.BackgroundJob}.
+ * <p>
+ * Implementations are Spring beans; {@link JobWorker} discovers them and routes each claimed job to
+ * the handler whose {@link #type()} matches, after deserializing the JSON payload into
+ * {@link #payloadType()}. Throwing from {@link #handle(Object)} schedules a retry with backoff until
+ * the job runs out of attempts and is dead-lettered, so handlers must be safe to run more than once.
+ * </p>
+ *
+ * @param <P> the payload type
+ */
+public interface JobHandler<P> {
+
+    String type();
+
+    Class<P> payloadType();
+
+    void handle(P payload) throws Exception;
+}
@@ -0,0 +1,228 @@
+package com.pdfmanagement.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdfmanagement.model.BackgroundJob;
+import com.pdfmanagement.repository.BackgroundJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Service for enqueueing, claiming and completing {@link BackgroundJob}s.
+ * <p>
+ * {@link #enqueue} joins the caller's transaction, so a job written alongside a {@code PDFFile}
+ * insert commits or rolls back with it. Failed jobs are retried with exponential backoff
+ * ({@code jobs.backoff.initial-ms} doubling up to {@code jobs.backoff.max-ms}, with jitter) and are
+ * marked {@link BackgroundJob.Status#DEAD} once they reach {@code jobs.max-attempts}.
+ * </p>
+ *
+ * <p>
+ * A claimed job stays with its worker only while the worker keeps {@linkplain #heartbeat heartbeating}; after
+ * {@code jobs.stale-after-ms} without one it is {@linkplain #requeueStale re-queued}, or dead-lettered if that was
+ * its last attempt. Completing a job is conditional on the worker still owning it, so a run that outlived its claim
+ * cannot overwrite the state of the attempt that replaced it.
+ * </p>
+ */
+@Service
+public class JobQueueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQueueService.class);
+
+    private static final int MAX_ERROR_LENGTH = 4000;
+
+    private final BackgroundJobRepository jobRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${jobs.max-attempts:5}")
+    private int defaultMaxAttempts;
+
+    @Value("${jobs.backoff.initial-ms:5000}")
+    private long initialBackoffMs;
+
+    @Value("${jobs.backoff.max-ms:3600000}")
+    private long maxBackoffMs;
+
+    public JobQueueService(BackgroundJobRepository jobRepository, ObjectMapper objectMapper) {
+        this.jobRepository = jobRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Enqueues a job, or returns the existing one if a job with the same idempotency key exists.
+     *
+     * @param type           the handler type
+     * @param payload        the payload, serialized to JSON
+     * @param idempotencyKey optional key that makes repeated enqueues of the same work a no-op
+     * @param pdfId          the document the job is about, if any
+     * @param ownerEmail     the user allowed to see the job's status
+     * @return the persisted job
+     */
+    @Transactional
+    public BackgroundJob enqueue(String type, Object payload, String idempotencyKey, Long pdfId, String ownerEmail) {
+        if (idempotencyKey != null) {
+            var existing = jobRepository.findByIdempotencyKey(idempotencyKey);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
+        BackgroundJob job = new BackgroundJob();
+        job.setType(type);
+        job.setPayload(toJson(payload));
+        job.setStatus(BackgroundJob.Status.PENDING);
+        job.setMaxAttempts(defaultMaxAttempts);
+        job.setRunAt(LocalDateTime.now());
+        job.setIdempotencyKey(idempotencyKey);
+        job.setPdfId(pdfId);
+        job.setOwnerEmail(ownerEmail);
+        return jobRepository.save(job);
+    }
+
+    /**
+     * Claims up to {@code limit} due jobs for {@code workerId}, marking them running.
+     */
+    @Transactional
+    public List<BackgroundJob> claim(String workerId, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<BackgroundJob> jobs = jobRepository.lockNextPending(now, limit);
+        for (BackgroundJob job : jobs) {
+            job.setStatus(BackgroundJob.Status.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLockedAt(now);
+            job.setLockedBy(workerId);
+        }
+        return jobRepository.saveAll(jobs);
+    }
+
+    /**
+     * Marks a job done, provided {@code workerId} still owns it.
+     *
+     * @return {@code false} if the job was re-queued or claimed by another worker while it ran
+     */
+    @Transactional
+    public boolean markSucceeded(Long jobId, String workerId) {
+        return findOwned(jobId, workerId).map(job -> {
+            job.setStatus(BackgroundJob.Status.SUCCEEDED);
+            job.setLockedAt(null);
+            job.setLockedBy(null);
+            job.setLastError(null);
+            return true;
+        }).orElse(false);
+    }
+
+    /**
+     * Records a failed attempt, scheduling a retry or dead-lettering the job, provided {@code workerId} still owns it.
+     *
+     * @param permanent {@code true} when retrying cannot help (e.g. no handler for the type)
+     * @return {@code false} if the job was re-queued or claimed by another worker while it ran
+     */
+    @Transactional
+    public boolean markFailed(Long jobId, String workerId, String error, boolean permanent) {
+        return findOwned(jobId, workerId).map(job -> {
+            job.setLockedAt(null);
+            job.setLockedBy(null);
+            job.setLastError(truncate(error));
+            if (permanent || job.getAttempts() >= job.getMaxAttempts()) {
+                job.setStatus(BackgroundJob.Status.DEAD);
+            } else {
+                job.setStatus(BackgroundJob.Status.PENDING);
+                job.setRunAt(LocalDateTime.now().plus(Duration.ofMillis(backoffMillis(job.getAttempts()))));
+            }
+            return true;
+        }).orElse(false);
+    }
+
+    /**
+     * Refreshes {@code lockedAt} of the jobs {@code workerId} is running, so they are not taken for stale.
+     *
+     * @return how many of them the worker still owns
+     */
+    @Transactional
+    public int heartbeat(Collection<Long> jobIds, String workerId) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        return jobRepository.heartbeat(jobIds, workerId, BackgroundJob.Status.RUNNING, LocalDateTime.now());
+    }
+
+    /**
+     * Puts a dead-lettered job back in the queue with a fresh set of attempts.
+     *
+     * @return {@code true} if the job was dead and has been re-queued
+     */
+    @Transactional
+    public boolean retryDead(BackgroundJob job) {
+        if (job.getStatus() != BackgroundJob.Status.DEAD) {
+            return false;
+        }
+        job.setStatus(BackgroundJob.Status.PENDING);
+        job.setAttempts(0);
+        job.setRunAt(LocalDateTime.now());
+        jobRepository.save(job);
+        return true;
+    }
+
+    /**
+     * Returns jobs whose worker stopped heartbeating (e.g. the process crashed mid-job) to the queue.
+     * {@code staleAfterMs} must be several heartbeat intervals, or jobs that are still running are re-queued.
+     * A stale job that has used up its attempts is dead-lettered instead, so a job that keeps taking its worker
+     * down with it is not retried forever.
+     *
+     * @return how many jobs were re-queued
+     */
+    @Transactional
+    public int requeueStale(long staleAfterMs) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minus(Duration.ofMillis(staleAfterMs));
+        int dead = jobRepository.deadLetterStale(BackgroundJob.Status.DEAD, BackgroundJob.Status.RUNNING, cutoff,
+                "Worker stopped responding on the last attempt", now);
+        if (dead > 0) {
+            logger.warn("Dead-lettered {} jobs whose worker stopped responding on their last attempt", dead);
+        }
+        return jobRepository.requeueStale(BackgroundJob.Status.PENDING, BackgroundJob.Status.RUNNING, cutoff, now);
+    }
+
+    public <P> P readPayload(BackgroundJob job, Class<P> payloadType) throws JsonProcessingException {
+        return objectMapper.readValue(job.getPayload(), payloadType);
+    }
+
+    private Optional<BackgroundJob> findOwned(Long jobId, String workerId) {
+        Optional<BackgroundJob> job = jobRepository.findByIdForUpdate(jobId)
+                .filter(j -> j.getStatus() == BackgroundJob.Status.RUNNING && workerId.equals(j.getLockedBy()));
+        if (job.isEmpty()) {
+            logger.warn("Job {} is no longer owned by {}; its result is discarded", jobId, workerId);
+        }
+        return job;
+    }
+
+    long backoffMillis(int attempts) {
+        long delay = initialBackoffMs << Math.min(Math.max(attempts - 1, 0), 30);
+        delay = Math.min(delay, maxBackoffMs);
+        // Up to 20% jitter so jobs that failed together do not retry in lockstep.
+        return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Job payload is not serializable", e);
+        }
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
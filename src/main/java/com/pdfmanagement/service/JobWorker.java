@@ -0,0 +1,153 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.config.ReadWriteRoutingDataSource;
+import com.pdfmanagement.model.BackgroundJob;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the job queue and runs claimed jobs on a bounded worker pool.
+ * <p>
+ * Each poll claims at most as many jobs as there are idle workers, so jobs are never locked by a
+ * process that cannot start them yet. Pool size and poll interval are configured with
+ * {@code jobs.worker.threads} and {@code jobs.poll-interval-ms}; setting the thread count to 0
+ * disables processing on this instance (for example on nodes that should only serve requests).
+ * While a job runs, its claim is renewed every {@code jobs.heartbeat-interval-ms}; jobs left running by a crashed
+ * process stop being renewed and are returned to the queue after {@code jobs.stale-after-ms}. A run whose job was
+ * re-queued anyway (for example after a long GC pause or a lost database connection) has its result discarded.
+ * Jobs usually act on rows committed moments earlier, so their reads are pinned to the primary database
+ * when a read replica is configured.
+ * </p>
+ */
+@Component
+public class JobWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobWorker.class);
+
+    private final JobQueueService jobQueueService;
+    private final Map<String, JobHandler<?>> handlers = new HashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final String workerId;
+    private final int threads;
+    private final ThreadPoolTaskExecutor executor;
+
+    @Value("${jobs.stale-after-ms:900000}")
+    private long staleAfterMs;
+
+    public JobWorker(JobQueueService jobQueueService, List<JobHandler<?>> jobHandlers,
+                     @Value("${jobs.worker.threads:4}") int threads) {
+        this.jobQueueService = jobQueueService;
+        for (JobHandler<?> handler : jobHandlers) {
+            handlers.put(handler.type(), handler);
+        }
+        this.threads = threads;
+        this.workerId = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(threads, 1));
+        executor.setMaxPoolSize(Math.max(threads, 1));
+        executor.setThreadNamePrefix("job-worker-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.poll-interval-ms:1000}")
+    public void poll() {
+        int idle = threads - inFlight.get();
+        if (idle <= 0) {
+            return;
+        }
+        List<BackgroundJob> claimed = jobQueueService.claim(workerId, idle);
+        for (BackgroundJob job : claimed) {
+            inFlight.incrementAndGet();
+            try {
+                running.add(job.getId());
+                executor.execute(() -> {
+                    ReadWriteRoutingDataSource.pinToPrimary();
+                    try {
+                        run(job);
+                    } finally {
+                        ReadWriteRoutingDataSource.clearPin();
+                        running.remove(job.getId());
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (RuntimeException rejected) {
+                running.remove(job.getId());
+                inFlight.decrementAndGet();
+                jobQueueService.markFailed(job.getId(), workerId, "Worker pool rejected job: " + rejected.getMessage(),
+                        false);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.heartbeat-interval-ms:60000}")
+    public void heartbeat() {
+        Set<Long> jobIds = Set.copyOf(running);
+        int owned = jobQueueService.heartbeat(jobIds, workerId);
+        if (owned < jobIds.size()) {
+            logger.warn("{} of {} running jobs were re-queued while still running here", jobIds.size() - owned,
+                    jobIds.size());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.stale-check-interval-ms:60000}")
+    public void requeueStaleJobs() {
+        int requeued = jobQueueService.requeueStale(staleAfterMs);
+        if (requeued > 0) {
+            logger.warn("Re-queued {} jobs whose worker stopped responding", requeued);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void run(BackgroundJob job) {
+        JobHandler<?> handler = handlers.get(job.getType());
+        if (handler == null) {
+            logger.error("No handler registered for job type '{}' (job ID: {})", job.getType(), job.getId());
+            jobQueueService.markFailed(job.getId(), workerId, "No handler for job type " + job.getType(), true);
+            return;
+        }
+        try {
+            invoke(handler, job);
+            jobQueueService.markSucceeded(job.getId(), workerId);
+        } catch (Exception e) {
+            logger.warn("Job {} ({}) failed on attempt {}/{}: {}", job.getId(), job.getType(), job.getAttempts(),
+                    job.getMaxAttempts(), e.getMessage());
+            jobQueueService.markFailed(job.getId(), workerId, e.getClass().getSimpleName() + ": " + e.getMessage(),
+                    false);
+        }
+    }
+
+    private <P> void invoke(JobHandler<P> handler, BackgroundJob job) throws Exception {
+        P payload = jobQueueService.readPayload(job, handler.payloadType());
+        handler.handle(payload);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "worker";
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.pdfmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdfmanagement.controller.dto.CommentResponse;
+import com.pdfmanagement.controller.dto.PDFFileResponse;
+import com.pdfmanagement.model.Comment;
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.CommentRepository;
+import com.pdfmanagement.repository.PDFRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Builds the ZIP export of everything a user owns.
+ * <p>
+ * Each PDF becomes an uncompressed entry {@code pdfs/<id>-<filename>}, in id order, read straight from storage
+ * while the response is written; nothing is staged in a temporary file and memory use does not grow with the
+ * library. Sizes and CRC-32s come from {@code pdffile}, so the archive's length and layout are known before the
+ * first byte is sent. Files stored before CRC-32s were recorded are read once to compute it, and the result is
+ * saved so later exports skip that pass.
+ * </p>
+ *
+ * <p>
+ * With comments requested, a {@code manifest.json} entry follows the PDFs. It lists each entry with the file's
+ * metadata and its comments, and is the one part built in memory, since its CRC-32 must be known in advance.
+ * </p>
+ *
+ * <p>
+ * The same library always produces the same bytes, so an interrupted download can be resumed with a
+ * {@code Range} request validated by {@link LibraryExport#etag()}.
+ * </p>
+ */
+@Service
+public class LibraryExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LibraryExportService.class);
+
+    static final String MANIFEST = "manifest.json";
+
+    private static final int MAX_NAME_LENGTH = 200;
+
+    /** A prepared export; its bytes can be written in whole or in part any number of times. */
+    public static final class LibraryExport {
+
+        private final StoredZip zip;
+        private final String etag;
+
+        LibraryExport(StoredZip zip) {
+            this.zip = zip;
+            this.etag = "\"library-" + zip.fingerprint() + "\"";
+        }
+
+        public long length() {
+            return zip.length();
+        }
+
+        /** Strong ETag; equal tags mean byte-identical archives, so a range of one can complete the other. */
+        public String etag() {
+            return etag;
+        }
+
+        /** Writes bytes {@code [from, to)} of the archive. */
+        public void writeTo(OutputStream out, long from, long to) throws IOException {
+            zip.write(out, from, to);
+        }
+    }
+
+    private final PDFRepository pdfRepository;
+    private final CommentRepository commentRepository;
+    private final PdfContentService pdfContentService;
+    private final FileStorageService fileStorageService;
+    private final PdfFileService pdfFileService;
+    private final ObjectMapper objectMapper;
+
+    public LibraryExportService(PDFRepository pdfRepository, CommentRepository commentRepository,
+                                PdfContentService pdfContentService, FileStorageService fileStorageService,
+                                PdfFileService pdfFileService, ObjectMapper objectMapper) {
+        this.pdfRepository = pdfRepository;
+        this.commentRepository = commentRepository;
+        this.pdfContentService = pdfContentService;
+        this.fileStorageService = fileStorageService;
+        this.pdfFileService = pdfFileService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Lays out the export of a user's library. Files whose content is missing from storage are left out and
+     * logged, so one lost file does not make the rest of the library unexportable.
+     *
+     * @param email           the owner
+     * @param includeComments whether to add {@code manifest.json} with each file's comments
+     */
+    public LibraryExport prepare(String email, boolean includeComments) throws IOException {
+        List<PDFFile> files = new ArrayList<>(pdfRepository.findByUploadedBy(email));
+        files.sort(Comparator.comparing(PDFFile::getId));
+
+        List<StoredZip.Entry> entries = new ArrayList<>(files.size() + 1);
+        List<Map<String, Object>> documents = new ArrayList<>();
+        List<Long> missing = new ArrayList<>();
+        for (PDFFile pdfFile : files) {
+            StoredZip.Entry entry = entry(pdfFile);
+            if (entry == null) {
+                missing.add(pdfFile.getId());
+                continue;
+            }
+            entries.add(entry);
+            Map<String, Object> document = new LinkedHashMap<>();
+            document.put("entry", entry.name());
+            document.put("file", new PDFFileResponse(pdfFile));
+            documents.add(document);
+        }
+
+        if (includeComments) {
+            entries.add(manifest(email, documents, missing));
+        }
+        return new LibraryExport(new StoredZip(entries));
+    }
+
+    private StoredZip.Entry entry(PDFFile pdfFile) throws IOException {
+        for (Path segment : pdfContentService.segments(pdfFile)) {
+            if (!Files.isReadable(segment)) {
+                logger.warn("Leaving PDF {} out of the export of {}: {} is missing",
+                        pdfFile.getId(), pdfFile.getUploadedBy(), segment);
+                return null;
+            }
+        }
+        Long size = pdfFile.getSizeBytes();
+        Long crc32 = pdfFile.getCrc32();
+        if (size == null || crc32 == null) {
+            StoredFile inspected = fileStorageService.inspect(pdfFile.getFilepath(),
+                    pdfContentService.openStream(pdfFile));
+            if (size != null && size != inspected.getSizeBytes()) {
+                logger.warn("PDF {} is {} bytes in storage but {} recorded; exporting what is stored",
+                        pdfFile.getId(), inspected.getSizeBytes(), size);
+            } else {
+                pdfFileService.recordCrc32(pdfFile.getId(), inspected.getCrc32());
+            }
+            size = inspected.getSizeBytes();
+            crc32 = inspected.getCrc32();
+        }
+        return new StoredZip.Entry(entryName(pdfFile), size, crc32, pdfFile.getUploadTime(),
+                offset -> open(pdfFile, offset));
+    }
+
+    private InputStream open(PDFFile pdfFile, long offset) throws IOException {
+        SeekableByteChannel channel = pdfContentService.openChannel(pdfFile);
+        try {
+            channel.position(offset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return Channels.newInputStream(channel);
+    }
+
+    private StoredZip.Entry manifest(String email, List<Map<String, Object>> documents, List<Long> missing)
+            throws IOException {
+        Map<Long, List<CommentResponse>> comments = commentRepository.findByOwner(email).stream()
+                .collect(Collectors.groupingBy(comment -> comment.getPdfFile().getId(),
+                        Collectors.mapping(CommentResponse::new, Collectors.toList())));
+        // Latest change in the library rather than the current time, so the entry is the same on every export.
+        LocalDateTime modified = null;
+        for (Map<String, Object> document : documents) {
+            PDFFileResponse file = (PDFFileResponse) document.get("file");
+            List<CommentResponse> fileComments = comments.getOrDefault(file.getId(), List.of());
+            document.put("comments", fileComments);
+            modified = latest(modified, file.getUploadTime());
+            for (CommentResponse comment : fileComments) {
+                modified = latest(modified, comment.getCommentTime());
+            }
+        }
+
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("owner", email);
+        manifest.put("documents", documents);
+        if (!missing.isEmpty()) {
+            manifest.put("missing", missing);
+        }
+        byte[] json = objectMapper.writeValueAsBytes(manifest);
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        return new StoredZip.Entry(MANIFEST, json.length, crc.getValue(), modified,
+                offset -> {
+                    ByteArrayInputStream in = new ByteArrayInputStream(json);
+                    in.skip(offset);
+                    return in;
+                });
+    }
+
+    private static LocalDateTime latest(LocalDateTime current, LocalDateTime candidate) {
+        return candidate != null && (current == null || candidate.isAfter(current)) ? candidate : current;
+    }
+
+    /** {@code pdfs/<id>-<filename>}, with path separators and control characters replaced. */
+    static String entryName(PDFFile pdfFile) {
+        String filename = pdfFile.getFilename() == null ? "" : pdfFile.getFilename();
+        StringBuilder name = new StringBuilder(filename.length());
+        filename.codePoints().forEach(c -> name.appendCodePoint(
+                c == '/' || c == '\\' || c == ':' || Character.isISOControl(c) ? '_' : c));
+        String cleaned = name.toString().strip();
+        if (cleaned.isEmpty() || cleaned.chars().allMatch(c -> c == '.')) {
+            cleaned = "document.pdf";
+        } else if (cleaned.length() > MAX_NAME_LENGTH) {
+            cleaned = cleaned.substring(0, cleaned.offsetByCodePoints(0,
+                    cleaned.codePointCount(0, MAX_NAME_LENGTH - 1)));
+        }
+        return "pdfs/" + pdfFile.getId() + "-" + cleaned;
+    }
+}
@@ -0,0 +1,157 @@
+package com.pdfmanagement.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * MinHash signatures of a document's text, and the LSH band keys that find similar signatures without
+ * comparing against every document.
+ * <p>
+ * Text is normalized to lower-case letters and digits separated by single spaces, then cut into overlapping
+ * {@value #SHINGLE}-character shingles. For each of {@value #HASHES} hash functions the signature keeps the
+ * smallest hash of any shingle; the fraction of positions where two signatures agree estimates the Jaccard
+ * similarity of the two shingle sets. Character shingles make a changed timestamp or page footer cost only the
+ * few shingles around it.
+ * </p>
+ *
+ * <p>
+ * The signature is split into {@value #BANDS} bands of {@value #ROWS} rows, each hashed to a bucket key.
+ * Documents sharing any bucket are candidates: a pair with similarity {@code s} shares at least one of them with
+ * probability {@code 1 - (1 - s^8)^16}, about 98% at 0.8 and 5% at 0.4. The hash functions are fixed, so
+ * signatures and bucket keys persisted by earlier runs stay comparable; changing any constant here requires
+ * recomputing every stored fingerprint.
+ * </p>
+ */
+final class MinHash {
+
+    static final int HASHES = 128;
+    static final int BANDS = 16;
+    static final int ROWS = HASHES / BANDS;
+    static final int SHINGLE = 9;
+
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        long state = 0x5DEECE66DL;
+        for (int i = 0; i < HASHES; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            SEEDS[i] = mix(state);
+        }
+    }
+
+    private MinHash() {
+    }
+
+    /** A signature and the number of distinct shingles it was computed from. */
+    record Signature(long[] values, int shingles) {
+    }
+
+    /**
+     * Computes the signature of {@code text}.
+     *
+     * @return the signature, or null if the text is too short to hold a single shingle
+     */
+    static Signature of(String text) {
+        String normalized = normalize(text);
+        if (normalized.length() < SHINGLE) {
+            return null;
+        }
+        long[] shingles = new long[normalized.length() - SHINGLE + 1];
+        for (int i = 0; i < shingles.length; i++) {
+            long h = 0xcbf29ce484222325L; // FNV-1a
+            for (int j = i; j < i + SHINGLE; j++) {
+                h = (h ^ normalized.charAt(j)) * 0x100000001b3L;
+            }
+            shingles[i] = h;
+        }
+        // Repeated shingles (headers, boilerplate) cannot change a minimum; hash each distinct one once.
+        Arrays.sort(shingles);
+        int distinct = 0;
+        for (int i = 0; i < shingles.length; i++) {
+            if (i == 0 || shingles[i] != shingles[i - 1]) {
+                shingles[distinct++] = shingles[i];
+            }
+        }
+        long[] values = new long[HASHES];
+        Arrays.fill(values, Long.MAX_VALUE);
+        for (int i = 0; i < distinct; i++) {
+            long shingle = shingles[i];
+            for (int k = 0; k < HASHES; k++) {
+                long h = mix(shingle ^ SEEDS[k]);
+                if (h < values[k]) {
+                    values[k] = h;
+                }
+            }
+        }
+        return new Signature(values, distinct);
+    }
+
+    /** Bucket keys of the signature's bands, in band order. */
+    static long[] bands(long[] signature) {
+        long[] buckets = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long h = band;
+            for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+                h = mix(h * 31 + signature[row]);
+            }
+            buckets[band] = h;
+        }
+        return buckets;
+    }
+
+    /** Estimated Jaccard similarity of the shingle sets behind two signatures. */
+    static double similarity(long[] a, long[] b) {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / HASHES;
+    }
+
+    static byte[] encode(long[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(HASHES * Long.BYTES);
+        buffer.asLongBuffer().put(signature);
+        return buffer.array();
+    }
+
+    static long[] decode(byte[] bytes) {
+        if (bytes == null || bytes.length != HASHES * Long.BYTES) {
+            return null;
+        }
+        long[] signature = new long[HASHES];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(signature);
+        return signature;
+    }
+
+    static String normalize(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                out.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) == ' ') {
+            out.setLength(length - 1);
+        }
+        return out.toString();
+    }
+
+    // MurmurHash3's 64-bit finalizer.
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93e2fe53b87L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
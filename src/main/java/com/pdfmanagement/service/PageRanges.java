@@ -0,0 +1,81 @@
+package com.pdfmanagement.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses and formats page selections such as {@code "3-5,7,10-"}.
+ * <p>
+ * Pages are numbered from 1 in the request syntax and from 0 in the returned index lists. A range
+ * may be open-ended ({@code "10-"} means page 10 to the last page); a blank selection means every
+ * page. Pages are returned in the order given, so {@code "5,1"} puts page 5 first.
+ * </p>
+ */
+final class PageRanges {
+
+    private PageRanges() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the selection is malformed or refers to pages the document does not have
+     */
+    static List<Integer> parse(String selection, int pageCount) {
+        List<Integer> pages = new ArrayList<>();
+        if (selection == null || selection.isBlank()) {
+            for (int i = 0; i < pageCount; i++) {
+                pages.add(i);
+            }
+            return pages;
+        }
+        for (String part : selection.split(",")) {
+            String range = part.trim();
+            int dash = range.indexOf('-');
+            int from;
+            int to;
+            try {
+                if (dash < 0) {
+                    from = Integer.parseInt(range);
+                    to = from;
+                } else {
+                    from = Integer.parseInt(range.substring(0, dash).trim());
+                    String end = range.substring(dash + 1).trim();
+                    to = end.isEmpty() ? pageCount : Integer.parseInt(end);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page range '" + range + "'");
+            }
+            if (from < 1 || to > pageCount || from > to) {
+                throw new IllegalArgumentException("Page range '" + range + "' is outside 1-" + pageCount);
+            }
+            for (int page = from; page <= to; page++) {
+                pages.add(page - 1);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Formats zero-based page indexes in canonical 1-based form, collapsing consecutive runs
+     * ({@code [2, 3, 4, 6]} becomes {@code "3-5,7"}). Equal selections always format the same way.
+     */
+    static String format(List<Integer> pages) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < pages.size()) {
+            int start = pages.get(i);
+            int end = start;
+            while (i + 1 < pages.size() && pages.get(i + 1) == end + 1) {
+                end = pages.get(++i);
+            }
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(start + 1);
+            if (end > start) {
+                sb.append('-').append(end + 1);
+            }
+            i++;
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,182 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the complete content of stored documents, whether stored whole or as appended tails.
+ * <p>
+ * A version with a {@code tailOffset} stores only the bytes its upload added after the previous
+ * version; its content is the previous version's content followed by that tail. This service resolves
+ * the chain back to the last complete file (ancestors come from the second-level cache) and exposes the
+ * result as a stream, a seekable channel or a {@link Resource}, so no caller needs to know how a version
+ * is stored and nothing is ever materialized.
+ * </p>
+ *
+ * <p>
+ * Each file is opened through {@link StoredFileCodec}, so files encrypted at rest are decrypted as they are read,
+ * chunk by chunk. Streams and resources skip by seeking, so a range download only reads, and decrypts, the part of
+ * the content it covers.
+ * </p>
+ *
+ * <p>
+ * Serving a download touches the file system only to read it: whether the files are intact comes from the
+ * {@code storageStatus} the verification job and {@link StorageScrubber} keep on each row, and the length from
+ * the recorded {@code sizeBytes}.
+ * </p>
+ */
+@Service
+public class PdfContentService {
+
+    private final PDFRepository pdfRepository;
+    private final StoredFileCodec storedFileCodec;
+
+    public PdfContentService(PDFRepository pdfRepository, StoredFileCodec storedFileCodec) {
+        this.pdfRepository = pdfRepository;
+        this.storedFileCodec = storedFileCodec;
+    }
+
+    /**
+     * Files that make up a document's content, oldest first: a complete file followed by zero or more tails.
+     *
+     * @throws IOException if a version in the chain no longer exists
+     */
+    public List<Path> segments(PDFFile pdfFile) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        for (PDFFile version : chain(pdfFile)) {
+            segments.add(Paths.get(version.getFilepath()));
+        }
+        return segments;
+    }
+
+    /**
+     * Whether none of the files behind a document's content has been found missing, damaged or quarantined.
+     * Answered from the rows alone; files not verified yet count as intact.
+     *
+     * @throws IOException if a version in the chain no longer exists
+     */
+    public boolean isIntact(PDFFile pdfFile) throws IOException {
+        for (PDFFile version : chain(pdfFile)) {
+            String status = version.getStorageStatus();
+            if (status != null && !PDFFile.STORAGE_OK.equals(status)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The versions whose files make up a document's content, oldest first.
+    private List<PDFFile> chain(PDFFile pdfFile) throws IOException {
+        List<PDFFile> chain = new ArrayList<>();
+        PDFFile current = pdfFile;
+        while (true) {
+            chain.add(current);
+            if (current.getTailOffset() == null) {
+                break;
+            }
+            Long previousId = current.getPreviousVersionId();
+            current = pdfRepository.findById(previousId)
+                    .orElseThrow(() -> new IOException("Version " + previousId + " of PDF " + pdfFile.getId()
+                            + " is missing"));
+        }
+        Collections.reverse(chain);
+        return chain;
+    }
+
+    public InputStream openStream(PDFFile pdfFile) throws IOException {
+        return new SeekableInputStream(openChannel(segments(pdfFile)));
+    }
+
+    public SeekableByteChannel openChannel(PDFFile pdfFile) throws IOException {
+        return openChannel(segments(pdfFile));
+    }
+
+    SeekableByteChannel openChannel(List<Path> segments) throws IOException {
+        if (segments.size() == 1) {
+            return storedFileCodec.openChannel(segments.get(0));
+        }
+        List<SeekableByteChannel> channels = new ArrayList<>(segments.size());
+        try {
+            for (Path segment : segments) {
+                channels.add(storedFileCodec.openChannel(segment));
+            }
+            return new SegmentedChannel(channels);
+        } catch (IOException | RuntimeException e) {
+            for (SeekableByteChannel channel : channels) {
+                channel.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The document's content as a {@link Resource} for download responses, with a known length so Spring can
+     * answer {@code Range} requests; the stream it opens seeks to the start of a range instead of reading up to it.
+     */
+    public Resource resource(PDFFile pdfFile) throws IOException {
+        return new ContentResource(pdfFile, segments(pdfFile));
+    }
+
+    /** Number of tails that must be read after the last complete file to rebuild this version. */
+    public int tailDepth(PDFFile pdfFile) throws IOException {
+        return segments(pdfFile).size() - 1;
+    }
+
+    private final class ContentResource extends AbstractResource {
+        private final PDFFile pdfFile;
+        private final List<Path> segments;
+
+        private ContentResource(PDFFile pdfFile, List<Path> segments) {
+            this.pdfFile = pdfFile;
+            this.segments = segments;
+        }
+
+        @Override
+        public boolean exists() {
+            return true; // checked against the rows with isIntact; a file that has vanished since fails to open
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            if (pdfFile.getSizeBytes() != null) {
+                return pdfFile.getSizeBytes();
+            }
+            try (SeekableByteChannel channel = openChannel(segments)) {
+                return channel.size();
+            }
+        }
+
+        @Override
+        public String getFilename() {
+            return pdfFile.getFilename();
+        }
+
+        @Override
+        public String getDescription() {
+            return "PDF " + pdfFile.getId() + " version " + pdfFile.getVersionNumber() + " " + segments;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new SeekableInputStream(openChannel(segments));
+        }
+
+        @Override
+        public ReadableByteChannel readableChannel() throws IOException {
+            return openChannel(segments);
+        }
+    }
+}
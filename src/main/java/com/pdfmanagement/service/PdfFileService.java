@@ -0,0 +1,203 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service that records stored uploads as {@link PDFFile} rows.
+ * <p>
+ * Metadata is extracted from the stored file first, outside any transaction. The {@link PDFFile}
+ * insert and the follow-up jobs for it are then written in one transaction, so a crash can never
+ * leave a committed upload without its post-processing queued.
+ * </p>
+ *
+ * <p>
+ * New versions of an existing document are recorded the same way by {@link #recordVersion}, which
+ * numbers them under a lock on the document's first version so concurrent uploads never share a number.
+ * </p>
+ *
+ * <p>
+ * Uploads are charged to the user's storage quota: {@link #upload} reserves the announced length before
+ * anything is stored, and the reservation is committed in the same transaction as the insert, so the usage
+ * counters always match the committed rows. See {@link StorageQuotaService}.
+ * </p>
+ *
+ * <p>
+ * Committed uploads and versions are handed to {@link FilenameSuggestIndex}, so they are suggested right away.
+ * </p>
+ *
+ * <p>
+ * It also owns revision bumps, which lock the row and update it through the entity so concurrent
+ * comments each get their own revision and only that file's cache entry changes.
+ * </p>
+ */
+@Service
+public class PdfFileService {
+
+    private final PDFRepository pdfRepository;
+    private final PdfMetadataExtractor pdfMetadataExtractor;
+    private final JobQueueService jobQueueService;
+    private final TransactionTemplate transactionTemplate;
+    private final PdfContentService pdfContentService;
+    private final FileStorageService fileStorageService;
+    private final StorageQuotaService storageQuotaService;
+    private final FilenameSuggestIndex filenameSuggestIndex;
+
+    public PdfFileService(PDFRepository pdfRepository, PdfMetadataExtractor pdfMetadataExtractor,
+                          JobQueueService jobQueueService, TransactionTemplate transactionTemplate,
+                          PdfContentService pdfContentService, FileStorageService fileStorageService,
+                          StorageQuotaService storageQuotaService, FilenameSuggestIndex filenameSuggestIndex) {
+        this.pdfRepository = pdfRepository;
+        this.pdfMetadataExtractor = pdfMetadataExtractor;
+        this.jobQueueService = jobQueueService;
+        this.transactionTemplate = transactionTemplate;
+        this.pdfContentService = pdfContentService;
+        this.fileStorageService = fileStorageService;
+        this.storageQuotaService = storageQuotaService;
+        this.filenameSuggestIndex = filenameSuggestIndex;
+    }
+
+    /**
+     * Stores and records an upload within the user's storage quota.
+     *
+     * @param filename       the client-supplied filename
+     * @param in             the upload body; it is consumed and closed by this method
+     * @param declaredLength the announced body length, or a negative value if unknown
+     * @param email          the uploading user
+     * @return the new file
+     * @throws QuotaExceededException if the upload does not fit the user's quota; nothing is kept
+     * @throws IOException            if the name or content is not a PDF, or the write fails
+     */
+    public PDFFile upload(String filename, InputStream in, long declaredLength, String email) throws IOException {
+        StorageQuotaService.Reservation reservation;
+        try {
+            reservation = storageQuotaService.reserve(email, declaredLength);
+        } catch (QuotaExceededException e) {
+            in.close();
+            throw e;
+        }
+        StoredFile stored = null;
+        try {
+            stored = fileStorageService.storeStream(filename, reservation.limit(in));
+            return recordUpload(filename, stored, email, reservation);
+        } catch (IOException | RuntimeException e) {
+            storageQuotaService.release(reservation);
+            if (stored != null) {
+                Files.deleteIfExists(Paths.get(stored.getPath()));
+            }
+            throw e;
+        }
+    }
+
+    public PDFFile recordUpload(String filename, StoredFile stored, String email,
+                                StorageQuotaService.Reservation reservation) throws IOException {
+        PdfMetadata metadata = pdfMetadataExtractor.extract(Paths.get(stored.getPath()));
+        PDFFile pdfFile = newPdfFile(filename, stored, email, metadata);
+
+        PDFFile recorded = transactionTemplate.execute(status -> {
+            PDFFile saved = pdfRepository.save(pdfFile);
+            storageQuotaService.commit(reservation, stored.getSizeBytes());
+            enqueuePostUploadJobs(saved);
+            return saved;
+        });
+        filenameSuggestIndex.add(recorded);
+        return recorded;
+    }
+
+    /**
+     * Records a stored upload as the next version of the document {@code previous} belongs to.
+     *
+     * @param previous the version the upload was compared with; a stored tail continues its content
+     * @param stored      the result of {@link FileStorageService#storeAppend} or {@link FileStorageService#storeStream}
+     * @param reservation the quota reserved for the upload; only the bytes actually stored are charged
+     * @return the new version
+     */
+    public PDFFile recordVersion(PDFFile previous, String filename, StoredFile stored, String email,
+                                 StorageQuotaService.Reservation reservation) throws IOException {
+        PdfMetadata metadata;
+        if (stored.getTailOffset() == null) {
+            metadata = pdfMetadataExtractor.extract(Paths.get(stored.getPath()));
+        } else {
+            List<Path> segments = new ArrayList<>(pdfContentService.segments(previous));
+            segments.add(Paths.get(stored.getPath()));
+            try (SeekableByteChannel channel = pdfContentService.openChannel(segments)) {
+                metadata = pdfMetadataExtractor.extract(channel, stored.getPath());
+            }
+        }
+
+        PDFFile pdfFile = newPdfFile(filename, stored, email, metadata);
+        Long rootId = previous.getVersionRootId() != null ? previous.getVersionRootId() : previous.getId();
+        pdfFile.setVersionRootId(rootId);
+        pdfFile.setPreviousVersionId(previous.getId());
+        pdfFile.setTailOffset(stored.getTailOffset());
+
+        PDFFile recorded = transactionTemplate.execute(status -> {
+            // The root row lock serializes numbering; the unique index backs it up.
+            pdfRepository.findByIdForUpdate(rootId);
+            pdfFile.setVersionNumber(pdfRepository.findLatestVersionNumber(rootId) + 1);
+            PDFFile saved = pdfRepository.save(pdfFile);
+            storageQuotaService.commit(reservation, stored.getTailOffset() == null
+                    ? stored.getSizeBytes() : stored.getSizeBytes() - stored.getTailOffset());
+            enqueuePostUploadJobs(saved);
+            return saved;
+        });
+        filenameSuggestIndex.add(recorded);
+        return recorded;
+    }
+
+    private static PDFFile newPdfFile(String filename, StoredFile stored, String email, PdfMetadata metadata) {
+        PDFFile pdfFile = new PDFFile();
+        pdfFile.setFilename(filename);
+        pdfFile.setFilepath(stored.getPath());
+        pdfFile.setUploadedBy(email);
+        pdfFile.setUploadTime(LocalDateTime.now());
+        pdfFile.setSizeBytes(stored.getSizeBytes());
+        pdfFile.setChecksum(stored.getChecksum());
+        pdfFile.setCrc32(stored.getCrc32());
+        pdfFile.setPageCount(metadata.getPageCount());
+        pdfFile.setTitle(metadata.getTitle());
+        pdfFile.setAuthor(metadata.getAuthor());
+        pdfFile.setPdfVersion(metadata.getPdfVersion());
+        return pdfFile;
+    }
+
+    /**
+     * Increments a document's revision after its comments or metadata changed, invalidating the ETags
+     * clients hold for it.
+     *
+     * @param pdfId the document to bump; a missing document is ignored
+     */
+    public void bumpRevision(Long pdfId) {
+        transactionTemplate.executeWithoutResult(status -> pdfRepository.findByIdForUpdate(pdfId)
+                .ifPresent(pdfFile -> pdfFile.setRevision(pdfFile.getRevision() + 1)));
+    }
+
+    /**
+     * Stores a CRC-32 computed for a file uploaded before uploads recorded one. Only the row's lock and
+     * cache entry are touched; the revision is not bumped, as nothing a client sees has changed.
+     */
+    public void recordCrc32(Long pdfId, long crc32) {
+        transactionTemplate.executeWithoutResult(status -> pdfRepository.findByIdForUpdate(pdfId)
+                .filter(pdfFile -> pdfFile.getCrc32() == null)
+                .ifPresent(pdfFile -> pdfFile.setCrc32(crc32)));
+    }
+
+    private void enqueuePostUploadJobs(PDFFile pdfFile) {
+        jobQueueService.enqueue(VerifyStoredFileJobHandler.TYPE, new PdfJobPayload(pdfFile.getId()),
+                VerifyStoredFileJobHandler.TYPE + ":" + pdfFile.getId(), pdfFile.getId(), pdfFile.getUploadedBy());
+        jobQueueService.enqueue(FingerprintPdfJobHandler.TYPE, new PdfJobPayload(pdfFile.getId()),
+                FingerprintPdfJobHandler.TYPE + ":" + pdfFile.getId(), pdfFile.getId(), pdfFile.getUploadedBy());
+    }
+}
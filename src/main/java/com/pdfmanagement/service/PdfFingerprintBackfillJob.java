@@ -0,0 +1,74 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import com.pdfmanagement.repository.PdfFingerprintRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Background job that queues fingerprinting for PDFs uploaded before near-duplicate detection existed, or
+ * imported in bulk.
+ * <p>
+ * Documents without a fingerprint are queued in id order, {@code pdf.similarity.backfill.batch-size} (default 500)
+ * per run, resuming after the last id seen. Jobs are enqueued with the same idempotency key the upload path uses,
+ * so a document already queued, or dead-lettered because its file is missing, is not queued again. Once a pass
+ * finds nothing left to do the job goes idle until the next restart.
+ * </p>
+ *
+ * <p>
+ * Controlled by {@code pdf.similarity.backfill.enabled} (default {@code true}) and
+ * {@code pdf.similarity.backfill.interval-ms} (default one minute).
+ * </p>
+ */
+@Component
+public class PdfFingerprintBackfillJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfFingerprintBackfillJob.class);
+
+    private final PdfFingerprintRepository fingerprintRepository;
+    private final PDFRepository pdfRepository;
+    private final JobQueueService jobQueueService;
+
+    @Value("${pdf.similarity.backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${pdf.similarity.backfill.batch-size:500}")
+    private int batchSize;
+
+    private long lastProcessedId = 0;
+    private boolean finished = false;
+
+    public PdfFingerprintBackfillJob(PdfFingerprintRepository fingerprintRepository, PDFRepository pdfRepository,
+                                     JobQueueService jobQueueService) {
+        this.fingerprintRepository = fingerprintRepository;
+        this.pdfRepository = pdfRepository;
+        this.jobQueueService = jobQueueService;
+    }
+
+    @Scheduled(initialDelayString = "${pdf.similarity.backfill.interval-ms:60000}",
+               fixedDelayString = "${pdf.similarity.backfill.interval-ms:60000}")
+    public void run() {
+        if (!enabled || finished) {
+            return;
+        }
+        List<Long> ids = fingerprintRepository.findUnfingerprintedIds(lastProcessedId, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            finished = true;
+            logger.info("PDF fingerprint backfill complete");
+            return;
+        }
+        for (PDFFile pdfFile : pdfRepository.findAllById(ids)) {
+            jobQueueService.enqueue(FingerprintPdfJobHandler.TYPE, new PdfJobPayload(pdfFile.getId()),
+                    FingerprintPdfJobHandler.TYPE + ":" + pdfFile.getId(), pdfFile.getId(), pdfFile.getUploadedBy());
+        }
+        lastProcessedId = ids.get(ids.size() - 1);
+        logger.debug("Queued fingerprinting for {} PDFs up to ID: {}", ids.size(), lastProcessedId);
+    }
+}
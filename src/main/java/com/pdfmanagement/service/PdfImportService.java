@@ -0,0 +1,478 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.ImportCheckpoint;
+import com.pdfmanagement.model.StorageUsage;
+import com.pdfmanagement.repository.ImportCheckpointRepository;
+import com.pdfmanagement.repository.PDFRepository;
+import com.pdfmanagement.repository.StorageUsageRepository;
+import com.pdfmanagement.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports a directory tree of existing PDFs for one user.
+ * <p>
+ * Files are found by extension and processed in order of their relative path, in batches. Within a batch, a
+ * pool of workers checks, stores and digests each file in one pass and extracts its metadata; files inside the
+ * storage directory (such as a populated {@code uploads/}) are recorded where they lie instead of being copied,
+ * and with {@link Mode#LINK} other files are hard-linked into it. Each batch is then recorded in one
+ * transaction: ids are taken from the {@code pdffile} identity sequence up front so the rows go in as a single
+ * JDBC batch, the owner's storage counters are updated, and the {@link ImportCheckpoint} moves past the batch.
+ * </p>
+ *
+ * <p>
+ * A rerun resumes after the last committed batch. Files that could not be imported are recorded in
+ * {@code import_failure} with the batch, and a rerun retries them before it continues; a retry that succeeds
+ * removes its row. Files whose content the owner already has (same SHA-256) and files already recorded at their
+ * path are skipped, so overlapping or repeated imports never create duplicates.
+ * The owner's usage row is locked while a batch is recorded, which serializes imports and their duplicate checks
+ * per owner.
+ * </p>
+ *
+ * <p>
+ * Imports are an administrative operation: they are counted in the owner's storage usage but not limited by the
+ * quota, and the files are not queued for the post-upload verification job, since the import has just digested
+ * the bytes it stored. A run killed in the middle of a batch may leave that batch's copies in the storage
+ * directory without rows.
+ * </p>
+ */
+@Service
+public class PdfImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfImportService.class);
+
+    // Lengths of pdffile.filename and pdffile.filepath.
+    private static final int MAX_COLUMN_LENGTH = 255;
+
+    private static final String INSERT_SQL = "insert into pdffile (id, filename, filepath, uploaded_by, upload_time, "
+            + "size_bytes, checksum, crc32, page_count, title, author, pdf_version) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String FAILED_PATHS_SQL =
+            "select path from import_failure where checkpoint_id = ? order by path";
+    private static final String CLEAR_FAILURE_SQL = "delete from import_failure where checkpoint_id = ? and path = ?";
+    private static final String CLEAR_FAILURES_SQL = "delete from import_failure where checkpoint_id = ?";
+    private static final String INSERT_FAILURE_SQL =
+            "insert into import_failure (checkpoint_id, path, error, failed_at) values (?, ?, ?, ?)";
+
+    /** How files outside the storage directory are stored. */
+    public enum Mode {
+        COPY, LINK
+    }
+
+    /**
+     * @param mode      copy or hard-link files from outside the storage directory
+     * @param workers   threads that read and store files in parallel
+     * @param batchSize files recorded per transaction and checkpoint
+     * @param restart   ignore the checkpoint and its recorded failures and walk the whole directory again;
+     *                  already imported files are still skipped by checksum
+     */
+    public record ImportOptions(Mode mode, int workers, int batchSize, boolean restart) {
+    }
+
+    /** Totals of one run. */
+    public record ImportResult(int imported, int skipped, int failed, long bytes) {
+    }
+
+    /** A file checked and stored by a worker, or the reason it could not be. */
+    private record Prepared(String path, StoredFile stored, PdfMetadata metadata, LocalDateTime modified,
+                            boolean inPlace, String error) {
+    }
+
+    private final PDFRepository pdfRepository;
+    private final ImportCheckpointRepository importCheckpointRepository;
+    private final StorageUsageRepository storageUsageRepository;
+    private final UserRepository userRepository;
+    private final FileStorageService fileStorageService;
+    private final PdfMetadataExtractor pdfMetadataExtractor;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${pdf.derived.cache-dir:${file.upload-dir}/derived}")
+    private String derivedCacheDir;
+
+    public PdfImportService(PDFRepository pdfRepository, ImportCheckpointRepository importCheckpointRepository,
+                            StorageUsageRepository storageUsageRepository, UserRepository userRepository,
+                            FileStorageService fileStorageService, PdfMetadataExtractor pdfMetadataExtractor,
+                            JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                            CacheInvalidationBus cacheInvalidationBus) {
+        this.pdfRepository = pdfRepository;
+        this.importCheckpointRepository = importCheckpointRepository;
+        this.storageUsageRepository = storageUsageRepository;
+        this.userRepository = userRepository;
+        this.fileStorageService = fileStorageService;
+        this.pdfMetadataExtractor = pdfMetadataExtractor;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    /**
+     * Imports every PDF under {@code directory} for {@code ownerEmail}, resuming a previous run if there was one.
+     *
+     * @throws IllegalArgumentException if the directory or the user does not exist
+     * @throws IOException              if the directory cannot be walked or a batch cannot be recorded; batches
+     *                                  committed before are kept and a rerun resumes after them
+     */
+    public ImportResult importDirectory(Path directory, String ownerEmail, ImportOptions options) throws IOException {
+        Path root = directory.toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException(directory + " is not a directory");
+        }
+        if (!userRepository.existsByEmail(ownerEmail)) {
+            throw new IllegalArgumentException("No user with email " + ownerEmail);
+        }
+
+        ImportCheckpoint checkpoint = transactionTemplate.execute(status -> {
+            ImportCheckpoint found = importCheckpointRepository
+                    .findBySourceDirAndOwnerEmail(root.toString(), ownerEmail)
+                    .orElseGet(() -> {
+                        ImportCheckpoint created = new ImportCheckpoint();
+                        created.setSourceDir(root.toString());
+                        created.setOwnerEmail(ownerEmail);
+                        created.setStartedAt(LocalDateTime.now());
+                        created.setUpdatedAt(created.getStartedAt());
+                        return importCheckpointRepository.save(created);
+                    });
+            if (options.restart()) {
+                found.setLastPath(null);
+                jdbcTemplate.update(CLEAR_FAILURES_SQL, found.getId());
+            }
+            return found;
+        });
+        String after = checkpoint.getLastPath();
+        // Earlier failures all sort before the checkpoint, so retrying them first keeps the batches in path order.
+        List<String> pending = retryableFailures(root, checkpoint.getId());
+        int retried = pending.size();
+        pending.addAll(listPdfs(root, after));
+        logger.info("Importing {} PDFs from {} for {}{}{}", pending.size(), root, ownerEmail,
+                after != null ? ", resuming after " + after : "",
+                retried > 0 ? ", retrying " + retried + " that failed before" : "");
+
+        int imported = 0;
+        int skipped = 0;
+        int failed = 0;
+        long bytes = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(options.workers(), 1), workerThreads());
+        try {
+            int batchSize = Math.max(options.batchSize(), 1);
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                List<String> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+                ImportResult result = importBatch(root, batch, ownerEmail, options.mode(), checkpoint.getId(),
+                        executor);
+                imported += result.imported();
+                skipped += result.skipped();
+                failed += result.failed();
+                bytes += result.bytes();
+                logger.info("Import of {}: {}/{} files done, {} imported, {} skipped, {} failed", root,
+                        from + batch.size(), pending.size(), imported, skipped, failed);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        transactionTemplate.executeWithoutResult(status -> importCheckpointRepository.findById(checkpoint.getId())
+                .ifPresent(done -> done.setCompletedAt(LocalDateTime.now())));
+        return new ImportResult(imported, skipped, failed, bytes);
+    }
+
+    private ImportResult importBatch(Path root, List<String> batch, String ownerEmail, Mode mode, Long checkpointId,
+                                     ExecutorService executor) throws IOException {
+        Path storage = fileStorageService.getStoragePath();
+        Set<String> recorded = recordedInPlace(root, batch, storage);
+
+        List<Future<Prepared>> futures = new ArrayList<>(batch.size());
+        for (String path : batch) {
+            Path source = root.resolve(path);
+            if (!recorded.contains(path)) {
+                futures.add(executor.submit(() -> prepare(path, source, source.startsWith(storage), mode)));
+            }
+        }
+
+        List<Prepared> ready = new ArrayList<>(futures.size());
+        List<Prepared> failed = new ArrayList<>();
+        try {
+            for (Future<Prepared> future : futures) {
+                Prepared prepared = future.get();
+                if (prepared.error() != null) {
+                    logger.warn("Could not import {}: {}", prepared.path(), prepared.error());
+                    failed.add(prepared);
+                } else {
+                    ready.add(prepared);
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            discard(ready);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Import interrupted");
+            }
+            throw new IOException("Import worker failed", e.getCause());
+        }
+
+        List<Prepared> duplicates;
+        List<Long> inserted = new ArrayList<>();
+        try {
+            duplicates = transactionTemplate.execute(status ->
+                    record(batch, ready, ownerEmail, checkpointId, recorded.size(), failed, inserted));
+        } catch (RuntimeException e) {
+            discard(ready);
+            throw new IOException("Could not record import batch ending at " + batch.get(batch.size() - 1), e);
+        }
+        // The rows went in through JDBC, past Hibernate; tell every instance once they are committed.
+        inserted.forEach(cacheInvalidationBus::pdfChanged);
+        discard(duplicates);
+
+        long bytes = 0;
+        for (Prepared prepared : ready) {
+            bytes += prepared.stored().getSizeBytes();
+        }
+        for (Prepared duplicate : duplicates) {
+            bytes -= duplicate.stored().getSizeBytes();
+        }
+        return new ImportResult(ready.size() - duplicates.size(), recorded.size() + duplicates.size(), failed.size(),
+                bytes);
+    }
+
+    /**
+     * Records a batch: inserts the files the owner does not have yet, charges them to the owner's usage, replaces
+     * the batch's recorded failures with {@code failed} and moves the checkpoint past the batch.
+     *
+     * @param inserted receives the ids of the inserted rows
+     * @return the files skipped as duplicates, whose stored copies the caller removes
+     */
+    private List<Prepared> record(List<String> batch, List<Prepared> ready, String ownerEmail, Long checkpointId,
+                                  int alreadyRecorded, List<Prepared> failed, List<Long> inserted) {
+        storageUsageRepository.ensureExists(ownerEmail);
+        StorageUsage usage = storageUsageRepository.findByIdForUpdate(ownerEmail).orElseThrow();
+
+        Set<String> checksums = new LinkedHashSet<>();
+        ready.forEach(prepared -> checksums.add(prepared.stored().getChecksum()));
+        Set<String> known = new HashSet<>(checksums.isEmpty()
+                ? List.of() : pdfRepository.findChecksumsOwnedBy(ownerEmail, checksums));
+        List<Prepared> fresh = new ArrayList<>(ready.size());
+        List<Prepared> duplicates = new ArrayList<>();
+        for (Prepared prepared : ready) {
+            if (known.add(prepared.stored().getChecksum())) {
+                fresh.add(prepared);
+            } else {
+                duplicates.add(prepared);
+            }
+        }
+
+        long bytes = 0;
+        if (!fresh.isEmpty()) {
+            List<Long> ids = pdfRepository.allocateIds(fresh.size());
+            List<Object[]> rows = new ArrayList<>(fresh.size());
+            for (int i = 0; i < fresh.size(); i++) {
+                Prepared prepared = fresh.get(i);
+                StoredFile stored = prepared.stored();
+                PdfMetadata metadata = prepared.metadata();
+                rows.add(new Object[]{ids.get(i), Paths.get(prepared.path()).getFileName().toString(),
+                        stored.getPath(), ownerEmail, Timestamp.valueOf(prepared.modified()), stored.getSizeBytes(),
+                        stored.getChecksum(), stored.getCrc32(), metadata.getPageCount(), metadata.getTitle(),
+                        metadata.getAuthor(), metadata.getPdfVersion()});
+                bytes += stored.getSizeBytes();
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            inserted.addAll(ids);
+        }
+        usage.setBytesUsed(usage.getBytesUsed() + bytes);
+        usage.setFileCount(usage.getFileCount() + fresh.size());
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(CLEAR_FAILURE_SQL, batch.stream()
+                .map(path -> new Object[]{checkpointId, path}).toList());
+        if (!failed.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_FAILURE_SQL, failed.stream()
+                    .map(prepared -> new Object[]{checkpointId, prepared.path(), prepared.error(),
+                            Timestamp.valueOf(now)}).toList());
+        }
+
+        ImportCheckpoint checkpoint = importCheckpointRepository.findById(checkpointId).orElseThrow();
+        String last = batch.get(batch.size() - 1);
+        // A batch of retried failures lies behind the checkpoint and must not move it back.
+        if (checkpoint.getLastPath() == null || last.compareTo(checkpoint.getLastPath()) > 0) {
+            checkpoint.setLastPath(last);
+        }
+        checkpoint.setFilesImported(checkpoint.getFilesImported() + fresh.size());
+        checkpoint.setFilesSkipped(checkpoint.getFilesSkipped() + alreadyRecorded + duplicates.size());
+        checkpoint.setFilesFailed(checkpoint.getFilesFailed() + failed.size());
+        checkpoint.setBytesImported(checkpoint.getBytesImported() + bytes);
+        checkpoint.setUpdatedAt(now);
+        return duplicates;
+    }
+
+    /**
+     * Returns the paths that failed in earlier runs and are still there to retry, forgetting those that have since
+     * been removed from the directory.
+     */
+    private List<String> retryableFailures(Path root, Long checkpointId) {
+        List<String> retry = new ArrayList<>();
+        List<Object[]> gone = new ArrayList<>();
+        for (String path : jdbcTemplate.queryForList(FAILED_PATHS_SQL, String.class, checkpointId)) {
+            if (Files.isRegularFile(root.resolve(path))) {
+                retry.add(path);
+            } else {
+                gone.add(new Object[]{checkpointId, path});
+            }
+        }
+        if (!gone.isEmpty()) {
+            jdbcTemplate.batchUpdate(CLEAR_FAILURE_SQL, gone);
+        }
+        return retry;
+    }
+
+    /** Runs on a worker: stores or adopts one file and reads its metadata. Never throws. */
+    private Prepared prepare(String path, Path source, boolean inPlace, Mode mode) {
+        StoredFile stored = null;
+        try {
+            String filename = source.getFileName().toString();
+            if (filename.length() > MAX_COLUMN_LENGTH) {
+                return new Prepared(path, null, null, null, inPlace, "file name is too long");
+            }
+            LocalDateTime modified = LocalDateTime.ofInstant(Files.getLastModifiedTime(source).toInstant(),
+                    ZoneId.systemDefault());
+            if (inPlace) {
+                stored = fileStorageService.adopt(source);
+            } else if (mode == Mode.LINK) {
+                stored = fileStorageService.storeLink(filename, source);
+            } else {
+                stored = fileStorageService.storeStream(filename, Files.newInputStream(source));
+            }
+            if (stored.getPath().length() > MAX_COLUMN_LENGTH) {
+                throw new IOException("stored path is longer than " + MAX_COLUMN_LENGTH + " characters");
+            }
+            PdfMetadata metadata = pdfMetadataExtractor.extract(Paths.get(stored.getPath()));
+            return new Prepared(path, stored, metadata, modified, inPlace, null);
+        } catch (IOException | RuntimeException e) {
+            if (stored != null && !inPlace) {
+                deleteQuietly(stored.getPath());
+            }
+            return new Prepared(path, null, null, null, inPlace, e.getMessage());
+        }
+    }
+
+    /**
+     * Relative paths in the batch that lie inside the storage directory and are already some file's
+     * {@code filepath}, either absolute or relative to the working directory as older uploads stored it.
+     */
+    private Set<String> recordedInPlace(Path root, List<String> batch, Path storage) {
+        List<String> candidates = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        for (String path : batch) {
+            Path absolute = root.resolve(path);
+            if (absolute.startsWith(storage)) {
+                String configured = Paths.get(uploadDir).resolve(storage.relativize(absolute)).toString();
+                candidates.add(absolute.toString());
+                candidates.add(configured);
+                paths.add(path);
+                paths.add(path);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> filepaths = new HashSet<>(pdfRepository.findRecordedFilepaths(candidates));
+        Set<String> recorded = new HashSet<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (filepaths.contains(candidates.get(i))) {
+                recorded.add(paths.get(i));
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Relative paths ({@code /}-separated) of the PDFs under {@code root} that sort after {@code after}, in order.
+     * The derived-document cache is never entered.
+     */
+    private List<String> listPdfs(Path root, String after) throws IOException {
+        Path derived = Paths.get(derivedCacheDir).toAbsolutePath().normalize();
+        List<String> found = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return dir.startsWith(derived) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+                    String path = root.relativize(file).toString().replace(File.separatorChar, '/');
+                    if (after == null || path.compareTo(after) > 0) {
+                        found.add(path);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                logger.warn("Skipping {} during import: {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        found.sort(null);
+        return found;
+    }
+
+    /** Removes copies made for files that will not be recorded; files recorded in place are never touched. */
+    private static void discard(List<Prepared> prepared) {
+        for (Prepared file : prepared) {
+            if (!file.inPlace()) {
+                deleteQuietly(file.stored().getPath());
+            }
+        }
+    }
+
+    private static void deleteQuietly(String path) {
+        try {
+            Files.deleteIfExists(Paths.get(path));
+        } catch (IOException e) {
+            logger.warn("Could not remove {} after a failed import: {}", path, e.getMessage());
+        }
+    }
+
+    private static ThreadFactory workerThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "pdf-import-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,9 @@
+package com.pdfmanagement.service;
+
+/**
+ * Job payload for work about a single stored PDF.
+ *
+ * @param pdfId the id of the {@link com.pdfmanagement.model.PDFFile} to process
+ */
+public record PdfJobPayload(Long pdfId) {
+}
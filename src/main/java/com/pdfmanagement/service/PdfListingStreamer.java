@@ -0,0 +1,120 @@
+package com.pdfmanagement.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pdfmanagement.controller.dto.PDFFileResponse;
+import com.pdfmanagement.controller.dto.PdfSearchResult;
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Writes PDF listings straight from a database cursor to the response body.
+ * <p>
+ * Rows are read through the repository's {@code stream...} methods and each one is converted to its
+ * DTO, serialized with a Jackson {@link JsonGenerator} and detached from the persistence context
+ * before the next row is read, so memory use stays flat regardless of how many files match. The rows are not
+ * put into the second-level cache either. Output
+ * is either a single JSON array or newline-delimited JSON (one object per line).
+ * </p>
+ */
+@Service
+public class PdfListingStreamer {
+
+    public enum Format {
+        JSON,
+        NDJSON;
+
+        /** Parses the {@code stream} request parameter; returns null unless it is {@code json} or {@code ndjson}. */
+        public static Format fromParameter(String value) {
+            if ("json".equalsIgnoreCase(value)) {
+                return JSON;
+            }
+            return "ndjson".equalsIgnoreCase(value) ? NDJSON : null;
+        }
+
+        public String contentType() {
+            return this == NDJSON ? "application/x-ndjson" : "application/json";
+        }
+    }
+
+    private static final int FLUSH_EVERY = 200;
+
+    private final PDFRepository pdfRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter objectWriter;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public PdfListingStreamer(PDFRepository pdfRepository, ObjectMapper objectMapper) {
+        this.pdfRepository = pdfRepository;
+        this.objectMapper = objectMapper;
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Streams the user's files, optionally filtered by a case-insensitive filename query.
+     */
+    @Transactional(readOnly = true)
+    public void writeOwnedFiles(String email, String query, Format format, OutputStream out) throws IOException {
+        try (Stream<PDFFile> rows = query == null
+                ? pdfRepository.streamByUploadedByOrderByIdAsc(email)
+                : pdfRepository.streamByUploadedByAndFilenameContainingIgnoreCaseOrderByIdAsc(email, query)) {
+            write(rows, PDFFileResponse::new, format, out);
+        }
+    }
+
+    /**
+     * Streams public search results across all users.
+     */
+    @Transactional(readOnly = true)
+    public void writeSearchResults(String query, Format format, OutputStream out) throws IOException {
+        try (Stream<PDFFile> rows = pdfRepository.streamByFilenameContainingIgnoreCaseOrderByIdAsc(query)) {
+            write(rows, pdf -> new PdfSearchResult(pdf, "/api/pdf/" + pdf.getId()), format, out);
+        }
+    }
+
+    private <T> void write(Stream<PDFFile> rows, Function<PDFFile, T> mapper, Format format, OutputStream out)
+            throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            if (format == Format.JSON) {
+                generator.writeStartArray();
+            }
+
+            Iterator<PDFFile> iterator = rows.iterator();
+            int written = 0;
+            while (iterator.hasNext()) {
+                PDFFile pdfFile = iterator.next();
+                T dto = mapper.apply(pdfFile);
+                entityManager.detach(pdfFile);
+
+                objectWriter.writeValue(generator, dto);
+                if (format == Format.NDJSON) {
+                    generator.writeRaw('\n');
+                }
+                if (++written % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+
+            if (format == Format.JSON) {
+                generator.writeEndArray();
+            }
+            generator.flush();
+        }
+    }
+}
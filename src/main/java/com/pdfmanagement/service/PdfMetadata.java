@@ -0,0 +1,27 @@
+package com.pdfmanagement.service;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Document-level metadata read from a PDF's header, trailer, info dictionary and XMP packet.
+ * <p>
+ * Every field is optional: extraction is best effort and leaves a field {@code null} when the
+ * document does not declare it or the structure holding it cannot be parsed.
+ * </p>
+ *
+ * <ul>
+ *   <li>{@code pdfVersion} - Version from the header, or the catalog's {@code /Version} if newer.</li>
+ *   <li>{@code pageCount} - The {@code /Count} of the root page tree.</li>
+ *   <li>{@code title} - {@code /Title} from the info dictionary, falling back to XMP {@code dc:title}.</li>
+ *   <li>{@code author} - {@code /Author} from the info dictionary, falling back to XMP {@code dc:creator}.</li>
+ * </ul>
+ */
+@Getter
+@Setter
+public class PdfMetadata {
+    private String pdfVersion;
+    private Integer pageCount;
+    private String title;
+    private String author;
+}
@@ -0,0 +1,98 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Background job that fills in size, checksum and document metadata for PDFs uploaded before
+ * extraction existed.
+ * <p>
+ * Rows without a checksum are processed in id order, 100 at a time, resuming after the last id seen
+ * so files that cannot be read (for example, missing from disk) are skipped rather than retried on
+ * every run. Once a pass finds nothing left to do the job goes idle until the next restart.
+ * </p>
+ *
+ * <p>
+ * Controlled by {@code pdf.metadata.backfill.enabled} (default {@code true}) and
+ * {@code pdf.metadata.backfill.interval-ms} (default one minute).
+ * </p>
+ */
+@Component
+public class PdfMetadataBackfillJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfMetadataBackfillJob.class);
+
+    private final PDFRepository pdfRepository;
+    private final FileStorageService fileStorageService;
+    private final PdfMetadataExtractor pdfMetadataExtractor;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    @Value("${pdf.metadata.backfill.enabled:true}")
+    private boolean enabled;
+
+    private long lastProcessedId = 0;
+    private boolean finished = false;
+
+    public PdfMetadataBackfillJob(PDFRepository pdfRepository, FileStorageService fileStorageService,
+                                  PdfMetadataExtractor pdfMetadataExtractor,
+                                  CacheInvalidationBus cacheInvalidationBus) {
+        this.pdfRepository = pdfRepository;
+        this.fileStorageService = fileStorageService;
+        this.pdfMetadataExtractor = pdfMetadataExtractor;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    @Scheduled(initialDelayString = "${pdf.metadata.backfill.interval-ms:60000}",
+               fixedDelayString = "${pdf.metadata.backfill.interval-ms:60000}")
+    public void run() {
+        if (!enabled || finished) {
+            return;
+        }
+        List<PDFFile> batch = pdfRepository.findTop100ByChecksumIsNullAndIdGreaterThanOrderByIdAsc(lastProcessedId);
+        if (batch.isEmpty()) {
+            finished = true;
+            logger.info("PDF metadata backfill complete");
+            return;
+        }
+        for (PDFFile pdfFile : batch) {
+            lastProcessedId = pdfFile.getId();
+            backfill(pdfFile);
+        }
+    }
+
+    private void backfill(PDFFile pdfFile) {
+        Path path = Paths.get(pdfFile.getFilepath());
+        if (!Files.isRegularFile(path)) {
+            logger.warn("Skipping metadata backfill for PDF ID: {}, file missing at {}", pdfFile.getId(), path);
+            return;
+        }
+        try {
+            StoredFile stored = fileStorageService.inspect(path);
+            PdfMetadata metadata = pdfMetadataExtractor.extract(path);
+
+            pdfFile.setSizeBytes(stored.getSizeBytes());
+            pdfFile.setChecksum(stored.getChecksum());
+            pdfFile.setCrc32(stored.getCrc32());
+            pdfFile.setPageCount(metadata.getPageCount());
+            pdfFile.setTitle(metadata.getTitle());
+            pdfFile.setAuthor(metadata.getAuthor());
+            pdfFile.setPdfVersion(metadata.getPdfVersion());
+            pdfFile.setRevision(pdfFile.getRevision() + 1);
+            pdfRepository.save(pdfFile);
+            cacheInvalidationBus.pdfChanged(pdfFile.getId());
+        } catch (IOException e) {
+            logger.warn("Metadata backfill failed for PDF ID: {}: {}", pdfFile.getId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.pdfmanagement.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts {@link PdfMetadata} from a stored PDF without loading the document.
+ * <p>
+ * The extractor reads the header, follows {@code startxref} to the trailer and resolves only the
+ * objects it needs (catalog, page tree root, info dictionary and XMP metadata stream) through
+ * {@link PdfObjectReader}. Malformed or unsupported structures are logged and skipped, so a damaged
+ * file still yields whatever fields could be read.
+ * </p>
+ */
+@Service
+public class PdfMetadataExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfMetadataExtractor.class);
+
+    static final int MAX_TEXT_LENGTH = 512;
+
+    private static final Pattern XMP_TITLE = Pattern.compile(
+            "<dc:title>.*?<rdf:li[^>]*>(.*?)</rdf:li>", Pattern.DOTALL);
+    private static final Pattern XMP_CREATOR = Pattern.compile(
+            "<dc:creator>.*?<rdf:li[^>]*>(.*?)</rdf:li>", Pattern.DOTALL);
+
+    private final StoredFileCodec storedFileCodec;
+
+    public PdfMetadataExtractor(StoredFileCodec storedFileCodec) {
+        this.storedFileCodec = storedFileCodec;
+    }
+
+    /** Extracts metadata from a stored file, decrypting it if it is encrypted at rest. */
+    public PdfMetadata extract(Path file) throws IOException {
+        try (SeekableByteChannel channel = storedFileCodec.openChannel(file)) {
+            return extract(channel, file);
+        }
+    }
+
+    /**
+     * Extracts metadata from content that is not a single file, such as a version stored as tails.
+     *
+     * @param channel the complete document content; not closed by this method
+     * @param file    what to name in log messages
+     */
+    public PdfMetadata extract(SeekableByteChannel channel, Object file) throws IOException {
+        PdfMetadata metadata = new PdfMetadata();
+        PdfObjectReader reader = new PdfObjectReader(channel);
+        metadata.setPdfVersion(reader.readHeaderVersion());
+
+        Map<String, Object> trailer;
+        try {
+            trailer = reader.readTrailer();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read cross-reference data of {}: {}", file, e.getMessage());
+            return metadata;
+        }
+
+        Map<String, Object> catalog = null;
+        try {
+            catalog = reader.resolveDict(trailer.get("Root"));
+            if (catalog != null) {
+                readCatalog(reader, catalog, metadata);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read document catalog of {}: {}", file, e.getMessage());
+        }
+
+        try {
+            Map<String, Object> info = reader.resolveDict(trailer.get("Info"));
+            if (info != null) {
+                metadata.setTitle(decodeText(reader.resolve(info.get("Title"))));
+                metadata.setAuthor(decodeText(reader.resolve(info.get("Author"))));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read info dictionary of {}: {}", file, e.getMessage());
+        }
+
+        if (catalog != null && (metadata.getTitle() == null || metadata.getAuthor() == null)
+                && catalog.get("Metadata") instanceof PdfObjectReader.Ref xmpRef) {
+            try {
+                readXmp(reader.readStream(xmpRef), metadata);
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Could not read XMP metadata of {}: {}", file, e.getMessage());
+            }
+        }
+        return metadata;
+    }
+
+    private static void readCatalog(PdfObjectReader reader, Map<String, Object> catalog, PdfMetadata metadata)
+            throws IOException {
+        if (reader.resolve(catalog.get("Version")) instanceof PdfObjectReader.Name version
+                && isNewer(version.value(), metadata.getPdfVersion())) {
+            metadata.setPdfVersion(version.value());
+        }
+        Map<String, Object> pages = reader.resolveDict(catalog.get("Pages"));
+        if (pages != null && reader.resolve(pages.get("Count")) instanceof Number count) {
+            metadata.setPageCount(count.intValue());
+        }
+    }
+
+    private static void readXmp(byte[] packet, PdfMetadata metadata) {
+        if (packet == null) {
+            return;
+        }
+        String xml = new String(packet, StandardCharsets.UTF_8);
+        if (metadata.getTitle() == null) {
+            metadata.setTitle(firstMatch(XMP_TITLE, xml));
+        }
+        if (metadata.getAuthor() == null) {
+            metadata.setAuthor(firstMatch(XMP_CREATOR, xml));
+        }
+    }
+
+    private static String firstMatch(Pattern pattern, String xml) {
+        Matcher matcher = pattern.matcher(xml);
+        if (!matcher.find()) {
+            return null;
+        }
+        String value = matcher.group(1)
+                .replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&apos;", "'")
+                .replace("&amp;", "&");
+        return clean(value);
+    }
+
+    /**
+     * Decodes a PDF text string: UTF-16BE or UTF-8 when marked with a byte-order mark, otherwise
+     * PDFDocEncoding, which matches ISO-8859-1 for the printable range.
+     */
+    private static String decodeText(Object value) {
+        if (!(value instanceof byte[] bytes)) {
+            return null;
+        }
+        String text;
+        if (bytes.length >= 2 && (bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF) {
+            text = new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_16BE);
+        } else if (bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB
+                && (bytes[2] & 0xFF) == 0xBF) {
+            text = new String(bytes, 3, bytes.length - 3, StandardCharsets.UTF_8);
+        } else {
+            text = new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        return clean(text);
+    }
+
+    private static String clean(String text) {
+        String trimmed = text.replace("\u0000", "").trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        return trimmed.length() > MAX_TEXT_LENGTH ? trimmed.substring(0, MAX_TEXT_LENGTH) : trimmed;
+    }
+
+    private static boolean isNewer(String candidate, String current) {
+        if (current == null) {
+            return true;
+        }
+        try {
+            return Double.parseDouble(candidate) > Double.parseDouble(current);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,812 @@
+package com.pdfmanagement.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Minimal random-access reader for the object structure of a PDF file.
+ * <p>
+ * The reader starts from the {@code startxref} pointer at the end of the file and follows the
+ * cross-reference chain (classic tables, cross-reference streams and hybrid files), reading only
+ * the byte ranges it needs. Objects are resolved on demand, so looking up the trailer, the
+ * document catalog and the info dictionary touches a few kilobytes regardless of document size.
+ * </p>
+ *
+ * <p>
+ * Parsed values use plain Java types: {@code Map<String, Object>} for dictionaries,
+ * {@code List<Object>} for arrays, {@link Name} for names, {@code byte[]} for strings,
+ * {@link Long}/{@link Double} for numbers and {@link Ref} for indirect references.
+ * </p>
+ *
+ * <p>
+ * Stream data can either be decoded into memory ({@link #readStream(Ref)}, for small metadata streams)
+ * or copied through unchanged ({@link #copyRawStream}), which is what {@link PdfPageWriter} uses for
+ * page content and images.
+ * </p>
+ *
+ * <p>
+ * Input is any {@link SeekableByteChannel}: a plain {@code FileChannel}, or a {@link SegmentedChannel}
+ * for a version stored as its base plus appended tails.
+ * </p>
+ */
+class PdfObjectReader {
+
+    static final Object NULL = new Object();
+
+    private static final int TAIL_WINDOW = 2048;
+    private static final int INITIAL_WINDOW = 8 * 1024;
+    private static final int MAX_WINDOW = 4 * 1024 * 1024;
+    private static final int MAX_STREAM_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_XREF_SECTIONS = 64;
+    private static final int MAX_XREF_SUBSECTIONS = 65536;
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    record Name(String value) {
+    }
+
+    record Ref(int number, int generation) {
+    }
+
+    record IndirectObject(Object value, long streamOffset) {
+    }
+
+    private record Keyword(String value) {
+    }
+
+    private record Subsection(int start, int count, long position, int entryLength) {
+    }
+
+    /** One cross-reference section; classic sections are read lazily, stream sections are decoded up front. */
+    private static final class XrefSection {
+        final List<Subsection> subsections = new ArrayList<>();
+        final Map<Integer, long[]> streamEntries = new HashMap<>();
+    }
+
+    private final SeekableByteChannel channel;
+    private final long fileSize;
+    private final List<XrefSection> sections = new ArrayList<>();
+    private final Map<Integer, Object> objectCache = new HashMap<>();
+    private final Map<Integer, byte[]> objectStreamCache = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private Map<String, Object> trailer;
+
+    PdfObjectReader(SeekableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+    }
+
+    /**
+     * Returns the version from the {@code %PDF-x.y} header, or {@code null} if there is none.
+     */
+    String readHeaderVersion() throws IOException {
+        byte[] head = readAt(0, (int) Math.min(1024, fileSize));
+        String text = new String(head, StandardCharsets.ISO_8859_1);
+        int idx = text.indexOf("%PDF-");
+        if (idx < 0) {
+            return null;
+        }
+        int end = idx + 5;
+        while (end < text.length() && (Character.isDigit(text.charAt(end)) || text.charAt(end) == '.')) {
+            end++;
+        }
+        return end > idx + 5 ? text.substring(idx + 5, end) : null;
+    }
+
+    /**
+     * Reads the cross-reference chain and returns the merged trailer dictionary. Newer sections win.
+     */
+    Map<String, Object> readTrailer() throws IOException {
+        if (trailer != null) {
+            return trailer;
+        }
+        long tailStart = Math.max(0, fileSize - TAIL_WINDOW);
+        String tail = new String(readAt(tailStart, (int) (fileSize - tailStart)), StandardCharsets.ISO_8859_1);
+        int idx = tail.lastIndexOf("startxref");
+        if (idx < 0) {
+            throw new IOException("startxref not found");
+        }
+        Lexer lexer = new Lexer(tail.getBytes(StandardCharsets.ISO_8859_1), tailStart, idx + "startxref".length());
+        long offset = ((Number) lexer.next()).longValue();
+
+        Map<String, Object> merged = new LinkedHashMap<>();
+        List<Long> pending = new ArrayList<>();
+        pending.add(offset);
+        while (!pending.isEmpty() && sections.size() < MAX_XREF_SECTIONS) {
+            long sectionOffset = pending.remove(0);
+            Map<String, Object> sectionTrailer = readXrefSection(sectionOffset);
+            sectionTrailer.forEach(merged::putIfAbsent);
+            if (sectionTrailer.get("XRefStm") instanceof Number hybrid) {
+                pending.add(0, hybrid.longValue());
+            }
+            if (sectionTrailer.get("Prev") instanceof Number prev) {
+                pending.add(prev.longValue());
+            }
+        }
+        trailer = merged;
+        return trailer;
+    }
+
+    /**
+     * Resolves indirect references, returning direct values unchanged.
+     */
+    Object resolve(Object value) throws IOException {
+        int depth = 0;
+        while (value instanceof Ref ref && depth++ < 32) {
+            value = loadObject(ref.number()).value();
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> resolveDict(Object value) throws IOException {
+        Object resolved = resolve(value);
+        return resolved instanceof Map ? (Map<String, Object>) resolved : null;
+    }
+
+    /**
+     * Reads and decodes the data of a stream object referenced by {@code ref}.
+     */
+    byte[] readStream(Ref ref) throws IOException {
+        IndirectObject object = loadObject(ref.number());
+        if (!(object.value() instanceof Map) || object.streamOffset() < 0) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> dict = (Map<String, Object>) object.value();
+        return readStreamData(dict, object.streamOffset());
+    }
+
+    /**
+     * Returns the parsed object and, for streams, where its data starts.
+     */
+    IndirectObject readObject(Ref ref) throws IOException {
+        return loadObject(ref.number());
+    }
+
+    /**
+     * Returns the length of a stream's data as stored in the file, before any filters are undone.
+     */
+    long rawStreamLength(Map<String, Object> dict) throws IOException {
+        if (!(resolve(dict.get("Length")) instanceof Number length) || length.longValue() < 0) {
+            throw new IOException("Stream has no usable /Length: " + dict.get("Length"));
+        }
+        return Math.min(length.longValue(), fileSize);
+    }
+
+    /**
+     * Copies a stream's data to {@code out} exactly as stored, without decoding it or holding it in memory.
+     */
+    void copyRawStream(IndirectObject object, long length, OutputStream out) throws IOException {
+        long position = object.streamOffset();
+        long end = Math.min(position + length, fileSize);
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER);
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(COPY_BUFFER, end - position));
+            int n = channel.position(position).read(buffer);
+            if (n < 0) {
+                break;
+            }
+            out.write(buffer.array(), 0, n);
+            position += n;
+        }
+    }
+
+    private IndirectObject loadObject(int number) throws IOException {
+        Object cached = objectCache.get(number);
+        if (cached instanceof IndirectObject indirect) {
+            return indirect;
+        }
+        // An object stream that contains itself, or whose /Length lives inside it, would otherwise recurse forever.
+        if (!loading.add(number)) {
+            throw new IOException("Object " + number + " refers back to itself while it is being loaded");
+        }
+        IndirectObject result = new IndirectObject(NULL, -1);
+        try {
+            for (XrefSection section : sections) {
+                long[] entry = findEntry(section, number);
+                if (entry == null) {
+                    continue;
+                }
+                if (entry[0] == 1) {
+                    result = readIndirectObjectAt(entry[1]);
+                } else if (entry[0] == 2) {
+                    result = new IndirectObject(readFromObjectStream((int) entry[1], (int) entry[2]), -1);
+                }
+                break;
+            }
+        } finally {
+            loading.remove(number);
+        }
+        objectCache.put(number, result);
+        return result;
+    }
+
+    /**
+     * Returns {type, field2, field3} for the object in this section, or {@code null} if the section
+     * does not mention it. Type 0 marks a free entry, which ends the search.
+     */
+    private long[] findEntry(XrefSection section, int number) throws IOException {
+        long[] streamEntry = section.streamEntries.get(number);
+        if (streamEntry != null) {
+            return streamEntry;
+        }
+        for (Subsection sub : section.subsections) {
+            if (number >= sub.start() && number < sub.start() + sub.count()) {
+                long pos = sub.position() + (long) (number - sub.start()) * sub.entryLength();
+                String line = new String(readAt(pos, 18), StandardCharsets.ISO_8859_1);
+                long offset = Long.parseLong(line.substring(0, 10).trim());
+                char type = line.charAt(17);
+                return type == 'n' ? new long[] {1, offset, 0} : new long[] {0, 0, 0};
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> readXrefSection(long offset) throws IOException {
+        byte[] probe = readAt(offset, (int) Math.min(INITIAL_WINDOW, fileSize - offset));
+        Lexer lexer = new Lexer(probe, offset, 0);
+        Object first = lexer.next();
+        if (first instanceof Keyword keyword && keyword.value().equals("xref")) {
+            return readClassicXref(lexer.absolutePosition());
+        }
+        return readXrefStream(offset);
+    }
+
+    private Map<String, Object> readClassicXref(long position) throws IOException {
+        XrefSection section = new XrefSection();
+        sections.add(section);
+        while (true) {
+            if (section.subsections.size() >= MAX_XREF_SUBSECTIONS) {
+                throw new IOException("Cross-reference table has more than " + MAX_XREF_SUBSECTIONS
+                        + " subsections");
+            }
+            byte[] window = readAt(position, (int) Math.min(INITIAL_WINDOW, fileSize - position));
+            Lexer lexer = new Lexer(window, position, 0);
+            Object token = lexer.next();
+            if (token instanceof Keyword keyword && keyword.value().equals("trailer")) {
+                return asDict(parseWithGrowingWindow(lexer.absolutePosition()));
+            }
+            int start = ((Number) token).intValue();
+            int count = ((Number) lexer.next()).intValue();
+            if (start < 0 || count < 0) {
+                throw new IOException("Invalid cross-reference subsection: " + start + " " + count);
+            }
+            lexer.skipWhitespace();
+            long entriesStart = lexer.absolutePosition();
+            int entryLength = 20;
+            if (count > 0) {
+                byte[] entry = readAt(entriesStart, 20);
+                if (entry[18] == '\n' || entry[18] == '\r') {
+                    entryLength = (entry[19] == '\n' && entry[18] == '\r') ? 20 : 19;
+                }
+            }
+            section.subsections.add(new Subsection(start, count, entriesStart, entryLength));
+            long next = entriesStart + (long) count * entryLength;
+            // Every subsection must move forward, or a crafted table could be read round in a loop.
+            if (next <= position || next >= fileSize) {
+                throw new IOException("Malformed cross-reference subsection at offset " + position);
+            }
+            position = next;
+        }
+    }
+
+    private Map<String, Object> readXrefStream(long offset) throws IOException {
+        IndirectObject object = readIndirectObjectAt(offset);
+        Map<String, Object> dict = asDict(object.value());
+        if (dict == null || !new Name("XRef").equals(dict.get("Type"))) {
+            throw new IOException("Cross-reference not found at offset " + offset);
+        }
+        byte[] data = readStreamData(dict, object.streamOffset());
+
+        List<?> widths = (List<?>) dict.get("W");
+        int w0 = ((Number) widths.get(0)).intValue();
+        int w1 = ((Number) widths.get(1)).intValue();
+        int w2 = ((Number) widths.get(2)).intValue();
+        if (!isFieldWidth(w0) || !isFieldWidth(w1) || !isFieldWidth(w2) || w0 + w1 + w2 == 0) {
+            throw new IOException("Unsupported cross-reference field widths: " + widths);
+        }
+        int rowLength = w0 + w1 + w2;
+
+        List<?> index = dict.get("Index") instanceof List<?> list
+                ? list
+                : List.of(0L, dict.get("Size"));
+
+        XrefSection section = new XrefSection();
+        int pos = 0;
+        for (int i = 0; i + 1 < index.size(); i += 2) {
+            int start = ((Number) index.get(i)).intValue();
+            int count = ((Number) index.get(i + 1)).intValue();
+            if (start < 0 || count < 0) {
+                throw new IOException("Invalid cross-reference subsection: " + start + " " + count);
+            }
+            count = Math.min(count, (data.length - pos) / rowLength);
+            for (int n = 0; n < count; n++) {
+                long type = w0 == 0 ? 1 : readBigEndian(data, pos, w0);
+                long f2 = readBigEndian(data, pos + w0, w1);
+                long f3 = readBigEndian(data, pos + w0 + w1, w2);
+                section.streamEntries.putIfAbsent(start + n, new long[] {type, f2, f3});
+                pos += rowLength;
+            }
+        }
+        sections.add(section);
+        return dict;
+    }
+
+    private static boolean isFieldWidth(int width) {
+        return width >= 0 && width <= Long.BYTES;
+    }
+
+    private Object readFromObjectStream(int streamNumber, int index) throws IOException {
+        byte[] data = objectStreamCache.get(streamNumber);
+        IndirectObject container = loadObject(streamNumber);
+        Map<String, Object> dict = asDict(container.value());
+        if (dict == null) {
+            return NULL;
+        }
+        if (data == null) {
+            data = readStreamData(dict, container.streamOffset());
+            objectStreamCache.put(streamNumber, data);
+        }
+        int first = ((Number) dict.get("First")).intValue();
+        Lexer header = new Lexer(data, 0, 0);
+        long objectOffset = -1;
+        for (int i = 0; i <= index; i++) {
+            header.next();
+            objectOffset = ((Number) header.next()).longValue();
+        }
+        return new Lexer(data, 0, (int) (first + objectOffset)).next();
+    }
+
+    private IndirectObject readIndirectObjectAt(long offset) throws IOException {
+        int window = INITIAL_WINDOW;
+        while (true) {
+            byte[] data = readAt(offset, (int) Math.min(window, fileSize - offset));
+            try {
+                Lexer lexer = new Lexer(data, offset, 0);
+                lexer.next(); // object number
+                lexer.next(); // generation
+                lexer.next(); // obj
+                Object value = lexer.next();
+                long streamOffset = -1;
+                if (value instanceof Map) {
+                    int mark = lexer.position;
+                    Object after = lexer.next();
+                    if (after instanceof Keyword keyword && keyword.value().equals("stream")) {
+                        streamOffset = lexer.streamDataStart();
+                    } else {
+                        lexer.position = mark;
+                    }
+                }
+                return new IndirectObject(value, streamOffset);
+            } catch (IndexOutOfBoundsException truncated) {
+                if (window >= MAX_WINDOW || offset + window >= fileSize) {
+                    throw new IOException("Object at offset " + offset + " is truncated or too large");
+                }
+                window *= 4;
+            }
+        }
+    }
+
+    private Object parseWithGrowingWindow(long offset) throws IOException {
+        int window = INITIAL_WINDOW;
+        while (true) {
+            byte[] data = readAt(offset, (int) Math.min(window, fileSize - offset));
+            try {
+                return new Lexer(data, offset, 0).next();
+            } catch (IndexOutOfBoundsException truncated) {
+                if (window >= MAX_WINDOW || offset + window >= fileSize) {
+                    throw new IOException("Object at offset " + offset + " is truncated or too large");
+                }
+                window *= 4;
+            }
+        }
+    }
+
+    private byte[] readStreamData(Map<String, Object> dict, long offset) throws IOException {
+        Object lengthValue = resolve(dict.get("Length"));
+        if (!(lengthValue instanceof Number number) || number.longValue() > MAX_STREAM_BYTES) {
+            throw new IOException("Unsupported stream length: " + lengthValue);
+        }
+        byte[] raw = readAt(offset, (int) Math.min(number.longValue(), fileSize - offset));
+
+        Object filter = dict.get("Filter");
+        Object params = dict.get("DecodeParms");
+        if (filter instanceof List<?> filters) {
+            if (filters.isEmpty()) {
+                return raw;
+            }
+            if (filters.size() > 1) {
+                throw new IOException("Unsupported filter chain: " + filters);
+            }
+            filter = filters.get(0);
+            params = params instanceof List<?> paramList && !paramList.isEmpty() ? paramList.get(0) : params;
+        }
+        if (filter == null) {
+            return raw;
+        }
+        if (!new Name("FlateDecode").equals(filter)) {
+            throw new IOException("Unsupported filter: " + filter);
+        }
+        byte[] inflated = inflate(raw);
+        Map<String, Object> decodeParms = asDict(resolve(params));
+        if (decodeParms != null && decodeParms.get("Predictor") instanceof Number predictor
+                && predictor.intValue() >= 10) {
+            long columns = predictorParameter(decodeParms, "Columns", 1);
+            long colors = predictorParameter(decodeParms, "Colors", 1);
+            long bitsPerComponent = predictorParameter(decodeParms, "BitsPerComponent", 8);
+            long rowBytes = (colors * bitsPerComponent * columns + 7) / 8;
+            if (rowBytes > MAX_STREAM_BYTES) {
+                throw new IOException("Unsupported predictor row of " + rowBytes + " bytes");
+            }
+            int pixelBytes = (int) Math.max(1, (colors * bitsPerComponent + 7) / 8);
+            return undoPngPredictor(inflated, (int) rowBytes, pixelBytes);
+        }
+        return inflated;
+    }
+
+    private static byte[] inflate(byte[] raw) throws IOException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(raw);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length * 3);
+        byte[] buffer = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                out.write(buffer, 0, n);
+                if (out.size() > MAX_STREAM_BYTES) {
+                    throw new IOException("Decoded stream exceeds " + MAX_STREAM_BYTES + " bytes");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt FlateDecode stream", e);
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a predictor parameter. Each is checked on its own before the row size is worked out from them,
+     * so a huge value fails here instead of overflowing into an allocation.
+     */
+    private static long predictorParameter(Map<String, Object> decodeParms, String key, long defaultValue)
+            throws IOException {
+        Object value = decodeParms.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Number number) || number.longValue() < 1 || number.longValue() > MAX_STREAM_BYTES) {
+            throw new IOException("Unsupported predictor " + key + ": " + value);
+        }
+        return number.longValue();
+    }
+
+    private static byte[] undoPngPredictor(byte[] data, int columns, int pixelBytes) {
+        int rowLength = columns + 1;
+        int rows = data.length / rowLength;
+        byte[] out = new byte[rows * columns];
+        byte[] previous = new byte[columns];
+        for (int r = 0; r < rows; r++) {
+            int type = data[r * rowLength] & 0xFF;
+            byte[] row = new byte[columns];
+            for (int c = 0; c < columns; c++) {
+                int raw = data[r * rowLength + 1 + c] & 0xFF;
+                int left = c >= pixelBytes ? row[c - pixelBytes] & 0xFF : 0;
+                int up = previous[c] & 0xFF;
+                int upLeft = c >= pixelBytes ? previous[c - pixelBytes] & 0xFF : 0;
+                int value = switch (type) {
+                    case 1 -> raw + left;
+                    case 2 -> raw + up;
+                    case 3 -> raw + ((left + up) >> 1);
+                    case 4 -> raw + paeth(left, up, upLeft);
+                    default -> raw;
+                };
+                row[c] = (byte) value;
+            }
+            System.arraycopy(row, 0, out, r * columns, columns);
+            previous = row;
+        }
+        return out;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        return (pa <= pb && pa <= pc) ? a : (pb <= pc ? b : c);
+    }
+
+    private static long readBigEndian(byte[] data, int offset, int width) {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asDict(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    private byte[] readAt(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, length));
+        while (buffer.hasRemaining()) {
+            int n = channel.position(position + buffer.position()).read(buffer);
+            if (n < 0) {
+                break;
+            }
+        }
+        byte[] result = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(result);
+        return result;
+    }
+
+    /**
+     * Tokenizer and object parser over an in-memory window of the file. Running off the end of the
+     * window raises {@link IndexOutOfBoundsException}, which callers treat as "read a bigger window".
+     */
+    private static final class Lexer {
+        private final byte[] data;
+        private final long base;
+        private int position;
+
+        Lexer(byte[] data, long base, int position) {
+            this.data = data;
+            this.base = base;
+            this.position = position;
+        }
+
+        long absolutePosition() {
+            return base + position;
+        }
+
+        long streamDataStart() {
+            if (data[position] == '\r') {
+                position++;
+            }
+            if (data[position] == '\n') {
+                position++;
+            }
+            return absolutePosition();
+        }
+
+        void skipWhitespace() {
+            while (true) {
+                byte b = data[position];
+                if (isWhitespace(b)) {
+                    position++;
+                } else if (b == '%') {
+                    while (data[position] != '\n' && data[position] != '\r') {
+                        position++;
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+
+        Object next() {
+            skipWhitespace();
+            byte b = data[position];
+            switch (b) {
+                case '<':
+                    if (data[position + 1] == '<') {
+                        position += 2;
+                        return parseDictionary();
+                    }
+                    position++;
+                    return parseHexString();
+                case '(':
+                    position++;
+                    return parseLiteralString();
+                case '[':
+                    position++;
+                    return parseArray();
+                case '/':
+                    position++;
+                    return new Name(readRegular());
+                default:
+                    break;
+            }
+            if (b == '+' || b == '-' || b == '.' || (b >= '0' && b <= '9')) {
+                return parseNumberOrReference();
+            }
+            String word = readRegular();
+            if (word.isEmpty()) {
+                position++;
+                return new Keyword(String.valueOf((char) b));
+            }
+            return switch (word) {
+                case "true" -> Boolean.TRUE;
+                case "false" -> Boolean.FALSE;
+                case "null" -> NULL;
+                default -> new Keyword(word);
+            };
+        }
+
+        private Map<String, Object> parseDictionary() {
+            Map<String, Object> dict = new LinkedHashMap<>();
+            while (true) {
+                skipWhitespace();
+                if (data[position] == '>' && data[position + 1] == '>') {
+                    position += 2;
+                    return dict;
+                }
+                Object key = next();
+                Object value = next();
+                if (key instanceof Name name) {
+                    dict.put(name.value(), value);
+                }
+            }
+        }
+
+        private List<Object> parseArray() {
+            List<Object> list = new ArrayList<>();
+            while (true) {
+                skipWhitespace();
+                if (data[position] == ']') {
+                    position++;
+                    return list;
+                }
+                list.add(next());
+            }
+        }
+
+        private Object parseNumberOrReference() {
+            String first = readRegular();
+            if (first.contains(".") || first.startsWith("+") || first.startsWith("-")) {
+                return parseNumber(first);
+            }
+            int mark = position;
+            try {
+                skipWhitespace();
+                String second = readRegular();
+                if (!second.isEmpty() && second.chars().allMatch(Character::isDigit)) {
+                    skipWhitespace();
+                    if (data[position] == 'R' && (position + 1 >= data.length || !isRegular(data[position + 1]))) {
+                        position++;
+                        return new Ref(Integer.parseInt(first), Integer.parseInt(second));
+                    }
+                }
+            } catch (IndexOutOfBoundsException endOfWindow) {
+                if (position < data.length) {
+                    throw endOfWindow;
+                }
+            }
+            position = mark;
+            return parseNumber(first);
+        }
+
+        private static Number parseNumber(String token) {
+            try {
+                if (token.contains(".")) {
+                    return Double.parseDouble(token);
+                }
+                return Long.parseLong(token);
+            } catch (NumberFormatException e) {
+                return 0L;
+            }
+        }
+
+        private byte[] parseLiteralString() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int depth = 1;
+            while (true) {
+                byte b = data[position++];
+                if (b == '\\') {
+                    byte e = data[position++];
+                    switch (e) {
+                        case 'n' -> out.write('\n');
+                        case 'r' -> out.write('\r');
+                        case 't' -> out.write('\t');
+                        case 'b' -> out.write('\b');
+                        case 'f' -> out.write('\f');
+                        case '\r' -> {
+                            if (data[position] == '\n') {
+                                position++;
+                            }
+                        }
+                        case '\n' -> {
+                        }
+                        default -> {
+                            if (e >= '0' && e <= '7') {
+                                int value = e - '0';
+                                for (int i = 0; i < 2 && data[position] >= '0' && data[position] <= '7'; i++) {
+                                    value = value * 8 + (data[position++] - '0');
+                                }
+                                out.write(value);
+                            } else {
+                                out.write(e);
+                            }
+                        }
+                    }
+                } else if (b == '(') {
+                    depth++;
+                    out.write(b);
+                } else if (b == ')') {
+                    if (--depth == 0) {
+                        return out.toByteArray();
+                    }
+                    out.write(b);
+                } else {
+                    out.write(b);
+                }
+            }
+        }
+
+        private byte[] parseHexString() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int pending = -1;
+            while (true) {
+                byte b = data[position++];
+                if (b == '>') {
+                    if (pending >= 0) {
+                        out.write(pending << 4);
+                    }
+                    return out.toByteArray();
+                }
+                int digit = Character.digit(b, 16);
+                if (digit < 0) {
+                    continue;
+                }
+                if (pending < 0) {
+                    pending = digit;
+                } else {
+                    out.write((pending << 4) | digit);
+                    pending = -1;
+                }
+            }
+        }
+
+        private String readRegular() {
+            StringBuilder sb = new StringBuilder();
+            while (position < data.length && isRegular(data[position])) {
+                byte b = data[position++];
+                if (b == '#' && position + 1 < data.length
+                        && Character.digit(data[position], 16) >= 0 && Character.digit(data[position + 1], 16) >= 0) {
+                    sb.append((char) Integer.parseInt(new String(data, position, 2, StandardCharsets.ISO_8859_1), 16));
+                    position += 2;
+                } else {
+                    sb.append((char) (b & 0xFF));
+                }
+            }
+            if (position >= data.length) {
+                throw new IndexOutOfBoundsException("Token runs past end of window");
+            }
+            return sb.toString();
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == 0 || b == 9 || b == 10 || b == 12 || b == 13 || b == 32;
+        }
+
+        private static boolean isRegular(byte b) {
+            if (isWhitespace(b)) {
+                return false;
+            }
+            return switch (b) {
+                case '(', ')', '<', '>', '[', ']', '{', '}', '/', '%' -> false;
+                default -> true;
+            };
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Page-level operations on stored PDFs: extracting a page range, splitting into parts and merging.
+ * <p>
+ * Each operation validates its input against the stored files up front and returns a
+ * {@link DerivedDocument} whose bytes are produced only when it is written. Output is built by
+ * {@link PdfPageWriter}, which copies only the objects the selected pages reference and streams them
+ * out as it goes. Extracts, merges and the individual parts of a split are cached by
+ * {@link DerivedDocumentCache} under a key made of the source checksums and page selections.
+ * </p>
+ */
+@Service
+public class PdfPageService {
+
+    public static final int MAX_MERGE_DOCUMENTS = 50;
+    public static final int MAX_SPLIT_PARTS = 1000;
+
+    /** One input of a merge: a stored document and the pages to take from it (blank for all). */
+    public record MergeSource(PDFFile pdfFile, String pages) {
+    }
+
+    private record Selection(PDFFile pdfFile, List<Integer> pages) {
+    }
+
+    private final DerivedDocumentCache cache;
+    private final PdfContentService pdfContentService;
+
+    public PdfPageService(DerivedDocumentCache cache, PdfContentService pdfContentService) {
+        this.cache = cache;
+        this.pdfContentService = pdfContentService;
+    }
+
+    /**
+     * @param pages a selection such as {@code "3-5,7"}; blank for all pages
+     * @throws IllegalArgumentException if the selection does not fit the document or the document is encrypted
+     */
+    public DerivedDocument extract(PDFFile pdfFile, String pages) throws IOException {
+        Selection selection = select(pdfFile, pages);
+        String canonical = PageRanges.format(selection.pages());
+        return new DerivedDocument(baseName(pdfFile) + "-p" + canonical.replace(',', '_') + ".pdf", "application/pdf",
+                out -> writeCached(List.of(selection), out));
+    }
+
+    /**
+     * Splits a document into consecutive parts of {@code pagesPerPart} pages, delivered as a ZIP archive.
+     */
+    public DerivedDocument split(PDFFile pdfFile, int pagesPerPart) throws IOException {
+        int pageCount = pageCount(pdfFile);
+        if (pagesPerPart < 1) {
+            throw new IllegalArgumentException("pagesPerPart must be at least 1");
+        }
+        int parts = (pageCount + pagesPerPart - 1) / pagesPerPart;
+        if (parts > MAX_SPLIT_PARTS) {
+            throw new IllegalArgumentException("Splitting into " + parts + " parts exceeds the limit of " + MAX_SPLIT_PARTS);
+        }
+        String base = baseName(pdfFile);
+        return new DerivedDocument(base + "-split-" + pagesPerPart + ".zip", "application/zip", out -> {
+            // Part entries share the cache with extracts of the same range; finish() ends the archive
+            // without closing the caller's stream.
+            ZipOutputStream zip = new ZipOutputStream(out);
+            for (int part = 0; part < parts; part++) {
+                List<Integer> pages = new ArrayList<>();
+                for (int page = part * pagesPerPart; page < Math.min(pageCount, (part + 1) * pagesPerPart); page++) {
+                    pages.add(page);
+                }
+                String canonical = PageRanges.format(pages);
+                zip.putNextEntry(new ZipEntry(String.format("%s-part-%03d-p%s.pdf", base, part + 1, canonical)));
+                writeCached(List.of(new Selection(pdfFile, pages)), zip);
+                zip.closeEntry();
+            }
+            zip.finish();
+        });
+    }
+
+    /**
+     * Concatenates the selected pages of several documents, in the order given.
+     */
+    public DerivedDocument merge(List<MergeSource> sources, String filename) throws IOException {
+        if (sources.isEmpty() || sources.size() > MAX_MERGE_DOCUMENTS) {
+            throw new IllegalArgumentException("A merge takes between 1 and " + MAX_MERGE_DOCUMENTS + " documents");
+        }
+        List<Selection> selections = new ArrayList<>();
+        for (MergeSource source : sources) {
+            selections.add(select(source.pdfFile(), source.pages()));
+        }
+        String name = filename == null || filename.isBlank() ? "merged.pdf" : filename;
+        return new DerivedDocument(name.toLowerCase().endsWith(".pdf") ? name : name + ".pdf", "application/pdf",
+                out -> writeCached(selections, out));
+    }
+
+    private void writeCached(List<Selection> selections, OutputStream out) throws IOException {
+        String[] keyParts = new String[selections.size() * 2 + 1];
+        keyParts[0] = selections.size() == 1 ? "extract" : "merge";
+        for (int i = 0; i < selections.size(); i++) {
+            keyParts[i * 2 + 1] = selections.get(i).pdfFile().getChecksum();
+            keyParts[i * 2 + 2] = PageRanges.format(selections.get(i).pages());
+        }
+        cache.write(DerivedDocumentCache.key(keyParts), out, target -> {
+            PdfPageWriter writer = new PdfPageWriter(target);
+            for (Selection selection : selections) {
+                try (SeekableByteChannel channel = open(selection.pdfFile())) {
+                    writer.appendPages(new PdfObjectReader(channel), selection.pages());
+                }
+            }
+            writer.finish();
+        });
+    }
+
+    private Selection select(PDFFile pdfFile, String pages) throws IOException {
+        return new Selection(pdfFile, PageRanges.parse(pages, pageCount(pdfFile)));
+    }
+
+    private int pageCount(PDFFile pdfFile) throws IOException {
+        try (SeekableByteChannel channel = open(pdfFile)) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            if (reader.readTrailer().containsKey("Encrypt")) {
+                throw new IllegalArgumentException("Encrypted PDFs cannot be split or merged");
+            }
+            return PdfPageWriter.listPages(reader).size();
+        }
+    }
+
+    private SeekableByteChannel open(PDFFile pdfFile) throws IOException {
+        return pdfContentService.openChannel(pdfFile);
+    }
+
+    private static String baseName(PDFFile pdfFile) {
+        String name = pdfFile.getFilename();
+        return name.toLowerCase().endsWith(".pdf") ? name.substring(0, name.length() - 4) : name;
+    }
+}
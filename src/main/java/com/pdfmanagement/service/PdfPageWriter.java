@@ -0,0 +1,377 @@
+package com.pdfmanagement.service;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a new PDF made of pages copied from one or more existing documents.
+ * <p>
+ * Only the objects reachable from the selected pages are copied: each page's dictionary (with
+ * inherited attributes such as {@code /Resources} and {@code /MediaBox} made explicit) and everything
+ * it references, renumbered for the new file. Stream data is copied byte for byte without being
+ * decoded, and every object is written as soon as it is reached, so memory use depends on the number
+ * of objects rather than on the size of the pages. References that lead back into the source's page
+ * tree, to pages that were not selected or to its parent nodes, are written as {@code null}, which
+ * keeps links and annotations from pulling the rest of the document along.
+ * </p>
+ *
+ * <p>
+ * Document-level structures (outlines, named destinations, interactive form definitions, the logical
+ * structure tree) are not carried over; pages keep their content, resources and annotations. Encrypted
+ * sources are rejected, because their strings and streams are keyed to the original object numbers.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * PdfPageWriter writer = new PdfPageWriter(out);
+ * writer.appendPages(reader, List.of(2, 3, 4));
+ * writer.finish();
+ * }
+ * </pre>
+ */
+class PdfPageWriter {
+
+    private static final int CATALOG = 1;
+    private static final int PAGE_TREE = 2;
+    private static final int MAX_PAGE_TREE_DEPTH = 64;
+    private static final Set<String> INHERITABLE = Set.of("Resources", "MediaBox", "CropBox", "Rotate");
+
+    /** A page of a source document, with the attributes it inherits from its ancestors in the page tree. */
+    record Page(PdfObjectReader.Ref ref, Map<String, Object> inherited) {
+    }
+
+    /** A reference already expressed in the output's numbering. */
+    private record OutputRef(int number) {
+    }
+
+    private final CountingOutputStream out;
+    private final List<Long> offsets = new ArrayList<>();
+    private final List<Integer> pageNumbers = new ArrayList<>();
+    private String version = "1.4";
+
+    PdfPageWriter(OutputStream target) throws IOException {
+        this.out = new CountingOutputStream(new BufferedOutputStream(target, 64 * 1024));
+        offsets.add(0L);
+        allocate(); // catalog, written by finish()
+        allocate(); // page tree root, written by finish()
+        // A comment line of high-bit bytes marks the file as binary for transfer tools.
+        write("%PDF-1.4\n%\u00E2\u00E3\u00CF\u00D3\n");
+    }
+
+    /**
+     * Lists the leaf pages of a document in order. Malformed trees are read as far as possible.
+     */
+    static List<Page> listPages(PdfObjectReader reader) throws IOException {
+        return walkPageTree(reader, new HashSet<>());
+    }
+
+    /**
+     * Copies the given pages (zero-based indexes into {@link #listPages}) of {@code source}, in the
+     * given order, to the end of the output document.
+     */
+    void appendPages(PdfObjectReader source, List<Integer> pageIndexes) throws IOException {
+        Map<String, Object> trailer = source.readTrailer();
+        if (trailer.containsKey("Encrypt")) {
+            throw new IllegalArgumentException("Encrypted PDFs cannot be split or merged");
+        }
+        updateVersion(source.readHeaderVersion());
+        Map<String, Object> catalog = source.resolveDict(trailer.get("Root"));
+        if (catalog != null && source.resolve(catalog.get("Version")) instanceof PdfObjectReader.Name name) {
+            updateVersion(name.value());
+        }
+
+        Set<Integer> treeNodes = new HashSet<>();
+        List<Page> pages = walkPageTree(source, treeNodes);
+        Set<Integer> allPages = new HashSet<>();
+        for (Page page : pages) {
+            allPages.add(page.ref().number());
+        }
+
+        SourceCopy copy = new SourceCopy(source, treeNodes, allPages);
+        List<int[]> written = new ArrayList<>();
+        for (int index : pageIndexes) {
+            Page page = pages.get(index);
+            int number = allocate();
+            copy.selectedPages.putIfAbsent(page.ref().number(), number);
+            written.add(new int[] {index, number});
+        }
+        for (int[] entry : written) {
+            Page page = pages.get(entry[0]);
+            Map<String, Object> dict = new LinkedHashMap<>();
+            Map<String, Object> pageDict = source.resolveDict(page.ref());
+            if (pageDict != null) {
+                dict.putAll(pageDict);
+            }
+            page.inherited().forEach(dict::putIfAbsent);
+            dict.put("Type", new PdfObjectReader.Name("Page"));
+            dict.put("Parent", new OutputRef(PAGE_TREE));
+            dict.remove("B"); // Article beads point into threads that span the whole document.
+            writeObject(entry[1], dict, copy);
+            pageNumbers.add(entry[1]);
+            copy.drain();
+        }
+    }
+
+    /**
+     * Writes the page tree, catalog, cross-reference table and trailer. The target stream is flushed but
+     * not closed.
+     */
+    void finish() throws IOException {
+        beginObject(PAGE_TREE);
+        StringBuilder kids = new StringBuilder();
+        for (int number : pageNumbers) {
+            kids.append(number).append(" 0 R ");
+        }
+        write("<< /Type /Pages /Kids [" + kids.toString().trim() + "] /Count " + pageNumbers.size() + " >>");
+        endObject();
+
+        beginObject(CATALOG);
+        write("<< /Type /Catalog /Pages " + PAGE_TREE + " 0 R");
+        if (compareVersions(version, "1.4") > 0) {
+            write(" /Version /" + version);
+        }
+        write(" >>");
+        endObject();
+
+        long xref = out.count;
+        StringBuilder table = new StringBuilder("xref\n0 " + offsets.size() + "\n0000000000 65535 f\r\n");
+        for (int i = 1; i < offsets.size(); i++) {
+            table.append(String.format("%010d 00000 n\r\n", offsets.get(i)));
+            if (table.length() > 8192) {
+                write(table.toString());
+                table.setLength(0);
+            }
+        }
+        write(table.toString());
+        write("trailer\n<< /Size " + offsets.size() + " /Root " + CATALOG + " 0 R >>\nstartxref\n" + xref + "\n%%EOF\n");
+        out.flush();
+    }
+
+    /** Renumbering state for one source document. */
+    private final class SourceCopy {
+        final PdfObjectReader source;
+        final Set<Integer> treeNodes;
+        final Set<Integer> allPages;
+        final Map<Integer, Integer> selectedPages = new HashMap<>();
+        final Map<Integer, Integer> renumbered = new HashMap<>();
+        final Deque<int[]> pending = new ArrayDeque<>();
+
+        SourceCopy(PdfObjectReader source, Set<Integer> treeNodes, Set<Integer> allPages) {
+            this.source = source;
+            this.treeNodes = treeNodes;
+            this.allPages = allPages;
+        }
+
+        /** Maps a source reference to the output, queueing the object for copying the first time it is seen. */
+        Object map(PdfObjectReader.Ref ref) {
+            int number = ref.number();
+            Integer page = selectedPages.get(number);
+            if (page != null) {
+                return new OutputRef(page);
+            }
+            if (treeNodes.contains(number) || allPages.contains(number)) {
+                return PdfObjectReader.NULL;
+            }
+            Integer mapped = renumbered.get(number);
+            if (mapped == null) {
+                mapped = allocate();
+                renumbered.put(number, mapped);
+                pending.add(new int[] {number, mapped});
+            }
+            return new OutputRef(mapped);
+        }
+
+        void drain() throws IOException {
+            while (!pending.isEmpty()) {
+                int[] next = pending.poll();
+                PdfObjectReader.IndirectObject object =
+                        source.readObject(new PdfObjectReader.Ref(next[0], 0));
+                if (object.streamOffset() >= 0 && object.value() instanceof Map<?, ?> map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> dict = new LinkedHashMap<>((Map<String, Object>) map);
+                    long length = source.rawStreamLength(dict);
+                    dict.put("Length", length);
+                    beginObject(next[1]);
+                    writeValue(dict, this);
+                    write("\nstream\n");
+                    source.copyRawStream(object, length, out);
+                    write("\nendstream");
+                    endObject();
+                } else {
+                    writeObject(next[1], object.value(), this);
+                }
+            }
+        }
+    }
+
+    private static List<Page> walkPageTree(PdfObjectReader reader, Set<Integer> treeNodes) throws IOException {
+        Map<String, Object> catalog = reader.resolveDict(reader.readTrailer().get("Root"));
+        if (catalog == null || !(catalog.get("Pages") instanceof PdfObjectReader.Ref root)) {
+            throw new IOException("Document has no page tree");
+        }
+        List<Page> pages = new ArrayList<>();
+        Set<Integer> visited = new HashSet<>();
+        walk(reader, root, Collections.emptyMap(), 0, visited, treeNodes, pages);
+        return pages;
+    }
+
+    private static void walk(PdfObjectReader reader, PdfObjectReader.Ref ref, Map<String, Object> inherited, int depth,
+                             Set<Integer> visited, Set<Integer> treeNodes, List<Page> pages) throws IOException {
+        if (depth > MAX_PAGE_TREE_DEPTH || !visited.add(ref.number())) {
+            return;
+        }
+        Map<String, Object> node = reader.resolveDict(ref);
+        if (node == null) {
+            return;
+        }
+        Map<String, Object> attributes = inherited;
+        for (String key : INHERITABLE) {
+            if (node.containsKey(key)) {
+                if (attributes == inherited) {
+                    attributes = new HashMap<>(inherited);
+                }
+                attributes.put(key, node.get(key));
+            }
+        }
+        boolean isTreeNode = new PdfObjectReader.Name("Pages").equals(node.get("Type"))
+                || (!node.containsKey("Type") && node.containsKey("Kids"));
+        if (!isTreeNode) {
+            pages.add(new Page(ref, attributes));
+            return;
+        }
+        treeNodes.add(ref.number());
+        if (reader.resolve(node.get("Kids")) instanceof List<?> kids) {
+            for (Object kid : kids) {
+                if (kid instanceof PdfObjectReader.Ref kidRef) {
+                    walk(reader, kidRef, attributes, depth + 1, visited, treeNodes, pages);
+                }
+            }
+        }
+    }
+
+    private int allocate() {
+        offsets.add(-1L);
+        return offsets.size() - 1;
+    }
+
+    private void writeObject(int number, Object value, SourceCopy copy) throws IOException {
+        beginObject(number);
+        writeValue(value, copy);
+        endObject();
+    }
+
+    private void beginObject(int number) throws IOException {
+        offsets.set(number, out.count);
+        write(number + " 0 obj\n");
+    }
+
+    private void endObject() throws IOException {
+        write("\nendobj\n");
+    }
+
+    private void writeValue(Object value, SourceCopy copy) throws IOException {
+        if (value instanceof PdfObjectReader.Ref ref) {
+            value = copy.map(ref);
+        }
+        if (value instanceof OutputRef ref) {
+            write(ref.number() + " 0 R");
+        } else if (value instanceof Map<?, ?> dict) {
+            write("<<");
+            for (Map.Entry<?, ?> entry : dict.entrySet()) {
+                write(" ");
+                writeName(entry.getKey().toString());
+                write(" ");
+                writeValue(entry.getValue(), copy);
+            }
+            write(" >>");
+        } else if (value instanceof List<?> list) {
+            write("[");
+            boolean first = true;
+            for (Object item : list) {
+                if (!first) {
+                    write(" ");
+                }
+                writeValue(item, copy);
+                first = false;
+            }
+            write("]");
+        } else if (value instanceof PdfObjectReader.Name name) {
+            writeName(name.value());
+        } else if (value instanceof byte[] bytes) {
+            StringBuilder hex = new StringBuilder(bytes.length * 2 + 2).append('<');
+            for (byte b : bytes) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            write(hex.append('>').toString());
+        } else if (value instanceof Double number) {
+            write(BigDecimal.valueOf(number).stripTrailingZeros().toPlainString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            write(value.toString());
+        } else {
+            write("null"); // PdfObjectReader.NULL, and anything the parser could not make sense of
+        }
+    }
+
+    private void writeName(String name) throws IOException {
+        StringBuilder escaped = new StringBuilder(name.length() + 1).append('/');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean regular = c > 0x20 && c < 0x7F && "()<>[]{}/%#".indexOf(c) < 0;
+            if (regular) {
+                escaped.append(c);
+            } else {
+                escaped.append('#').append(String.format("%02X", c & 0xFF));
+            }
+        }
+        write(escaped.toString());
+    }
+
+    private void write(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private void updateVersion(String candidate) {
+        if (candidate != null && candidate.matches("\\d\\.\\d") && compareVersions(candidate, version) > 0) {
+            version = candidate;
+        }
+    }
+
+    private static int compareVersions(String a, String b) {
+        return Double.compare(Double.parseDouble(a), Double.parseDouble(b));
+    }
+
+    /** Tracks the byte offset of each object for the cross-reference table. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
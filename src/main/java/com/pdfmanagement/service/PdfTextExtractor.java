@@ -0,0 +1,275 @@
+package com.pdfmanagement.service;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pulls the text shown on a PDF's pages out of their content streams, well enough to compare documents.
+ * <p>
+ * Only the string operands of the text-showing operators ({@code Tj}, {@code TJ}, {@code '} and {@code "}) are
+ * read, in content-stream order. Their bytes are taken as Latin-1 without consulting the fonts' encodings, so
+ * text in fonts with a custom or two-byte encoding comes out as the same stable but unreadable characters every
+ * time, which is all a similarity fingerprint needs. Text positioning operators and large negative {@code TJ}
+ * adjustments become spaces so words do not run together.
+ * </p>
+ *
+ * <p>
+ * Content streams with a filter {@link PdfObjectReader} cannot decode are skipped, as is text in form XObjects
+ * and annotations. A scanned document without a text layer therefore yields little or no text.
+ * </p>
+ */
+final class PdfTextExtractor {
+
+    // A TJ adjustment this far left, in thousandths of an em, is a word gap rather than kerning.
+    private static final double WORD_GAP = -200;
+
+    private PdfTextExtractor() {
+    }
+
+    /**
+     * Extracts the text of every page, stopping once {@code maxChars} characters have been collected.
+     *
+     * @throws IOException if the file's object structure cannot be read
+     */
+    static String extract(SeekableByteChannel channel, int maxChars) throws IOException {
+        PdfObjectReader reader = new PdfObjectReader(channel);
+        StringBuilder text = new StringBuilder();
+        for (PdfPageWriter.Page page : PdfPageWriter.listPages(reader)) {
+            if (text.length() >= maxChars) {
+                break;
+            }
+            Map<String, Object> dict = reader.resolveDict(page.ref());
+            if (dict == null) {
+                continue;
+            }
+            for (PdfObjectReader.Ref contents : contentRefs(reader, dict.get("Contents"))) {
+                byte[] data;
+                try {
+                    data = reader.readStream(contents);
+                } catch (IOException e) {
+                    continue; // unsupported filter or damaged stream; the other pages still count
+                }
+                if (data != null) {
+                    scan(data, text, maxChars);
+                }
+            }
+            text.append('\n');
+        }
+        if (text.length() > maxChars) {
+            text.setLength(maxChars);
+        }
+        return text.toString();
+    }
+
+    private static List<PdfObjectReader.Ref> contentRefs(PdfObjectReader reader, Object contents) throws IOException {
+        if (contents instanceof PdfObjectReader.Ref ref) {
+            // Either the stream itself or an indirect array of streams.
+            Object resolved = reader.resolve(ref);
+            contents = resolved instanceof List<?> ? resolved : List.of(ref);
+        }
+        List<PdfObjectReader.Ref> refs = new ArrayList<>();
+        if (contents instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof PdfObjectReader.Ref ref) {
+                    refs.add(ref);
+                }
+            }
+        }
+        return refs;
+    }
+
+    /** Appends the text shown by one content stream. */
+    static void scan(byte[] data, StringBuilder text, int maxChars) {
+        List<Object> operands = new ArrayList<>();
+        List<Object> array = null;
+        int i = 0;
+        while (i < data.length && text.length() < maxChars) {
+            int b = data[i] & 0xff;
+            if (isWhitespace(b)) {
+                i++;
+            } else if (b == '%') {
+                while (i < data.length && data[i] != '\n' && data[i] != '\r') {
+                    i++;
+                }
+            } else if (b == '(') {
+                StringBuilder string = new StringBuilder();
+                i = literalString(data, i + 1, string);
+                (array != null ? array : operands).add(string);
+            } else if (b == '<' && i + 1 < data.length && data[i + 1] == '<') {
+                i += 2; // dictionary operands (marked content properties) carry no shown text
+            } else if (b == '>' && i + 1 < data.length && data[i + 1] == '>') {
+                i += 2;
+            } else if (b == '<') {
+                StringBuilder string = new StringBuilder();
+                i = hexString(data, i + 1, string);
+                (array != null ? array : operands).add(string);
+            } else if (b == '[') {
+                array = new ArrayList<>();
+                i++;
+            } else if (b == ']') {
+                if (array != null) {
+                    operands.add(array);
+                    array = null;
+                }
+                i++;
+            } else if (b == '/') {
+                i = endOfToken(data, i + 1);
+            } else if (b == '{' || b == '}' || b == ')' || b == '>') {
+                i++;
+            } else {
+                int end = endOfToken(data, i);
+                String token = new String(data, i, end - i, StandardCharsets.ISO_8859_1);
+                i = end;
+                char first = token.charAt(0);
+                if (first == '-' || first == '+' || first == '.' || (first >= '0' && first <= '9')) {
+                    if (array != null) {
+                        array.add(number(token));
+                    }
+                    continue;
+                }
+                if (token.equals("BI")) {
+                    i = skipInlineImage(data, i);
+                } else {
+                    show(token, operands, text);
+                }
+                operands.clear();
+                array = null;
+            }
+        }
+    }
+
+    private static void show(String operator, List<Object> operands, StringBuilder text) {
+        switch (operator) {
+            case "Tj" -> appendLast(operands, text);
+            case "'", "\"" -> {
+                text.append(' ');
+                appendLast(operands, text);
+            }
+            case "TJ" -> {
+                if (!operands.isEmpty() && operands.get(operands.size() - 1) instanceof List<?> items) {
+                    for (Object item : items) {
+                        if (item instanceof CharSequence string) {
+                            text.append(string);
+                        } else if (item instanceof Double adjustment && adjustment < WORD_GAP) {
+                            text.append(' ');
+                        }
+                    }
+                }
+            }
+            case "Td", "TD", "T*", "Tm", "BT", "ET" -> text.append(' ');
+            default -> {
+            }
+        }
+    }
+
+    private static void appendLast(List<Object> operands, StringBuilder text) {
+        if (!operands.isEmpty() && operands.get(operands.size() - 1) instanceof CharSequence string) {
+            text.append(string);
+        }
+    }
+
+    private static int literalString(byte[] data, int i, StringBuilder out) {
+        int depth = 1;
+        while (i < data.length) {
+            int b = data[i++] & 0xff;
+            if (b == '\\' && i < data.length) {
+                int e = data[i++] & 0xff;
+                switch (e) {
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'b', 'f' -> out.append(' ');
+                    case '\r', '\n' -> {
+                        if (e == '\r' && i < data.length && data[i] == '\n') {
+                            i++;
+                        }
+                    }
+                    default -> {
+                        if (e >= '0' && e <= '7') {
+                            int value = e - '0';
+                            for (int n = 0; n < 2 && i < data.length && data[i] >= '0' && data[i] <= '7'; n++) {
+                                value = value * 8 + (data[i++] - '0');
+                            }
+                            out.append((char) (value & 0xff));
+                        } else {
+                            out.append((char) e);
+                        }
+                    }
+                }
+            } else if (b == '(') {
+                depth++;
+                out.append('(');
+            } else if (b == ')') {
+                if (--depth == 0) {
+                    break;
+                }
+                out.append(')');
+            } else {
+                out.append((char) b);
+            }
+        }
+        return i;
+    }
+
+    private static int hexString(byte[] data, int i, StringBuilder out) {
+        int pending = -1;
+        while (i < data.length) {
+            int b = data[i++] & 0xff;
+            if (b == '>') {
+                break;
+            }
+            int digit = Character.digit(b, 16);
+            if (digit < 0) {
+                continue;
+            }
+            if (pending < 0) {
+                pending = digit;
+            } else {
+                out.append((char) (pending << 4 | digit));
+                pending = -1;
+            }
+        }
+        if (pending >= 0) {
+            out.append((char) (pending << 4));
+        }
+        return i;
+    }
+
+    /** Skips inline image data up to and including its {@code EI} operator. */
+    private static int skipInlineImage(byte[] data, int i) {
+        for (; i + 2 < data.length; i++) {
+            if (data[i] == 'E' && data[i + 1] == 'I' && isWhitespace(data[i - 1] & 0xff)
+                    && isWhitespace(data[i + 2] & 0xff)) {
+                return i + 2;
+            }
+        }
+        return data.length;
+    }
+
+    private static Object number(String token) {
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    private static int endOfToken(byte[] data, int i) {
+        while (i < data.length && isRegular(data[i] & 0xff)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    private static boolean isRegular(int b) {
+        return !isWhitespace(b) && "()<>[]{}/%".indexOf(b) < 0;
+    }
+}
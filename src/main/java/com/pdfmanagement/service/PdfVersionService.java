@@ -0,0 +1,115 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Adds and lists versions of a document.
+ * <p>
+ * A new version is always stacked on the document's latest version. The upload is streamed through
+ * {@link FileStorageService#storeAppend}, so when it is an incremental update of the latest version (the
+ * usual case for signed or annotated PDFs) only the appended bytes are stored and storage grows with the
+ * edit, not the document. Reading a version then means reading its chain of tails after the last complete
+ * file; to keep that bounded, once a chain has {@code pdf.versions.max-tail-chain} tails the next version
+ * is stored whole.
+ * </p>
+ *
+ * <p>
+ * The upload's announced length is reserved against the user's storage quota before it is read, and only
+ * the bytes actually written (the tail, for an incremental update) are charged when the version is recorded.
+ * </p>
+ */
+@Service
+public class PdfVersionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfVersionService.class);
+
+    private final PDFRepository pdfRepository;
+    private final FileStorageService fileStorageService;
+    private final PdfContentService pdfContentService;
+    private final PdfFileService pdfFileService;
+    private final StorageQuotaService storageQuotaService;
+    private final int maxTailChain;
+
+    public PdfVersionService(PDFRepository pdfRepository, FileStorageService fileStorageService,
+                             PdfContentService pdfContentService, PdfFileService pdfFileService,
+                             StorageQuotaService storageQuotaService,
+                             @Value("${pdf.versions.max-tail-chain:16}") int maxTailChain) {
+        this.pdfRepository = pdfRepository;
+        this.fileStorageService = fileStorageService;
+        this.pdfContentService = pdfContentService;
+        this.pdfFileService = pdfFileService;
+        this.storageQuotaService = storageQuotaService;
+        this.maxTailChain = maxTailChain;
+    }
+
+    /**
+     * All versions of the document {@code pdfFile} belongs to, oldest first.
+     */
+    public List<PDFFile> versions(PDFFile pdfFile) {
+        return pdfRepository.findVersions(rootId(pdfFile));
+    }
+
+    /**
+     * Stores an upload as the next version of the document {@code pdfFile} belongs to.
+     *
+     * @param pdfFile  any version of the document
+     * @param filename the client-supplied filename of the new version
+     * @param in             the upload body; it is consumed and closed by this method
+     * @param declaredLength the announced body length, or a negative value if unknown
+     * @param email          the uploading user
+     * @return the new version
+     * @throws QuotaExceededException if the upload does not fit the user's quota; nothing is kept
+     * @throws IOException            if the upload is not a PDF or cannot be stored
+     */
+    public PDFFile addVersion(PDFFile pdfFile, String filename, InputStream in, long declaredLength, String email)
+            throws IOException {
+        List<PDFFile> versions = versions(pdfFile);
+        PDFFile previous = versions.isEmpty() ? pdfFile : versions.get(versions.size() - 1);
+
+        StorageQuotaService.Reservation reservation;
+        try {
+            reservation = storageQuotaService.reserve(email, declaredLength);
+        } catch (QuotaExceededException e) {
+            in.close();
+            throw e;
+        }
+        StoredFile stored = null;
+        PDFFile saved;
+        try {
+            InputStream body = reservation.limit(in);
+            if (previous.getSizeBytes() != null && pdfContentService.tailDepth(previous) < maxTailChain) {
+                stored = fileStorageService.storeAppend(filename, body, previous.getSizeBytes(),
+                        () -> pdfContentService.openStream(previous));
+            } else {
+                stored = fileStorageService.storeStream(filename, body);
+            }
+            saved = pdfFileService.recordVersion(previous, filename, stored, email, reservation);
+        } catch (IOException | RuntimeException e) {
+            storageQuotaService.release(reservation);
+            if (stored != null) {
+                Files.deleteIfExists(Paths.get(stored.getPath()));
+            }
+            throw e;
+        }
+        logger.info("Stored version {} of PDF {} ({} of {} bytes written)", saved.getVersionNumber(),
+                saved.getVersionRootId(), stored.getTailOffset() == null
+                        ? stored.getSizeBytes() : stored.getSizeBytes() - stored.getTailOffset(),
+                stored.getSizeBytes());
+        return saved;
+    }
+
+    private static Long rootId(PDFFile pdfFile) {
+        return pdfFile.getVersionRootId() != null ? pdfFile.getVersionRootId() : pdfFile.getId();
+    }
+}
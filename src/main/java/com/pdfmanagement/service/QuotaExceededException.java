@@ -0,0 +1,12 @@
+package com.pdfmanagement.service;
+
+/**
+ * Thrown when an upload would take a user past their storage quota, either when it is announced or while
+ * its bytes are being stored.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,461 @@
+package com.pdfmanagement.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * On-disk format of a stored file compressed at rest: independently compressed frames followed by a seek table.
+ * <p>
+ * Content is cut into frames of {@code frameSize} bytes, the last one shorter, and each is deflated on its own, or
+ * kept as is when deflating does not make it smaller (embedded JPEG images, already-compressed streams). The seek
+ * table at the end lists each frame's stored length and the CRC-32 of its content, and the footer gives the frame
+ * count and the content length. Since every frame starts from an empty dictionary, a read at any position inflates
+ * only the frames it overlaps: {@link Reader} is a {@link SeekableByteChannel} over the content that keeps the last
+ * inflated frame. A damaged frame fails its CRC instead of returning wrong bytes.
+ * </p>
+ *
+ * <pre>
+ *   0  magic "PMSEEK01"
+ *   8  frame size (int)
+ *  12  frames, back to back
+ *      seek table: per frame, stored length (int, high bit set when stored raw) and CRC-32 (int)
+ *      footer: frame count (int), content length (long), magic "PMSEEKTB"
+ * </pre>
+ *
+ * <p>
+ * {@link Writer} decides per file whether compressing is worth it: it holds back the first {@code sampleSize}
+ * bytes, deflates them, and only writes the compressed format if they shrink by at least {@code minSavings}.
+ * Otherwise the file is written unchanged, costing nothing to read back; a file shorter than the sample is decided
+ * on all of its content. The format carries no key material and sits under {@link ChunkedAeadFile} when both are
+ * enabled, so content is compressed before it is encrypted.
+ * </p>
+ */
+final class SeekableFrameFile {
+
+    static final byte[] MAGIC = "PMSEEK01".getBytes(StandardCharsets.US_ASCII);
+    static final int MIN_FRAME_SIZE = 4 * 1024;
+    static final int MAX_FRAME_SIZE = 4 * 1024 * 1024;
+
+    private static final byte[] FOOTER_MAGIC = "PMSEEKTB".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = MAGIC.length + Integer.BYTES;
+    private static final int ENTRY_SIZE = 2 * Integer.BYTES;
+    private static final int FOOTER_SIZE = Integer.BYTES + Long.BYTES + FOOTER_MAGIC.length;
+    private static final int RAW_FRAME = 0x80000000;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private SeekableFrameFile() {
+    }
+
+    static boolean hasMagic(byte[] block, int length) {
+        return length >= MAGIC.length && Arrays.equals(block, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    /** Whether the content of {@code channel} starts with the magic number; leaves its position at 0. */
+    static boolean hasMagic(SeekableByteChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        channel.position(0);
+        try {
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+        } finally {
+            channel.position(0);
+        }
+        return Arrays.equals(magic.array(), MAGIC);
+    }
+
+    static void checkFrameSize(int frameSize, String property) {
+        if (frameSize < MIN_FRAME_SIZE || frameSize > MAX_FRAME_SIZE) {
+            throw new IllegalStateException(property + " must be between " + MIN_FRAME_SIZE + " and "
+                    + MAX_FRAME_SIZE);
+        }
+    }
+
+    // CPU time of the calling thread, or wall-clock time where the JVM cannot measure it.
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static void readFully(SeekableByteChannel channel, long position, ByteBuffer buffer, String what)
+            throws IOException {
+        channel.position(position);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new StoredFileDamagedException("Compressed file ended inside its " + what);
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Compresses everything written to it into {@code out}, or passes it through unchanged if the sample does not
+     * compress well enough. Closing it writes the seek table, closes {@code out}, and then hands the finished
+     * writer to {@code onClose} for its statistics.
+     */
+    static final class Writer extends OutputStream {
+        private final OutputStream out;
+        private final int frameSize;
+        private final double minSavings;
+        private final Consumer<Writer> onClose;
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private final byte[] frame;
+        private final byte[] deflated;
+        private final ByteArrayOutputStream table = new ByteArrayOutputStream();
+        private byte[] sample;
+        private int sampled;
+        private int filled;
+        private boolean compressed;
+        private int frameCount;
+        private long contentLength;
+        private long storedLength;
+        private long cpuNanos;
+        private boolean closed;
+
+        Writer(OutputStream out, int frameSize, int level, int sampleSize, double minSavings,
+               Consumer<Writer> onClose) {
+            this.out = out;
+            this.frameSize = frameSize;
+            this.minSavings = minSavings;
+            this.onClose = onClose;
+            this.deflater = new Deflater(level, true);
+            this.frame = new byte[frameSize];
+            this.deflated = new byte[frameSize];
+            // The sample is a whole number of frames, so compressing it yields the file's first frames.
+            this.sample = new byte[Math.max(1, (sampleSize + frameSize - 1) / frameSize) * frameSize];
+        }
+
+        /** Whether the file was written in the compressed format. */
+        boolean compressed() {
+            return compressed;
+        }
+
+        long contentLength() {
+            return contentLength;
+        }
+
+        /** Bytes handed to the underlying stream, including the header and seek table. */
+        long storedLength() {
+            return storedLength;
+        }
+
+        /** CPU time spent deflating, including the sample of a file that was left uncompressed. */
+        long cpuNanos() {
+            return cpuNanos;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            contentLength += len;
+            if (sample != null) {
+                int n = Math.min(len, sample.length - sampled);
+                System.arraycopy(b, off, sample, sampled, n);
+                sampled += n;
+                off += n;
+                len -= n;
+                if (sampled < sample.length) {
+                    return;
+                }
+                decide();
+            }
+            if (!compressed) {
+                emit(b, off, len);
+                return;
+            }
+            while (len > 0) {
+                int n = Math.min(len, frameSize - filled);
+                System.arraycopy(b, off, frame, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+                if (filled == frameSize) {
+                    writeFrame(frame, 0, filled);
+                    filled = 0;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try (out) {
+                if (sample != null) {
+                    decide();
+                }
+                if (compressed) {
+                    if (filled > 0) {
+                        writeFrame(frame, 0, filled);
+                    }
+                    ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE)
+                            .putInt(frameCount).putLong(contentLength).put(FOOTER_MAGIC);
+                    emit(table.toByteArray(), 0, table.size());
+                    emit(footer.array(), 0, FOOTER_SIZE);
+                }
+            } finally {
+                deflater.end();
+            }
+            onClose.accept(this);
+        }
+
+        private void decide() throws IOException {
+            byte[] held = sample;
+            int length = sampled;
+            sample = null;
+            ByteArrayOutputStream frames = new ByteArrayOutputStream(length);
+            ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            for (int from = 0; from < length; from += frameSize) {
+                int n = Math.min(frameSize, length - from);
+                int stored = deflate(held, from, n);
+                if (stored < 0) {
+                    frames.write(held, from, n);
+                } else {
+                    frames.write(deflated, 0, stored);
+                }
+                entries.writeBytes(entry(stored < 0 ? n | RAW_FRAME : stored, held, from, n));
+            }
+            long overhead = HEADER_SIZE + entries.size() + FOOTER_SIZE;
+            if (length > 0 && frames.size() + overhead <= length * (1 - minSavings)) {
+                compressed = true;
+                emit(ByteBuffer.allocate(HEADER_SIZE).put(MAGIC).putInt(frameSize).array(), 0, HEADER_SIZE);
+                emit(frames.toByteArray(), 0, frames.size());
+                table.writeBytes(entries.toByteArray());
+                frameCount = (length + frameSize - 1) / frameSize;
+            } else {
+                emit(held, 0, length);
+            }
+        }
+
+        private void writeFrame(byte[] b, int off, int len) throws IOException {
+            int stored = deflate(b, off, len);
+            if (stored < 0) {
+                emit(b, off, len);
+            } else {
+                emit(deflated, 0, stored);
+            }
+            table.writeBytes(entry(stored < 0 ? len | RAW_FRAME : stored, b, off, len));
+            frameCount++;
+        }
+
+        /** Deflates one frame into {@link #deflated}, returning its length, or -1 if it did not get smaller. */
+        private int deflate(byte[] b, int off, int len) {
+            long start = cpuTime();
+            try {
+                deflater.reset();
+                deflater.setInput(b, off, len);
+                deflater.finish();
+                int n = 0;
+                while (!deflater.finished() && n < len) {
+                    n += deflater.deflate(deflated, n, len - n);
+                }
+                return deflater.finished() && n < len ? n : -1;
+            } finally {
+                cpuNanos += cpuTime() - start;
+            }
+        }
+
+        private byte[] entry(int stored, byte[] b, int off, int len) {
+            crc.reset();
+            crc.update(b, off, len);
+            return ByteBuffer.allocate(ENTRY_SIZE).putInt(stored).putInt((int) crc.getValue()).array();
+        }
+
+        private void emit(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            storedLength += len;
+        }
+    }
+
+    /**
+     * Read-only channel over the content of a compressed file, itself read from {@code source}. Reads inflate, and
+     * check, only the frames they touch; the most recently inflated frame is kept, so sequential reads inflate
+     * each frame once.
+     */
+    static final class Reader implements SeekableByteChannel {
+        private final SeekableByteChannel source;
+        private final int frameSize;
+        private final long contentLength;
+        private final long[] offsets;
+        private final int[] entries;
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] stored;
+        private final byte[] plain;
+        private int plainFrame = -1;
+        private int plainLength;
+        private long position;
+
+        /**
+         * Reads the header and seek table of the compressed file in {@code source}.
+         *
+         * @throws StoredFileDamagedException if they are malformed or do not add up to the size of {@code source}
+         */
+        Reader(SeekableByteChannel source) throws IOException {
+            this.source = source;
+            long size = source.size();
+            if (size < HEADER_SIZE + FOOTER_SIZE) {
+                throw new StoredFileDamagedException("Compressed file is truncated");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(source, 0, header, "header");
+            this.frameSize = header.getInt(MAGIC.length);
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            readFully(source, size - FOOTER_SIZE, footer, "footer");
+            int frameCount = footer.getInt();
+            this.contentLength = footer.getLong();
+            byte[] magic = new byte[FOOTER_MAGIC.length];
+            footer.get(magic);
+            if (!Arrays.equals(magic, FOOTER_MAGIC) || frameSize < MIN_FRAME_SIZE || frameSize > MAX_FRAME_SIZE
+                    || contentLength < 0 || frameCount != (contentLength + frameSize - 1) / frameSize
+                    || (long) frameCount * ENTRY_SIZE > size - HEADER_SIZE - FOOTER_SIZE) {
+                throw new StoredFileDamagedException(
+                        "Compressed file footer is corrupt; the file was truncated or damaged");
+            }
+            long tableStart = size - FOOTER_SIZE - (long) frameCount * ENTRY_SIZE;
+            ByteBuffer table = ByteBuffer.allocate(frameCount * ENTRY_SIZE);
+            readFully(source, tableStart, table, "seek table");
+            this.offsets = new long[frameCount + 1];
+            this.entries = new int[frameCount * 2];
+            offsets[0] = HEADER_SIZE;
+            for (int i = 0; i < frameCount; i++) {
+                entries[2 * i] = table.getInt();
+                entries[2 * i + 1] = table.getInt();
+                int length = entries[2 * i] & ~RAW_FRAME;
+                if (length > frameSize) {
+                    throw new StoredFileDamagedException(
+                            "Seek table of a compressed file is corrupt at frame " + i);
+                }
+                offsets[i + 1] = offsets[i] + length;
+            }
+            if (offsets[frameCount] != tableStart) {
+                throw new StoredFileDamagedException("Compressed file's frames take "
+                        + (offsets[frameCount] - HEADER_SIZE) + " bytes but its seek table calls for "
+                        + (tableStart - HEADER_SIZE));
+            }
+            this.stored = new byte[frameSize];
+            this.plain = new byte[frameSize];
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (position >= contentLength) {
+                return -1;
+            }
+            int index = (int) (position / frameSize);
+            if (index != plainFrame) {
+                inflate(index);
+            }
+            int offset = (int) (position - (long) index * frameSize);
+            int n = Math.min(dst.remaining(), plainLength - offset);
+            dst.put(plain, offset, n);
+            position += n;
+            return n;
+        }
+
+        private void inflate(int index) throws IOException {
+            plainFrame = -1;
+            int expected = (int) Math.min(frameSize, contentLength - (long) index * frameSize);
+            int length = (int) (offsets[index + 1] - offsets[index]);
+            boolean raw = (entries[2 * index] & RAW_FRAME) != 0;
+            ByteBuffer buffer = ByteBuffer.wrap(raw ? plain : stored, 0, length);
+            readFully(source, offsets[index], buffer, "frame " + index);
+            int n = length;
+            if (!raw) {
+                inflater.reset();
+                inflater.setInput(stored, 0, length);
+                try {
+                    n = inflater.inflate(plain, 0, expected);
+                } catch (DataFormatException e) {
+                    throw new StoredFileDamagedException("Frame " + index + " of a compressed file is corrupt", e);
+                }
+                if (!inflater.finished()) {
+                    n = -1;
+                }
+            }
+            crc.reset();
+            crc.update(plain, 0, Math.max(0, n));
+            if (n != expected || (int) crc.getValue() != entries[2 * index + 1]) {
+                throw new StoredFileDamagedException("Frame " + index + " of a compressed file failed its checksum");
+            }
+            plainLength = n;
+            plainFrame = index;
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position");
+            }
+            this.position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return contentLength;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            source.close();
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!source.isOpen()) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
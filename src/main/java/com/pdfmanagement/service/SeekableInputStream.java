@@ -0,0 +1,61 @@
+package com.pdfmanagement.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * {@link InputStream} over a {@link SeekableByteChannel} whose {@link #skip} moves the channel's position instead
+ * of reading. A range download skips to its first byte this way, so an encrypted file decrypts only the chunks
+ * the range covers and a tail-stored version opens only the segments it needs.
+ */
+final class SeekableInputStream extends InputStream {
+
+    private final SeekableByteChannel channel;
+
+    SeekableInputStream(SeekableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long position = channel.position();
+        long skipped = Math.min(n, Math.max(0, channel.size() - position));
+        channel.position(position + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Math.max(0, channel.size() - channel.position()), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,133 @@
+package com.pdfmanagement.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only {@link SeekableByteChannel} over several files' content laid end to end.
+ * <p>
+ * A version stored as appended tails is the base file followed by each tail in order; this channel
+ * presents that sequence as one file, so random-access readers such as {@link PdfObjectReader} never
+ * need the version materialized. A read that crosses a segment boundary returns only the bytes up to
+ * the boundary, which callers already handle as a short read.
+ * </p>
+ *
+ * <p>
+ * Segments are the channels {@link StoredFileCodec} opened, so each file may be stored in its own format;
+ * segment lengths are those of their content.
+ * </p>
+ */
+final class SegmentedChannel implements SeekableByteChannel {
+
+    private final SeekableByteChannel[] channels;
+    private final long[] starts;
+    private final long size;
+    private long position;
+    private boolean open = true;
+
+    /** Takes ownership of the already opened {@code segments}, which this channel closes. */
+    SegmentedChannel(List<SeekableByteChannel> segments) throws IOException {
+        this.channels = segments.toArray(new SeekableByteChannel[0]);
+        this.starts = new long[channels.length];
+        long offset = 0;
+        for (int i = 0; i < channels.length; i++) {
+            starts[i] = offset;
+            offset += channels[i].size();
+        }
+        this.size = offset;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        int index = segmentAt(position);
+        int n = channels[index].position(position - starts[index]).read(dst);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        this.position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long newSize) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        IOException failure = null;
+        for (SeekableByteChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** Index of the last non-empty segment starting at or before {@code offset}. */
+    private int segmentAt(long offset) {
+        int index = Arrays.binarySearch(starts, offset);
+        if (index < 0) {
+            return -index - 2;
+        }
+        // Empty segments share their start with the next one; skip to the segment that holds the byte.
+        while (index + 1 < starts.length && starts[index + 1] == offset) {
+            index++;
+        }
+        return index;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
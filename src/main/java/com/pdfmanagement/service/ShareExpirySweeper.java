@@ -0,0 +1,75 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.repository.SharedFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Background job that deletes expired share links.
+ * <p>
+ * Used-up and revoked links are deleted once their expiry passes too; until then their rows are what
+ * {@link ShareRevocationList} is loaded from, so signed tokens for them keep being refused. Revoked links without
+ * an expiry are kept for the same reason.
+ * </p>
+ *
+ * <p>
+ * Each run deletes in batches of {@code shares.sweep.batch-size} rows, one short transaction per batch, until
+ * a batch comes back short or {@code shares.sweep.max-batches} batches have run; whatever is left waits for the
+ * next run. Rows are picked from the partial {@code expires_at} index with {@code SKIP LOCKED}, so the sweeper
+ * never queues behind a share being used and never holds more than one batch of row locks.
+ * </p>
+ *
+ * <p>
+ * Controlled by {@code shares.sweep.enabled} (default {@code true}) and {@code shares.sweep.interval-ms}
+ * (default five minutes).
+ * </p>
+ */
+@Component
+public class ShareExpirySweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShareExpirySweeper.class);
+
+    private final SharedFileRepository sharedFileRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${shares.sweep.enabled:true}")
+    private boolean enabled;
+
+    @Value("${shares.sweep.batch-size:500}")
+    private int batchSize;
+
+    @Value("${shares.sweep.max-batches:20}")
+    private int maxBatches;
+
+    public ShareExpirySweeper(SharedFileRepository sharedFileRepository, TransactionTemplate transactionTemplate) {
+        this.sharedFileRepository = sharedFileRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Scheduled(initialDelayString = "${shares.sweep.interval-ms:300000}",
+               fixedDelayString = "${shares.sweep.interval-ms:300000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            Integer deleted = transactionTemplate.execute(status ->
+                    sharedFileRepository.deleteExpiredBatch(now, batchSize));
+            total += deleted == null ? 0 : deleted;
+            if (deleted == null || deleted < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            logger.info("Deleted {} expired share links", total);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.repository.SharedFileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory set of share ids whose signed tokens must be refused although they have not expired.
+ * <p>
+ * Signed tokens are verified without reading {@code shared_file}, so revoking a share only takes effect where
+ * this set knows about it. Revocations made on any node are added through the {@link CacheInvalidationBus},
+ * within milliseconds. As a backstop for notifications that never arrive, the set is also reloaded from the
+ * database every {@code shares.tokens.revocation-refresh-ms} (default five seconds). The set only holds shares
+ * that were revoked before their expiry and have not reached it yet, so it stays small.
+ * </p>
+ *
+ * <p>
+ * The first check loads the set synchronously, so a freshly started node never accepts a token it has not
+ * checked against the database at least once. If a later reload fails, the previous set is kept.
+ * </p>
+ */
+@Component
+public class ShareRevocationList {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShareRevocationList.class);
+
+    private final SharedFileRepository sharedFileRepository;
+
+    private volatile Set<Long> revoked;
+
+    // Revoked here since the last reload began, so a reload that read the table just before cannot drop them.
+    private final Set<Long> recent = ConcurrentHashMap.newKeySet();
+
+    public ShareRevocationList(SharedFileRepository sharedFileRepository) {
+        this.sharedFileRepository = sharedFileRepository;
+    }
+
+    public boolean isRevoked(long shareId) {
+        Set<Long> current = revoked;
+        if (current == null) {
+            current = load();
+        }
+        return current.contains(shareId) || recent.contains(shareId);
+    }
+
+    public void add(long shareId) {
+        recent.add(shareId);
+    }
+
+    @Scheduled(initialDelayString = "${shares.tokens.revocation-refresh-ms:5000}",
+               fixedDelayString = "${shares.tokens.revocation-refresh-ms:5000}")
+    public void refresh() {
+        try {
+            load();
+        } catch (RuntimeException e) {
+            logger.warn("Could not reload revoked share links, keeping {} known: {}",
+                    revoked == null ? 0 : revoked.size(), e.getMessage());
+        }
+    }
+
+    private synchronized Set<Long> load() {
+        Set<Long> pending = new HashSet<>(recent);
+        Set<Long> loaded = Set.copyOf(sharedFileRepository.findRevokedIds(LocalDateTime.now()));
+        revoked = loaded;
+        // Anything revoked before the query started is in the table now; later additions stay in recent.
+        recent.removeAll(pending);
+        return loaded;
+    }
+}
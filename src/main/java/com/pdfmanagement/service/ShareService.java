@@ -0,0 +1,245 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.model.SharedFile;
+import com.pdfmanagement.repository.PDFRepository;
+import com.pdfmanagement.repository.SharedFileRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Creates share links and resolves share tokens, enforcing expiry, revocation, use limits and permissions.
+ * <p>
+ * Creation is idempotent: an active link for the same file and policy (expiry duration, use limit and
+ * permissions) is returned instead of inserting another row, unless a new link is explicitly requested.
+ * Creations for one file are serialized by a row lock on the file, so concurrent clicks still produce a single
+ * link.
+ * </p>
+ *
+ * <p>
+ * Links are handed out as signed tokens ({@link ShareTokenSigner}) that carry the file id, share id, expiry and
+ * permissions. {@link #resolve} checks their signature and expiry in memory and their share id against
+ * {@link ShareRevocationList}, then loads the file from the second-level cache, so a guest request does not read
+ * {@code shared_file} at all. Tokens are derived from the row, so a reused link yields the same token every
+ * time. Legacy UUID tokens are still resolved through the cached token lookup.
+ * </p>
+ *
+ * <p>
+ * Only links with a use limit write on access, through a row lock on the share. When the last use is recorded
+ * the link is marked revoked, as it is when its owner revokes it; its expiry is never moved, because tokens
+ * already handed out carry it.
+ * </p>
+ */
+@Service
+public class ShareService {
+
+    /** Outcome of a share request: the link and whether it was created by this call. */
+    public record ShareResult(SharedFile share, boolean created) {
+    }
+
+    /** A resolved share token: the shared file and what the link allows. */
+    public record ShareAccess(long shareId, PDFFile pdfFile, int permissions, boolean limited) {
+        public boolean allows(int permission) {
+            return (permissions & permission) == permission;
+        }
+    }
+
+    // Token flag marking a link with a use limit; the low bits are the permissions.
+    private static final int FLAG_LIMITED = 1 << 8;
+
+    private static final Map<String, Integer> PERMISSION_NAMES = Map.of(
+            "view", SharedFile.PERMISSION_VIEW,
+            "download", SharedFile.PERMISSION_DOWNLOAD,
+            "comment", SharedFile.PERMISSION_COMMENT);
+
+    private final SharedFileRepository sharedFileRepository;
+    private final PDFRepository pdfRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShareTokenSigner tokenSigner;
+    private final ShareRevocationList revocationList;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public ShareService(SharedFileRepository sharedFileRepository, PDFRepository pdfRepository,
+                        TransactionTemplate transactionTemplate, ShareTokenSigner tokenSigner,
+                        ShareRevocationList revocationList, CacheInvalidationBus cacheInvalidationBus) {
+        this.sharedFileRepository = sharedFileRepository;
+        this.pdfRepository = pdfRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.tokenSigner = tokenSigner;
+        this.revocationList = revocationList;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    /**
+     * Returns an active share link for a file, creating one only if none matches the policy.
+     *
+     * @param pdfFile          the file to share
+     * @param expiresInSeconds lifetime of a new link; null for no expiry
+     * @param maxUses          content fetches a new link allows; null for no limit
+     * @param permissions      what the link allows ({@code view}, {@code download}, {@code comment}); null for all
+     * @param forceNew         create a new link even if a matching one is active
+     * @return the link and whether it was created
+     * @throws IllegalArgumentException if a limit is not positive or a permission is unknown
+     */
+    public ShareResult share(PDFFile pdfFile, Long expiresInSeconds, Integer maxUses, List<String> permissions,
+                             boolean forceNew) {
+        if (expiresInSeconds != null && expiresInSeconds <= 0) {
+            throw new IllegalArgumentException("expiresInSeconds must be positive");
+        }
+        if (maxUses != null && maxUses <= 0) {
+            throw new IllegalArgumentException("maxUses must be positive");
+        }
+        int permissionBits = permissions(permissions);
+        String policy = policy(expiresInSeconds, maxUses, permissionBits);
+
+        return transactionTemplate.execute(status -> {
+            pdfRepository.findByIdForUpdate(pdfFile.getId());
+            LocalDateTime now = LocalDateTime.now();
+            if (!forceNew) {
+                List<SharedFile> active = sharedFileRepository.findActive(pdfFile.getId(), policy, now);
+                if (!active.isEmpty()) {
+                    return new ShareResult(active.get(0), false);
+                }
+            }
+            SharedFile share = new SharedFile();
+            share.setPdfFile(pdfFile);
+            share.setPolicy(policy);
+            share.setMaxUses(maxUses);
+            share.setPermissions(permissionBits);
+            if (expiresInSeconds != null) {
+                // Whole seconds, so the expiry signed into the token is exactly the stored one.
+                share.setExpiresAt(now.plusSeconds(expiresInSeconds).truncatedTo(ChronoUnit.SECONDS));
+            }
+            return new ShareResult(sharedFileRepository.save(share), true);
+        });
+    }
+
+    /** The signed token for a share; the same share always yields the same token. */
+    public String tokenFor(SharedFile share) {
+        long expiresAt = share.getExpiresAt() == null ? 0
+                : share.getExpiresAt().atZone(ZoneId.systemDefault()).toEpochSecond();
+        int flags = share.getPermissions() | (share.getMaxUses() != null ? FLAG_LIMITED : 0);
+        return tokenSigner.sign(new ShareTokenSigner.Claims(share.getPdfFile().getId(), share.getId(),
+                expiresAt, flags));
+    }
+
+    /**
+     * Resolves a signed or legacy share token, treating expired, exhausted and revoked links as unknown.
+     */
+    public Optional<ShareAccess> resolve(String shareToken) {
+        if (ShareTokenSigner.isSigned(shareToken)) {
+            long nowSeconds = System.currentTimeMillis() / 1000;
+            return tokenSigner.verify(shareToken)
+                    .filter(claims -> claims.expiresAt() == 0 || claims.expiresAt() > nowSeconds)
+                    .filter(claims -> !revocationList.isRevoked(claims.shareId()))
+                    .flatMap(claims -> pdfRepository.findById(claims.pdfId())
+                            .map(pdf -> new ShareAccess(claims.shareId(), pdf,
+                                    claims.flags() & SharedFile.ALL_PERMISSIONS,
+                                    (claims.flags() & FLAG_LIMITED) != 0)));
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return sharedFileRepository.findIdByShareToken(shareToken)
+                .flatMap(sharedFileRepository::findById)
+                .filter(share -> share.isActive(now))
+                .map(share -> new ShareAccess(share.getId(), share.getPdfFile(), share.getPermissions(),
+                        share.getMaxUses() != null));
+    }
+
+    /**
+     * Counts one content fetch through a link. Links without a use limit are not written to.
+     *
+     * @return false if the link has been revoked or has no uses left, in which case nothing may be served
+     */
+    public boolean recordUse(ShareAccess access) {
+        if (!access.limited()) {
+            return true; // expiry and revocation were checked when the token was resolved
+        }
+        // Uses left after this one, or -1 if it was refused.
+        Integer remaining = transactionTemplate.execute(status -> {
+            SharedFile locked = sharedFileRepository.findByIdForUpdate(access.shareId()).orElse(null);
+            LocalDateTime now = LocalDateTime.now();
+            if (locked == null || !locked.isActive(now) || locked.getUseCount() >= locked.getMaxUses()) {
+                return -1;
+            }
+            locked.setUseCount(locked.getUseCount() + 1);
+            if (locked.getUseCount() >= locked.getMaxUses()) {
+                locked.setRevokedAt(now);
+            }
+            return locked.getMaxUses() - locked.getUseCount();
+        });
+        if (remaining == null || remaining < 0) {
+            return false;
+        }
+        if (remaining == 0) {
+            cacheInvalidationBus.shareRevoked(access.shareId());
+        }
+        return true;
+    }
+
+    /**
+     * Turns a link off before its expiry. Signed tokens for it are refused here at once and on other nodes
+     * as soon as the {@link CacheInvalidationBus} reaches them.
+     *
+     * @return false if the link was already revoked or has expired
+     */
+    public boolean revoke(SharedFile share) {
+        Boolean revoked = transactionTemplate.execute(status -> {
+            SharedFile locked = sharedFileRepository.findByIdForUpdate(share.getId()).orElse(null);
+            LocalDateTime now = LocalDateTime.now();
+            if (locked == null || !locked.isActive(now)) {
+                return false;
+            }
+            locked.setRevokedAt(now);
+            return true;
+        });
+        if (Boolean.TRUE.equals(revoked)) {
+            cacheInvalidationBus.shareRevoked(share.getId());
+            return true;
+        }
+        return false;
+    }
+
+    /** Names of the permissions in a bit set, in a fixed order, for API responses. */
+    public static List<String> permissionNames(int permissions) {
+        return PERMISSION_NAMES.entrySet().stream()
+                .filter(entry -> (permissions & entry.getValue()) != 0)
+                .sorted(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    static int permissions(List<String> names) {
+        if (names == null) {
+            return SharedFile.ALL_PERMISSIONS;
+        }
+        int bits = 0;
+        for (String name : names) {
+            Integer bit = name == null ? null : PERMISSION_NAMES.get(name.toLowerCase(Locale.ROOT));
+            if (bit == null) {
+                throw new IllegalArgumentException("Unknown permission: " + name
+                        + " (expected view, download or comment)");
+            }
+            bits |= bit;
+        }
+        if (bits == 0) {
+            throw new IllegalArgumentException("permissions must not be empty");
+        }
+        return bits;
+    }
+
+    static String policy(Long expiresInSeconds, Integer maxUses, int permissions) {
+        String policy = expiresInSeconds == null && maxUses == null ? SharedFile.UNLIMITED_POLICY
+                : "ttl=" + (expiresInSeconds == null ? "none" : expiresInSeconds + "s")
+                + ";uses=" + (maxUses == null ? "none" : maxUses);
+        // Full-permission policies keep their earlier form, so links created before permissions are still reused.
+        return permissions == SharedFile.ALL_PERMISSIONS ? policy : policy + ";perms=" + permissions;
+    }
+}
@@ -0,0 +1,131 @@
+package com.pdfmanagement.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Issues and verifies signed share tokens.
+ * <p>
+ * A token is {@code s1.<file>.<share>.<expiry>.<flags>.<mac>}: the file id, share id and expiry (epoch seconds,
+ * {@code 0} for none) in base 36, the flags in decimal, and the first 128 bits of an HMAC-SHA256 over everything
+ * before the last dot, in unpadded base64url. The result is about as long as a UUID and can be checked with
+ * nothing but the key, so a guest request needs no database read to learn which file it may see and how.
+ * </p>
+ *
+ * <p>
+ * The key comes from {@code shares.tokens.secret} (base64, at least 32 bytes). Every node must use the same key.
+ * Without one a random key is generated at startup, which is only suitable for a single development instance:
+ * signed links stop working when it restarts.
+ * </p>
+ */
+@Component
+public class ShareTokenSigner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShareTokenSigner.class);
+
+    static final String PREFIX = "s1.";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAC_BYTES = 16;
+    private static final int MIN_KEY_BYTES = 32;
+
+    /** What a valid token says about its share. {@code expiresAt} is epoch seconds, 0 for none. */
+    public record Claims(long pdfId, long shareId, long expiresAt, int flags) {
+    }
+
+    private final SecretKeySpec key;
+
+    // Mac instances are not thread-safe; each thread keeps one initialized with the key.
+    private final ThreadLocal<Mac> macs;
+
+    public ShareTokenSigner(@Value("${shares.tokens.secret:}") String secret) {
+        byte[] keyBytes;
+        if (StringUtils.hasText(secret)) {
+            keyBytes = Base64.getDecoder().decode(secret.trim());
+            if (keyBytes.length < MIN_KEY_BYTES) {
+                throw new IllegalStateException("shares.tokens.secret must be at least " + MIN_KEY_BYTES + " bytes");
+            }
+        } else {
+            logger.warn("shares.tokens.secret is not set; using a random key, so signed share links will not "
+                    + "survive a restart or work across instances");
+            keyBytes = new byte[MIN_KEY_BYTES];
+            new SecureRandom().nextBytes(keyBytes);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public static boolean isSigned(String token) {
+        return token != null && token.startsWith(PREFIX);
+    }
+
+    public String sign(Claims claims) {
+        String body = PREFIX + Long.toString(claims.pdfId(), 36)
+                + "." + Long.toString(claims.shareId(), 36)
+                + "." + Long.toString(claims.expiresAt(), 36)
+                + "." + claims.flags();
+        return body + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(mac(body));
+    }
+
+    /**
+     * Checks a token's signature and decodes it. Expiry and revocation are left to the caller.
+     *
+     * @return the claims, or empty if the token is malformed or was not signed with this key
+     */
+    public Optional<Claims> verify(String token) {
+        if (!isSigned(token)) {
+            return Optional.empty();
+        }
+        int macStart = token.lastIndexOf('.');
+        if (macStart < PREFIX.length()) {
+            return Optional.empty();
+        }
+        String[] fields = token.substring(PREFIX.length(), macStart).split("\\.", -1);
+        if (fields.length != 4) {
+            return Optional.empty();
+        }
+        byte[] presented;
+        try {
+            presented = Base64.getUrlDecoder().decode(token.substring(macStart + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (!MessageDigest.isEqual(presented, mac(token.substring(0, macStart)))) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new Claims(Long.parseLong(fields[0], 36), Long.parseLong(fields[1], 36),
+                    Long.parseLong(fields[2], 36), Integer.parseInt(fields[3])));
+        } catch (NumberFormatException e) {
+            return Optional.empty(); // signed by us, so this only happens if the format changes without a new prefix
+        }
+    }
+
+    private byte[] mac(String body) {
+        byte[] full = macs.get().doFinal(body.getBytes(StandardCharsets.US_ASCII));
+        return Arrays.copyOf(full, MAC_BYTES);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.model.PdfFingerprint;
+import com.pdfmanagement.repository.PDFRepository;
+import com.pdfmanagement.repository.PdfFingerprintRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Finds a user's documents whose text is nearly the same: re-scans with an OCR layer, re-exports that differ only
+ * in a timestamp, a version with one paragraph changed.
+ * <p>
+ * Each document gets a {@link MinHash} signature of its extracted text, computed by the {@code pdf.fingerprint}
+ * background job after upload and stored in {@code pdf_fingerprint}. The signature's band keys go into
+ * {@code pdf_lsh_band}, a persistent LSH index: finding candidates is one indexed lookup of sixteen
+ * {@code (band, bucket)} pairs restricted to the owner's documents, however many documents there are, and only
+ * the candidates' signatures are compared. Adding a document inserts its sixteen rows; nothing is rebuilt, at
+ * startup or otherwise.
+ * </p>
+ *
+ * <p>
+ * When a fingerprint is computed, the owner's most similar other document at or above
+ * {@code pdf.similarity.threshold} (default 0.8) is recorded as the one it nearly duplicates. The similar-documents
+ * listing goes down to {@code pdf.similarity.min-similarity} (default 0.5); below that few pairs share a band
+ * anyway.
+ * </p>
+ */
+@Service
+public class SimilarDocumentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimilarDocumentService.class);
+
+    // Pairs sharing the most bands come first; beyond this many the rest are too unlikely to matter.
+    private static final int MAX_CANDIDATES = 200;
+
+    private static final String INSERT_BAND_SQL = "INSERT INTO pdf_lsh_band (band, bucket, pdf_id) VALUES (?, ?, ?)";
+
+    /** Another document of the same owner and its estimated similarity, from 0 to 1. */
+    public record Similar(PDFFile pdfFile, double similarity) {
+    }
+
+    private final PDFRepository pdfRepository;
+    private final PdfFingerprintRepository fingerprintRepository;
+    private final PdfContentService pdfContentService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${pdf.similarity.threshold:0.8}")
+    private double threshold;
+
+    @Value("${pdf.similarity.min-similarity:0.5}")
+    private double minSimilarity;
+
+    @Value("${pdf.similarity.max-text-chars:2000000}")
+    private int maxTextChars;
+
+    public SimilarDocumentService(PDFRepository pdfRepository, PdfFingerprintRepository fingerprintRepository,
+                                  PdfContentService pdfContentService, JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate) {
+        this.pdfRepository = pdfRepository;
+        this.fingerprintRepository = fingerprintRepository;
+        this.pdfContentService = pdfContentService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Computes and stores a document's fingerprint, replacing any earlier one, and records the document it nearly
+     * duplicates, if any.
+     *
+     * @throws IOException if the stored file cannot be opened
+     */
+    public PdfFingerprint fingerprint(PDFFile pdfFile) throws IOException {
+        String text;
+        try (SeekableByteChannel channel = pdfContentService.openChannel(pdfFile)) {
+            try {
+                text = PdfTextExtractor.extract(channel, maxTextChars);
+            } catch (IOException | RuntimeException e) {
+                // Retrying will not parse the file any better; record it as having no comparable text.
+                logger.warn("Could not extract text from PDF ID: {}: {}", pdfFile.getId(), e.getMessage());
+                text = "";
+            }
+        }
+        MinHash.Signature signature = MinHash.of(text);
+
+        PdfFingerprint fingerprint = new PdfFingerprint();
+        fingerprint.setPdfId(pdfFile.getId());
+        fingerprint.setComputedAt(LocalDateTime.now());
+        if (signature != null) {
+            fingerprint.setSignature(MinHash.encode(signature.values()));
+            fingerprint.setShingleCount(signature.shingles());
+            List<Similar> nearest = find(pdfFile, signature.values(), threshold, 1);
+            if (!nearest.isEmpty()) {
+                fingerprint.setNearDuplicateOf(nearest.get(0).pdfFile().getId());
+                fingerprint.setSimilarity(nearest.get(0).similarity());
+                logger.info("PDF ID: {} is a near-duplicate of PDF ID: {} (similarity {})", pdfFile.getId(),
+                        fingerprint.getNearDuplicateOf(), fingerprint.getSimilarity());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM pdf_lsh_band WHERE pdf_id = ?", pdfFile.getId());
+            fingerprintRepository.save(fingerprint);
+            if (signature != null) {
+                long[] buckets = MinHash.bands(signature.values());
+                List<Object[]> rows = new ArrayList<>(buckets.length);
+                for (int band = 0; band < buckets.length; band++) {
+                    rows.add(new Object[]{band, buckets[band], pdfFile.getId()});
+                }
+                jdbcTemplate.batchUpdate(INSERT_BAND_SQL, rows);
+            }
+        });
+        return fingerprint;
+    }
+
+    public Optional<PdfFingerprint> fingerprintOf(Long pdfId) {
+        return fingerprintRepository.findById(pdfId);
+    }
+
+    /**
+     * Lists the owner's other documents similar to {@code pdfFile}, most similar first.
+     *
+     * @param fingerprint the document's stored fingerprint, from {@link #fingerprintOf}
+     */
+    public List<Similar> findSimilar(PDFFile pdfFile, PdfFingerprint fingerprint, int limit) {
+        long[] signature = MinHash.decode(fingerprint.getSignature());
+        if (signature == null) {
+            return List.of();
+        }
+        return find(pdfFile, signature, minSimilarity, limit);
+    }
+
+    private List<Similar> find(PDFFile pdfFile, long[] signature, double min, int limit) {
+        long[] buckets = MinHash.bands(signature);
+        StringBuilder sql = new StringBuilder("SELECT b.pdf_id FROM pdf_lsh_band b JOIN pdffile p ON p.id = b.pdf_id "
+                + "WHERE p.uploaded_by = ? AND b.pdf_id <> ? AND (b.band, b.bucket) IN (");
+        List<Object> args = new ArrayList<>();
+        args.add(pdfFile.getUploadedBy());
+        args.add(pdfFile.getId());
+        for (int band = 0; band < buckets.length; band++) {
+            sql.append(band == 0 ? "(?, ?)" : ", (?, ?)");
+            args.add(band);
+            args.add(buckets[band]);
+        }
+        sql.append(") GROUP BY b.pdf_id ORDER BY COUNT(*) DESC, b.pdf_id DESC LIMIT ?");
+        args.add(MAX_CANDIDATES);
+        List<Long> candidates = jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray());
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        for (PdfFingerprint candidate : fingerprintRepository.findAllById(candidates)) {
+            long[] other = MinHash.decode(candidate.getSignature());
+            if (other != null) {
+                double similarity = MinHash.similarity(signature, other);
+                if (similarity >= min) {
+                    scores.put(candidate.getPdfId(), similarity);
+                }
+            }
+        }
+        return pdfRepository.findAllById(scores.keySet()).stream()
+                .map(similar -> new Similar(similar, scores.get(similar.getId())))
+                .sorted(Comparator.comparingDouble(Similar::similarity).reversed()
+                        .thenComparing(similar -> similar.pdfFile().getId(), Comparator.reverseOrder()))
+                .limit(limit)
+                .toList();
+    }
+}
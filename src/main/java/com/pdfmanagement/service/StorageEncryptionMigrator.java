@@ -0,0 +1,214 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Background job that brings files stored before encryption at rest was enabled, or under a retired master key,
+ * into the current format while the application keeps serving them.
+ * <p>
+ * Files are visited in id order, up to {@code storage.encryption.migrate.batch-size} (default 100) per run. A run
+ * starts no new file once it has used {@code storage.encryption.migrate.max-run-ms} (default 10 s), so it does not
+ * keep a thread of the shared scheduler for long, and the next run resumes after the last id seen. A plaintext
+ * file is encrypted into a staging file next to it, which is then read back: its content's size, and for a complete
+ * file its SHA-256, must match what was recorded at upload, and only then does the staging file replace the
+ * original with an atomic rename. A compressed file is encrypted as it is, still compressed. A file wrapped with a
+ * retired master key gets a new header and its encrypted chunks copied unchanged. Stored files are never modified
+ * in place, so a reader that opened the old file keeps reading it, and one that opens the path afterwards gets the
+ * new file; both see the same content. Versions stored as tails are migrated file by file like any other.
+ * </p>
+ *
+ * <p>
+ * I/O is paced to {@code storage.encryption.migrate.max-bytes-per-second} (default 50 MiB/s). A file that is
+ * missing or does not match its record is logged and left alone. Once a pass finds nothing left the job goes idle
+ * until the next restart. It only runs while {@code storage.encryption.enabled} is true, and can be switched off
+ * with {@code storage.encryption.migrate.enabled}.
+ * </p>
+ */
+@Component
+public class StorageEncryptionMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageEncryptionMigrator.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PDFRepository pdfRepository;
+    private final StoredFileCodec storedFileCodec;
+
+    @Value("${storage.encryption.migrate.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.encryption.migrate.batch-size:100}")
+    private int batchSize;
+
+    @Value("${storage.encryption.migrate.max-run-ms:10000}")
+    private long maxRunMs;
+
+    @Value("${storage.encryption.migrate.max-bytes-per-second:52428800}")
+    private long maxBytesPerSecond;
+
+    private long lastProcessedId = 0;
+    private boolean finished = false;
+    private long encrypted;
+    private long rewrapped;
+    private long failed;
+
+    public StorageEncryptionMigrator(PDFRepository pdfRepository, StoredFileCodec storedFileCodec) {
+        this.pdfRepository = pdfRepository;
+        this.storedFileCodec = storedFileCodec;
+    }
+
+    @Scheduled(initialDelayString = "${storage.encryption.migrate.interval-ms:60000}",
+               fixedDelayString = "${storage.encryption.migrate.interval-ms:60000}")
+    public void run() {
+        if (!enabled || finished || !storedFileCodec.encryptsNewFiles()) {
+            return;
+        }
+        List<PDFFile> batch = pdfRepository.findByIdGreaterThanOrderByIdAsc(lastProcessedId,
+                PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            finished = true;
+            logger.info("Storage encryption migration complete: {} files encrypted, {} re-wrapped, {} failed",
+                    encrypted, rewrapped, failed);
+            return;
+        }
+        IoThrottle throttle = new IoThrottle(maxBytesPerSecond);
+        long deadline = System.nanoTime() + maxRunMs * 1_000_000;
+        for (PDFFile pdfFile : batch) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            migrate(pdfFile, throttle);
+            lastProcessedId = pdfFile.getId();
+            if (System.nanoTime() - deadline > 0) {
+                return;
+            }
+        }
+    }
+
+    private void migrate(PDFFile pdfFile, IoThrottle throttle) {
+        Path path = Paths.get(pdfFile.getFilepath());
+        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ)) {
+            Optional<String> keyId = storedFileCodec.encryptionKeyId(source);
+            if (keyId.isEmpty()) {
+                encrypt(pdfFile, path, source, throttle);
+            } else if (!keyId.get().equals(storedFileCodec.currentKeyId())) {
+                rewrap(path, source, throttle);
+            }
+        } catch (NoSuchFileException e) {
+            failed++;
+            logger.warn("Skipping encryption of PDF ID: {}, file missing at {}", pdfFile.getId(), path);
+        } catch (IOException e) {
+            failed++;
+            logger.warn("Encryption of PDF ID: {} at {} failed: {}", pdfFile.getId(), path, e.getMessage());
+        }
+    }
+
+    private void encrypt(PDFFile pdfFile, Path path, FileChannel source, IoThrottle throttle) throws IOException {
+        Path staging = Files.createTempFile(path.getParent(), ".encrypt-", ".part");
+        boolean committed = false;
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream in = Channels.newInputStream(source.position(0));
+                 OutputStream out = storedFileCodec.newEncryptingStream(staging)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                    if (!throttle.acquire(read)) {
+                        return;
+                    }
+                }
+            }
+            // Checked on what was written, through the codec, since the source may itself be compressed.
+            MessageDigest digest = FileStorageService.newSha256();
+            long size = 0;
+            try (InputStream in = storedFileCodec.newInputStream(staging)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                    size += read;
+                    if (!throttle.acquire(read)) {
+                        return;
+                    }
+                }
+            }
+            // A tail holds only the bytes after tailOffset, and the recorded checksum covers the whole version.
+            Long expectedSize = pdfFile.getSizeBytes() == null ? null
+                    : pdfFile.getTailOffset() == null ? pdfFile.getSizeBytes()
+                    : pdfFile.getSizeBytes() - pdfFile.getTailOffset();
+            if (expectedSize != null && expectedSize != size) {
+                throw new IOException("file is " + size + " bytes but " + expectedSize + " were recorded");
+            }
+            String checksum = HexFormat.of().formatHex(digest.digest());
+            if (pdfFile.getTailOffset() == null && pdfFile.getChecksum() != null
+                    && !pdfFile.getChecksum().equals(checksum)) {
+                throw new IOException("checksum " + checksum + " does not match the recorded "
+                        + pdfFile.getChecksum());
+            }
+            Files.move(staging, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            encrypted++;
+            logger.debug("Encrypted PDF ID: {} at {} ({} bytes)", pdfFile.getId(), path, size);
+        } finally {
+            if (!committed) {
+                Files.deleteIfExists(staging);
+            }
+        }
+    }
+
+    private void rewrap(Path path, FileChannel source, IoThrottle throttle) throws IOException {
+        byte[] header = storedFileCodec.rewrapHeader(source, path);
+        Path staging = Files.createTempFile(path.getParent(), ".rewrap-", ".part");
+        boolean committed = false;
+        try {
+            try (FileChannel out = FileChannel.open(staging, StandardOpenOption.WRITE)) {
+                ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+                while (headerBuffer.hasRemaining()) {
+                    out.write(headerBuffer);
+                }
+                long position = ChunkedAeadFile.HEADER_SIZE;
+                long size = source.size();
+                while (position < size) {
+                    long n = source.transferTo(position, Math.min(BUFFER_SIZE, size - position), out);
+                    if (n <= 0) {
+                        throw new IOException("could not copy past byte " + position);
+                    }
+                    position += n;
+                    if (!throttle.acquire(n)) {
+                        return;
+                    }
+                }
+            }
+            Files.move(staging, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            rewrapped++;
+        } finally {
+            if (!committed) {
+                Files.deleteIfExists(staging);
+            }
+        }
+    }
+}
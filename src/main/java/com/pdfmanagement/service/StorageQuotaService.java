@@ -0,0 +1,239 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.StorageUsage;
+import com.pdfmanagement.repository.PDFRepository;
+import com.pdfmanagement.repository.StorageUsageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+
+/**
+ * Enforces per-user storage quotas and maintains the usage counters in {@code storage_usage}.
+ * <p>
+ * An upload first {@linkplain #reserve reserves} its announced length, before any byte is written; if that
+ * would exceed the user's byte or file quota it is rejected outright. The body is then read through
+ * {@link Reservation#limit}, which stops it at the reserved length, or at the remaining headroom when the
+ * length was not announced. When the file is recorded, {@link #commit} converts the reservation into used
+ * bytes in the same transaction as the {@code pdffile} insert, re-checking the quota against what was
+ * actually stored. A failed upload {@linkplain #release releases} its reservation.
+ * </p>
+ *
+ * <p>
+ * Every change is a single conditional update on the user's row, so counters are never computed with a
+ * {@code SUM} over {@code pdffile} on the request path. {@link StorageUsageReconciler} periodically compares
+ * them with {@code pdffile} and repairs drift, including reservations leaked by a crash.
+ * </p>
+ *
+ * <p>
+ * Defaults come from {@code storage.quota.default-bytes} and {@code storage.quota.default-files}; a user's
+ * {@code quota_bytes} and {@code max_files} columns override them.
+ * </p>
+ */
+@Service
+public class StorageQuotaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageQuotaService.class);
+
+    /**
+     * Quota held for one upload until it is committed or released.
+     *
+     * @param email the uploading user
+     * @param bytes bytes reserved; 0 when the length was not announced
+     * @param limit the most the upload may store
+     */
+    public record Reservation(String email, long bytes, long limit) {
+
+        /** Wraps the upload body so reading past {@link #limit} fails with {@link QuotaExceededException}. */
+        public InputStream limit(InputStream in) {
+            return new LimitedInputStream(in, limit);
+        }
+    }
+
+    private final StorageUsageRepository storageUsageRepository;
+    private final PDFRepository pdfRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${storage.quota.default-bytes:1073741824}")
+    private long defaultBytes;
+
+    @Value("${storage.quota.default-files:10000}")
+    private int defaultFiles;
+
+    @Value("${storage.quota.reservation-ttl-ms:3600000}")
+    private long reservationTtlMs;
+
+    public StorageQuotaService(StorageUsageRepository storageUsageRepository, PDFRepository pdfRepository,
+                               TransactionTemplate transactionTemplate) {
+        this.storageUsageRepository = storageUsageRepository;
+        this.pdfRepository = pdfRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Reserves quota for an upload before its body is read.
+     *
+     * @param email          the uploading user
+     * @param declaredLength the announced body length, or a negative value if unknown
+     * @throws QuotaExceededException if the upload does not fit the user's remaining quota
+     */
+    public Reservation reserve(String email, long declaredLength) {
+        long bytes = Math.max(declaredLength, 0);
+        Reservation reservation = transactionTemplate.execute(status -> {
+            storageUsageRepository.ensureExists(email);
+            if (storageUsageRepository.reserve(email, bytes, LocalDateTime.now(), defaultBytes, defaultFiles) == 0) {
+                return null;
+            }
+            if (declaredLength >= 0) {
+                return new Reservation(email, bytes, bytes);
+            }
+            StorageUsage usage = storageUsageRepository.findById(email).orElseThrow();
+            return new Reservation(email, 0, Math.max(remainingBytes(usage), 0));
+        });
+        if (reservation == null) {
+            throw new QuotaExceededException(declaredLength >= 0
+                    ? "Upload of " + declaredLength + " bytes exceeds the storage quota"
+                    : "Storage quota exhausted");
+        }
+        return reservation;
+    }
+
+    /**
+     * Records a stored upload against the user's usage. Must run in the transaction that inserts the file.
+     *
+     * @param storedBytes bytes the file occupies on disk
+     * @throws QuotaExceededException if what was stored no longer fits, for instance because other uploads of
+     *                                unknown length used the same headroom; the caller's transaction then rolls back
+     */
+    public void commit(Reservation reservation, long storedBytes) {
+        if (storageUsageRepository.commit(reservation.email(), reservation.bytes(), storedBytes, defaultBytes) == 0) {
+            throw new QuotaExceededException("Upload of " + storedBytes + " bytes exceeds the storage quota");
+        }
+    }
+
+    /** Returns a failed upload's reservation. */
+    public void release(Reservation reservation) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    storageUsageRepository.release(reservation.email(), reservation.bytes()));
+        } catch (RuntimeException e) {
+            // Reconciliation clears the reservation once it is older than the reservation TTL.
+            logger.warn("Could not release storage reservation of {}: {}", reservation.email(), e.getMessage());
+        }
+    }
+
+    /** Removes a deleted file from its owner's usage. Must run in the transaction that deletes the file. */
+    public void removeFile(String email, long storedBytes) {
+        storageUsageRepository.removeFile(email, storedBytes);
+    }
+
+    /** A user's counters; a user who never uploaded gets an empty row that is not saved. */
+    public StorageUsage usage(String email) {
+        return storageUsageRepository.findById(email).orElseGet(() -> {
+            StorageUsage empty = new StorageUsage();
+            empty.setOwnerEmail(email);
+            return empty;
+        });
+    }
+
+    public long quotaBytes(StorageUsage usage) {
+        return usage.getQuotaBytes() != null ? usage.getQuotaBytes() : defaultBytes;
+    }
+
+    public int maxFiles(StorageUsage usage) {
+        return usage.getMaxFiles() != null ? usage.getMaxFiles() : defaultFiles;
+    }
+
+    public long remainingBytes(StorageUsage usage) {
+        return quotaBytes(usage) - usage.getBytesUsed() - usage.getBytesReserved();
+    }
+
+    /**
+     * Recomputes one user's counters from {@code pdffile} and clears reservations older than the TTL.
+     * <p>
+     * The usage row is locked before the files are summed, so an upload committing concurrently either is
+     * already counted by the sum or applies its increment after the corrected value is written.
+     * </p>
+     *
+     * @return true if anything had to be corrected
+     */
+    public boolean reconcile(String email) {
+        Boolean corrected = transactionTemplate.execute(status -> {
+            StorageUsage usage = storageUsageRepository.findByIdForUpdate(email).orElse(null);
+            if (usage == null) {
+                return false;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            long bytes = pdfRepository.sumStoredBytes(email);
+            int files = (int) pdfRepository.countByUploadedBy(email);
+            boolean drift = bytes != usage.getBytesUsed() || files != usage.getFileCount();
+            if (drift) {
+                logger.warn("Storage usage of {} drifted: {} bytes / {} files recorded, {} bytes / {} files found",
+                        email, usage.getBytesUsed(), usage.getFileCount(), bytes, files);
+                usage.setBytesUsed(bytes);
+                usage.setFileCount(files);
+            }
+            boolean staleReservation = (usage.getBytesReserved() != 0 || usage.getFilesReserved() != 0)
+                    && (usage.getReservedAt() == null
+                        || usage.getReservedAt().isBefore(now.minusNanos(reservationTtlMs * 1_000_000)));
+            if (staleReservation) {
+                logger.warn("Clearing stale storage reservation of {}: {} bytes / {} files",
+                        email, usage.getBytesReserved(), usage.getFilesReserved());
+                usage.setBytesReserved(0);
+                usage.setFilesReserved(0);
+            }
+            usage.setReconciledAt(now);
+            return drift || staleReservation;
+        });
+        return Boolean.TRUE.equals(corrected);
+    }
+
+    /** Fails the read that would take the stream past its limit, before those bytes reach the disk. */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                consume(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                consume(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            consume(skipped);
+            return skipped;
+        }
+
+        private void consume(long n) {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new QuotaExceededException("Upload exceeds the storage quota");
+            }
+        }
+    }
+}
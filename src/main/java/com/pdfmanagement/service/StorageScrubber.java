@@ -0,0 +1,337 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Background job that walks the whole store, keeping each document's verified file state current and finding
+ * files nothing refers to.
+ * <p>
+ * Documents are visited in id order. A run takes up to {@code storage.scrub.batch-size} (default 500) of them, and
+ * starts no new file once it has used {@code storage.scrub.max-run-ms} (default 10 s): it runs on the scheduler
+ * shared with the job worker's heartbeats and the replica lag checks, so it gives the thread back after that long
+ * whatever the files cost. The next run resumes after the last document visited. A file verified within
+ * {@code storage.scrub.reverify-after-hours} (default a week) whose size on disk has not changed since costs one
+ * stat; any other file is read back in full by {@link StoredFileVerifier} and its outcome recorded on the row, so
+ * missing, truncated and corrupt files are refused at download from then on. Reads are paced to
+ * {@code storage.scrub.max-bytes-per-second} (default 20 MiB/s).
+ * </p>
+ *
+ * <p>
+ * Once every document has been visited, the storage directory is listed for files no row refers to. The derived
+ * document cache, the quarantine directory and staging files of writes still in progress are left out, as is
+ * anything modified within {@code storage.scrub.orphan-grace-ms} (default an hour), since an upload's file is
+ * committed just before its row. Then the next pass starts from the first document.
+ * </p>
+ *
+ * <p>
+ * Problems are logged. With {@code storage.scrub.quarantine=true}, orphaned files and truncated or corrupt files
+ * are also moved into {@code storage.scrub.quarantine-dir} (default {@code <file.upload-dir>/quarantine}), keeping
+ * their path relative to the storage directory; the row of a moved file is marked quarantined and no longer
+ * scrubbed. Missing files are re-checked on every pass, so restoring one from a backup clears its status.
+ * </p>
+ *
+ * <p>
+ * With several instances only one scrubs at a time: a run first makes sure this instance holds the
+ * {@code storage-scrub} advisory lock, taken with {@code pg_try_advisory_lock} on a dedicated connection to the
+ * primary (outside the pool) and kept for as long as that connection lives. The other instances skip their runs;
+ * if the holder stops or loses its connection, the next instance to try takes over, starting its own pass.
+ * </p>
+ */
+@Component
+public class StorageScrubber {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageScrubber.class);
+
+    private static final int ORPHAN_LOOKUP_BATCH = 500;
+    private static final String LEASE = "storage-scrub";
+
+    private final PDFRepository pdfRepository;
+    private final StoredFileVerifier storedFileVerifier;
+    private final FileStorageService fileStorageService;
+    private final DataSourceProperties dataSourceProperties;
+
+    @Value("${storage.scrub.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.scrub.batch-size:500}")
+    private int batchSize;
+
+    @Value("${storage.scrub.max-run-ms:10000}")
+    private long maxRunMs;
+
+    @Value("${storage.scrub.max-bytes-per-second:20971520}")
+    private long maxBytesPerSecond;
+
+    @Value("${storage.scrub.reverify-after-hours:168}")
+    private long reverifyAfterHours;
+
+    @Value("${storage.scrub.orphan-grace-ms:3600000}")
+    private long orphanGraceMs;
+
+    @Value("${storage.scrub.quarantine:false}")
+    private boolean quarantine;
+
+    @Value("${storage.scrub.quarantine-dir:${file.upload-dir}/quarantine}")
+    private String quarantineDir;
+
+    @Value("${pdf.derived.cache-dir:${file.upload-dir}/derived}")
+    private String derivedDir;
+
+    private long lastProcessedId = 0;
+    private Pass pass = new Pass();
+    private Connection lease;
+
+    public StorageScrubber(PDFRepository pdfRepository, StoredFileVerifier storedFileVerifier,
+                           FileStorageService fileStorageService, DataSourceProperties dataSourceProperties) {
+        this.pdfRepository = pdfRepository;
+        this.storedFileVerifier = storedFileVerifier;
+        this.fileStorageService = fileStorageService;
+        this.dataSourceProperties = dataSourceProperties;
+    }
+
+    @Scheduled(initialDelayString = "${storage.scrub.interval-ms:30000}",
+               fixedDelayString = "${storage.scrub.interval-ms:30000}")
+    public void run() {
+        if (!enabled || !holdLease()) {
+            return;
+        }
+        List<PDFFile> batch = pdfRepository.findByIdGreaterThanOrderByIdAsc(lastProcessedId,
+                PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            try {
+                findOrphans();
+            } catch (IOException e) {
+                logger.warn("Storage scrub could not list the storage directory: {}", e.getMessage());
+            }
+            logger.info("Storage scrub pass done in {} s: {} files checked, {} read back, {} damaged, {} orphaned",
+                    Duration.ofNanos(System.nanoTime() - pass.startedAt).toSeconds(), pass.checked, pass.readBack,
+                    pass.damaged, pass.orphans);
+            lastProcessedId = 0;
+            pass = new Pass();
+            return;
+        }
+        IoThrottle throttle = new IoThrottle(maxBytesPerSecond);
+        long deadline = System.nanoTime() + maxRunMs * 1_000_000;
+        for (PDFFile pdfFile : batch) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                scrub(pdfFile, throttle);
+            } catch (InterruptedIOException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Storage scrub of PDF ID: {} at {} failed: {}", pdfFile.getId(), pdfFile.getFilepath(),
+                        e.getMessage());
+            }
+            lastProcessedId = pdfFile.getId();
+            if (System.nanoTime() - deadline > 0) {
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    void releaseLease() {
+        if (lease != null) {
+            try {
+                lease.close(); // the lock goes with the session
+            } catch (SQLException e) {
+                logger.debug("Closing the storage scrub lease connection failed: {}", e.getMessage());
+            }
+            lease = null;
+        }
+    }
+
+    /** Whether this instance holds the scrub lock, taking it if no instance does. */
+    private boolean holdLease() {
+        try {
+            if (lease != null) {
+                if (lease.isValid(5)) {
+                    return true;
+                }
+                logger.warn("Storage scrub lost its lease connection; another instance may take over");
+                releaseLease();
+            }
+            Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+            boolean locked = false;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT pg_try_advisory_lock(hashtext(?))")) {
+                statement.setString(1, LEASE);
+                try (ResultSet result = statement.executeQuery()) {
+                    locked = result.next() && result.getBoolean(1);
+                }
+            } finally {
+                if (!locked) {
+                    connection.close();
+                }
+            }
+            if (locked) {
+                lease = connection;
+                pass = new Pass();
+                logger.info("Storage scrub lease taken; this instance scrubs the store from PDF ID: {}",
+                        lastProcessedId + 1);
+            }
+            return locked;
+        } catch (SQLException e) {
+            logger.warn("Storage scrub could not check its lease: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void scrub(PDFFile pdfFile, IoThrottle throttle) throws IOException {
+        if (PDFFile.STORAGE_QUARANTINED.equals(pdfFile.getStorageStatus())) {
+            return;
+        }
+        pass.checked++;
+        if (recentlyVerified(pdfFile)) {
+            try {
+                if (Files.size(Paths.get(pdfFile.getFilepath())) == pdfFile.getStoredBytes()) {
+                    return;
+                }
+            } catch (NoSuchFileException e) {
+                // Verified below, which records it as missing.
+            }
+        }
+        pass.readBack++;
+        StoredFileVerifier.Result result = storedFileVerifier.verify(pdfFile, throttle);
+        if (result == null) {
+            return;
+        }
+        if (!result.intact()) {
+            pass.damaged++;
+            logger.warn("Stored file of PDF ID: {} at {} is {}: {}", pdfFile.getId(), pdfFile.getFilepath(),
+                    result.status(), result.detail());
+            if (quarantine && result.storedBytes() != null && moveToQuarantine(Paths.get(pdfFile.getFilepath()))) {
+                result = new StoredFileVerifier.Result(PDFFile.STORAGE_QUARANTINED, null, result.detail());
+            }
+        } else if (pdfFile.getStorageStatus() != null && !PDFFile.STORAGE_OK.equals(pdfFile.getStorageStatus())) {
+            logger.info("Stored file of PDF ID: {} at {} is intact again", pdfFile.getId(), pdfFile.getFilepath());
+        }
+        storedFileVerifier.record(pdfFile.getId(), result);
+    }
+
+    private boolean recentlyVerified(PDFFile pdfFile) {
+        return PDFFile.STORAGE_OK.equals(pdfFile.getStorageStatus()) && pdfFile.getStoredBytes() != null
+                && pdfFile.getVerifiedAt() != null
+                && pdfFile.getVerifiedAt().isAfter(LocalDateTime.now().minusHours(reverifyAfterHours));
+    }
+
+    private void findOrphans() throws IOException {
+        Path root = fileStorageService.getStoragePath();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Set<Path> skipped = Set.of(Paths.get(derivedDir).toAbsolutePath().normalize(),
+                Paths.get(quarantineDir).toAbsolutePath().normalize());
+        Instant cutoff = Instant.now().minusMillis(orphanGraceMs);
+        List<String> candidates = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return skipped.contains(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String name = file.getFileName().toString();
+                // Staging files (.upload-, .encrypt-, .rewrap-) belong to writes in progress.
+                if (attrs.isRegularFile() && !name.startsWith(".") && !name.endsWith(".part")
+                        && attrs.lastModifiedTime().toInstant().isBefore(cutoff)) {
+                    candidates.add(file.toString());
+                    if (candidates.size() == ORPHAN_LOOKUP_BATCH) {
+                        reportOrphans(candidates);
+                        candidates.clear();
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; // deleted while the walk was under way
+            }
+        });
+        reportOrphans(candidates);
+    }
+
+    private void reportOrphans(List<String> candidates) throws IOException {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Set<String> recorded = new HashSet<>(pdfRepository.findRecordedFilepaths(candidates));
+        for (String candidate : candidates) {
+            if (!recorded.contains(candidate)) {
+                pass.orphans++;
+                logger.warn("Stored file {} has no PDF record{}", candidate, quarantine ? "; quarantining it" : "");
+                if (quarantine) {
+                    moveToQuarantine(Paths.get(candidate));
+                }
+            }
+        }
+    }
+
+    /** Moves a stored file under the quarantine directory, keeping its path relative to the storage directory. */
+    private boolean moveToQuarantine(Path file) throws IOException {
+        Path root = fileStorageService.getStoragePath();
+        Path absolute = file.toAbsolutePath().normalize();
+        Path relative = absolute.startsWith(root) ? root.relativize(absolute) : absolute.getFileName();
+        Path target = Paths.get(quarantineDir).toAbsolutePath().normalize().resolve(relative);
+        Files.createDirectories(target.getParent());
+        if (Files.exists(target)) {
+            target = target.resolveSibling(target.getFileName() + "." + System.currentTimeMillis());
+        }
+        try {
+            Files.move(absolute, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(absolute, target);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        logger.info("Moved {} to quarantine at {}", absolute, target);
+        return true;
+    }
+
+    // Counts for the log line that closes a pass.
+    private static final class Pass {
+        private final long startedAt = System.nanoTime();
+        private long checked;
+        private long readBack;
+        private long damaged;
+        private long orphans;
+    }
+}
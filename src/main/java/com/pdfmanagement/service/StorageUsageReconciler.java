@@ -0,0 +1,74 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.repository.StorageUsageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Background job that checks every user's storage counters against {@code pdffile}.
+ * <p>
+ * Counters are maintained incrementally, so they can only drift through failures outside a transaction (a
+ * reservation whose upload crashed) or rows changed outside the application. Each run walks the
+ * {@code storage_usage} rows in pages of {@code storage.quota.reconcile.batch-size} users and reconciles each
+ * user in its own short transaction via {@link StorageQuotaService#reconcile}.
+ * </p>
+ *
+ * <p>
+ * Controlled by {@code storage.quota.reconcile.enabled} (default {@code true}) and
+ * {@code storage.quota.reconcile.interval-ms} (default one hour).
+ * </p>
+ */
+@Component
+public class StorageUsageReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageUsageReconciler.class);
+
+    private final StorageUsageRepository storageUsageRepository;
+    private final StorageQuotaService storageQuotaService;
+
+    @Value("${storage.quota.reconcile.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.quota.reconcile.batch-size:200}")
+    private int batchSize;
+
+    public StorageUsageReconciler(StorageUsageRepository storageUsageRepository,
+                                  StorageQuotaService storageQuotaService) {
+        this.storageUsageRepository = storageUsageRepository;
+        this.storageQuotaService = storageQuotaService;
+    }
+
+    @Scheduled(initialDelayString = "${storage.quota.reconcile.interval-ms:3600000}",
+               fixedDelayString = "${storage.quota.reconcile.interval-ms:3600000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        int checked = 0;
+        int corrected = 0;
+        String after = "";
+        List<String> owners;
+        do {
+            owners = storageUsageRepository.findOwnersAfter(after, batchSize);
+            for (String owner : owners) {
+                try {
+                    if (storageQuotaService.reconcile(owner)) {
+                        corrected++;
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Could not reconcile storage usage of {}: {}", owner, e.getMessage());
+                }
+                checked++;
+                after = owner;
+            }
+        } while (owners.size() == batchSize);
+        if (corrected > 0) {
+            logger.info("Reconciled storage usage of {} users, corrected {}", checked, corrected);
+        }
+    }
+}
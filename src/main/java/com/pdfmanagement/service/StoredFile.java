@@ -0,0 +1,44 @@
+package com.pdfmanagement.service;
+
+import lombok.Getter;
+
+/**
+ * Result of writing an uploaded PDF into the storage directory.
+ * <p>
+ * The size and checksum are computed while the bytes are streamed to disk, so callers
+ * never need to re-read the stored file to learn them.
+ * </p>
+ *
+ * <ul>
+ *   <li>{@code path} - Absolute path of the committed file.</li>
+ *   <li>{@code sizeBytes} - Number of bytes written.</li>
+ *   <li>{@code checksum} - Lower-case hex SHA-256 of the stored bytes.</li>
+ *   <li>{@code crc32} - CRC-32 of the stored bytes.</li>
+ *   <li>{@code tailOffset} - For a new version stored as an appended tail, the length of the previous
+ *       version; {@code path} then holds only the bytes from there on. Null when the whole file was stored.</li>
+ * </ul>
+ *
+ * <p>
+ * {@code sizeBytes}, {@code checksum} and {@code crc32} always describe the complete document, tail or not.
+ * </p>
+ */
+@Getter
+public class StoredFile {
+    private final String path;
+    private final long sizeBytes;
+    private final String checksum;
+    private final long crc32;
+    private final Long tailOffset;
+
+    public StoredFile(String path, long sizeBytes, String checksum, long crc32) {
+        this(path, sizeBytes, checksum, crc32, null);
+    }
+
+    public StoredFile(String path, long sizeBytes, String checksum, long crc32, Long tailOffset) {
+        this.path = path;
+        this.sizeBytes = sizeBytes;
+        this.checksum = checksum;
+        this.crc32 = crc32;
+        this.tailOffset = tailOffset;
+    }
+}
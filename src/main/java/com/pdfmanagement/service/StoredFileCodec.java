@@ -0,0 +1,299 @@
+package com.pdfmanagement.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads and writes the bytes of stored files in their at-rest format, so everything above the storage layer sees
+ * plain PDF content.
+ * <p>
+ * With {@code storage.encryption.enabled=true} new files are written in the chunked AEAD format of
+ * {@link ChunkedAeadFile}: each file gets its own key, wrapped by the master key {@code storage.encryption.master-key}
+ * (base64, 32 bytes) named {@code storage.encryption.key-id}, and content is sealed in
+ * {@code storage.encryption.chunk-size} chunks (default 64 KiB). Reads recognize the format by its magic number,
+ * so encrypted and plaintext files can be mixed freely: files stored before encryption was enabled stay readable
+ * and are converted by {@link StorageEncryptionMigrator}.
+ * </p>
+ *
+ * <p>
+ * To rotate the master key, give the new one a new key id and move the old one to
+ * {@code storage.encryption.retired-keys} ({@code id:base64,...}). Files wrapped with a retired key stay
+ * readable, and the migrator re-wraps their keys under the current one without re-encrypting their content.
+ * </p>
+ *
+ * <p>
+ * With {@code storage.compression.enabled=true} new files are also compressed, before being encrypted, in the
+ * seekable frame format of {@link SeekableFrameFile}, unless a sample of their first
+ * {@code storage.compression.sample-bytes} shrinks by less than {@code storage.compression.min-savings}. Reads
+ * recognize that format the same way, beneath the encryption, so files written before compression was enabled,
+ * or left uncompressed, read as before. Each compressed file's ratio and deflate CPU time are logged at debug
+ * level, and the totals are published as {@code storage.compression.*} meters.
+ * </p>
+ *
+ * <p>
+ * Since plaintext and uncompressed files carry no marker of their own, content that itself starts with one of the
+ * two magic numbers would be mistaken for that format; {@link FileStorageService} never stores such content as
+ * is (see {@link #hasFormatMagic}).
+ * </p>
+ */
+@Component
+public class StoredFileCodec implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoredFileCodec.class);
+
+    private static final int MASTER_KEY_BYTES = 32;
+
+    /** Length of the magic numbers that identify the at-rest formats. */
+    static final int MAGIC_LENGTH = ChunkedAeadFile.MAGIC.length;
+
+    private final boolean encrypt;
+    private final String keyId;
+    private final int chunkSize;
+    private final Map<String, SecretKey> masterKeys = new HashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final boolean compress;
+    private final int frameSize;
+    private final int compressionLevel;
+    private final int sampleBytes;
+    private final double minSavings;
+    private final LongAdder filesCompressed = new LongAdder();
+    private final LongAdder filesUncompressed = new LongAdder();
+    private final LongAdder contentBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+
+    public StoredFileCodec(@Value("${storage.encryption.enabled:false}") boolean encrypt,
+                           @Value("${storage.encryption.key-id:k1}") String keyId,
+                           @Value("${storage.encryption.master-key:}") String masterKey,
+                           @Value("${storage.encryption.retired-keys:}") String retiredKeys,
+                           @Value("${storage.encryption.chunk-size:65536}") int chunkSize,
+                           @Value("${storage.compression.enabled:false}") boolean compress,
+                           @Value("${storage.compression.frame-size:65536}") int frameSize,
+                           @Value("${storage.compression.level:1}") int compressionLevel,
+                           @Value("${storage.compression.sample-bytes:262144}") int sampleBytes,
+                           @Value("${storage.compression.min-savings:0.1}") double minSavings) {
+        this.encrypt = encrypt;
+        this.compress = compress;
+        this.frameSize = frameSize;
+        this.compressionLevel = compressionLevel;
+        this.sampleBytes = sampleBytes;
+        this.minSavings = minSavings;
+        SeekableFrameFile.checkFrameSize(frameSize, "storage.compression.frame-size");
+        if (compressionLevel < 1 || compressionLevel > 9) {
+            throw new IllegalStateException("storage.compression.level must be between 1 and 9");
+        }
+        this.keyId = checkKeyId(keyId);
+        this.chunkSize = chunkSize;
+        if (chunkSize < ChunkedAeadFile.MIN_CHUNK_SIZE || chunkSize > ChunkedAeadFile.MAX_CHUNK_SIZE) {
+            throw new IllegalStateException("storage.encryption.chunk-size must be between "
+                    + ChunkedAeadFile.MIN_CHUNK_SIZE + " and " + ChunkedAeadFile.MAX_CHUNK_SIZE);
+        }
+        for (String entry : retiredKeys.split(",")) {
+            if (StringUtils.hasText(entry)) {
+                int colon = entry.indexOf(':');
+                if (colon < 0) {
+                    throw new IllegalStateException("storage.encryption.retired-keys entries must be id:base64");
+                }
+                masterKeys.put(checkKeyId(entry.substring(0, colon).trim()), decodeKey(entry.substring(colon + 1)));
+            }
+        }
+        if (StringUtils.hasText(masterKey)) {
+            masterKeys.put(this.keyId, decodeKey(masterKey));
+        } else if (encrypt) {
+            throw new IllegalStateException("storage.encryption.master-key must be set when storage.encryption.enabled "
+                    + "is true");
+        }
+        if (encrypt) {
+            logger.info("New files are encrypted at rest with master key '{}' in {}-byte chunks", this.keyId, chunkSize);
+        }
+        if (compress) {
+            logger.info("New files are compressed at rest in {}-byte frames at level {} when a sample saves {}%",
+                    frameSize, compressionLevel, Math.round(minSavings * 100));
+        }
+    }
+
+    /** Whether new files are encrypted. */
+    public boolean encryptsNewFiles() {
+        return encrypt;
+    }
+
+    /** Whether new files are written in anything but plain bytes, so their content cannot be linked or copied. */
+    public boolean transformsNewFiles() {
+        return encrypt || compress;
+    }
+
+    /**
+     * Opens a new or empty file for writing its content in the current at-rest format. The file is complete
+     * only once the stream has been closed.
+     */
+    public OutputStream newOutputStream(Path file) throws IOException {
+        OutputStream out = encrypt ? newEncryptingStream(file) : Files.newOutputStream(file);
+        if (!compress) {
+            return out;
+        }
+        return new SeekableFrameFile.Writer(out, frameSize, compressionLevel, sampleBytes, minSavings,
+                writer -> recordCompression(file, writer));
+    }
+
+    /** Opens a stored file's content for random access, decrypting and decompressing it as needed. */
+    public SeekableByteChannel openChannel(Path file) throws IOException {
+        FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+        SeekableByteChannel channel = fileChannel;
+        try {
+            if (isEncrypted(fileChannel)) {
+                ChunkedAeadFile.Header header = ChunkedAeadFile.readHeader(fileChannel);
+                SecretKey fileKey = ChunkedAeadFile.unwrapKey(header, masterKey(header.keyId(), file));
+                channel = new ChunkedAeadFile.Reader(fileChannel, header, fileKey);
+            }
+            if (SeekableFrameFile.hasMagic(channel)) {
+                channel = new SeekableFrameFile.Reader(channel);
+            }
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Opens a stored file's content as a stream whose {@code skip} seeks rather than reads. */
+    public InputStream newInputStream(Path file) throws IOException {
+        return new SeekableInputStream(openChannel(file));
+    }
+
+    /** The id of the master key a stored file is encrypted with, or empty if it is stored in plaintext. */
+    Optional<String> encryptionKeyId(FileChannel channel) throws IOException {
+        if (!isEncrypted(channel)) {
+            return Optional.empty();
+        }
+        return Optional.of(ChunkedAeadFile.readHeader(channel).keyId());
+    }
+
+    String currentKeyId() {
+        return keyId;
+    }
+
+    /** An encrypting stream with the current master key, whether or not new uploads are being encrypted. */
+    OutputStream newEncryptingStream(Path file) throws IOException {
+        SecretKey masterKey = masterKey(keyId, file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new ChunkedAeadFile.Writer(channel, chunkSize, keyId, masterKey, random);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Header for an encrypted file's content under the current master key, keeping its file key; the content
+     * after the header is unchanged.
+     */
+    byte[] rewrapHeader(FileChannel channel, Path file) throws IOException {
+        ChunkedAeadFile.Header header = ChunkedAeadFile.readHeader(channel);
+        SecretKey fileKey = ChunkedAeadFile.unwrapKey(header, masterKey(header.keyId(), file));
+        return ChunkedAeadFile.rewrapHeader(header, fileKey, keyId, masterKey(keyId, file), random);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("storage.compression.files", filesCompressed, LongAdder::sum)
+                .description("New files stored compressed").tag("outcome", "compressed").register(registry);
+        FunctionCounter.builder("storage.compression.files", filesUncompressed, LongAdder::sum)
+                .description("New files left uncompressed after sampling").tag("outcome", "uncompressed")
+                .register(registry);
+        FunctionCounter.builder("storage.compression.bytes", contentBytes, LongAdder::sum)
+                .description("Content bytes of the files stored compressed").baseUnit("bytes").tag("side", "content")
+                .register(registry);
+        FunctionCounter.builder("storage.compression.bytes", compressedBytes, LongAdder::sum)
+                .description("Compressed bytes of the files stored compressed").baseUnit("bytes")
+                .tag("side", "compressed").register(registry);
+        FunctionCounter.builder("storage.compression.cpu", compressionNanos,
+                        nanos -> nanos.sum() / (double) TimeUnit.SECONDS.toNanos(1))
+                .description("CPU time spent compressing new files, including samples").baseUnit("seconds")
+                .register(registry);
+    }
+
+    private void recordCompression(Path file, SeekableFrameFile.Writer writer) {
+        compressionNanos.add(writer.cpuNanos());
+        if (!writer.compressed()) {
+            filesUncompressed.increment();
+            logger.debug("Stored {} uncompressed: {} bytes, sample did not compress ({} ms CPU)", file,
+                    writer.contentLength(), TimeUnit.NANOSECONDS.toMillis(writer.cpuNanos()));
+            return;
+        }
+        filesCompressed.increment();
+        contentBytes.add(writer.contentLength());
+        compressedBytes.add(writer.storedLength());
+        logger.debug("Stored {} compressed: {} bytes to {} (ratio {}), {} ms CPU", file, writer.contentLength(),
+                writer.storedLength(), String.format("%.3f", (double) writer.storedLength() / writer.contentLength()),
+                TimeUnit.NANOSECONDS.toMillis(writer.cpuNanos()));
+    }
+
+    /**
+     * Whether content starting with {@code block} would be read back as an encrypted or compressed file if it were
+     * stored unchanged, as plaintext or uncompressed files are.
+     */
+    static boolean hasFormatMagic(byte[] block, int length) {
+        return ChunkedAeadFile.hasMagic(block, length) || SeekableFrameFile.hasMagic(block, length);
+    }
+
+    private SecretKey masterKey(String id, Path file) throws IOException {
+        SecretKey key = masterKeys.get(id);
+        if (key == null) {
+            throw new IOException(file + " is encrypted with master key '" + id + "', which is not configured");
+        }
+        return key;
+    }
+
+    private static boolean isEncrypted(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(ChunkedAeadFile.MAGIC.length);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic, magic.position()) < 0) {
+                return false;
+            }
+        }
+        return ChunkedAeadFile.hasMagic(magic.array(), magic.capacity());
+    }
+
+    private static String checkKeyId(String id) {
+        if (id.isEmpty() || id.length() > ChunkedAeadFile.MAX_KEY_ID_LENGTH || !id.matches("[A-Za-z0-9._-]+")) {
+            throw new IllegalStateException("Master key ids must be 1 to " + ChunkedAeadFile.MAX_KEY_ID_LENGTH
+                    + " letters, digits, dots, dashes or underscores: '" + id + "'");
+        }
+        return id;
+    }
+
+    private static SecretKey decodeKey(String base64) {
+        byte[] key = Base64.getDecoder().decode(base64.trim());
+        if (key.length != MASTER_KEY_BYTES) {
+            throw new IllegalStateException("Master keys must be " + MASTER_KEY_BYTES + " bytes, base64-encoded");
+        }
+        return new SecretKeySpec(key, "AES");
+    }
+}
@@ -0,0 +1,24 @@
+package com.pdfmanagement.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the bytes of a stored file are not what its at-rest format says they must be: a header, seek table
+ * or frame that does not parse, a length that does not match, a chunk that fails authentication or a frame that
+ * fails its checksum.
+ * <p>
+ * Unlike other {@link IOException}s while reading a stored file, such as a master key that is not configured or a
+ * file that cannot be opened, it says the file itself is damaged; {@link StoredFileVerifier} only records a file as
+ * truncated or corrupt on this exception.
+ * </p>
+ */
+class StoredFileDamagedException extends IOException {
+
+    StoredFileDamagedException(String message) {
+        super(message);
+    }
+
+    StoredFileDamagedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
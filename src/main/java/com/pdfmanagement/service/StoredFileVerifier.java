@@ -0,0 +1,170 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+
+/**
+ * Checks a document's stored file against what its row records, and keeps the outcome on the row.
+ * <p>
+ * A file is verified by reading its content back through {@link PdfContentService}, so compressed, encrypted and
+ * tail-stored files are checked as the content they serve, and comparing its length and SHA-256 with
+ * {@code sizeBytes} and {@code checksum}. A tail is only checked once the versions beneath it are intact; if one is
+ * not, that version's own row already says so. The result goes into {@code storageStatus}, {@code storedBytes} and
+ * {@code verifiedAt}, which is what downloads consult instead of probing the file system.
+ * </p>
+ *
+ * <p>
+ * Only evidence about the bytes themselves counts against a file: a missing file, a
+ * {@link StoredFileDamagedException} from its at-rest format, or content of the wrong length or checksum. A file
+ * that cannot be read for any other reason, such as a master key that is not configured or a permission or I/O
+ * error, is left unjudged, so a configuration mistake on one instance never marks, or quarantines, intact files.
+ * </p>
+ *
+ * <p>
+ * Used right after upload by {@link VerifyStoredFileJobHandler} and for every file, periodically, by
+ * {@link StorageScrubber}.
+ * </p>
+ */
+@Component
+public class StoredFileVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoredFileVerifier.class);
+
+    private final PDFRepository pdfRepository;
+    private final PdfContentService pdfContentService;
+    private final FileStorageService fileStorageService;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public StoredFileVerifier(PDFRepository pdfRepository, PdfContentService pdfContentService,
+                              FileStorageService fileStorageService, TransactionTemplate transactionTemplate,
+                              CacheInvalidationBus cacheInvalidationBus) {
+        this.pdfRepository = pdfRepository;
+        this.pdfContentService = pdfContentService;
+        this.fileStorageService = fileStorageService;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    /**
+     * Outcome of verifying one file.
+     *
+     * @param status      one of the {@code PDFFile.STORAGE_*} constants
+     * @param storedBytes the file's size on disk, if it exists
+     * @param detail      what was wrong, for the log; null when the file is intact
+     */
+    public record Result(String status, Long storedBytes, String detail) {
+
+        public boolean intact() {
+            return PDFFile.STORAGE_OK.equals(status);
+        }
+    }
+
+    /**
+     * Reads a document's stored file back and compares it with its row.
+     *
+     * @param throttle paces the read; see {@link IoThrottle}
+     * @return the outcome, or null if the file cannot be judged yet: its row has no checksum yet, a version it
+     *         is a tail of is missing or damaged, or it could not be read for a reason other than its content
+     * @throws InterruptedIOException if the thread was interrupted while the read was paced
+     */
+    Result verify(PDFFile pdfFile, IoThrottle throttle) throws IOException {
+        Path path = Paths.get(pdfFile.getFilepath());
+        long storedBytes;
+        try {
+            storedBytes = Files.size(path);
+        } catch (NoSuchFileException e) {
+            return new Result(PDFFile.STORAGE_MISSING, null, "file is missing");
+        }
+        if (pdfFile.getSizeBytes() == null || pdfFile.getChecksum() == null) {
+            return null; // PdfMetadataBackfillJob records them first
+        }
+        if (pdfFile.getTailOffset() != null) {
+            PDFFile previous = pdfRepository.findById(pdfFile.getPreviousVersionId()).orElse(null);
+            if (previous == null || !pdfContentService.isIntact(previous)) {
+                return null;
+            }
+        }
+        StoredFile actual;
+        try {
+            actual = fileStorageService.inspect(pdfFile.getFilepath(),
+                    new ThrottledInputStream(pdfContentService.openStream(pdfFile), throttle));
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (NoSuchFileException e) {
+            return path.toString().equals(e.getFile()) ? new Result(PDFFile.STORAGE_MISSING, null, "file is missing")
+                    : null; // a version beneath it vanished since it was checked; its own row will say so
+        } catch (StoredFileDamagedException e) {
+            // Encrypted and compressed files are checked for length as they are opened.
+            boolean shrunk = pdfFile.getStoredBytes() != null && storedBytes < pdfFile.getStoredBytes();
+            return new Result(shrunk ? PDFFile.STORAGE_TRUNCATED : PDFFile.STORAGE_CORRUPT, storedBytes,
+                    e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Could not verify stored file of PDF ID: {} at {}: {}", pdfFile.getId(), path,
+                    e.getMessage());
+            return null;
+        }
+        if (actual.getSizeBytes() < pdfFile.getSizeBytes()) {
+            return new Result(PDFFile.STORAGE_TRUNCATED, storedBytes, "content is " + actual.getSizeBytes()
+                    + " bytes but " + pdfFile.getSizeBytes() + " were recorded");
+        }
+        if (actual.getSizeBytes() != pdfFile.getSizeBytes() || !pdfFile.getChecksum().equals(actual.getChecksum())) {
+            return new Result(PDFFile.STORAGE_CORRUPT, storedBytes, "checksum " + actual.getChecksum()
+                    + " does not match the recorded " + pdfFile.getChecksum());
+        }
+        return new Result(PDFFile.STORAGE_OK, storedBytes, null);
+    }
+
+    /**
+     * Stores a verification outcome on the document's row. Only the row's lock and cache entry are touched; when
+     * the status changes, other instances are told to drop their cached copy.
+     */
+    void record(Long pdfId, Result result) {
+        Boolean changed = transactionTemplate.execute(status -> pdfRepository.findByIdForUpdate(pdfId)
+                .map(pdfFile -> {
+                    boolean statusChanged = !result.status().equals(pdfFile.getStorageStatus());
+                    pdfFile.setStorageStatus(result.status());
+                    if (result.storedBytes() != null && result.intact()) {
+                        pdfFile.setStoredBytes(result.storedBytes());
+                    }
+                    pdfFile.setVerifiedAt(LocalDateTime.now());
+                    return statusChanged;
+                })
+                .orElse(false));
+        if (Boolean.TRUE.equals(changed)) {
+            cacheInvalidationBus.pdfChanged(pdfId);
+        }
+    }
+
+    private static final class ThrottledInputStream extends FilterInputStream {
+        private final IoThrottle throttle;
+
+        private ThrottledInputStream(InputStream in, IoThrottle throttle) {
+            super(in);
+            this.throttle = throttle;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0 && !throttle.acquire(n)) {
+                throw new InterruptedIOException("Verification interrupted");
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.pdfmanagement.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A ZIP archive of uncompressed (STORED) entries whose sizes and CRC-32s are known before it is written.
+ * <p>
+ * Because nothing is compressed and every header field is known up front, the whole layout is computed in
+ * the constructor: the archive's length, every entry's offset and the central directory. The archive can
+ * then be written from any byte offset to any other without producing the bytes in between, which is what
+ * lets an export answer {@code Range} requests. Entry content is read only where the requested range
+ * overlaps it, starting at the right position. No data descriptors are used, so streaming readers such as
+ * {@code ZipInputStream} can read the result as well as central-directory readers.
+ * </p>
+ *
+ * <p>
+ * ZIP64 records are added exactly where the format requires them: per entry when its size or offset does
+ * not fit in 32 bits, and at the end when the entry count, central directory size or offset does not. The
+ * same entries therefore always produce the same bytes.
+ * </p>
+ */
+final class StoredZip {
+
+    /** Content of one entry, opened at a byte offset. */
+    @FunctionalInterface
+    interface Content {
+        InputStream open(long offset) throws IOException;
+    }
+
+    /**
+     * One archive member.
+     *
+     * @param name     path inside the archive, stored as UTF-8
+     * @param size     content length in bytes
+     * @param crc      CRC-32 of the content
+     * @param modified modification time recorded in the headers
+     * @param content  the bytes; checked against {@code size} and {@code crc} whenever read in full
+     */
+    record Entry(String name, long size, long crc, LocalDateTime modified, Content content) {
+    }
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int ZIP64_END = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int END = 0x06054b50;
+
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<Entry> entries;
+    private final byte[][] names;
+    private final long[] offsets;
+    private final boolean[] zip64;
+    private final long centralOffset;
+    private final long centralSize;
+    private final boolean zip64End;
+    private final long length;
+
+    StoredZip(List<Entry> entries) {
+        this.entries = List.copyOf(entries);
+        int count = this.entries.size();
+        names = new byte[count][];
+        offsets = new long[count];
+        zip64 = new boolean[count];
+
+        long offset = 0;
+        long central = 0;
+        for (int i = 0; i < count; i++) {
+            Entry entry = this.entries.get(i);
+            names[i] = entry.name().getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > MAX_16) {
+                throw new IllegalArgumentException("Entry name too long: " + entry.name());
+            }
+            offsets[i] = offset;
+            zip64[i] = entry.size() >= MAX_32 || offset >= MAX_32;
+            offset += 30 + names[i].length + (zip64[i] ? 20 : 0) + entry.size();
+            central += 46 + names[i].length + (zip64[i] ? 28 : 0);
+        }
+        centralOffset = offset;
+        centralSize = central;
+        zip64End = count >= MAX_16 || centralOffset >= MAX_32 || centralSize >= MAX_32;
+        length = centralOffset + centralSize + (zip64End ? 56 + 20 : 0) + 22;
+    }
+
+    long length() {
+        return length;
+    }
+
+    /**
+     * Hash of the central directory, which records every entry's name, size, CRC, time and offset; equal
+     * fingerprints mean byte-identical archives.
+     */
+    String fingerprint() {
+        MessageDigest digest = FileStorageService.newSha256();
+        for (int i = 0; i < entries.size(); i++) {
+            digest.update(centralHeader(i));
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    /**
+     * Writes bytes {@code [from, to)} of the archive.
+     *
+     * @throws IOException if writing fails, or an entry's content does not match its recorded size or CRC; the
+     *                     output is then incomplete
+     */
+    void write(OutputStream out, long from, long to) throws IOException {
+        RangeWriter writer = new RangeWriter(out, from, to);
+        for (int i = 0; i < entries.size() && !writer.done(); i++) {
+            writer.bytes(localHeader(i));
+            writer.content(entries.get(i));
+        }
+        for (int i = 0; i < entries.size() && !writer.done(); i++) {
+            writer.bytes(centralHeader(i));
+        }
+        if (zip64End) {
+            writer.bytes(zip64End());
+            writer.bytes(zip64Locator());
+        }
+        writer.bytes(end());
+    }
+
+    private byte[] localHeader(int i) {
+        Entry entry = entries.get(i);
+        ByteBuffer buf = buffer(30 + names[i].length + (zip64[i] ? 20 : 0));
+        buf.putInt(LOCAL_HEADER);
+        buf.putShort((short) (zip64[i] ? VERSION_ZIP64 : VERSION_STORED));
+        buf.putShort((short) FLAG_UTF8);
+        buf.putShort((short) 0); // STORED
+        putDosTime(buf, entry.modified());
+        buf.putInt((int) entry.crc());
+        buf.putInt((int) (zip64[i] ? MAX_32 : entry.size()));
+        buf.putInt((int) (zip64[i] ? MAX_32 : entry.size()));
+        buf.putShort((short) names[i].length);
+        buf.putShort((short) (zip64[i] ? 20 : 0));
+        buf.put(names[i]);
+        if (zip64[i]) {
+            buf.putShort((short) ZIP64_EXTRA_ID);
+            buf.putShort((short) 16);
+            buf.putLong(entry.size());
+            buf.putLong(entry.size());
+        }
+        return buf.array();
+    }
+
+    private byte[] centralHeader(int i) {
+        Entry entry = entries.get(i);
+        ByteBuffer buf = buffer(46 + names[i].length + (zip64[i] ? 28 : 0));
+        int version = zip64[i] ? VERSION_ZIP64 : VERSION_STORED;
+        buf.putInt(CENTRAL_HEADER);
+        buf.putShort((short) version); // made by: MS-DOS attributes
+        buf.putShort((short) version);
+        buf.putShort((short) FLAG_UTF8);
+        buf.putShort((short) 0);
+        putDosTime(buf, entry.modified());
+        buf.putInt((int) entry.crc());
+        buf.putInt((int) (zip64[i] ? MAX_32 : entry.size()));
+        buf.putInt((int) (zip64[i] ? MAX_32 : entry.size()));
+        buf.putShort((short) names[i].length);
+        buf.putShort((short) (zip64[i] ? 28 : 0));
+        buf.putShort((short) 0); // comment
+        buf.putShort((short) 0); // disk
+        buf.putShort((short) 0); // internal attributes
+        buf.putInt(0);           // external attributes
+        buf.putInt((int) (zip64[i] ? MAX_32 : offsets[i]));
+        buf.put(names[i]);
+        if (zip64[i]) {
+            buf.putShort((short) ZIP64_EXTRA_ID);
+            buf.putShort((short) 24);
+            buf.putLong(entry.size());
+            buf.putLong(entry.size());
+            buf.putLong(offsets[i]);
+        }
+        return buf.array();
+    }
+
+    private byte[] zip64End() {
+        ByteBuffer buf = buffer(56);
+        buf.putInt(ZIP64_END);
+        buf.putLong(44);
+        buf.putShort((short) VERSION_ZIP64);
+        buf.putShort((short) VERSION_ZIP64);
+        buf.putInt(0);
+        buf.putInt(0);
+        buf.putLong(entries.size());
+        buf.putLong(entries.size());
+        buf.putLong(centralSize);
+        buf.putLong(centralOffset);
+        return buf.array();
+    }
+
+    private byte[] zip64Locator() {
+        ByteBuffer buf = buffer(20);
+        buf.putInt(ZIP64_LOCATOR);
+        buf.putInt(0);
+        buf.putLong(centralOffset + centralSize);
+        buf.putInt(1);
+        return buf.array();
+    }
+
+    private byte[] end() {
+        ByteBuffer buf = buffer(22);
+        short count = (short) Math.min(entries.size(), MAX_16);
+        buf.putInt(END);
+        buf.putShort((short) 0);
+        buf.putShort((short) 0);
+        buf.putShort(count);
+        buf.putShort(count);
+        buf.putInt((int) Math.min(centralSize, MAX_32));
+        buf.putInt((int) Math.min(centralOffset, MAX_32));
+        buf.putShort((short) 0);
+        return buf.array();
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putDosTime(ByteBuffer buf, LocalDateTime time) {
+        if (time == null || time.getYear() < 1980) {
+            time = LocalDateTime.of(1980, 1, 1, 0, 0);
+        } else if (time.getYear() > 2107) {
+            time = LocalDateTime.of(2107, 12, 31, 23, 59, 58);
+        }
+        buf.putShort((short) ((time.getHour() << 11) | (time.getMinute() << 5) | (time.getSecond() >> 1)));
+        buf.putShort((short) (((time.getYear() - 1980) << 9) | (time.getMonthValue() << 5) | time.getDayOfMonth()));
+    }
+
+    /** Tracks the archive position and passes on only the bytes inside the requested range. */
+    private static final class RangeWriter {
+        private final OutputStream out;
+        private final long from;
+        private final long to;
+        private long position;
+
+        RangeWriter(OutputStream out, long from, long to) {
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        boolean done() {
+            return position >= to;
+        }
+
+        void bytes(byte[] data) throws IOException {
+            long start = Math.max(from, position);
+            long stop = Math.min(to, position + data.length);
+            if (start < stop) {
+                out.write(data, (int) (start - position), (int) (stop - start));
+            }
+            position += data.length;
+        }
+
+        void content(Entry entry) throws IOException {
+            long start = Math.max(from, position);
+            long stop = Math.min(to, position + entry.size());
+            if (start < stop) {
+                long skip = start - position;
+                // Only a complete read can be checked against the CRC already written in the header.
+                CRC32 crc = skip == 0 && stop == position + entry.size() ? new CRC32() : null;
+                copy(entry, skip, stop - start, crc);
+            }
+            position += entry.size();
+        }
+
+        private void copy(Entry entry, long offset, long count, CRC32 crc) throws IOException {
+            try (InputStream in = entry.content().open(offset)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long remaining = count;
+                while (remaining > 0) {
+                    int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (n < 0) {
+                        throw new IOException(entry.name() + " ended " + remaining + " bytes early");
+                    }
+                    if (crc != null) {
+                        crc.update(buffer, 0, n);
+                    }
+                    out.write(buffer, 0, n);
+                    remaining -= n;
+                }
+            }
+            if (crc != null && crc.getValue() != entry.crc()) {
+                throw new IOException(entry.name() + " does not match its recorded CRC-32");
+            }
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.pdfmanagement.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Immutable prefix index over the tokens of a set of filenames; {@link FilenameSuggestIndex} keeps one for all
+ * files and one per owner.
+ * <p>
+ * Filenames are split into lower-case tokens at every character that is not a letter or digit. The distinct
+ * tokens are kept in one sorted array, so the tokens starting with a prefix are a contiguous range found with two
+ * binary searches. Each token's documents are stored twice in flat {@code int} arrays, once newest first and once
+ * most popular first, as ranks in that order; the best documents for a range of tokens are therefore a k-way merge
+ * that stops after {@code limit} results. For the few short prefixes that cover more than {@link #MERGE_TERMS}
+ * tokens, the best {@code topK} documents are computed when the segment is built.
+ * </p>
+ *
+ * <p>
+ * Every query token is matched as a prefix. The token with the fewest postings drives the search and the others
+ * filter its candidates. A fuzzy search tries every prefix within one edit (insertion, deletion, substitution or
+ * transposition) of the last query token instead, using the characters that occur in the segment's tokens.
+ * </p>
+ */
+final class SuggestSegment {
+
+    /** A suggestable file. Popularity is the file's revision, which every comment on it bumps. */
+    record Doc(long id, String filename, String owner, long uploadedAt, long popularity) {
+    }
+
+    enum Ranking {
+        RECENT(Comparator.comparingLong(Doc::uploadedAt).thenComparingLong(Doc::id).reversed()),
+        POPULAR(Comparator.comparingLong(Doc::popularity).reversed().thenComparing(RECENT.order));
+
+        private final Comparator<Doc> order;
+
+        Ranking(Comparator<Doc> order) {
+            this.order = order;
+        }
+
+        Comparator<Doc> order() {
+            return order;
+        }
+    }
+
+    static final SuggestSegment EMPTY = build(List.of(), 1);
+
+    // Prefixes covering more tokens than this get a precomputed top list instead of a merge over all of them.
+    private static final int MERGE_TERMS = 64;
+    // Candidate sets up to this size are gathered and sorted rather than merged through a heap.
+    private static final int GATHER_LIMIT = 8192;
+    // Filtered merges give up after this many candidates; a query that selective has few good answers anyway.
+    private static final int SCAN_LIMIT = 20_000;
+    private static final int MAX_TOKEN_LENGTH = 64;
+    private static final int ALPHABET_SIZE = 40;
+
+    private final Doc[] docs; // newest first, so a document's position is its recency rank
+    private final String[] terms;
+    private final int[] postingStart;
+    private final int[][] postings; // per ranking: ranks of each term's documents, best first
+    private final int[] popularOrder; // popularity rank -> position in docs
+    private final List<Map<String, int[]>> topLists;
+    private final int topK;
+    private final char[] alphabet;
+
+    private SuggestSegment(Doc[] docs, String[] terms, int[] postingStart, int[][] postings, int[] popularOrder,
+                           List<Map<String, int[]>> topLists, int topK, char[] alphabet) {
+        this.docs = docs;
+        this.terms = terms;
+        this.postingStart = postingStart;
+        this.postings = postings;
+        this.popularOrder = popularOrder;
+        this.topLists = topLists;
+        this.topK = topK;
+        this.alphabet = alphabet;
+    }
+
+    static SuggestSegment build(List<Doc> source, int topK) {
+        Doc[] docs = source.toArray(new Doc[0]);
+        Arrays.sort(docs, Ranking.RECENT.order());
+
+        // Most popular first, ties newest first: sort (inverted popularity, position) packed into one long.
+        long[] byPopularity = new long[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            long popularity = Math.min(Math.max(docs[i].popularity(), 0), Integer.MAX_VALUE);
+            byPopularity[i] = (Integer.MAX_VALUE - popularity) << 32 | i;
+        }
+        Arrays.sort(byPopularity);
+        int[] popularOrder = new int[docs.length];
+        int[] popularRank = new int[docs.length];
+        for (int rank = 0; rank < docs.length; rank++) {
+            popularOrder[rank] = (int) byPopularity[rank];
+            popularRank[popularOrder[rank]] = rank;
+        }
+
+        Map<String, IntList> index = new HashMap<>();
+        for (int position = 0; position < docs.length; position++) {
+            for (String token : tokenize(docs[position].filename())) {
+                IntList list = index.computeIfAbsent(token, key -> new IntList());
+                if (list.size == 0 || list.values[list.size - 1] != position) {
+                    list.add(position);
+                }
+            }
+        }
+
+        List<Map.Entry<String, IntList>> entries = new ArrayList<>(index.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        String[] terms = new String[entries.size()];
+        int[] postingStart = new int[terms.length + 1];
+        for (int t = 0; t < terms.length; t++) {
+            terms[t] = entries.get(t).getKey();
+            postingStart[t + 1] = postingStart[t] + entries.get(t).getValue().size;
+        }
+        int[] recent = new int[postingStart[terms.length]];
+        int[] popular = new int[recent.length];
+        for (int t = 0; t < terms.length; t++) {
+            IntList list = entries.get(t).getValue();
+            int start = postingStart[t];
+            System.arraycopy(list.values, 0, recent, start, list.size);
+            for (int i = 0; i < list.size; i++) {
+                popular[start + i] = popularRank[list.values[i]];
+            }
+            Arrays.sort(popular, start, start + list.size);
+        }
+
+        SuggestSegment segment = new SuggestSegment(docs, terms, postingStart, new int[][]{recent, popular},
+                popularOrder, List.of(new HashMap<>(), new HashMap<>()), topK, alphabet(terms));
+        segment.computeTopLists();
+        return segment;
+    }
+
+    int size() {
+        return docs.length;
+    }
+
+    List<Doc> docs() {
+        return Arrays.asList(docs);
+    }
+
+    /** Documents with, for every query token, a token starting with it; best first. */
+    List<Doc> find(String[] query, Ranking ranking, int limit) {
+        if (query.length == 0 || docs.length == 0) {
+            return List.of();
+        }
+        int driver = -1;
+        int[][] ranges = new int[query.length][];
+        for (int i = 0; i < query.length; i++) {
+            ranges[i] = range(query[i]);
+            if (ranges[i][0] == ranges[i][1]) {
+                return List.of();
+            }
+            if (driver < 0 || postingCount(ranges[i]) < postingCount(ranges[driver])) {
+                driver = i;
+            }
+        }
+        String[] filters = without(query, driver);
+        if (filters.length == 0 && ranges[driver][1] - ranges[driver][0] > MERGE_TERMS && limit <= topK) {
+            int[] top = topLists.get(ranking.ordinal()).get(query[driver]);
+            if (top != null) {
+                return resolve(top, ranking, limit);
+            }
+        }
+        return resolve(merge(List.of(ranges[driver]), filters, ranking, limit), ranking, limit);
+    }
+
+    /**
+     * Documents matching every query token but the last as a prefix, and the last within one edit of a prefix of
+     * one of their tokens. Includes the exact matches; callers that already have those skip them.
+     */
+    List<Doc> findFuzzy(String[] query, Ranking ranking, int limit) {
+        if (query.length == 0 || docs.length == 0) {
+            return List.of();
+        }
+        String last = query[query.length - 1];
+        Map<Integer, int[]> ranges = new HashMap<>();
+        for (String variant : variants(last)) {
+            int[] range = range(variant);
+            if (range[0] < range[1]) {
+                // Ranges of prefixes are nested or disjoint; keep the widest one starting at each position.
+                ranges.merge(range[0], range, (a, b) -> a[1] >= b[1] ? a : b);
+            }
+        }
+        List<int[]> disjoint = new ArrayList<>();
+        ranges.values().stream().sorted(Comparator.comparingInt(range -> range[0])).forEach(range -> {
+            int[] previous = disjoint.isEmpty() ? null : disjoint.get(disjoint.size() - 1);
+            if (previous == null || range[0] >= previous[1]) {
+                disjoint.add(range);
+            }
+        });
+        return resolve(merge(disjoint, Arrays.copyOf(query, query.length - 1), ranking, limit), ranking, limit);
+    }
+
+    /** Lower-case letter and digit runs of a filename or query, each at most 64 characters. */
+    static String[] tokenize(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        List<String> tokens = new ArrayList<>(4);
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean word = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(lower.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)));
+                start = -1;
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /** Whether every query token is a prefix of one of the filename's tokens. */
+    static boolean matches(String filename, String[] query) {
+        return query.length == 0 || matches(tokenize(filename), query);
+    }
+
+    static boolean matches(String[] tokens, String[] query) {
+        for (String wanted : query) {
+            boolean found = false;
+            for (String token : tokens) {
+                if (token.startsWith(wanted)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Ranks of the best {@code limit} documents with a token in one of the ranges that pass the filters. */
+    private int[] merge(List<int[]> ranges, String[] filters, Ranking ranking, int limit) {
+        int[] keys = postings[ranking.ordinal()];
+        long total = 0;
+        for (int[] range : ranges) {
+            total += postingCount(range);
+        }
+        int[] found = new int[limit];
+        int count = 0;
+        if (total <= GATHER_LIMIT) {
+            int[] candidates = new int[(int) total];
+            int n = 0;
+            for (int[] range : ranges) {
+                int from = postingStart[range[0]];
+                int to = postingStart[range[1]];
+                System.arraycopy(keys, from, candidates, n, to - from);
+                n += to - from;
+            }
+            Arrays.sort(candidates);
+            for (int i = 0; i < n && count < limit; i++) {
+                if ((i == 0 || candidates[i] != candidates[i - 1]) && accepts(candidates[i], ranking, filters)) {
+                    found[count++] = candidates[i];
+                }
+            }
+            return Arrays.copyOf(found, count);
+        }
+
+        // Cursor per term: {current key, position, end}.
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Comparator.comparingInt(cursor -> cursor[0]));
+        for (int[] range : ranges) {
+            for (int t = range[0]; t < range[1]; t++) {
+                heap.add(new int[]{keys[postingStart[t]], postingStart[t], postingStart[t + 1]});
+            }
+        }
+        int previous = -1;
+        int scanned = 0;
+        while (!heap.isEmpty() && count < limit && scanned < SCAN_LIMIT) {
+            int[] cursor = heap.poll();
+            int key = cursor[0];
+            if (key != previous) {
+                if (accepts(key, ranking, filters)) {
+                    found[count++] = key;
+                }
+                previous = key;
+                scanned++;
+            }
+            if (++cursor[1] < cursor[2]) {
+                cursor[0] = keys[cursor[1]];
+                heap.add(cursor);
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    private boolean accepts(int key, Ranking ranking, String[] filters) {
+        return filters.length == 0 || matches(doc(key, ranking).filename(), filters);
+    }
+
+    private Doc doc(int key, Ranking ranking) {
+        return docs[ranking == Ranking.RECENT ? key : popularOrder[key]];
+    }
+
+    private List<Doc> resolve(int[] keys, Ranking ranking, int limit) {
+        List<Doc> found = new ArrayList<>(Math.min(limit, keys.length));
+        for (int i = 0; i < keys.length && found.size() < limit; i++) {
+            found.add(doc(keys[i], ranking));
+        }
+        return found;
+    }
+
+    private void computeTopLists() {
+        for (int length = 1; length <= MAX_TOKEN_LENGTH; length++) {
+            boolean any = false;
+            int t = 0;
+            while (t < terms.length) {
+                if (terms[t].length() < length) {
+                    t++;
+                    continue;
+                }
+                String prefix = terms[t].substring(0, length);
+                int end = prefixEnd(t, prefix);
+                if (end - t > MERGE_TERMS) {
+                    any = true;
+                    for (Ranking ranking : Ranking.values()) {
+                        topLists.get(ranking.ordinal())
+                                .put(prefix, merge(List.of(new int[]{t, end}), new String[0], ranking, topK));
+                    }
+                }
+                t = end;
+            }
+            if (!any) {
+                return; // longer prefixes only narrow these ranges further
+            }
+        }
+    }
+
+    private Set<String> variants(String token) {
+        Set<String> variants = new LinkedHashSet<>();
+        variants.add(token);
+        for (int i = 0; i < token.length(); i++) {
+            variants.add(token.substring(0, i) + token.substring(i + 1));
+            if (i + 1 < token.length()) {
+                variants.add(token.substring(0, i) + token.charAt(i + 1) + token.charAt(i) + token.substring(i + 2));
+            }
+        }
+        for (char c : alphabet) {
+            for (int i = 0; i <= token.length(); i++) {
+                variants.add(token.substring(0, i) + c + token.substring(i));
+                if (i < token.length()) {
+                    variants.add(token.substring(0, i) + c + token.substring(i + 1));
+                }
+            }
+        }
+        variants.remove("");
+        return variants;
+    }
+
+    /** [first, end) of the terms starting with {@code prefix}. */
+    private int[] range(String prefix) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return new int[]{low, prefixEnd(low, prefix)};
+    }
+
+    private int prefixEnd(int from, String prefix) {
+        int low = from;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].startsWith(prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int postingCount(int[] range) {
+        return postingStart[range[1]] - postingStart[range[0]];
+    }
+
+    private static String[] without(String[] tokens, int index) {
+        String[] rest = new String[tokens.length - 1];
+        System.arraycopy(tokens, 0, rest, 0, index);
+        System.arraycopy(tokens, index + 1, rest, index, rest.length - index);
+        return rest;
+    }
+
+    /** The characters fuzzy variants are made of: the most frequent ones in the terms. */
+    private static char[] alphabet(String[] terms) {
+        Map<Character, Integer> counts = new HashMap<>();
+        for (String term : terms) {
+            for (int i = 0; i < term.length(); i++) {
+                counts.merge(term.charAt(i), 1, Integer::sum);
+            }
+        }
+        List<Character> frequent = new ArrayList<>(counts.keySet());
+        frequent.sort(Comparator.comparing(counts::get).reversed());
+        char[] alphabet = new char[Math.min(frequent.size(), ALPHABET_SIZE)];
+        for (int i = 0; i < alphabet.length; i++) {
+            alphabet[i] = frequent.get(i);
+        }
+        return alphabet;
+    }
+
+    private static final class IntList {
+        private int[] values = new int[2];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
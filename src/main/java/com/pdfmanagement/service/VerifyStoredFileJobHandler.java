@@ -0,0 +1,59 @@
+package com.pdfmanagement.service;
+
+import com.pdfmanagement.model.PDFFile;
+import com.pdfmanagement.repository.PDFRepository;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Post-upload check that re-reads a stored PDF and compares it with the checksum recorded at upload.
+ * <p>
+ * This stands in for content scanning: it runs off the request thread, and a mismatch fails the job
+ * so it is retried and, if the file stays wrong, dead-lettered where it shows up in the job-status
+ * endpoints. Either way the outcome is recorded on the row through {@link StoredFileVerifier}, so a file found
+ * damaged is refused at download from then on.
+ * </p>
+ */
+@Component
+public class VerifyStoredFileJobHandler implements JobHandler<PdfJobPayload> {
+
+    public static final String TYPE = "pdf.verify";
+
+    private final PDFRepository pdfRepository;
+    private final StoredFileVerifier storedFileVerifier;
+
+    public VerifyStoredFileJobHandler(PDFRepository pdfRepository, StoredFileVerifier storedFileVerifier) {
+        this.pdfRepository = pdfRepository;
+        this.storedFileVerifier = storedFileVerifier;
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public Class<PdfJobPayload> payloadType() {
+        return PdfJobPayload.class;
+    }
+
+    @Override
+    public void handle(PdfJobPayload payload) throws IOException {
+        PDFFile pdfFile = pdfRepository.findById(payload.pdfId()).orElse(null);
+        if (pdfFile == null || pdfFile.getChecksum() == null) {
+            return; // Deleted since, or uploaded before checksums were recorded; nothing to verify.
+        }
+        // Checks the reassembled content, so a version stored as a tail also verifies the versions beneath it.
+        StoredFileVerifier.Result result = storedFileVerifier.verify(pdfFile, new IoThrottle(0));
+        if (result == null) {
+            return; // A version beneath it is damaged, which its own row records, or it could not be read; the
+                    // storage scrubber checks it again later.
+        }
+        storedFileVerifier.record(pdfFile.getId(), result);
+        if (!result.intact()) {
+            throw new IOException("Stored file of PDF ID " + pdfFile.getId() + " is " + result.status() + ": "
+                    + result.detail());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- CRC-32 of each document's complete content, computed during upload alongside the SHA-256. ZIP
+-- headers need it before an entry's data, so recording it lets a library export lay out the whole
+-- archive, and answer Range requests, without reading the files first. Older rows are filled in the
+-- first time they are exported.
+ALTER TABLE pdffile ADD COLUMN crc32 BIGINT;
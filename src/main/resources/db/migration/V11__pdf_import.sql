@@ -0,0 +1,20 @@
+-- Progress of bulk imports, one row per source directory and owner. last_path is the relative path
+-- of the last file in the last committed batch; files sort by that path, so a rerun resumes after it.
+CREATE TABLE IF NOT EXISTS import_checkpoint (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    source_dir     VARCHAR(1024) NOT NULL,
+    owner_email    VARCHAR(255)  NOT NULL,
+    last_path      VARCHAR(4096),
+    files_imported INTEGER       NOT NULL DEFAULT 0,
+    files_skipped  INTEGER       NOT NULL DEFAULT 0,
+    files_failed   INTEGER       NOT NULL DEFAULT 0,
+    bytes_imported BIGINT        NOT NULL DEFAULT 0,
+    started_at     TIMESTAMP(6)  NOT NULL,
+    updated_at     TIMESTAMP(6)  NOT NULL,
+    completed_at   TIMESTAMP(6),
+    UNIQUE (source_dir, owner_email)
+);
+
+-- Imports skip content the owner already has, and files already recorded where they lie.
+CREATE INDEX IF NOT EXISTS idx_pdffile_uploaded_by_checksum ON pdffile (uploaded_by, checksum);
+CREATE INDEX IF NOT EXISTS idx_pdffile_filepath ON pdffile (filepath);
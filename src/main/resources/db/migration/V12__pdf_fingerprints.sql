@@ -0,0 +1,23 @@
+-- MinHash fingerprint of each PDF's extracted text (128 64-bit minimums, big-endian), written by the
+-- pdf.fingerprint background job. signature is NULL when the document has too little text to compare.
+-- near_duplicate_of is the owner's most similar earlier document at the time the fingerprint was computed,
+-- if it reached pdf.similarity.threshold.
+CREATE TABLE IF NOT EXISTS pdf_fingerprint (
+    pdf_id            BIGINT           PRIMARY KEY REFERENCES pdffile (id) ON DELETE CASCADE,
+    signature         BYTEA,
+    shingle_count     INTEGER          NOT NULL,
+    near_duplicate_of BIGINT,
+    similarity        DOUBLE PRECISION,
+    computed_at       TIMESTAMP(6)     NOT NULL
+);
+
+-- LSH index over the signatures: one row per band of a fingerprint, keyed by the band's hash. Documents that
+-- share a (band, bucket) pair are candidate near-duplicates; the primary key serves the candidate lookup.
+CREATE TABLE IF NOT EXISTS pdf_lsh_band (
+    band   SMALLINT NOT NULL,
+    bucket BIGINT   NOT NULL,
+    pdf_id BIGINT   NOT NULL REFERENCES pdffile (id) ON DELETE CASCADE,
+    PRIMARY KEY (band, bucket, pdf_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_pdf_lsh_band_pdf_id ON pdf_lsh_band (pdf_id);
@@ -0,0 +1,7 @@
+-- Verified state of each row's stored file, kept by the post-upload verification job and the storage scrubber so
+-- downloads can tell a damaged file from the row alone. stored_bytes is the file's size on disk when it was last
+-- verified, which lets later passes spot a changed file with one stat. storage_status is NULL until the file is
+-- first checked, then one of OK, MISSING, TRUNCATED, CORRUPT or QUARANTINED.
+ALTER TABLE pdffile ADD COLUMN stored_bytes BIGINT;
+ALTER TABLE pdffile ADD COLUMN storage_status VARCHAR(16);
+ALTER TABLE pdffile ADD COLUMN verified_at TIMESTAMP(6);
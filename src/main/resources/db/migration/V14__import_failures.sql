@@ -0,0 +1,9 @@
+-- Files a bulk import could not import, kept so the next run of the same import retries them. Rows are
+-- replaced together with their batch's checkpoint, and removed once the file imports or has gone away.
+CREATE TABLE IF NOT EXISTS import_failure (
+    checkpoint_id BIGINT        NOT NULL REFERENCES import_checkpoint (id) ON DELETE CASCADE,
+    path          VARCHAR(4096) NOT NULL,
+    error         TEXT,
+    failed_at     TIMESTAMP(6)  NOT NULL,
+    PRIMARY KEY (checkpoint_id, path)
+);
@@ -0,0 +1,33 @@
+-- Baseline schema, matching what spring.jpa.hibernate.ddl-auto=update produced before Flyway took over.
+-- Databases that were already created by Hibernate are baselined at this version and skip this script,
+-- so it must not gain anything those databases lack: later changes belong in later migrations.
+
+CREATE TABLE users (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username VARCHAR(255),
+    email    VARCHAR(255),
+    password VARCHAR(255)
+);
+
+CREATE TABLE pdffile (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    filename    VARCHAR(255),
+    filepath    VARCHAR(255),
+    uploaded_by VARCHAR(255),
+    upload_time TIMESTAMP(6)
+);
+
+CREATE TABLE comment (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    pdf_id       BIGINT REFERENCES pdffile (id),
+    username     VARCHAR(255),
+    text         VARCHAR(255),
+    comment_time TIMESTAMP(6)
+);
+
+CREATE TABLE shared_file (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    pdf_id      BIGINT REFERENCES pdffile (id),
+    share_token VARCHAR(255) UNIQUE,
+    created_at  TIMESTAMP(6)
+);
@@ -0,0 +1,29 @@
+-- Metadata columns and the job queue, added to the entities while the schema was still managed by
+-- ddl-auto=update. A database that ran that code already has some or all of them, so every statement
+-- here is written to be a no-op when its column or table exists.
+
+ALTER TABLE pdffile ADD COLUMN IF NOT EXISTS size_bytes  BIGINT;
+ALTER TABLE pdffile ADD COLUMN IF NOT EXISTS checksum    VARCHAR(64);
+ALTER TABLE pdffile ADD COLUMN IF NOT EXISTS page_count  INTEGER;
+ALTER TABLE pdffile ADD COLUMN IF NOT EXISTS title       VARCHAR(512);
+ALTER TABLE pdffile ADD COLUMN IF NOT EXISTS author      VARCHAR(512);
+ALTER TABLE pdffile ADD COLUMN IF NOT EXISTS pdf_version VARCHAR(8);
+ALTER TABLE pdffile ADD COLUMN IF NOT EXISTS revision    BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS background_job (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    type            VARCHAR(64)  NOT NULL,
+    payload         TEXT,
+    status          VARCHAR(16)  NOT NULL,
+    attempts        INTEGER      NOT NULL,
+    max_attempts    INTEGER      NOT NULL,
+    run_at          TIMESTAMP(6) NOT NULL,
+    locked_at       TIMESTAMP(6),
+    locked_by       VARCHAR(128),
+    last_error      TEXT,
+    idempotency_key VARCHAR(200) UNIQUE,
+    pdf_id          BIGINT,
+    owner_email     VARCHAR(255),
+    created_at      TIMESTAMP(6),
+    updated_at      TIMESTAMP(6)
+);
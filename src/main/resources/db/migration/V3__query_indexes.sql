@@ -0,0 +1,25 @@
+-- Indexes for the queries the application actually runs. Hibernate's ddl-auto never created these.
+
+-- Login and every authenticated request look users up by email.
+CREATE INDEX IF NOT EXISTS idx_users_email ON users (email);
+
+-- my-files listings: WHERE uploaded_by = ? ORDER BY upload_time.
+CREATE INDEX IF NOT EXISTS idx_pdffile_uploaded_by_upload_time ON pdffile (uploaded_by, upload_time);
+
+-- Filename search: Spring Data's ...ContainingIgnoreCase generates upper(filename) LIKE upper('%q%'),
+-- which only a trigram index on the same expression can serve.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_pdffile_filename_trgm ON pdffile USING gin (upper(filename) gin_trgm_ops);
+
+-- Metadata backfill walks rows that have no checksum yet.
+CREATE INDEX IF NOT EXISTS idx_pdffile_checksum_missing ON pdffile (id) WHERE checksum IS NULL;
+
+-- Comments of a document, in time order.
+CREATE INDEX IF NOT EXISTS idx_comment_pdf_id_comment_time ON comment (pdf_id, comment_time);
+
+-- Shares of a document.
+CREATE INDEX IF NOT EXISTS idx_shared_file_pdf_id ON shared_file (pdf_id);
+
+-- Job queue polling only ever looks at due pending jobs.
+CREATE INDEX IF NOT EXISTS idx_background_job_due ON background_job (run_at, id) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS idx_background_job_owner_pdf ON background_job (owner_email, pdf_id);
@@ -0,0 +1,12 @@
+-- Keyset index for the comment feed: WHERE pdf_id = ? AND (comment_time, id) > (?, ?) ORDER BY comment_time, id.
+-- It covers everything the old (pdf_id, comment_time) index did, so that one is dropped.
+
+-- Rows without a time would sort after every cursor and never be returned by the feed.
+UPDATE comment c SET comment_time = COALESCE(p.upload_time, TIMESTAMP '1970-01-01')
+FROM pdffile p
+WHERE c.comment_time IS NULL AND p.id = c.pdf_id;
+UPDATE comment SET comment_time = TIMESTAMP '1970-01-01' WHERE comment_time IS NULL;
+ALTER TABLE comment ALTER COLUMN comment_time SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_comment_pdf_id_comment_time_id ON comment (pdf_id, comment_time, id);
+DROP INDEX IF EXISTS idx_comment_pdf_id_comment_time;
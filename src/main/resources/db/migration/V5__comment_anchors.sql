@@ -0,0 +1,16 @@
+-- Optional anchor of a comment to a region of one page. Coordinates are fractions of the page size,
+-- measured from the top-left corner, so they do not depend on page size, rotation handling or zoom.
+ALTER TABLE comment ADD COLUMN page_number   INTEGER;
+ALTER TABLE comment ADD COLUMN anchor_x      DOUBLE PRECISION;
+ALTER TABLE comment ADD COLUMN anchor_y      DOUBLE PRECISION;
+ALTER TABLE comment ADD COLUMN anchor_width  DOUBLE PRECISION;
+ALTER TABLE comment ADD COLUMN anchor_height DOUBLE PRECISION;
+
+ALTER TABLE comment ADD CONSTRAINT chk_comment_anchor CHECK (
+    (page_number IS NULL AND anchor_x IS NULL AND anchor_y IS NULL AND anchor_width IS NULL AND anchor_height IS NULL)
+    OR (page_number >= 1
+        AND anchor_x >= 0 AND anchor_y >= 0 AND anchor_width >= 0 AND anchor_height >= 0
+        AND anchor_x + anchor_width <= 1.000001 AND anchor_y + anchor_height <= 1.000001));
+
+-- The annotation index loads a document's anchored comments in one go.
+CREATE INDEX IF NOT EXISTS idx_comment_anchored ON comment (pdf_id) WHERE page_number IS NOT NULL;
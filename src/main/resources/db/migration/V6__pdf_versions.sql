@@ -0,0 +1,15 @@
+-- Version history. Every version is its own pdffile row. version_root_id points at the first version
+-- (NULL on the first version itself) and previous_version_id at the version it was uploaded on top of.
+-- A version with tail_offset set stores only the bytes after its previous version's content; its
+-- file must be read after that content.
+ALTER TABLE pdffile ADD COLUMN version_root_id     BIGINT REFERENCES pdffile (id);
+ALTER TABLE pdffile ADD COLUMN previous_version_id BIGINT REFERENCES pdffile (id);
+ALTER TABLE pdffile ADD COLUMN version_number      INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE pdffile ADD COLUMN tail_offset         BIGINT;
+
+ALTER TABLE pdffile ADD CONSTRAINT chk_pdffile_tail_has_previous
+    CHECK (tail_offset IS NULL OR previous_version_id IS NOT NULL);
+
+-- One row per version number within a document; also serves the version listing.
+CREATE UNIQUE INDEX IF NOT EXISTS uq_pdffile_version ON pdffile (COALESCE(version_root_id, id), version_number);
+CREATE INDEX IF NOT EXISTS idx_pdffile_version_root ON pdffile (version_root_id) WHERE version_root_id IS NOT NULL;
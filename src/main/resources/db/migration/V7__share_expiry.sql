@@ -0,0 +1,14 @@
+-- Share links gain an optional expiry and use limit. A share that runs out of uses gets its
+-- expires_at set to the moment of its last use, so "expired" is the only state the access path
+-- and the sweeper need to check.
+ALTER TABLE shared_file ADD COLUMN expires_at TIMESTAMP(6);
+ALTER TABLE shared_file ADD COLUMN max_uses   INTEGER;
+ALTER TABLE shared_file ADD COLUMN use_count  INTEGER NOT NULL DEFAULT 0;
+-- Canonical form of the requested limits; share creation reuses an active link with the same policy.
+ALTER TABLE shared_file ADD COLUMN policy     VARCHAR(64) NOT NULL DEFAULT 'ttl=none;uses=none';
+
+CREATE INDEX IF NOT EXISTS idx_shared_file_pdf_policy ON shared_file (pdf_id, policy, id);
+DROP INDEX IF EXISTS idx_shared_file_pdf_id;
+
+-- The expiry sweeper only ever scans shares that can expire.
+CREATE INDEX IF NOT EXISTS idx_shared_file_expires_at ON shared_file (expires_at) WHERE expires_at IS NOT NULL;
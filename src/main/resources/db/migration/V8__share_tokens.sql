@@ -0,0 +1,10 @@
+-- Share links are now handed out as signed tokens that carry the file id, share id, expiry and
+-- permissions, and are checked without reading this table. Such a token stays valid until its
+-- embedded expiry, so a link that is turned off early is marked revoked_at rather than having its
+-- expires_at moved, and the row is kept until expires_at passes. Every node holds the ids of
+-- revoked, unexpired shares in memory and reloads them periodically.
+ALTER TABLE shared_file ADD COLUMN revoked_at  TIMESTAMP(6);
+-- Bit set: 1 = view details, comments and annotations, 2 = download, 4 = comment.
+ALTER TABLE shared_file ADD COLUMN permissions INTEGER NOT NULL DEFAULT 7;
+
+CREATE INDEX IF NOT EXISTS idx_shared_file_revoked ON shared_file (id) WHERE revoked_at IS NOT NULL;
@@ -0,0 +1,23 @@
+-- Per-user storage counters, kept up to date by uploads instead of summing pdffile on demand.
+-- bytes_used / file_count describe committed pdffile rows; bytes_reserved / files_reserved are
+-- uploads that passed the quota check and are still being written. A version stored as a tail
+-- counts only the tail's bytes. quota_bytes and max_files override the configured defaults.
+CREATE TABLE IF NOT EXISTS storage_usage (
+    owner_email    VARCHAR(255) PRIMARY KEY,
+    bytes_used     BIGINT       NOT NULL DEFAULT 0,
+    file_count     INTEGER      NOT NULL DEFAULT 0,
+    bytes_reserved BIGINT       NOT NULL DEFAULT 0,
+    files_reserved INTEGER      NOT NULL DEFAULT 0,
+    quota_bytes    BIGINT,
+    max_files      INTEGER,
+    reserved_at    TIMESTAMP(6),
+    reconciled_at  TIMESTAMP(6)
+);
+
+-- Seed the counters once; the reconciliation job corrects any drift afterwards.
+INSERT INTO storage_usage (owner_email, bytes_used, file_count, reconciled_at)
+SELECT uploaded_by, COALESCE(SUM(size_bytes - COALESCE(tail_offset, 0)), 0), COUNT(*), now()
+FROM pdffile
+WHERE uploaded_by IS NOT NULL
+GROUP BY uploaded_by
+ON CONFLICT (owner_email) DO NOTHING;
@@ -0,0 +1,182 @@
+package com.pdfmanagement.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChunkedAeadFileTest {
+
+    private static final int CHUNK = ChunkedAeadFile.MIN_CHUNK_SIZE;
+    private static final int SEALED_CHUNK = CHUNK + ChunkedAeadFile.TAG_SIZE;
+
+    private final SecretKey masterKey = key(1);
+    private final SecureRandom random = new SecureRandom();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsAcrossChunkBoundaries() throws IOException {
+        for (int length : new int[] {0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 3 * CHUNK + CHUNK / 2}) {
+            byte[] content = content(length);
+            Path file = write(content);
+            assertEquals(ChunkedAeadFile.HEADER_SIZE + length
+                    + ChunkedAeadFile.Header.chunkCount(length, CHUNK) * ChunkedAeadFile.TAG_SIZE, Files.size(file),
+                    "stored size of " + length + " bytes");
+            assertArrayEquals(content, readAll(file), "content of " + length + " bytes");
+        }
+    }
+
+    @Test
+    void rangeReadsReturnTheBytesAtTheirPosition() throws IOException {
+        byte[] content = content(5 * CHUNK + 123);
+        Path file = write(content);
+        try (ChunkedAeadFile.Reader reader = open(file)) {
+            assertEquals(content.length, reader.size());
+            long[][] ranges = {{0, 10}, {CHUNK - 5, 10}, {3 * CHUNK, CHUNK}, {4 * CHUNK + 7, CHUNK + 116}, {17, 3}};
+            for (long[] range : ranges) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) range[1]);
+                reader.position(range[0]);
+                while (buffer.hasRemaining() && reader.read(buffer) > 0) {
+                    // a read stops at the end of a chunk
+                }
+                assertArrayEquals(Arrays.copyOfRange(content, (int) range[0], (int) (range[0] + range[1])),
+                        buffer.array(), "range at " + range[0]);
+            }
+            reader.position(content.length);
+            assertEquals(-1, reader.read(ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    void truncatedFileIsDamaged() throws IOException {
+        Path file = write(content(3 * CHUNK));
+        truncate(file, ChunkedAeadFile.HEADER_SIZE + 2L * SEALED_CHUNK);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertThrows(StoredFileDamagedException.class, () -> ChunkedAeadFile.readHeader(channel));
+        }
+    }
+
+    @Test
+    void truncationHiddenByRewrittenLengthFailsOnTheNewLastChunk() throws IOException {
+        Path file = write(content(3 * CHUNK));
+        truncate(file, ChunkedAeadFile.HEADER_SIZE + 2L * SEALED_CHUNK);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ChunkedAeadFile.writeLength(channel, 2L * CHUNK);
+        }
+
+        try (ChunkedAeadFile.Reader reader = open(file)) {
+            reader.read(ByteBuffer.allocate(CHUNK));
+            reader.position(CHUNK);
+            assertThrows(StoredFileDamagedException.class, () -> reader.read(ByteBuffer.allocate(CHUNK)));
+        }
+    }
+
+    @Test
+    void reorderedChunksFailAuthentication() throws IOException {
+        Path file = write(content(3 * CHUNK));
+        byte[] stored = Files.readAllBytes(file);
+        int first = ChunkedAeadFile.HEADER_SIZE;
+        byte[] chunk0 = Arrays.copyOfRange(stored, first, first + SEALED_CHUNK);
+        System.arraycopy(stored, first + SEALED_CHUNK, stored, first, SEALED_CHUNK);
+        System.arraycopy(chunk0, 0, stored, first + SEALED_CHUNK, SEALED_CHUNK);
+        Files.write(file, stored);
+
+        try (ChunkedAeadFile.Reader reader = open(file)) {
+            assertThrows(StoredFileDamagedException.class, () -> reader.read(ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    void modifiedChunkFailsAuthenticationWithoutAffectingTheOthers() throws IOException {
+        byte[] content = content(3 * CHUNK);
+        Path file = write(content);
+        byte[] stored = Files.readAllBytes(file);
+        stored[ChunkedAeadFile.HEADER_SIZE + SEALED_CHUNK + 100] ^= 1;
+        Files.write(file, stored);
+
+        try (ChunkedAeadFile.Reader reader = open(file)) {
+            ByteBuffer last = ByteBuffer.allocate(CHUNK);
+            reader.position(2L * CHUNK).read(last);
+            assertArrayEquals(Arrays.copyOfRange(content, 2 * CHUNK, 3 * CHUNK), last.array());
+            reader.position(CHUNK);
+            assertThrows(StoredFileDamagedException.class, () -> reader.read(ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    void wrongMasterKeyIsNotReportedAsDamage() throws IOException {
+        Path file = write(content(100));
+        try (FileChannel channel = FileChannel.open(file)) {
+            ChunkedAeadFile.Header header = ChunkedAeadFile.readHeader(channel);
+            assertEquals("k1", header.keyId());
+            IOException e = assertThrows(IOException.class, () -> ChunkedAeadFile.unwrapKey(header, key(2)));
+            assertFalse(e instanceof StoredFileDamagedException, "a wrong key is a configuration problem");
+        }
+    }
+
+    private Path write(byte[] content) throws IOException {
+        Path file = Files.createTempFile(dir, "sealed", ".pdf");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try (OutputStream out = new ChunkedAeadFile.Writer(channel, CHUNK, "k1", masterKey, random)) {
+            // Uneven writes, so chunks are filled across several calls.
+            for (int from = 0; from < content.length; from += 1000) {
+                out.write(content, from, Math.min(1000, content.length - from));
+            }
+        }
+        return file;
+    }
+
+    private ChunkedAeadFile.Reader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file);
+        ChunkedAeadFile.Header header = ChunkedAeadFile.readHeader(channel);
+        return new ChunkedAeadFile.Reader(channel, header, ChunkedAeadFile.unwrapKey(header, masterKey));
+    }
+
+    private byte[] readAll(Path file) throws IOException {
+        try (ChunkedAeadFile.Reader reader = open(file)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) reader.size());
+            while (buffer.hasRemaining() && reader.read(buffer) > 0) {
+                // keep reading
+            }
+            assertEquals(-1, reader.read(ByteBuffer.allocate(1)));
+            return buffer.array();
+        }
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    private static SecretKey key(int seed) {
+        byte[] key = new byte[32];
+        new Random(seed).nextBytes(key);
+        return new SecretKeySpec(key, "AES");
+    }
+}
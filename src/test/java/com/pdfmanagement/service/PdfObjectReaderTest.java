@@ -0,0 +1,311 @@
+package com.pdfmanagement.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PdfObjectReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsObjectsThroughClassicXrefTable() throws IOException {
+        byte[] pdf = new PdfBuilder()
+                .object(1, "<< /Type /Catalog /Pages 2 0 R >>")
+                .object(2, "<< /Type /Pages /Kids [] /Count 0 >>")
+                .object(3, "<< /Title (Quarterly \\(draft\\) report) /Pages 7 >>")
+                .classicXref("/Root 1 0 R /Info 3 0 R")
+                .toByteArray();
+
+        try (FileChannel channel = open(pdf)) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            assertEquals("1.7", reader.readHeaderVersion());
+            Map<String, Object> info = reader.resolveDict(reader.readTrailer().get("Info"));
+            assertArrayEquals(bytes("Quarterly (draft) report"), (byte[]) info.get("Title"));
+            assertEquals(7L, info.get("Pages"));
+            Map<String, Object> catalog = reader.resolveDict(reader.readTrailer().get("Root"));
+            assertEquals(new PdfObjectReader.Name("Catalog"), catalog.get("Type"));
+        }
+    }
+
+    @Test
+    void newerIncrementalUpdateWins() throws IOException {
+        byte[] pdf = new PdfBuilder()
+                .object(1, "<< /Type /Catalog >>")
+                .object(3, "<< /Title (First) >>")
+                .classicXref("/Root 1 0 R /Info 3 0 R")
+                .object(3, "<< /Title (Second) >>")
+                .classicXref("/Root 1 0 R /Info 3 0 R")
+                .toByteArray();
+
+        try (FileChannel channel = open(pdf)) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            Map<String, Object> info = reader.resolveDict(reader.readTrailer().get("Info"));
+            assertArrayEquals(bytes("Second"), (byte[]) info.get("Title"));
+        }
+    }
+
+    @Test
+    void readsObjectsPackedInObjectStreams() throws IOException {
+        byte[] pdf = new PdfBuilder()
+                .object(1, "<< /Type /Catalog >>")
+                .objectStream(10, 4, "<< /Title (Packed) >>")
+                .xrefStream(11, "/Root 1 0 R /Info 4 0 R")
+                .toByteArray();
+
+        try (FileChannel channel = open(pdf)) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            Map<String, Object> info = reader.resolveDict(reader.readTrailer().get("Info"));
+            assertArrayEquals(bytes("Packed"), (byte[]) info.get("Title"));
+        }
+    }
+
+    @Test
+    void readsCompressedXrefStreamWithPngPredictor() throws IOException {
+        byte[] pdf = new PdfBuilder()
+                .object(1, "<< /Type /Catalog >>")
+                .object(3, "<< /Title (Predicted) >>")
+                .objectStream(10, 4, "<< /Author (Packed) >>")
+                .predictedXrefStream(11, "/Root 1 0 R /Info 3 0 R /Extra 4 0 R")
+                .toByteArray();
+
+        try (FileChannel channel = open(pdf)) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            Map<String, Object> trailer = reader.readTrailer();
+            assertArrayEquals(bytes("Predicted"), (byte[]) reader.resolveDict(trailer.get("Info")).get("Title"));
+            assertArrayEquals(bytes("Packed"), (byte[]) reader.resolveDict(trailer.get("Extra")).get("Author"));
+        }
+    }
+
+    @Test
+    void objectStreamContainingItselfFailsInsteadOfRecursing() throws IOException {
+        byte[] pdf = new PdfBuilder()
+                .object(1, "<< /Type /Catalog >>")
+                .compressed(5, 5, 0)
+                .xrefStream(11, "/Root 1 0 R /Info 5 0 R")
+                .toByteArray();
+
+        try (FileChannel channel = open(pdf)) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            Object info = reader.readTrailer().get("Info");
+            assertThrows(IOException.class, () -> reader.resolve(info));
+        }
+    }
+
+    @Test
+    void objectStreamsContainingEachOtherFailInsteadOfRecursing() throws IOException {
+        byte[] pdf = new PdfBuilder()
+                .object(1, "<< /Type /Catalog >>")
+                .compressed(5, 6, 0)
+                .compressed(6, 5, 0)
+                .xrefStream(11, "/Root 1 0 R /Info 5 0 R")
+                .toByteArray();
+
+        try (FileChannel channel = open(pdf)) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            Object info = reader.readTrailer().get("Info");
+            assertThrows(IOException.class, () -> reader.resolve(info));
+        }
+    }
+
+    @Test
+    void missingStartxrefIsReported() throws IOException {
+        try (FileChannel channel = open(bytes("%PDF-1.4\n1 0 obj\n<< >>\nendobj\n"))) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            assertThrows(IOException.class, reader::readTrailer);
+        }
+    }
+
+    @Test
+    void negativeSubsectionCountIsRejected() throws IOException {
+        String xref = "xref" + " ".repeat(20) + "1 -1\n";
+        try (FileChannel channel = open(bytes("%PDF-1.4\n" + xref + "trailer\n<< >>\nstartxref\n9\n%%EOF\n"))) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            assertThrows(IOException.class, reader::readTrailer);
+        }
+    }
+
+    @Test
+    void xrefStreamWithZeroWidthRowsIsRejected() throws IOException {
+        byte[] pdf = xrefStreamOnly("/W [0 0 0] /Index [0 2000000000]", new byte[0]);
+        try (FileChannel channel = open(pdf)) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            assertThrows(IOException.class, reader::readTrailer);
+        }
+    }
+
+    @Test
+    void xrefStreamIndexIsCappedAtItsRows() throws IOException {
+        byte[] pdf = xrefStreamOnly("/W [1 2 1] /Index [0 2000000000]", new byte[] {1, 0, 9, 0});
+        try (FileChannel channel = open(pdf)) {
+            PdfObjectReader reader = new PdfObjectReader(channel);
+            assertEquals(1L, reader.readTrailer().get("Size"));
+        }
+    }
+
+    @Test
+    void oversizedPredictorRowIsRejectedBeforeAllocating() throws IOException {
+        for (String parms : new String[] {"/Columns 2147483647", "/Columns 100000 /Colors 100000",
+                "/Columns 4 /BitsPerComponent 0", "/Columns -1"}) {
+            byte[] pdf = xrefStreamOnly("/W [1 2 1] /Filter /FlateDecode /DecodeParms << /Predictor 12 " + parms
+                    + " >>", deflate(new byte[] {2, 1, 0, 9, 0}));
+            try (FileChannel channel = open(pdf)) {
+                PdfObjectReader reader = new PdfObjectReader(channel);
+                assertThrows(IOException.class, reader::readTrailer, parms);
+            }
+        }
+    }
+
+    private FileChannel open(byte[] content) throws IOException {
+        Path file = Files.write(Files.createTempFile(dir, "reader", ".pdf"), content);
+        return FileChannel.open(file);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** A file holding nothing but one cross-reference stream, with {@code entries} appended to its dictionary. */
+    private static byte[] xrefStreamOnly(String entries, byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(bytes("%PDF-1.5\n1 0 obj\n<< /Type /XRef /Size 1 " + entries + " /Length " + data.length
+                + " >>\nstream\n"));
+        out.writeBytes(data);
+        out.writeBytes(bytes("\nendstream\nendobj\nstartxref\n9\n%%EOF\n"));
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /** Writes a PDF object by object, recording each one's cross-reference entry for the next section. */
+    private static final class PdfBuilder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final Map<Integer, long[]> entries = new TreeMap<>();
+        private long lastXref = -1;
+
+        PdfBuilder() {
+            write("%PDF-1.7\n%\u00e2\u00e3\u00cf\u00d3\n");
+        }
+
+        PdfBuilder object(int number, String body) {
+            entries.put(number, new long[] {1, out.size(), 0});
+            write(number + " 0 obj\n" + body + "\nendobj\n");
+            return this;
+        }
+
+        PdfBuilder objectStream(int number, int packed, String body) {
+            String header = packed + " 0 ";
+            String data = header + body;
+            object(number, "<< /Type /ObjStm /N 1 /First " + header.length() + " /Length " + data.length()
+                    + " >>\nstream\n" + data + "\nendstream");
+            return compressed(packed, number, 0);
+        }
+
+        PdfBuilder compressed(int number, int streamNumber, int index) {
+            entries.put(number, new long[] {2, streamNumber, index});
+            return this;
+        }
+
+        PdfBuilder classicXref(String trailer) {
+            long offset = out.size();
+            StringBuilder xref = new StringBuilder("xref\n0 1\n0000000000 65535 f \n");
+            entries.forEach((number, entry) -> xref.append(number).append(" 1\n")
+                    .append(String.format("%010d 00000 n \n", entry[1])));
+            xref.append("trailer\n<< /Size ").append(size()).append(' ').append(trailer).append(prev())
+                    .append(" >>\n");
+            write(xref.toString());
+            return end(offset);
+        }
+
+        PdfBuilder xrefStream(int number, String trailer) {
+            return xrefStream(number, trailer, false);
+        }
+
+        /** Like {@link #xrefStream(int, String)}, but compressed with the PNG Up predictor, as most writers do. */
+        PdfBuilder predictedXrefStream(int number, String trailer) {
+            return xrefStream(number, trailer, true);
+        }
+
+        private PdfBuilder xrefStream(int number, String trailer, boolean predicted) {
+            long offset = out.size();
+            entries.put(number, new long[] {1, offset, 0});
+            int size = size();
+            ByteArrayOutputStream rows = new ByteArrayOutputStream();
+            for (int i = 0; i < size; i++) {
+                long[] entry = entries.getOrDefault(i, new long[] {0, 0, 0});
+                rows.write((int) entry[0]);
+                for (int shift = 24; shift >= 0; shift -= 8) {
+                    rows.write((int) (entry[1] >>> shift));
+                }
+                rows.write((int) (entry[2] >>> 8));
+                rows.write((int) entry[2]);
+            }
+            byte[] data = predicted ? deflate(upPredicted(rows.toByteArray(), 7)) : rows.toByteArray();
+            String filter = predicted ? "/Filter /FlateDecode /DecodeParms << /Predictor 12 /Columns 7 >> " : "";
+            write(number + " 0 obj\n<< /Type /XRef /Size " + size + " /W [1 4 2] " + filter + "/Length "
+                    + data.length + " " + trailer + prev() + " >>\nstream\n");
+            out.writeBytes(data);
+            write("\nendstream\nendobj\n");
+            return end(offset);
+        }
+
+        private static byte[] upPredicted(byte[] rows, int columns) {
+            ByteArrayOutputStream predicted = new ByteArrayOutputStream();
+            for (int at = 0; at < rows.length; at += columns) {
+                predicted.write(2);
+                for (int c = 0; c < columns; c++) {
+                    predicted.write(rows[at + c] - (at > 0 ? rows[at - columns + c] : 0));
+                }
+            }
+            return predicted.toByteArray();
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private PdfBuilder end(long offset) {
+            write("startxref\n" + offset + "\n%%EOF\n");
+            lastXref = offset;
+            entries.clear();
+            return this;
+        }
+
+        private int size() {
+            return entries.isEmpty() ? 1 : ((TreeMap<Integer, long[]>) entries).lastKey() + 1;
+        }
+
+        private String prev() {
+            return lastXref < 0 ? "" : " /Prev " + lastXref;
+        }
+
+        private void write(String text) {
+            out.writeBytes(text.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+}
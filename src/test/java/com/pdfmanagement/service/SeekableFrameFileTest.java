@@ -0,0 +1,170 @@
+package com.pdfmanagement.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeekableFrameFileTest {
+
+    private static final int FRAME = SeekableFrameFile.MIN_FRAME_SIZE;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compressibleContentRoundTrips() throws IOException {
+        for (int length : new int[] {1000, FRAME, FRAME + 1, 10 * FRAME + FRAME / 3}) {
+            byte[] content = text(length);
+            Written written = write(content, 2 * FRAME);
+            assertTrue(written.writer.compressed(), length + " bytes of text compress");
+            assertTrue(written.writer.storedLength() < length, "stored smaller than " + length + " bytes");
+            assertEquals(written.writer.storedLength(), Files.size(written.file));
+            assertArrayEquals(content, readAll(written.file), "content of " + length + " bytes");
+        }
+    }
+
+    @Test
+    void incompressibleContentIsStoredUnchanged() throws IOException {
+        byte[] content = random(3 * FRAME, 1);
+        Written written = write(content, FRAME);
+        assertFalse(written.writer.compressed());
+        assertArrayEquals(content, Files.readAllBytes(written.file));
+        try (FileChannel channel = FileChannel.open(written.file)) {
+            assertFalse(SeekableFrameFile.hasMagic(channel));
+        }
+    }
+
+    @Test
+    void framesThatDoNotShrinkAreKeptRaw() throws IOException {
+        byte[] content = concat(text(2 * FRAME), random(FRAME, 2), text(FRAME + 10));
+        Written written = write(content, 2 * FRAME);
+        assertTrue(written.writer.compressed());
+        assertArrayEquals(content, readAll(written.file));
+    }
+
+    @Test
+    void rangeReadsReturnTheBytesAtTheirPosition() throws IOException {
+        byte[] content = concat(text(3 * FRAME), random(FRAME, 3), text(2 * FRAME + 77));
+        Written written = write(content, FRAME);
+        try (SeekableByteChannel reader = open(written.file)) {
+            assertEquals(content.length, reader.size());
+            long[][] ranges = {{4 * FRAME + 3, 50}, {0, 10}, {FRAME - 5, FRAME + 10}, {3 * FRAME - 1, 2},
+                    {content.length - 77, 77}};
+            for (long[] range : ranges) {
+                reader.position(range[0]);
+                assertArrayEquals(Arrays.copyOfRange(content, (int) range[0], (int) (range[0] + range[1])),
+                        read(reader, (int) range[1]), "range at " + range[0]);
+            }
+        }
+    }
+
+    @Test
+    void corruptFrameFailsItsChecksum() throws IOException {
+        byte[] content = text(4 * FRAME);
+        Written written = write(content, FRAME);
+        byte[] stored = Files.readAllBytes(written.file);
+        stored[SeekableFrameFile.MAGIC.length + Integer.BYTES + 20] ^= 0x55;
+        Files.write(written.file, stored);
+
+        try (SeekableByteChannel reader = open(written.file)) {
+            reader.position(2L * FRAME);
+            assertArrayEquals(Arrays.copyOfRange(content, 2 * FRAME, 3 * FRAME), read(reader, FRAME));
+            reader.position(0);
+            assertThrows(StoredFileDamagedException.class, () -> reader.read(ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    void truncatedFileIsDamaged() throws IOException {
+        Written written = write(text(4 * FRAME), FRAME);
+        try (FileChannel channel = FileChannel.open(written.file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        try (FileChannel channel = FileChannel.open(written.file)) {
+            assertTrue(SeekableFrameFile.hasMagic(channel));
+            assertThrows(StoredFileDamagedException.class, () -> new SeekableFrameFile.Reader(channel));
+        }
+    }
+
+    private Written write(byte[] content, int sampleSize) throws IOException {
+        Path file = Files.createTempFile(dir, "frames", ".pdf");
+        SeekableFrameFile.Writer[] closed = new SeekableFrameFile.Writer[1];
+        try (OutputStream out = new SeekableFrameFile.Writer(Files.newOutputStream(file), FRAME, 6, sampleSize,
+                0.1, writer -> closed[0] = writer)) {
+            for (int from = 0; from < content.length; from += 1000) {
+                out.write(content, from, Math.min(1000, content.length - from));
+            }
+        }
+        assertEquals(content.length, closed[0].contentLength());
+        return new Written(file, closed[0]);
+    }
+
+    private static SeekableByteChannel open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file);
+        assertTrue(SeekableFrameFile.hasMagic(channel));
+        return new SeekableFrameFile.Reader(channel);
+    }
+
+    private static byte[] readAll(Path file) throws IOException {
+        try (SeekableByteChannel reader = open(file)) {
+            byte[] content = read(reader, (int) reader.size());
+            assertEquals(-1, reader.read(ByteBuffer.allocate(1)));
+            return content;
+        }
+    }
+
+    private static byte[] read(SeekableByteChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // a read stops at the end of a frame
+        }
+        return buffer.array();
+    }
+
+    private static byte[] text(int length) {
+        byte[] line = "4 0 obj << /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] >> endobj\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] text = new byte[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = line[i % line.length];
+        }
+        return text;
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        byte[] all = new byte[Arrays.stream(parts).mapToInt(part -> part.length).sum()];
+        int at = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, all, at, part.length);
+            at += part.length;
+        }
+        return all;
+    }
+
+    private record Written(Path file, SeekableFrameFile.Writer writer) {
+    }
+}
@@ -0,0 +1,237 @@
+package com.pdfmanagement.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StoredZipTest {
+
+    private static final LocalDateTime MODIFIED = LocalDateTime.of(2024, 3, 5, 14, 30, 12);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void archiveReadsBackWithZipFileAndZipInputStream() throws IOException {
+        byte[][] contents = {random(10_000, 1), new byte[0], random(200_000, 2), "%PDF-1.4\n".getBytes()};
+        String[] names = {"reports/q1.pdf", "empty.pdf", "caf\u00e9/r\u00e9sum\u00e9.pdf", "notes.pdf"};
+        List<StoredZip.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < contents.length; i++) {
+            entries.add(entry(names[i], contents[i]));
+        }
+        StoredZip zip = new StoredZip(entries);
+        byte[] archive = write(zip, 0, zip.length());
+        assertEquals(zip.length(), archive.length);
+
+        Path file = dir.resolve("export.zip");
+        Files.write(file, archive);
+        try (ZipFile zipFile = new ZipFile(file.toFile(), StandardCharsets.UTF_8)) {
+            assertEquals(contents.length, zipFile.size());
+            for (int i = 0; i < contents.length; i++) {
+                ZipEntry entry = zipFile.getEntry(names[i]);
+                assertNotNull(entry);
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+                assertEquals(contents[i].length, entry.getSize());
+                assertEquals(crc(contents[i]), entry.getCrc());
+                assertEquals(MODIFIED, entry.getTimeLocal());
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    assertArrayEquals(contents[i], in.readAllBytes(), names[i]);
+                }
+            }
+        }
+
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < contents.length; i++) {
+                ZipEntry entry = in.getNextEntry();
+                assertEquals(names[i], entry.getName());
+                assertArrayEquals(contents[i], in.readAllBytes(), names[i]);
+            }
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    void rangesConcatenateToTheWholeArchive() throws IOException {
+        List<StoredZip.Entry> entries = List.of(entry("a.pdf", random(70_000, 3)), entry("b.pdf", random(5, 4)),
+                entry("c.pdf", random(130_000, 5)));
+        StoredZip zip = new StoredZip(entries);
+        byte[] whole = write(zip, 0, zip.length());
+
+        Random random = new Random(6);
+        for (int round = 0; round < 50; round++) {
+            long[] cuts = random.longs(4, 0, zip.length() + 1).sorted().toArray();
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            long from = 0;
+            for (long cut : cuts) {
+                joined.writeBytes(write(zip, from, cut));
+                from = cut;
+            }
+            joined.writeBytes(write(zip, from, zip.length()));
+            assertArrayEquals(whole, joined.toByteArray(), "split at " + Arrays.toString(cuts));
+        }
+        assertArrayEquals(Arrays.copyOfRange(whole, 100, 70_100), write(zip, 100, 70_100));
+    }
+
+    @Test
+    void sameEntriesProduceTheSameArchive() throws IOException {
+        StoredZip first = new StoredZip(List.of(entry("a.pdf", random(1000, 7)), entry("b.pdf", random(10, 8))));
+        StoredZip second = new StoredZip(List.of(entry("a.pdf", random(1000, 7)), entry("b.pdf", random(10, 8))));
+        assertEquals(first.fingerprint(), second.fingerprint());
+        assertArrayEquals(write(first, 0, first.length()), write(second, 0, second.length()));
+    }
+
+    @Test
+    void contentThatDoesNotMatchItsCrcFailsTheWrite() {
+        byte[] content = random(1000, 9);
+        byte[] changed = content.clone();
+        changed[500] ^= 1;
+        StoredZip zip = new StoredZip(List.of(new StoredZip.Entry("a.pdf", content.length, crc(content), MODIFIED,
+                offset -> new ByteArrayInputStream(changed, (int) offset, changed.length - (int) offset))));
+        assertThrows(IOException.class, () -> write(zip, 0, zip.length()));
+    }
+
+    @Test
+    void moreThan65534EntriesUseTheZip64EndRecord() throws IOException {
+        int count = 70_000;
+        List<StoredZip.Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(entry("f" + i + ".pdf", new byte[] {(byte) i}));
+        }
+        StoredZip zip = new StoredZip(entries);
+        Path file = dir.resolve("many.zip");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            zip.write(out, 0, zip.length());
+        }
+
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            assertEquals(count, zipFile.size());
+            ZipEntry last = zipFile.getEntry("f" + (count - 1) + ".pdf");
+            try (InputStream in = zipFile.getInputStream(last)) {
+                assertArrayEquals(new byte[] {(byte) (count - 1)}, in.readAllBytes());
+            }
+        }
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(file))) {
+            int read = 0;
+            while (in.getNextEntry() != null) {
+                read++;
+            }
+            assertEquals(count, read);
+        }
+    }
+
+    @Test
+    void entriesPastFourGibibytesUseZip64Records() throws IOException {
+        long size = (1L << 32) + 10;
+        byte[] small = random(1000, 10);
+        StoredZip zip = new StoredZip(List.of(
+                new StoredZip.Entry("big.pdf", size, zeroCrc(size), MODIFIED, offset -> zeros(size - offset)),
+                entry("after.pdf", small)));
+
+        // Leave the big entry's content as a hole in a sparse file: it reads back as the zeros it consists of.
+        long contentStart = 30 + "big.pdf".length() + 20;
+        Path file = dir.resolve("big.zip");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                StandardOpenOption.SPARSE)) {
+            zip.write(Channels.newOutputStream(channel), 0, contentStart);
+            channel.position(contentStart + size);
+            zip.write(Channels.newOutputStream(channel), contentStart + size, zip.length());
+            assertEquals(zip.length(), channel.size());
+        }
+
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            ZipEntry big = zipFile.getEntry("big.pdf");
+            assertEquals(size, big.getSize());
+            assertEquals(size, big.getCompressedSize());
+            assertEquals(zeroCrc(size), big.getCrc());
+            try (InputStream in = zipFile.getInputStream(zipFile.getEntry("after.pdf"))) {
+                assertArrayEquals(small, in.readAllBytes());
+            }
+            try (InputStream in = zipFile.getInputStream(big)) {
+                in.skipNBytes(size - 3);
+                assertArrayEquals(new byte[3], in.readAllBytes());
+            }
+        }
+    }
+
+    private static byte[] write(StoredZip zip, long from, long to) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        zip.write(out, from, to);
+        assertEquals(to - from, out.size(), "bytes written for [" + from + ", " + to + ")");
+        return out.toByteArray();
+    }
+
+    private static StoredZip.Entry entry(String name, byte[] content) {
+        return new StoredZip.Entry(name, content.length, crc(content), MODIFIED,
+                offset -> new ByteArrayInputStream(content, (int) offset, content.length - (int) offset));
+    }
+
+    private static long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private static long zeroCrc(long size) {
+        CRC32 crc = new CRC32();
+        ByteBuffer zeros = ByteBuffer.allocate(1 << 20);
+        for (long left = size; left > 0; left -= zeros.capacity()) {
+            crc.update(zeros.clear().limit((int) Math.min(zeros.capacity(), left)));
+        }
+        return crc.getValue();
+    }
+
+    private static InputStream zeros(long count) {
+        return new InputStream() {
+            private long left = count;
+
+            @Override
+            public int read() {
+                return left-- > 0 ? 0 : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (left <= 0) {
+                    return -1;
+                }
+                int n = (int) Math.min(len, left);
+                Arrays.fill(b, off, off + n, (byte) 0);
+                left -= n;
+                return n;
+            }
+        };
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
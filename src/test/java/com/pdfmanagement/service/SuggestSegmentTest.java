@@ -0,0 +1,117 @@
+package com.pdfmanagement.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestSegmentTest {
+
+    private static final String[] WORDS = {"report", "invoice", "contract", "receipt", "summary", "review",
+            "roadmap", "budget", "minutes", "proposal"};
+
+    @Test
+    void tokenizesOnAnythingButLettersAndDigits() {
+        assertArrayEquals(new String[] {"q3", "board", "minutes", "v2", "pdf"},
+                SuggestSegment.tokenize("Q3_Board-Minutes (v2).PDF"));
+        assertArrayEquals(new String[0], SuggestSegment.tokenize("--"));
+        assertEquals(64, SuggestSegment.tokenize("a".repeat(100))[0].length());
+    }
+
+    @Test
+    void everyQueryTokenMustPrefixSomeFilenameToken() {
+        assertTrue(SuggestSegment.matches("Quarterly Report 2024.pdf", new String[] {"rep", "20"}));
+        assertTrue(SuggestSegment.matches("Quarterly Report 2024.pdf", new String[] {"2024", "quart"}));
+        assertFalse(SuggestSegment.matches("Quarterly Report 2024.pdf", new String[] {"port"}));
+        assertFalse(SuggestSegment.matches("Quarterly Report 2024.pdf", new String[] {"rep", "2023"}));
+    }
+
+    @Test
+    void findAgreesWithFilteringAndSortingEveryDocument() {
+        // Large enough for every path: gathered candidates, heap merges and precomputed top lists.
+        List<SuggestSegment.Doc> docs = docs(10_000, new Random(1));
+        SuggestSegment segment = SuggestSegment.build(docs, 20);
+        assertEquals(docs.size(), segment.size());
+
+        String[][] queries = {{"pd"}, {"pdf"}, {"1"}, {"12"}, {"r"}, {"re"}, {"rep", "1"}, {"pdf", "inv"},
+                {"budget", "4"}, {"roadmap", "review"}, {"x"}, {"4999"}, {"pdf", "pdf"}};
+        for (String[] query : queries) {
+            for (SuggestSegment.Ranking ranking : SuggestSegment.Ranking.values()) {
+                for (int limit : new int[] {1, 10, 20, 50}) {
+                    assertEquals(expected(docs, query, ranking, limit), segment.find(query, ranking, limit),
+                            String.join(" ", query) + " by " + ranking + ", limit " + limit);
+                }
+            }
+        }
+    }
+
+    @Test
+    void popularityTiesAreBrokenByRecency() {
+        List<SuggestSegment.Doc> docs = List.of(
+                new SuggestSegment.Doc(1, "report-a.pdf", "ann", 100, 5),
+                new SuggestSegment.Doc(2, "report-b.pdf", "ann", 300, 5),
+                new SuggestSegment.Doc(3, "report-c.pdf", "ann", 200, 9),
+                new SuggestSegment.Doc(4, "report-d.pdf", "ann", 400, 0));
+        SuggestSegment segment = SuggestSegment.build(docs, 10);
+        assertEquals(List.of(4L, 2L, 3L, 1L), ids(segment.find(new String[] {"rep"},
+                SuggestSegment.Ranking.RECENT, 10)));
+        assertEquals(List.of(3L, 2L, 1L, 4L), ids(segment.find(new String[] {"rep"},
+                SuggestSegment.Ranking.POPULAR, 10)));
+    }
+
+    @Test
+    void fuzzySearchToleratesOneEditInTheLastToken() {
+        List<SuggestSegment.Doc> docs = List.of(
+                new SuggestSegment.Doc(1, "quarterly-report.pdf", "ann", 100, 0),
+                new SuggestSegment.Doc(2, "invoice-march.pdf", "ann", 200, 0),
+                new SuggestSegment.Doc(3, "quarterly-budget.pdf", "ann", 300, 0));
+        SuggestSegment segment = SuggestSegment.build(docs, 10);
+        SuggestSegment.Ranking recent = SuggestSegment.Ranking.RECENT;
+
+        assertEquals(List.of(), segment.find(new String[] {"reprot"}, recent, 10));
+        assertEquals(List.of(1L), ids(segment.findFuzzy(new String[] {"reprot"}, recent, 10)));
+        assertEquals(List.of(1L), ids(segment.findFuzzy(new String[] {"rport"}, recent, 10)));
+        assertEquals(List.of(2L), ids(segment.findFuzzy(new String[] {"invoxce"}, recent, 10)));
+        assertEquals(List.of(3L), ids(segment.findFuzzy(new String[] {"quarterly", "budgt"}, recent, 10)));
+        assertEquals(List.of(), segment.findFuzzy(new String[] {"rpoert"}, recent, 10));
+    }
+
+    @Test
+    void emptySegmentFindsNothing() {
+        assertEquals(0, SuggestSegment.EMPTY.size());
+        assertEquals(List.of(), SuggestSegment.EMPTY.find(new String[] {"a"}, SuggestSegment.Ranking.RECENT, 10));
+        assertEquals(List.of(), SuggestSegment.EMPTY.findFuzzy(new String[] {"a"}, SuggestSegment.Ranking.POPULAR,
+                10));
+    }
+
+    private static List<SuggestSegment.Doc> docs(int count, Random random) {
+        List<SuggestSegment.Doc> docs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + "-" + random.nextInt(5000)
+                    + (random.nextInt(4) == 0 ? " " + WORDS[random.nextInt(WORDS.length)] : "") + ".pdf";
+            // Coarse times and popularities, so both orders have ties to break.
+            docs.add(new SuggestSegment.Doc(i + 1, name, "user" + random.nextInt(10), random.nextInt(2000),
+                    random.nextInt(20)));
+        }
+        return docs;
+    }
+
+    private static List<SuggestSegment.Doc> expected(List<SuggestSegment.Doc> docs, String[] query,
+                                                     SuggestSegment.Ranking ranking, int limit) {
+        return docs.stream()
+                .filter(doc -> SuggestSegment.matches(doc.filename(), query))
+                .sorted(ranking.order())
+                .limit(limit)
+                .toList();
+    }
+
+    private static List<Long> ids(List<SuggestSegment.Doc> docs) {
+        return docs.stream().map(SuggestSegment.Doc::id).toList();
+    }
+}